@@ -0,0 +1,206 @@
+package com.SE2025BackEnd_16.project.Controller;
+
+import com.SE2025BackEnd_16.project.RedisUtils.CacheMetrics;
+import com.SE2025BackEnd_16.project.RedisUtils.CachePenetrationGuard;
+import com.SE2025BackEnd_16.project.RedisUtils.CacheTagRegistry;
+import com.SE2025BackEnd_16.project.RedisUtils.HotKeyDetector;
+import com.SE2025BackEnd_16.project.RedisUtils.NearCache;
+import com.SE2025BackEnd_16.project.RedisUtils.RedisKeyMigrator;
+import com.SE2025BackEnd_16.project.RedisUtils.RedisKeySchema;
+import com.SE2025BackEnd_16.project.RedisUtils.SingleFlight;
+import com.SE2025BackEnd_16.project.dto.response.ApiResponse;
+import com.SE2025BackEnd_16.project.service.ItemIndexBootstrapService;
+import com.SE2025BackEnd_16.project.service.ItemIndexReconciler;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+/**
+ * 缓存运维控制器（仅管理员，见 SecurityConfig）
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/admin/cache")
+@CrossOrigin(origins = "http://localhost:3000")
+public class CacheAdminController {
+
+    @Autowired
+    private NearCache nearCache;
+
+    @Autowired
+    private CacheTagRegistry cacheTagRegistry;
+
+    @Autowired
+    private SingleFlight singleFlight;
+
+    @Autowired
+    private HotKeyDetector hotKeyDetector;
+
+    @Autowired
+    private CachePenetrationGuard penetrationGuard;
+
+    @Autowired
+    private ItemIndexBootstrapService itemIndexBootstrapService;
+
+    @Autowired
+    private RedisKeySchema keySchema;
+
+    @Autowired
+    private RedisKeyMigrator keyMigrator;
+
+    @Autowired
+    private CacheMetrics cacheMetrics;
+
+    @Autowired
+    private ItemIndexReconciler itemIndexReconciler;
+
+    /**
+     * 近端缓存统计（命中率、淘汰数等）
+     */
+    @GetMapping("/near/stats")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getNearCacheStats() {
+        return ResponseEntity.ok(ApiResponse.success("获取近端缓存统计成功", nearCache.stats()));
+    }
+
+    /**
+     * 缓存未命中合并统计（回源次数、被合并的请求数）
+     */
+    @GetMapping("/single-flight/stats")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getSingleFlightStats() {
+        return ResponseEntity.ok(ApiResponse.success("获取请求合并统计成功", singleFlight.stats()));
+    }
+
+    /**
+     * 穿透防护统计（布隆过滤器拦截数、空值缓存命中数）
+     */
+    @GetMapping("/penetration/stats")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getPenetrationStats() {
+        return ResponseEntity.ok(ApiResponse.success("获取穿透防护统计成功", penetrationGuard.stats()));
+    }
+
+    /**
+     * 各key族命中率（本节点启动以来），完整指标见 /actuator/metrics/cache.requests
+     */
+    @GetMapping("/metrics/hit-ratio")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getHitRatios() {
+        return ResponseEntity.ok(ApiResponse.success("获取缓存命中率成功", cacheMetrics.hitRatios()));
+    }
+
+    /**
+     * 按key族采样 MEMORY USAGE，sample为每个key族采样的key数
+     */
+    @GetMapping("/memory")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> sampleMemoryUsage(@RequestParam(defaultValue = "50") int sample) {
+        int sampleSize = Math.max(1, Math.min(sample, 1000));
+        return ResponseEntity.ok(ApiResponse.success("采样内存占用成功", cacheMetrics.sampleMemoryUsage(sampleSize)));
+    }
+
+    /**
+     * 清空本节点近端缓存
+     */
+    @PostMapping("/near/clear")
+    public ResponseEntity<ApiResponse<Void>> clearNearCache() {
+        nearCache.getCache().invalidateAll();
+        log.info("已清空本节点近端缓存");
+        return ResponseEntity.ok(ApiResponse.success("近端缓存已清空", null));
+    }
+
+    /**
+     * 按标签失效缓存，type为 user / seller / category / item
+     */
+    @DeleteMapping("/tags/{type}/{id}")
+    public ResponseEntity<ApiResponse<Long>> invalidateTag(@PathVariable String type, @PathVariable Integer id) {
+        String tag;
+        switch (type) {
+            case CacheTagRegistry.TYPE_USER -> tag = CacheTagRegistry.userTag(id);
+            case CacheTagRegistry.TYPE_SELLER -> tag = CacheTagRegistry.sellerTag(id);
+            case CacheTagRegistry.TYPE_CATEGORY -> tag = CacheTagRegistry.categoryTag(id);
+            case CacheTagRegistry.TYPE_ITEM -> tag = CacheTagRegistry.itemTag(id);
+            default -> {
+                return ResponseEntity.badRequest().body(ApiResponse.error(400, "不支持的标签类型: " + type));
+            }
+        }
+        long removed = cacheTagRegistry.invalidateTag(tag);
+        return ResponseEntity.ok(ApiResponse.success("标签缓存已失效", removed));
+    }
+
+    /**
+     * 当前热点key（估算QPS、发现时间、保持到期时间）及本地副本命中情况
+     */
+    @GetMapping("/hot-keys")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getHotKeys() {
+        return ResponseEntity.ok(ApiResponse.success("获取热点key成功", hotKeyDetector.stats()));
+    }
+
+    /**
+     * 后台全量重建商品索引，reset=true时先清空所有商品相关缓存
+     */
+    @PostMapping("/bootstrap/items")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> bootstrapItems(@RequestParam(defaultValue = "false") boolean reset) {
+        if (!itemIndexBootstrapService.start(reset)) {
+            return ResponseEntity.status(409).body(ApiResponse.error(409, "商品索引重建正在进行中"));
+        }
+        log.info("已触发商品索引重建，reset={}", reset);
+        return ResponseEntity.ok(ApiResponse.success("商品索引重建已开始", itemIndexBootstrapService.status()));
+    }
+
+    /**
+     * 商品索引重建进度（已处理数、批次、耗时、每秒条数）
+     */
+    @GetMapping("/bootstrap/items/status")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getBootstrapStatus() {
+        return ResponseEntity.ok(ApiResponse.success("获取商品索引重建进度成功", itemIndexBootstrapService.status()));
+    }
+
+    /**
+     * 当前key命名版本及迁移进度
+     */
+    @GetMapping("/key-schema")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getKeySchema() {
+        Map<String, Object> data = new java.util.LinkedHashMap<>();
+        data.put("version", keySchema.getVersion());
+        data.put("migration", keyMigrator.status());
+        return ResponseEntity.ok(ApiResponse.success("获取key命名版本成功", data));
+    }
+
+    /**
+     * 后台把v1命名的key在线迁移到v2（hash tag）命名，deleteSource=true时迁移后删除旧key
+     */
+    @PostMapping("/key-schema/migrate")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> migrateKeySchema(@RequestParam(defaultValue = "false") boolean deleteSource) {
+        if (!keyMigrator.start(deleteSource)) {
+            return ResponseEntity.status(409).body(ApiResponse.error(409, "key迁移正在进行中"));
+        }
+        log.info("已触发Redis key迁移，deleteSource={}", deleteSource);
+        return ResponseEntity.ok(ApiResponse.success("Redis key迁移已开始", keyMigrator.status()));
+    }
+
+    /**
+     * 后台执行一次商品索引对账（Redis ↔ MySQL），dryRun=true时只统计差异不修复
+     */
+    @PostMapping("/reconcile")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> reconcile(@RequestParam(defaultValue = "false") boolean dryRun) {
+        if (!itemIndexReconciler.start(dryRun)) {
+            return ResponseEntity.status(409).body(ApiResponse.error(409, "商品索引对账或重建正在进行中"));
+        }
+        log.info("已触发商品索引对账，dryRun={}", dryRun);
+        Map<String, Object> data = new java.util.LinkedHashMap<>();
+        data.put("running", true);
+        data.put("dryRun", dryRun);
+        return ResponseEntity.ok(ApiResponse.success("商品索引对账已开始", data));
+    }
+
+    /**
+     * 最近一次对账报告（各类问题数量、修复数、部分商品ID）
+     */
+    @GetMapping("/reconcile/report")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getReconcileReport() {
+        Map<String, Object> data = new java.util.LinkedHashMap<>();
+        data.put("running", itemIndexReconciler.isRunning());
+        data.put("report", itemIndexReconciler.lastReport());
+        return ResponseEntity.ok(ApiResponse.success("获取对账报告成功", data));
+    }
+}
@@ -1,7 +1,11 @@
 package com.SE2025BackEnd_16.project.Controller;
 
+import com.SE2025BackEnd_16.project.KafkaUtils.KafkaTopics;
 import com.SE2025BackEnd_16.project.KafkaUtils.KafkaUtils;
+import com.SE2025BackEnd_16.project.KafkaUtils.event.ItemEvents;
 import com.SE2025BackEnd_16.project.RedisUtils.RedisUtils;
+import com.SE2025BackEnd_16.project.RedisUtils.SingleFlight;
+import com.SE2025BackEnd_16.project.RedisUtils.ZSetCursor;
 import com.SE2025BackEnd_16.project.dto.converter.ItemConverter;
 import com.SE2025BackEnd_16.project.dto.request.ItemCreateRequestDTO;
 import com.SE2025BackEnd_16.project.dto.request.ItemUpdateRequestDTO;
@@ -25,6 +29,7 @@ import com.SE2025BackEnd_16.project.service.ItemService;
 import com.SE2025BackEnd_16.project.service.ProductDescriptionService;
 import com.SE2025BackEnd_16.project.service.ItemSearchService;
 import com.SE2025BackEnd_16.project.service.ElasticsearchSyncService;
+import com.SE2025BackEnd_16.project.service.ItemViewStatsService;
 import com.SE2025BackEnd_16.project.utils.JwtAuthHelper;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -69,11 +74,15 @@ public class ItemController {
     @Autowired
     private RedisUtils redisUtils;
     @Autowired
+    private SingleFlight singleFlight;
+    @Autowired
     private UserInfoRepository userInfoRepository;
     @Autowired
     private CategoryRepository categoryRepository;
     @Autowired
     private JwtAuthHelper jwtAuthHelper;
+    @Autowired
+    private ItemViewStatsService itemViewStatsService;
 
 
 
@@ -176,16 +185,37 @@ public class ItemController {
 
 
     @GetMapping("/{itemId}")
-    public ResponseEntity<ApiResponse<ItemResponseDTO>> getItemById(@PathVariable Integer itemId) {
+    public ResponseEntity<ApiResponse<ItemResponseDTO>> getItemById(@PathVariable Integer itemId, HttpServletRequest request) {
         try {
+            Integer viewerId = jwtAuthHelper.getCurrentUserId(request);
             Item item = redisUtils.getItemDetail(itemId);
             if (item == null) {
-            ItemResponseDTO responseDTO = itemService.getItemById(itemId);
-
-                kafkaUtils.sendMessage("ItemDetail", String.valueOf(itemId));
+                // 同一商品的并发未命中合并为一次查库；持锁期间同步写入缓存再释放锁，
+                // 其他节点拿到锁后重查缓存即可命中，不再各自查库
+                ItemResponseDTO responseDTO = singleFlight.execute("item:" + itemId,
+                    () -> {
+                        Item cached = redisUtils.getItemDetail(itemId);
+                        return cached != null ? buildItemResponseDTO(cached) : null;
+                    },
+                    () -> {
+                        ItemResponseDTO loaded = itemService.getItemById(itemId);
+                        try {
+                            redisUtils.cacheItemDetail(itemId);
+                        } catch (Exception e) {
+                            // Redis写入失败时退回异步预热
+                            log.warn("同步写入商品详情缓存失败，改为异步预热: {}, {}", itemId, e.getMessage());
+                            kafkaUtils.send(KafkaTopics.ITEM_DETAIL, new ItemEvents.DetailPreheat(itemId));
+                        }
+                        return loaded;
+                    });
+                if (responseDTO != null) {
+                    itemViewStatsService.recordView(itemId, responseDTO.getCategoryId(), viewerId);
+                }
                 return ResponseEntity.ok(ApiResponse.success(responseDTO));
             }
             System.out.println("缓存命中：" + itemId);
+            // 浏览事件异步发送，由流处理按窗口聚合后批量写库
+            itemViewStatsService.recordView(itemId, item.getCategoryId(), viewerId);
             ItemResponseDTO responseDTO = buildItemResponseDTO(item);
             return ResponseEntity.ok(ApiResponse.success(responseDTO));
 
@@ -648,9 +678,18 @@ public class ItemController {
             @RequestParam(defaultValue = "0") Integer page,
             @RequestParam(defaultValue = "12") Integer size,
             @RequestParam(defaultValue = "update_time") String sortBy,
-            @RequestParam(defaultValue = "DESC") String sortDirection) {
+            @RequestParam(defaultValue = "DESC") String sortDirection,
+            @RequestParam(required = false) String cursor) {
+        if (cursor != null && (size < 1 || size > ZSetCursor.MAX_PAGE_SIZE)) {
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.error(400, "每页条数必须在1到" + ZSetCursor.MAX_PAGE_SIZE + "之间"));
+        }
         try {
-            PageResponseDTO<ItemResponseDTO> result = itemService.getItemsByCategoryPaged(categoryId, page, size, sortBy, sortDirection);
+            // 传cursor参数（第一页传空串）时使用游标分页，否则按page/size分页
+            // sortBy=trending 时按热度榜排序，只支持page/size分页
+            PageResponseDTO<ItemResponseDTO> result = cursor != null
+                    ? itemService.getItemsByCategoryCursor(categoryId, cursor, size, sortBy, sortDirection)
+                    : itemService.getItemsByCategoryPaged(categoryId, page, size, sortBy, sortDirection);
             return ResponseEntity.ok(ApiResponse.success(result));
         } catch (Exception e) {
             log.error("获取分类商品分页失败: {}", e.getMessage());
@@ -663,6 +702,7 @@ public class ItemController {
     
     /**
      * 分页获取商品
+     * sortBy 可选 update_time、price、likes，或 trending（热度榜，按page/size分页，忽略cursor）
      */
     @GetMapping("/page")
     public ResponseEntity<ApiResponse<PageResponseDTO<ItemResponseDTO>>> getItemsPage(
@@ -674,8 +714,13 @@ public class ItemController {
             @RequestParam(required = false) String minPrice,
             @RequestParam(required = false) String maxPrice,
             @RequestParam(required = false) String condition,
-            @RequestParam(required = false) String keyword) {
+            @RequestParam(required = false) String keyword,
+            @RequestParam(required = false) String cursor) {
         
+        if (cursor != null && (size < 1 || size > ZSetCursor.MAX_PAGE_SIZE)) {
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.error(400, "每页条数必须在1到" + ZSetCursor.MAX_PAGE_SIZE + "之间"));
+        }
         try {
             log.info("分页查询商品: page={}, size={}, sortBy={}, sortDirection={}, categoryId={}, minPrice={}, maxPrice={}, condition={}, keyword={}", 
                     page, size, sortBy, sortDirection, categoryId, minPrice, maxPrice, condition, keyword);
@@ -697,6 +742,7 @@ public class ItemController {
             
             queryRequest.setCondition(condition);
             queryRequest.setKeyword(keyword);
+            queryRequest.setCursor(cursor);
             
             PageResponseDTO<ItemResponseDTO> result = itemService.queryItems(queryRequest);
             
@@ -0,0 +1,64 @@
+package com.SE2025BackEnd_16.project.Controller;
+
+import com.SE2025BackEnd_16.project.dto.response.ApiResponse;
+import com.SE2025BackEnd_16.project.service.KafkaDeadLetterService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Kafka运维控制器（死信查看与重放，仅管理员，见 SecurityConfig）
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/admin/kafka")
+@CrossOrigin(origins = "http://localhost:3000")
+public class KafkaAdminController {
+
+    @Autowired
+    private KafkaDeadLetterService deadLetterService;
+
+    /**
+     * 各死信topic的总条数和待重放条数
+     */
+    @GetMapping("/dlt")
+    public ResponseEntity<ApiResponse<List<Map<String, Object>>>> getDeadLetterSummary() {
+        return ResponseEntity.ok(ApiResponse.success("获取死信统计成功", deadLetterService.summary()));
+    }
+
+    /**
+     * 查看某个死信topic中待重放的消息（含原topic、异常类型和异常信息）
+     */
+    @GetMapping("/dlt/{topic}")
+    public ResponseEntity<ApiResponse<List<Map<String, Object>>>> peekDeadLetters(@PathVariable String topic,
+                                                                                   @RequestParam(defaultValue = "20") int limit) {
+        try {
+            return ResponseEntity.ok(ApiResponse.success("获取死信成功", deadLetterService.peek(topic, limit)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(404).body(ApiResponse.error(404, e.getMessage()));
+        }
+    }
+
+    /**
+     * 把死信按原key重新发回业务topic（最多limit条）
+     */
+    @PostMapping("/dlt/{topic}/replay")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> replayDeadLetters(@PathVariable String topic,
+                                                                             @RequestParam(defaultValue = "100") int limit) {
+        try {
+            int replayed = deadLetterService.replay(topic, limit);
+            log.info("已重放死信: {}, {}条", topic, replayed);
+            Map<String, Object> data = new LinkedHashMap<>();
+            data.put("topic", topic);
+            data.put("replayed", replayed);
+            return ResponseEntity.ok(ApiResponse.success("死信重放完成", data));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(404).body(ApiResponse.error(404, e.getMessage()));
+        }
+    }
+}
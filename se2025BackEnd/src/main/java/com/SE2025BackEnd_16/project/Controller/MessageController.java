@@ -1,6 +1,8 @@
 package com.SE2025BackEnd_16.project.Controller;
 
+import com.SE2025BackEnd_16.project.KafkaUtils.KafkaTopics;
 import com.SE2025BackEnd_16.project.KafkaUtils.KafkaUtils;
+import com.SE2025BackEnd_16.project.KafkaUtils.event.MessageEvents;
 import com.SE2025BackEnd_16.project.RedisUtils.RedisUtils;
 import com.SE2025BackEnd_16.project.dto.converter.MessageConverter;
 import com.SE2025BackEnd_16.project.dto.request.MessageCreateRequestDTO;
@@ -73,7 +75,7 @@ public class MessageController {
             List<MessageResponseDTO> messages = messageService.getRootMessages(itemId);
             if(messages != null && !messages.isEmpty()) {
                 System.out.println("缓存未命中Message： " + itemId);
-                kafkaUtils.sendMessage("MessageRoot", String.valueOf(itemId));
+                kafkaUtils.send(KafkaTopics.MESSAGE_ROOT, new MessageEvents.RootPreheat(itemId));
             }
 
             return ResponseEntity.ok(ApiResponse.success(messages));
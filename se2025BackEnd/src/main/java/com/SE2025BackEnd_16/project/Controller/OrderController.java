@@ -20,6 +20,7 @@ import java.io.IOException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.SE2025BackEnd_16.project.RedisUtils.RedisUtils;
+import com.SE2025BackEnd_16.project.RedisUtils.ZSetCursor;
 import com.SE2025BackEnd_16.project.KafkaUtils.KafkaUtils;
 import com.SE2025BackEnd_16.project.utils.JwtAuthHelper;
 import jakarta.servlet.http.HttpServletRequest;
@@ -79,6 +80,54 @@ public class OrderController {
         return ResponseEntity.ok(orders);
     }
 
+    /**
+     * 游标分页获取购买订单，第一页cursor传空串或不传，之后传上一页返回的nextCursor
+     */
+    @GetMapping("/purchased")
+    public ResponseEntity<?> purchasedByCursor(@RequestParam(defaultValue = "") String cursor,
+                                               @RequestParam(defaultValue = "10") int size,
+                                               HttpServletRequest request) {
+        Integer currentUserId = jwtAuthHelper.getCurrentUserId(request);
+        if (currentUserId == null) {
+            Map<String, Object> errorMap = new HashMap<>();
+            errorMap.put("success", false);
+            errorMap.put("message", "用户未登录或token无效");
+            return ResponseEntity.badRequest().body(errorMap);
+        }
+        if (size < 1 || size > ZSetCursor.MAX_PAGE_SIZE) {
+            return ResponseEntity.badRequest().body(Map.of("success", false, "message", "每页条数必须在1到" + ZSetCursor.MAX_PAGE_SIZE + "之间"));
+        }
+        try {
+            return ResponseEntity.ok(orderService.getUserBuyOrdersByCursor(currentUserId, cursor, size));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("success", false, "message", e.getMessage()));
+        }
+    }
+
+    /**
+     * 游标分页获取销售订单
+     */
+    @GetMapping("/sold")
+    public ResponseEntity<?> soldByCursor(@RequestParam(defaultValue = "") String cursor,
+                                          @RequestParam(defaultValue = "10") int size,
+                                          HttpServletRequest request) {
+        Integer currentUserId = jwtAuthHelper.getCurrentUserId(request);
+        if (currentUserId == null) {
+            Map<String, Object> errorMap = new HashMap<>();
+            errorMap.put("success", false);
+            errorMap.put("message", "用户未登录或token无效");
+            return ResponseEntity.badRequest().body(errorMap);
+        }
+        if (size < 1 || size > ZSetCursor.MAX_PAGE_SIZE) {
+            return ResponseEntity.badRequest().body(Map.of("success", false, "message", "每页条数必须在1到" + ZSetCursor.MAX_PAGE_SIZE + "之间"));
+        }
+        try {
+            return ResponseEntity.ok(orderService.getUserSellOrdersByCursor(currentUserId, cursor, size));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("success", false, "message", e.getMessage()));
+        }
+    }
+
     @PostMapping("/buy/{productId}")
     public ResponseEntity<?> buy(@PathVariable int productId, HttpServletRequest request) {
         // 从JWT token中获取当前用户ID
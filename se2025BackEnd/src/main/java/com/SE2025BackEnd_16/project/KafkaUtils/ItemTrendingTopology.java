@@ -0,0 +1,107 @@
+package com.SE2025BackEnd_16.project.KafkaUtils;
+
+import com.SE2025BackEnd_16.project.KafkaUtils.event.ItemEvents;
+import com.SE2025BackEnd_16.project.KafkaUtils.event.KafkaEventCodec;
+import com.SE2025BackEnd_16.project.KafkaUtils.event.OrderEvents;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.common.utils.Bytes;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.kstream.Consumed;
+import org.apache.kafka.streams.kstream.Grouped;
+import org.apache.kafka.streams.kstream.KStream;
+import org.apache.kafka.streams.kstream.Materialized;
+import org.apache.kafka.streams.kstream.TimeWindows;
+import org.apache.kafka.streams.state.WindowStore;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * 商品热度（Kafka Streams）
+ * 浏览、收藏/取消收藏、下单事件按 itemId 换算成热度增量（权重见 app.trending.weight.*），
+ * 按 bucket-seconds 的小窗口累加在状态存储 item-trending-buckets 中，保留 window-hours；
+ * ItemTrendingService 定时读取最近 window-hours 内的各个小窗口，按半衰期衰减求和后写入 item:trending ZSet
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "app.kafka.streams.enabled", havingValue = "true", matchIfMissing = true)
+public class ItemTrendingTopology {
+
+    public static final String TRENDING_STORE = "item-trending-buckets";
+
+    @Autowired
+    private KafkaEventCodec eventCodec;
+
+    @Value("${app.trending.bucket-seconds:300}")
+    private long bucketSeconds;
+
+    @Value("${app.trending.window-hours:24}")
+    private long windowHours;
+
+    @Value("${app.trending.weight.view:1.0}")
+    private double viewWeight;
+
+    @Value("${app.trending.weight.favorite:3.0}")
+    private double favoriteWeight;
+
+    @Value("${app.trending.weight.order:5.0}")
+    private double orderWeight;
+
+    @Autowired
+    public void buildPipeline(StreamsBuilder builder, KStream<String, String> itemViewStream) {
+        Duration bucket = Duration.ofSeconds(bucketSeconds);
+        Duration retention = Duration.ofHours(windowHours).plus(bucket);
+        KStream<String, Double> views = scores(itemViewStream, message -> {
+            var event = eventCodec.decode(message, ItemEvents.Viewed.class, (raw, mapper) -> {
+                throw new IllegalArgumentException("浏览事件没有v1格式");
+            });
+            return KeyValue.pair(String.valueOf(event.itemId()), viewWeight);
+        });
+        KStream<String, Double> favorites = scores(topic(builder, KafkaTopics.FAVORITE_ITEM), message -> {
+            var event = eventCodec.decode(message, ItemEvents.FavoriteChanged.class, ItemEvents.FavoriteChanged::favoriteFromLegacy);
+            return KeyValue.pair(String.valueOf(event.itemId()), favoriteWeight * event.delta());
+        });
+        KStream<String, Double> unfavorites = scores(topic(builder, KafkaTopics.UNFAVORITE_ITEM), message -> {
+            var event = eventCodec.decode(message, ItemEvents.FavoriteChanged.class, ItemEvents.FavoriteChanged::unfavoriteFromLegacy);
+            return KeyValue.pair(String.valueOf(event.itemId()), favoriteWeight * event.delta());
+        });
+        KStream<String, Double> orders = scores(topic(builder, KafkaTopics.CREATE_ORDER), message -> {
+            var event = eventCodec.decode(message, OrderEvents.Created.class, OrderEvents.Created::fromLegacy);
+            return KeyValue.pair(String.valueOf(event.itemId()), orderWeight);
+        });
+        // 下单事件以orderId为key，按itemId重新分区后与其它事件一起聚合
+        views.merge(favorites).merge(unfavorites).merge(orders)
+            .groupByKey(Grouped.with("item-trending", Serdes.String(), Serdes.Double()))
+            .windowedBy(TimeWindows.ofSizeWithNoGrace(bucket))
+            .reduce(Double::sum, Materialized.<String, Double, WindowStore<Bytes, byte[]>>as(TRENDING_STORE)
+                .withKeySerde(Serdes.String())
+                .withValueSerde(Serdes.Double())
+                .withRetention(retention));
+    }
+
+    private KStream<String, String> topic(StreamsBuilder builder, String topic) {
+        return builder.stream(topic, Consumed.with(Serdes.String(), Serdes.String()));
+    }
+
+    /**
+     * 换算为 (itemId, 热度增量)；无法解析的消息丢弃
+     */
+    private KStream<String, Double> scores(KStream<String, String> source, Function<String, KeyValue<String, Double>> toScore) {
+        return source
+            .flatMap((key, message) -> {
+                try {
+                    return List.of(toScore.apply(message));
+                } catch (IllegalArgumentException e) {
+                    log.warn("丢弃无法解析的热度事件: {}, {}", message, e.getMessage());
+                    return List.of();
+                }
+            });
+    }
+}
@@ -0,0 +1,112 @@
+package com.SE2025BackEnd_16.project.KafkaUtils;
+
+import com.SE2025BackEnd_16.project.KafkaUtils.event.ItemEvents;
+import com.SE2025BackEnd_16.project.KafkaUtils.event.KafkaEventCodec;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.common.utils.Bytes;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.kstream.Grouped;
+import org.apache.kafka.streams.kstream.KStream;
+import org.apache.kafka.streams.kstream.Materialized;
+import org.apache.kafka.streams.kstream.Produced;
+import org.apache.kafka.streams.kstream.Suppressed;
+import org.apache.kafka.streams.kstream.TimeWindows;
+import org.apache.kafka.streams.kstream.Windowed;
+import org.apache.kafka.streams.state.WindowStore;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 浏览量聚合（Kafka Streams）
+ * itemView 中的每次浏览按 分类（c:分类ID）和 用户+分类（u:用户ID:分类ID）两个维度计数，
+ * 按 window-seconds 的滚动窗口累计在状态存储 item-view-counts 中，窗口关闭后每个key只输出一条最终计数到 itemViewCounts，
+ * 由 KafkaViewStatsConsumer 批量写入MySQL和Redis，详情页请求不再同步写 user_views_record
+ * 窗口在有新浏览事件推进流时间后才关闭，没有浏览时最后一个窗口的计数会等到下一次浏览才输出
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "app.kafka.streams.enabled", havingValue = "true", matchIfMissing = true)
+public class ItemViewTopology {
+
+    public static final String VIEW_COUNT_STORE = "item-view-counts";
+
+    private static final String CATEGORY_PREFIX = "c:";
+    private static final String USER_PREFIX = "u:";
+
+    @Autowired
+    private KafkaEventCodec eventCodec;
+
+    // 聚合窗口长度，即写库的粒度：每个分类/用户分类每个窗口最多一行更新
+    @Value("${app.stats.views.window-seconds:60}")
+    private long windowSeconds;
+
+    // 迟到事件的容忍时间，窗口在 窗口结束+grace 后关闭并输出
+    @Value("${app.stats.views.grace-seconds:10}")
+    private long graceSeconds;
+
+    // 状态存储中窗口的保留时间
+    @Value("${app.stats.views.retention-hours:24}")
+    private long retentionHours;
+
+    @Autowired
+    public void buildPipeline(KStream<String, String> itemViewStream) {
+        Duration window = Duration.ofSeconds(windowSeconds);
+        Duration grace = Duration.ofSeconds(graceSeconds);
+        Duration retention = Duration.ofHours(retentionHours).compareTo(window.plus(grace)) > 0
+            ? Duration.ofHours(retentionHours)
+            : window.plus(grace);
+        itemViewStream
+            .flatMap((key, value) -> countKeys(value))
+            .groupByKey(Grouped.with(Serdes.String(), Serdes.String()))
+            .windowedBy(TimeWindows.ofSizeAndGrace(window, grace))
+            .count(Materialized.<String, Long, WindowStore<Bytes, byte[]>>as(VIEW_COUNT_STORE)
+                .withKeySerde(Serdes.String())
+                .withValueSerde(Serdes.Long())
+                .withRetention(retention))
+            .suppress(Suppressed.untilWindowCloses(Suppressed.BufferConfig.unbounded()))
+            .toStream()
+            .map(this::toViewCount)
+            .to(KafkaTopics.ITEM_VIEW_COUNTS, Produced.with(Serdes.String(), Serdes.String()));
+    }
+
+    /**
+     * 一次浏览对应的计数key；无法解析或没有分类的消息丢弃
+     */
+    private List<KeyValue<String, String>> countKeys(String message) {
+        ItemEvents.Viewed view;
+        try {
+            view = eventCodec.decode(message, ItemEvents.Viewed.class, (raw, mapper) -> {
+                throw new IllegalArgumentException("浏览事件没有v1格式");
+            });
+        } catch (IllegalArgumentException e) {
+            log.warn("丢弃无法解析的浏览事件: {}, {}", message, e.getMessage());
+            return List.of();
+        }
+        if (view.categoryId() == null) return List.of();
+        List<KeyValue<String, String>> keys = new ArrayList<>(2);
+        keys.add(KeyValue.pair(CATEGORY_PREFIX + view.categoryId(), ""));
+        if (view.userId() != null) {
+            keys.add(KeyValue.pair(USER_PREFIX + view.userId() + ":" + view.categoryId(), ""));
+        }
+        return keys;
+    }
+
+    private KeyValue<String, String> toViewCount(Windowed<String> windowed, Long count) {
+        String key = windowed.key();
+        ItemEvents.ViewCount event;
+        if (key.startsWith(USER_PREFIX)) {
+            String[] parts = key.substring(USER_PREFIX.length()).split(":");
+            event = new ItemEvents.ViewCount(Integer.parseInt(parts[1]), Integer.parseInt(parts[0]), windowed.window().start(), count);
+        } else {
+            event = new ItemEvents.ViewCount(Integer.parseInt(key.substring(CATEGORY_PREFIX.length())), null, windowed.window().start(), count);
+        }
+        return KeyValue.pair(event.key(), eventCodec.encode(KafkaTopics.ITEM_VIEW_COUNTS, event));
+    }
+}
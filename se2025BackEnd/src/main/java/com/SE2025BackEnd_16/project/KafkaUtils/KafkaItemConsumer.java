@@ -1,18 +1,35 @@
 package com.SE2025BackEnd_16.project.KafkaUtils;
 
 
+import com.SE2025BackEnd_16.project.KafkaUtils.event.ItemEvents;
+import com.SE2025BackEnd_16.project.KafkaUtils.event.KafkaEventCodec;
+import com.SE2025BackEnd_16.project.RedisUtils.CachePenetrationGuard;
 import com.SE2025BackEnd_16.project.RedisUtils.RedisUtils;
+import com.SE2025BackEnd_16.project.repository.ItemIndexState;
 import com.SE2025BackEnd_16.project.repository.ItemRepository;
 import com.SE2025BackEnd_16.project.service.OrderService;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
-import com.fasterxml.jackson.databind.SerializationFeature;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import com.SE2025BackEnd_16.project.entity.Item;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
 @Component
 public class KafkaItemConsumer {
 
@@ -26,187 +43,315 @@ public class KafkaItemConsumer {
     private KafkaUtils kafkaUtils;
 
     @Autowired
-    private ObjectMapper objectMapper;
+    private KafkaEventCodec eventCodec;
 
     @Autowired
     private ItemRepository itemRepository;
 
-    @KafkaListener(topics = "ItemDetail", groupId = "Item")
+    @Autowired
+    private CachePenetrationGuard penetrationGuard;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // 转入重试链（redo topic）时等待发送确认的最长时间
+    @Value("${app.kafka.redo.send-timeout-ms:10000}")
+    private long redoSendTimeoutMs;
+
+    @Autowired
+    private KeyOrderedDispatcher dispatcher;
+
+    @Autowired
+    private ProcessedEventStore processedEvents;
+
+    // 处理失败抛出异常，由重试topic延迟重试（见 KafkaConfig.retryTopicConfiguration）
+    @KafkaListener(topics = KafkaTopics.ITEM_DETAIL, groupId = "Item")
     public void listen(String message) {
-        try{
-            System.out.println("收到缓存预热消息Item: " + message);
-            Integer itemId = Integer.parseInt(message);
-            redisUtils.cacheItemDetail(itemId);
-        }
-        catch(Exception e){
-            e.printStackTrace();
-            kafkaUtils.sendMessage("ItemDetail", message);
-        }
+        System.out.println("收到缓存预热消息Item: " + message);
+        var event = eventCodec.decode(message, ItemEvents.DetailPreheat.class, ItemEvents.DetailPreheat::fromLegacy);
+        redisUtils.cacheItemDetail(event.itemId());
     }
 
-    @KafkaListener(topics = "favoriteItem", groupId = "Item")
-    public void handleFavoriteItem(String message) {
-        try {
-            System.out.println("收到favoriteItem异步更新消息: " + message);
-            Integer itemId = Integer.parseInt(message);
-            // 查库获取最新item
-            var itemOpt = itemRepository.findById(itemId);
-            if (itemOpt.isPresent()) {
-                var item = itemOpt.get();
-                // 数据库likes+1
-                int newLikes = (item.getLikes() == null ? 0 : item.getLikes()) + 1;
-                item.setLikes(newLikes);
-                itemRepository.save(item);
-                // 更新ZSet
-                double updateScore = item.getUpdateTime() != null ? item.getUpdateTime().atZone(java.time.ZoneId.systemDefault()).toEpochSecond() : System.currentTimeMillis() / 1000.0;
-                double priceScore = item.getPrice() != null ? item.getPrice().doubleValue() : 0.0;
-                double likesScore = newLikes;
-                redisUtils.addItemToCategorySortedSet(item.getCategoryId(), itemId, updateScore, "update_time");
-                redisUtils.addItemToCategorySortedSet(item.getCategoryId(), itemId, priceScore, "price");
-                redisUtils.addItemToCategorySortedSet(item.getCategoryId(), itemId, likesScore, "likes");
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-            kafkaUtils.sendMessage("favoriteItem", message);
-        }
+    /**
+     * 收藏/取消收藏（批量）：同一商品的多条消息合并为一个增量，每个商品一条UPDATE，
+     * 再一次查出最新状态、一次pipeline刷新详情缓存和所有ZSet
+     */
+    @KafkaListener(topics = {KafkaTopics.FAVORITE_ITEM, KafkaTopics.UNFAVORITE_ITEM}, groupId = "Item",
+                   containerFactory = "batchKafkaListenerContainerFactory")
+    public void handleFavoriteBatch(List<ConsumerRecord<String, String>> records) {
+        System.out.println("收到收藏变更消息: " + records.size() + "条");
+        processBatch(records, this::applyFavoriteChanges);
     }
 
-    @KafkaListener(topics = "unfavoriteItem", groupId = "Item")
-    public void handleUnfavoriteItem(String message) {
-        try {
-            System.out.println("收到unfavoriteItem异步更新消息: " + message);
-            Integer itemId = Integer.parseInt(message);
-            // 查库获取最新item
-            var itemOpt = itemRepository.findById(itemId);
-            if (itemOpt.isPresent()) {
-                var item = itemOpt.get();
-                // 数据库likes-1
-                int newLikes = (item.getLikes() == null ? 0 : item.getLikes()) - 1;
-                if (newLikes < 0) newLikes = 0;
-                item.setLikes(newLikes);
-                itemRepository.save(item);
-                // 更新ZSet
-                double updateScore = item.getUpdateTime() != null ? item.getUpdateTime().atZone(java.time.ZoneId.systemDefault()).toEpochSecond() : System.currentTimeMillis() / 1000.0;
-                double priceScore = item.getPrice() != null ? item.getPrice().doubleValue() : 0.0;
-                double likesScore = newLikes;
-                redisUtils.addItemToCategorySortedSet(item.getCategoryId(), itemId, updateScore, "update_time");
-                redisUtils.addItemToCategorySortedSet(item.getCategoryId(), itemId, priceScore, "price");
-                redisUtils.addItemToCategorySortedSet(item.getCategoryId(), itemId, likesScore, "likes");
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-            kafkaUtils.sendMessage("unfavoriteItem", message);
+    private void applyFavoriteChanges(List<ConsumerRecord<String, String>> records) {
+        Map<Integer, Integer> deltas = new LinkedHashMap<>();
+        for (ConsumerRecord<String, String> record : records) {
+            var event = KafkaTopics.FAVORITE_ITEM.equals(KafkaTopics.baseTopic(record.topic()))
+                ? eventCodec.decode(record.value(), ItemEvents.FavoriteChanged.class, ItemEvents.FavoriteChanged::favoriteFromLegacy)
+                : eventCodec.decode(record.value(), ItemEvents.FavoriteChanged.class, ItemEvents.FavoriteChanged::unfavoriteFromLegacy);
+            deltas.merge(event.itemId(), event.delta(), Integer::sum);
         }
+        deltas.values().removeIf(delta -> delta == 0);
+        if (deltas.isEmpty()) return;
+        // likes仍用单条UPDATE累加，不与同时进行的编辑/上下架保存互相覆盖
+        List<Item> items = inTransaction(() -> {
+            processedEvents.markProcessed(ProcessedEventStore.ITEM, records);
+            deltas.forEach(itemRepository::adjustLikes);
+            return activeItems(itemRepository.findAllById(deltas.keySet()));
+        });
+        flushItemStates(items, Map.of(), Map.of());
     }
 
-    @KafkaListener(topics = "updateItem", groupId = "Item")
-    public void handleUpdateItem(String message) {
-        try {
-            System.out.println("收到updateItem异步更新消息: " + message);
-            String[] parts = message.split(",", -1);
-            Integer itemId = Integer.parseInt(parts[0]);
-            Integer oldCategoryId = Integer.parseInt(parts[1]);
-            Integer newCategoryId = Integer.parseInt(parts[2]);
-            String newImageUrl = parts.length > 3 ? parts[3] : null;
-            var itemOpt = itemRepository.findById(itemId);
-            if (itemOpt.isPresent()) {
-                var item = itemOpt.get();
-                // 其它字段同步（假设前端/缓存已保证数据正确）
-                // 这里只做演示，实际应补全所有字段
-                // 1. 图片
-                if (newImageUrl != null && !newImageUrl.isEmpty()) {
-                    item.setImageUrl(newImageUrl);
+    /**
+     * 编辑商品（批量）：同一商品多次编辑只落版本最新的一次（图片取最近一次上传的），
+     * 每个商品一条只写内容列、带版本条件的UPDATE，再一次pipeline迁移分类/新旧程度索引
+     */
+    @KafkaListener(topics = KafkaTopics.UPDATE_ITEM, groupId = "Item",
+                   containerFactory = "batchKafkaListenerContainerFactory")
+    public void handleUpdateItemBatch(List<ConsumerRecord<String, String>> records) {
+        System.out.println("收到updateItem异步更新消息: " + records.size() + "条");
+        processBatch(records, this::applyItemUpdates);
+    }
+
+    private void applyItemUpdates(List<ConsumerRecord<String, String>> records) {
+        Map<Integer, ItemEvents.Updated> merged = new LinkedHashMap<>();
+        for (ConsumerRecord<String, String> record : records) {
+            var event = eventCodec.decode(record.value(), ItemEvents.Updated.class, ItemEvents.Updated::fromLegacy);
+            merged.merge(event.itemId(), event, KafkaItemConsumer::mergeUpdates);
+        }
+        // 旧格式事件不带内容，标题、描述、价格、condition以缓存中的最新值为准（一次批量读取）
+        List<Integer> legacyIds = merged.values().stream()
+            .filter(event -> event.version() == 0).map(ItemEvents.Updated::itemId).collect(Collectors.toList());
+        Map<Integer, Item> cached = redisUtils.getAllItemsByIds(legacyIds).stream()
+            .collect(Collectors.toMap(Item::getItemId, item -> item, (a, b) -> a));
+        Map<Integer, Integer> oldCategoryIds = new HashMap<>();
+        Map<Integer, String> oldConditions = new HashMap<>();
+        List<Item> items = inTransaction(() -> {
+            processedEvents.markProcessed(ProcessedEventStore.ITEM, records);
+            // 原分类/condition用投影读取（即索引中当前的位置），不加载实体，后面的UPDATE不会被脏检查整行写回
+            for (ItemIndexState state : itemRepository.findIndexStateByIds(merged.keySet())) {
+                if (Boolean.TRUE.equals(state.getIsDeleted())) continue;
+                ItemEvents.Updated event = merged.get(state.getItemId());
+                String imageUrl = event.imageUrl() != null && !event.imageUrl().isEmpty() ? event.imageUrl() : null;
+                int updated;
+                if (event.version() > 0) {
+                    updated = itemRepository.updateContent(state.getItemId(), event.itemName(), event.description(),
+                        event.price(), event.itemCondition(), event.newCategoryId(), imageUrl, event.version());
+                } else {
+                    // 缓存已失效时内容沿用库中的值，只改分类和图片
+                    Item content = cached.containsKey(state.getItemId())
+                        ? cached.get(state.getItemId()) : itemRepository.findByItemId(state.getItemId());
+                    if (content == null) continue;
+                    updated = itemRepository.updateContent(state.getItemId(), content.getItemName(), content.getDescription(),
+                        content.getPrice(), content.getItemCondition(), event.newCategoryId(), imageUrl, 0);
                 }
-                // 2. 标题、描述、价格、condition等（从缓存同步）
-                Item cacheItem = redisUtils.getItemDetail(itemId);
-                if (cacheItem != null) {
-                    item.setItemName(cacheItem.getItemName());
-                    item.setDescription(cacheItem.getDescription());
-                    item.setPrice(cacheItem.getPrice());
-                    item.setItemCondition(cacheItem.getItemCondition());
-                    // 其它字段可补全
+                if (updated == 0) {
+                    System.out.println("丢弃过期的编辑事件: itemId=" + state.getItemId() + ", version=" + event.version());
+                    continue;
                 }
-                // 3. 分类变更
-                if (!oldCategoryId.equals(newCategoryId)) {
-                    // 从旧分类缓存集合移除
-                    redisUtils.removeItemFromCategorySortedSet(oldCategoryId, itemId, "update_time");
-                    redisUtils.removeItemFromCategorySortedSet(oldCategoryId, itemId, "price");
-                    redisUtils.removeItemFromCategorySortedSet(oldCategoryId, itemId, "likes");
-                    // 加入新分类缓存集合
-                    double updateScore = item.getUpdateTime() != null ? item.getUpdateTime().atZone(java.time.ZoneId.systemDefault()).toEpochSecond() : System.currentTimeMillis() / 1000.0;
-                    double priceScore = item.getPrice() != null ? item.getPrice().doubleValue() : 0.0;
-                    double likesScore = item.getLikes() != null ? item.getLikes() : 0.0;
-                    redisUtils.addItemToCategorySortedSet(newCategoryId, itemId, updateScore, "update_time");
-                    redisUtils.addItemToCategorySortedSet(newCategoryId, itemId, priceScore, "price");
-                    redisUtils.addItemToCategorySortedSet(newCategoryId, itemId, likesScore, "likes");
-                    item.setCategoryId(newCategoryId);
+                oldCategoryIds.put(state.getItemId(), state.getCategoryId());
+                if (state.getItemCondition() != null) {
+                    oldConditions.put(state.getItemId(), state.getItemCondition());
                 }
-                // 4. 保存数据库
-                itemRepository.save(item);
-                // 5. 更新商品详情缓存
-                redisUtils.cacheItemDetail(itemId);
             }
-        } catch (Exception e) {
-            e.printStackTrace();
-            kafkaUtils.sendMessage("updateItem", message);
-        }
+            return activeItems(itemRepository.findAllById(oldCategoryIds.keySet()));
+        });
+        flushItemStates(items, oldCategoryIds, oldConditions);
+    }
+
+    /**
+     * 同一商品的两次编辑合并：内容取版本较新的（版本相同时取后到的），新图片为空时沿用另一次上传的图片
+     */
+    static ItemEvents.Updated mergeUpdates(ItemEvents.Updated first, ItemEvents.Updated next) {
+        ItemEvents.Updated newer = next.version() >= first.version() ? next : first;
+        ItemEvents.Updated older = newer == next ? first : next;
+        String imageUrl = newer.imageUrl() != null && !newer.imageUrl().isEmpty() ? newer.imageUrl() : older.imageUrl();
+        return new ItemEvents.Updated(newer.itemId(), first.oldCategoryId(), newer.newCategoryId(), imageUrl,
+            newer.itemName(), newer.description(), newer.price(), newer.itemCondition(), newer.version());
     }
 
-    @KafkaListener(topics = "sellerItemsCache", groupId = "Item")
+    @KafkaListener(topics = KafkaTopics.SELLER_ITEMS_CACHE, groupId = "Item")
     public void handleSellerItemsCache(String message) {
-        try {
-            System.out.println("收到sellerItemsCache异步预热消息: " + message);
-            Integer sellerId = Integer.parseInt(message);
-            var items = itemRepository.findBySellerId(sellerId);
-            for (var item : items) {
-                redisUtils.addItemToSellerSet(sellerId, item.getItemId());
-                // 可选：预热商品详情缓存
-                // redisUtils.cacheItemDetail(item.getItemId());
+        System.out.println("收到sellerItemsCache异步预热消息: " + message);
+        Integer sellerId = eventCodec.decode(message, ItemEvents.SellerItemsPreheat.class, ItemEvents.SellerItemsPreheat::fromLegacy).sellerId();
+        var items = itemRepository.findBySellerId(sellerId);
+        for (var item : items) {
+            redisUtils.addItemToSellerSet(sellerId, item.getItemId());
+            // 可选：预热商品详情缓存
+            // redisUtils.cacheItemDetail(item.getItemId());
+        }
+    }
+
+    /**
+     * 上下架（批量）：同一商品只保留最后一次状态
+     */
+    @KafkaListener(topics = KafkaTopics.TOGGLE_ITEM_AVAILABILITY, groupId = "Item",
+                   containerFactory = "batchKafkaListenerContainerFactory")
+    public void handleToggleItemAvailabilityBatch(List<ConsumerRecord<String, String>> records) {
+        System.out.println("收到toggleItemAvailability异步更新消息: " + records.size() + "条");
+        processBatch(records, this::applyAvailabilityToggles);
+    }
+
+    private void applyAvailabilityToggles(List<ConsumerRecord<String, String>> records) {
+        Map<Integer, ItemEvents.AvailabilityToggled> latest = new LinkedHashMap<>();
+        for (ConsumerRecord<String, String> record : records) {
+            var event = eventCodec.decode(record.value(), ItemEvents.AvailabilityToggled.class, ItemEvents.AvailabilityToggled::fromLegacy);
+            latest.merge(event.itemId(), event, (first, next) -> next.version() >= first.version() ? next : first);
+        }
+        LocalDateTime now = LocalDateTime.now();
+        List<Item> items = inTransaction(() -> {
+            processedEvents.markProcessed(ProcessedEventStore.ITEM, records);
+            List<Integer> applied = new ArrayList<>();
+            latest.forEach((itemId, event) -> {
+                int updated = event.available()
+                    ? itemRepository.markAvailable(itemId, event.listedAt() != null ? event.listedAt() : now, event.version())
+                    : itemRepository.markUnavailable(itemId, event.version());
+                if (updated > 0) {
+                    applied.add(itemId);
+                } else {
+                    System.out.println("丢弃过期的上下架事件: itemId=" + itemId + ", version=" + event.version());
+                }
+            });
+            return applied.isEmpty() ? List.<Item>of() : activeItems(itemRepository.findAllById(applied));
+        });
+        flushItemStates(items, Map.of(), Map.of());
+    }
+
+    /**
+     * 发布商品（批量）：一次saveAll入库，再把各临时ID的缓存迁移到真实ID
+     */
+    @KafkaListener(topics = KafkaTopics.CREATE_ITEM, groupId = "Item",
+                   containerFactory = "batchKafkaListenerContainerFactory")
+    public void handleCreateItemBatch(List<ConsumerRecord<String, String>> records) {
+        processBatch(records, this::createItems);
+    }
+
+    private void createItems(List<ConsumerRecord<String, String>> records) {
+        List<Integer> tempIds = new ArrayList<>(records.size());
+        List<Item> tempItems = new ArrayList<>(records.size());
+        for (ConsumerRecord<String, String> record : records) {
+            var event = eventCodec.decode(record.value(), ItemEvents.Created.class, ItemEvents.Created::fromLegacy);
+            Item tempItem = event.item();
+            tempItem.setItemId(null); // 让数据库自增
+            tempIds.add(event.tempId());
+            tempItems.add(tempItem);
+        }
+        List<Item> savedItems = inTransaction(() -> {
+            processedEvents.markProcessed(ProcessedEventStore.ITEM, records);
+            return itemRepository.saveAll(tempItems);
+        });
+        for (int i = 0; i < savedItems.size(); i++) {
+            Item savedItem = savedItems.get(i);
+            // 迁移缓存（已入库，失败不再抛出以免重复入库；残留的临时ID由对账任务清理）
+            try {
+                penetrationGuard.onItemCreated(savedItem.getItemId());
+                redisUtils.migrateItemCacheAndSets(tempIds.get(i), savedItem.getItemId(), savedItem);
+            } catch (Exception e) {
+                System.err.println("迁移商品缓存失败: " + tempIds.get(i) + " -> " + savedItem.getItemId() + ", " + e.getMessage());
             }
-        } catch (Exception e) {
-            e.printStackTrace();
-            kafkaUtils.sendMessage("sellerItemsCache", message);
         }
     }
 
-    @KafkaListener(topics = "toggleItemAvailability", groupId = "Item")
-    public void handleToggleItemAvailability(String message) {
+    /**
+     * 批量处理中逐条仍失败的消息：从 <topic>-redo 进入非阻塞重试链，延迟递增地逐条重试，次数用完进入 <topic>-dlt
+     * 重试时同一商品可能已有更新的事件落库：编辑/上下架按版本条件更新，过期的事件不生效（只记录日志），收藏增量与顺序无关
+     */
+    @KafkaListener(topics = {KafkaTopics.FAVORITE_ITEM_REDO, KafkaTopics.UNFAVORITE_ITEM_REDO, KafkaTopics.UPDATE_ITEM_REDO,
+                             KafkaTopics.TOGGLE_ITEM_AVAILABILITY_REDO, KafkaTopics.CREATE_ITEM_REDO}, groupId = "Item")
+    public void handleRedo(ConsumerRecord<String, String> record) {
+        System.out.println("重试商品消息: " + record.topic() + ", " + record.value());
+        // 上次失败可能只是与同一事件的另一次投递并发冲突，对方已经生效
+        if (processedEvents.isProcessed(ProcessedEventStore.ITEM, record.value())) return;
+        List<ConsumerRecord<String, String>> single = List.of(record);
+        switch (KafkaTopics.baseTopic(record.topic())) {
+            case KafkaTopics.FAVORITE_ITEM, KafkaTopics.UNFAVORITE_ITEM -> applyFavoriteChanges(single);
+            case KafkaTopics.UPDATE_ITEM -> applyItemUpdates(single);
+            case KafkaTopics.TOGGLE_ITEM_AVAILABILITY -> applyAvailabilityToggles(single);
+            case KafkaTopics.CREATE_ITEM -> createItems(single);
+            default -> throw new IllegalArgumentException("未知的重试topic: " + record.topic());
+        }
+    }
+
+    // ==================== 批量处理公共方法 ====================
+
+    /**
+     * 先按事件ID去掉已处理过的重复投递（一次查询，见 ProcessedEventStore），
+     * 再按itemId分lane并行处理（同一商品的消息仍按顺序），各lane全部完成后方法才返回、容器才提交位点
+     * 各handler在写库事务中记录事件ID，重复事件的并发投递由主键冲突回滚
+     */
+    private void processBatch(List<ConsumerRecord<String, String>> records, Consumer<List<ConsumerRecord<String, String>>> handler) {
+        List<ConsumerRecord<String, String>> fresh = processedEvents.filterNew(ProcessedEventStore.ITEM, records);
+        if (fresh.isEmpty()) return;
+        dispatcher.dispatch(fresh, lane -> processLane(lane, handler));
+    }
+
+    /**
+     * 整批处理；失败时（整批已回滚）退回逐条处理，只有真正出错的那条消息转入重试链，不拖累同批其它消息
+     * 某个key的消息转入重试链后，本批中同一key的后续消息也不再就地处理，按原顺序跟着进入重试链
+     * （同一key在redo topic中同一分区、仍有序）；重试链内的延迟重试仍可能乱序，编辑/上下架事件靠写版本号丢弃过期的那条
+     */
+    private void processLane(List<ConsumerRecord<String, String>> records, Consumer<List<ConsumerRecord<String, String>>> handler) {
         try {
-            System.out.println("收到toggleItemAvailability异步预热消息: " + message);
-            String[] parts = message.split(",");
-            Integer itemId = Integer.parseInt(parts[0]);
-            Boolean isAvailable = Boolean.parseBoolean(parts[1]);
-            // Integer operatorId = Integer.parseInt(parts[2]); // 可用于日志
-            var itemOpt = itemRepository.findById(itemId);
-            if (itemOpt.isPresent()) {
-                var item = itemOpt.get();
-                item.setIsAvailable(isAvailable);
-                itemRepository.save(item);
-                // 刷新缓存
-                redisUtils.cacheItemDetail(itemId);
+            handler.accept(records);
+            return;
+        } catch (Exception e) {
+            if (records.size() == 1) {
+                e.printStackTrace();
+                redo(records.get(0));
+                return;
+            }
+            System.err.println("批量处理失败，改为逐条处理: " + e.getMessage());
+        }
+        Set<String> parkedKeys = new HashSet<>();
+        for (ConsumerRecord<String, String> record : records) {
+            if (record.key() != null && parkedKeys.contains(record.key())) {
+                redo(record);
+                continue;
+            }
+            try {
+                handler.accept(List.of(record));
+            } catch (Exception e) {
+                e.printStackTrace();
+                if (record.key() != null) parkedKeys.add(record.key());
+                redo(record);
             }
+        }
+    }
+
+    /**
+     * 转入重试链并等待发送确认；发送失败时抛出异常，本批位点不提交，由容器重新投递整批
+     * （已处理的记录由 ProcessedEventStore 过滤，重复转入redo的记录事件ID不变，同样会被去重）
+     */
+    private void redo(ConsumerRecord<String, String> record) {
+        String target = record.topic() + KafkaTopics.REDO_SUFFIX;
+        try {
+            kafkaUtils.sendMessage(target, record.key(), record.value()).get(redoSendTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("转入重试链被中断: " + target, e);
         } catch (Exception e) {
-            e.printStackTrace();
-            kafkaUtils.sendMessage("toggleItemAvailability", message); // 失败重试
+            throw new RuntimeException("转入重试链失败: " + target + ", offset=" + record.offset() + ", " + e.getMessage(), e);
         }
     }
 
-    @KafkaListener(topics = "createItem", groupId = "Item")
-    public void handleCreateItem(String message) {
+    private <T> T inTransaction(Supplier<T> action) {
+        return new TransactionTemplate(transactionManager).execute(status -> action.get());
+    }
+
+    private List<Item> activeItems(List<Item> items) {
+        return items.stream().filter(item -> !Boolean.TRUE.equals(item.getIsDeleted())).collect(Collectors.toList());
+    }
+
+    /**
+     * 数据库已提交后刷新缓存；失败只记录日志不重发消息，避免likes等增量被重复累加，缓存偏差由对账任务修复
+     * 缓存版本比库新的商品（还有编辑/上下架事件未落库）跳过，不用库中旧值覆盖，由那条事件落库后再刷新
+     */
+    private void flushItemStates(List<Item> items, Map<Integer, Integer> oldCategoryIds, Map<Integer, String> oldConditions) {
+        if (items == null || items.isEmpty()) return;
         try {
-            ObjectMapper mapper = new ObjectMapper();
-            mapper.registerModule(new JavaTimeModule());
-            mapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
-            Item tempItem = mapper.readValue(message, Item.class);
-            Integer tempId = tempItem.getItemId();
-            tempItem.setItemId(null); // 让数据库自增
-            Item savedItem = itemRepository.save(tempItem);
-            Integer realId = savedItem.getItemId();
-            // 迁移缓存
-            redisUtils.migrateItemCacheAndSets(tempId, realId, savedItem);
+            redisUtils.applyItemStates(redisUtils.withoutNewerCache(items), oldCategoryIds, oldConditions, 60);
         } catch (Exception e) {
-            e.printStackTrace();
-            kafkaUtils.sendMessage("createItem", message);
+            System.err.println("批量刷新商品缓存失败: " + e.getMessage());
         }
     }
 }
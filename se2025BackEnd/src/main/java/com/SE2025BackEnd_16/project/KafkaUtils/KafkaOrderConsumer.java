@@ -1,5 +1,7 @@
 package com.SE2025BackEnd_16.project.KafkaUtils;
 
+import com.SE2025BackEnd_16.project.KafkaUtils.event.KafkaEventCodec;
+import com.SE2025BackEnd_16.project.KafkaUtils.event.OrderEvents;
 import com.SE2025BackEnd_16.project.dao.OrderDao;
 import com.SE2025BackEnd_16.project.entity.Order;
 import com.SE2025BackEnd_16.project.entity.Item;
@@ -7,13 +9,22 @@ import com.SE2025BackEnd_16.project.entity.UserInfo;
 import com.SE2025BackEnd_16.project.repository.ItemRepository;
 import com.SE2025BackEnd_16.project.repository.UserInfoRepository;
 import com.SE2025BackEnd_16.project.RedisUtils.RedisUtils;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Component
 public class KafkaOrderConsumer {
@@ -30,16 +41,31 @@ public class KafkaOrderConsumer {
     @Autowired
     private RedisUtils redisUtils;
 
+    @Autowired
+    private KafkaEventCodec eventCodec;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private KeyOrderedDispatcher dispatcher;
+
+    @Autowired
+    private ProcessedEventStore processedEvents;
+
     // 处理创建订单消息
-    @KafkaListener(topics = "createOrder", groupId = "order-group")
+    @KafkaListener(topics = KafkaTopics.CREATE_ORDER, groupId = "order-group")
     @Transactional
-    public void handleCreateOrder(String message) {
+    public void handleCreateOrder(ConsumerRecord<String, String> record) {
+        String message = record.value();
         try {
             System.out.println("收到购买订单消息" + message);
-            String[] parts = message.split(",");
-            Integer buyerId = Integer.parseInt(parts[0]);
-            Integer itemId = Integer.parseInt(parts[1]);
-            String orderId = parts[2];
+            // 重复投递的建单消息会把已推进的订单重新保存为待确认
+            if (processedEvents.isProcessed(ProcessedEventStore.ORDER, message)) return;
+            var event = eventCodec.decode(message, OrderEvents.Created.class, OrderEvents.Created::fromLegacy);
+            Integer buyerId = event.buyerId();
+            Integer itemId = event.itemId();
+            String orderId = event.orderId();
 
             // 1. 验证用户和商品是否存在
             if (!userInfoRepository.existsById(buyerId)) {
@@ -69,12 +95,12 @@ public class KafkaOrderConsumer {
             order.setOrderAmount(item.getPrice());
             order.setOrderStatus(0); // 待确认
 
-            // 3. 保存订单到数据库
+            // 3. 保存订单到数据库（同一事务中记录事件ID）
+            processedEvents.markProcessed(ProcessedEventStore.ORDER, record);
             orderDao.save(order);
 
-            // 4. 更新数据库商品状态
-            item.setIsAvailable(false);
-            itemRepository.save(item);
+            // 4. 更新数据库商品状态（只写is_available，不整行覆盖likes等字段）
+            itemRepository.markUnavailable(itemId, redisUtils.nextItemVersion(itemId));
 
             // 5. 维护Redis缓存集合
             redisUtils.removeItemFromOnSaleSortedSet(itemId, "update_time");
@@ -92,23 +118,23 @@ public class KafkaOrderConsumer {
     }
 
     // 处理购买商品消息（兼容旧版本）
-    @KafkaListener(topics = "buyItem", groupId = "order-group")
+    @KafkaListener(topics = KafkaTopics.BUY_ITEM, groupId = "order-group")
     @Transactional
     public void handleBuyItem(String message) {
         try {
             System.out.println("收到购买订单消息: " + message);
-            String[] parts = message.split(",");
-            Integer buyerId = Integer.parseInt(parts[0]);
-            Integer itemId = Integer.parseInt(parts[1]);
+            var event = eventCodec.decode(message, OrderEvents.ItemBought.class, OrderEvents.ItemBought::fromLegacy);
+            Integer itemId = event.itemId();
 
             // 更新数据库商品状态
             Item item = itemRepository.findByItemId(itemId);
             if (item != null) {
-                item.setIsAvailable(false);
-                itemRepository.save(item);
+                long version = redisUtils.nextItemVersion(itemId);
+                itemRepository.markUnavailable(itemId, version);
+                item.setAvailabilityVersion(version);
 
                 // 更新Redis缓存
-                redisUtils.setCache(redisUtils.generateItemDetailKey(itemId), item, 5, java.util.concurrent.TimeUnit.MINUTES);
+                redisUtils.updateCachedItemAvailability(item, false, 5, java.util.concurrent.TimeUnit.MINUTES);
                 
                 // 从可售商品集合中移除
                 redisUtils.removeItemFromOnSaleSortedSet(itemId, "update_time");
@@ -125,179 +151,156 @@ public class KafkaOrderConsumer {
         }
     }
 
-    // 处理订单确认消息
-    @KafkaListener(topics = "OrderConfirm", groupId = "order-group")
-    @Transactional
-    public void handleOrderConfirm(String orderId) {
-        try {
-            System.out.println("收到确认订单消息: " + orderId);
-            Order order = orderDao.findByOrderId(orderId);
-            if (order != null) {
-                order.setOrderStatus(1); // 已确认
-                order.setConfirmTime(LocalDateTime.now());
-                orderDao.save(order);
+    /**
+     * 订单状态变更（确认/取消/确认收货/评价，批量）
+     * 一批消息涉及的订单一次查询，按消息顺序在内存中依次应用（同一订单的多条消息合并为一次写入），
+     * 订单一次saveAll，恢复可售的商品逐条只写上架状态（信用分逐条原子UPDATE），提交后一次pipeline刷新订单详情和商品索引
+     */
+    @KafkaListener(topics = {KafkaTopics.ORDER_CONFIRM, KafkaTopics.ORDER_CANCEL, KafkaTopics.ORDER_COMPLETE, KafkaTopics.ORDER_CREDIT},
+                   groupId = "order-group", containerFactory = "batchKafkaListenerContainerFactory")
+    public void handleOrderStateBatch(List<ConsumerRecord<String, String>> records) {
+        System.out.println("收到订单状态变更消息: " + records.size() + "条");
+        // 先去掉重复投递（评价重复计入会改变信用分），再按orderId分lane并行，同一订单的消息仍按顺序处理
+        List<ConsumerRecord<String, String>> fresh = processedEvents.filterNew(ProcessedEventStore.ORDER, records);
+        if (fresh.isEmpty()) return;
+        dispatcher.dispatch(fresh, this::processOrderStateChanges);
+    }
 
-                // 更新Redis缓存
-                redisUtils.cacheOrderDetail(orderId, order);
-            }
+    /**
+     * 整批处理；失败时（整批已回滚）逐条重做，出错的消息不影响同批其它订单
+     */
+    private void processOrderStateChanges(List<ConsumerRecord<String, String>> records) {
+        try {
+            applyOrderStateChanges(records);
+            return;
         } catch (Exception e) {
-            System.err.println("处理订单确认消息失败: " + e.getMessage());
+            if (records.size() == 1) {
+                System.err.println("处理订单状态变更消息失败: " + records.get(0).value() + ", " + e.getMessage());
+                return;
+            }
+            System.err.println("批量处理订单状态变更失败，改为逐条处理: " + e.getMessage());
+        }
+        for (ConsumerRecord<String, String> record : records) {
+            try {
+                applyOrderStateChanges(List.of(record));
+            } catch (Exception e) {
+                System.err.println("处理订单状态变更消息失败: " + record.value() + ", " + e.getMessage());
+            }
         }
     }
 
-    // 处理订单取消消息
-    @KafkaListener(topics = "OrderCancel", groupId = "order-group")
-    @Transactional
-    public void handleOrderCancel(String orderId) {
-        try {
-            System.out.println("收到取消订单消息: " + orderId);
-            Order order = orderDao.findByOrderId(orderId);
-            if (order != null) {
-                order.setOrderStatus(4); // 已取消
-                order.setCancelTime(LocalDateTime.now());
-                orderDao.save(order);
-
-                // 恢复商品可售状态
-                Item item = order.getItem();
-                if (item != null) {
-                    item.setIsAvailable(true);
-                    itemRepository.save(item);
-
-                    // 更新Redis缓存
-                    redisUtils.setCache(redisUtils.generateItemDetailKey(item.getItemId()), item, 5, java.util.concurrent.TimeUnit.MINUTES);
-                    
-                    // 重新添加到可售商品集合
-                    double updateScore = item.getUpdateTime() != null
-                        ? item.getUpdateTime().atZone(java.time.ZoneId.systemDefault()).toEpochSecond()
-                        : System.currentTimeMillis() / 1000.0;
-                    double priceScore = item.getPrice() != null ? item.getPrice().doubleValue() : 0.0;
-                    double likesScore = item.getLikes() != null ? item.getLikes() : 0.0;
-                    
-                    redisUtils.addItemToOnSaleSortedSet(item.getItemId(), updateScore, "update_time");
-                    redisUtils.addItemToOnSaleSortedSet(item.getItemId(), priceScore, "price");
-                    redisUtils.addItemToOnSaleSortedSet(item.getItemId(), likesScore, "likes");
-                    
-                    redisUtils.addItemToCategorySortedSet(item.getCategoryId(), item.getItemId(), updateScore, "update_time");
-                    redisUtils.addItemToCategorySortedSet(item.getCategoryId(), item.getItemId(), priceScore, "price");
-                    redisUtils.addItemToCategorySortedSet(item.getCategoryId(), item.getItemId(), likesScore, "likes");
+    private void applyOrderStateChanges(List<ConsumerRecord<String, String>> records) {
+        List<OrderStateChange> changes = new ArrayList<>(records.size());
+        for (ConsumerRecord<String, String> record : records) {
+            changes.add(decodeOrderStateChange(record));
+        }
+        Set<String> orderIds = changes.stream().map(OrderStateChange::orderId).collect(Collectors.toCollection(LinkedHashSet::new));
+        Map<String, Order> orders = new LinkedHashMap<>();
+        Set<Integer> restoredItemIds = new LinkedHashSet<>();
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            processedEvents.markProcessed(ProcessedEventStore.ORDER, records);
+            for (Order order : orderDao.findAllByOrderIds(orderIds)) {
+                orders.put(order.getOrderId(), order);
+            }
+            for (OrderStateChange change : changes) {
+                Order order = orders.get(change.orderId());
+                if (order == null) continue;
+                switch (change.topic()) {
+                    case KafkaTopics.ORDER_CONFIRM -> {
+                        order.setOrderStatus(1); // 已确认
+                        order.setConfirmTime(LocalDateTime.now());
+                    }
+                    case KafkaTopics.ORDER_CANCEL -> {
+                        order.setOrderStatus(4); // 已取消
+                        order.setCancelTime(LocalDateTime.now());
+                        // 恢复商品可售状态
+                        if (order.getItem() != null) {
+                            restoredItemIds.add(order.getItem().getItemId());
+                        }
+                    }
+                    case KafkaTopics.ORDER_COMPLETE -> {
+                        if ("buyer".equals(change.role())) {
+                            order.setIfBuyerConfirm(1);
+                        } else if ("seller".equals(change.role())) {
+                            order.setIfSellerConfirm(1);
+                        }
+                        // 检查是否双方都已确认
+                        if (order.getIfBuyerConfirm() == 1 && order.getIfSellerConfirm() == 1) {
+                            order.setOrderStatus(3); // 已完成
+                            order.setFinishTime(LocalDateTime.now());
+                        } else {
+                            order.setOrderStatus(2); // 等待双方确认
+                        }
+                    }
+                    case KafkaTopics.ORDER_CREDIT -> {
+                        if ("buyer".equals(change.role())) {
+                            order.setBuyerCredit(change.credit());
+                            // 更新买家信用评分
+                            addCredit(order.getBuyer(), change.credit());
+                        } else if ("seller".equals(change.role())) {
+                            order.setSellerCredit(change.credit());
+                            // 更新卖家信用评分
+                            addCredit(order.getSeller(), change.credit());
+                        }
+                    }
+                    default -> {
+                    }
                 }
-
-                // 更新Redis缓存
-                redisUtils.cacheOrderDetail(orderId, order);
             }
+            orderDao.saveAll(orders.values());
+            LocalDateTime listedAt = LocalDateTime.now();
+            restoredItemIds.forEach(itemId -> itemRepository.markAvailable(itemId, listedAt, redisUtils.nextItemVersion(itemId)));
+        });
+        List<Item> restoredItems = restoredItemIds.isEmpty() ? List.of() : itemRepository.findAllById(restoredItemIds);
+        // 更新Redis缓存：订单详情、重新加入可售集合的商品
+        // 数据库已提交，失败只记录日志，不能让整批重做（评价会被重复计入信用分）
+        try {
+            redisUtils.cacheOrderDetails(orders.values());
+            redisUtils.applyItemStates(restoredItems, Map.of(), Map.of(), 5);
         } catch (Exception e) {
-            System.err.println("处理订单取消消息失败: " + e.getMessage());
+            System.err.println("批量刷新订单缓存失败: " + e.getMessage());
         }
     }
 
-    // 处理订单完成消息
-    @KafkaListener(topics = "OrderComplete", groupId = "order-group")
-    @Transactional
-    public void handleOrderComplete(String message) {
-        try {
-            System.out.println("收到确认收货消息: " + message);
-            String[] parts = message.split(",");
-            String orderId = parts[0];
-            String confirmType = parts[1];
-
-            Order order = orderDao.findByOrderId(orderId);
-            if (order != null) {
-                if ("buyer".equals(confirmType)) {
-                    order.setIfBuyerConfirm(1);
-                } else if ("seller".equals(confirmType)) {
-                    order.setIfSellerConfirm(1);
-                }
-
-                // 检查是否双方都已确认
-                if (order.getIfBuyerConfirm() == 1 && order.getIfSellerConfirm() == 1) {
-                    order.setOrderStatus(3); // 已完成
-                    order.setFinishTime(LocalDateTime.now());
-                } else {
-                    order.setOrderStatus(2); // 等待双方确认
-                }
-
-                orderDao.save(order);
-
-                // 更新Redis缓存
-                redisUtils.cacheOrderDetail(orderId, order);
+    private OrderStateChange decodeOrderStateChange(ConsumerRecord<String, String> record) {
+        String message = record.value();
+        switch (record.topic()) {
+            case KafkaTopics.ORDER_COMPLETE -> {
+                var event = eventCodec.decode(message, OrderEvents.Completed.class, OrderEvents.Completed::fromLegacy);
+                return new OrderStateChange(record.topic(), event.orderId(), event.role(), 0);
+            }
+            case KafkaTopics.ORDER_CREDIT -> {
+                var event = eventCodec.decode(message, OrderEvents.Credited.class, OrderEvents.Credited::fromLegacy);
+                return new OrderStateChange(record.topic(), event.orderId(), event.role(), event.credit());
+            }
+            default -> {
+                String orderId = eventCodec.decode(message, OrderEvents.Ref.class, OrderEvents.Ref::fromLegacy).orderId();
+                return new OrderStateChange(record.topic(), orderId, null, 0);
             }
-        } catch (Exception e) {
-            System.err.println("处理订单完成消息失败: " + e.getMessage());
         }
     }
 
-    // 处理订单评价消息
-    @KafkaListener(topics = "OrderCredit", groupId = "order-group")
-    @Transactional
-    public void handleOrderCredit(String message) {
-        try {
-            System.out.println("收到评论消息: " + message);
-            String[] parts = message.split(",");
-            String orderId = parts[0];
-            String creditType = parts[1];
-            Integer credit = Integer.parseInt(parts[2]);
-
-            Order order = orderDao.findByOrderId(orderId);
-            if (order != null) {
-                if ("buyer".equals(creditType)) {
-                    order.setBuyerCredit(credit);
-                    
-                    // 更新买家信用评分
-                    Integer buyerId = order.getBuyer().getUserId();
-                    UserInfo buyer = userInfoRepository.findByUserId(buyerId);
-                    if (buyer != null) {
-                        Integer creditTime = buyer.getCreditTime();
-                        BigDecimal credits = buyer.getCreditScore();
-                        // 使用BigDecimal进行精确计算
-                        BigDecimal creditTimeBD = new BigDecimal(creditTime);
-                        BigDecimal creditBD = new BigDecimal(credit);
-                        BigDecimal newCreditTimeBD = new BigDecimal(creditTime + 1);
-                        
-                        credits = credits.multiply(creditTimeBD).add(creditBD).divide(newCreditTimeBD, 2, BigDecimal.ROUND_HALF_UP);
-                        buyer.setCreditScore(credits);
-                        buyer.setCreditTime(creditTime + 1);
-                        userInfoRepository.save(buyer);
-                    }
-                } else if ("seller".equals(creditType)) {
-                    order.setSellerCredit(credit);
-                    
-                    // 更新卖家信用评分
-                    Integer sellerId = order.getSeller().getUserId();
-                    UserInfo seller = userInfoRepository.findByUserId(sellerId);
-                    if (seller != null) {
-                        Integer creditTime = seller.getCreditTime();
-                        BigDecimal credits = seller.getCreditScore();
-                        // 使用BigDecimal进行精确计算
-                        BigDecimal creditTimeBD = new BigDecimal(creditTime);
-                        BigDecimal creditBD = new BigDecimal(credit);
-                        BigDecimal newCreditTimeBD = new BigDecimal(creditTime + 1);
-                        
-                        credits = credits.multiply(creditTimeBD).add(creditBD).divide(newCreditTimeBD, 2, BigDecimal.ROUND_HALF_UP);
-                        seller.setCreditScore(credits);
-                        seller.setCreditTime(creditTime + 1);
-                        userInfoRepository.save(seller);
-                    }
-                }
-
-                orderDao.save(order);
+    /**
+     * 新评分计入用户信用，由数据库原子完成（见 UserInfoRepository.addCredit）
+     * 不同订单可能在不同lane并行处理，落到同一用户时不能在内存中读改写
+     */
+    private void addCredit(UserInfo orderUser, int credit) {
+        if (orderUser == null) return;
+        userInfoRepository.addCredit(orderUser.getUserId(), credit);
+    }
 
-                // 更新Redis缓存
-                redisUtils.cacheOrderDetail(orderId, order);
-            }
-        } catch (Exception e) {
-            System.err.println("处理订单评价消息失败: " + e.getMessage());
-        }
+    private record OrderStateChange(String topic, String orderId, String role, int credit) {
     }
 
     // 处理订单缓存预热消息
-    @KafkaListener(topics = "orderCachePreheat", groupId = "order-group")
+    @KafkaListener(topics = KafkaTopics.ORDER_CACHE_PREHEAT, groupId = "order-group")
     public void handleOrderCachePreheat(String message) {
         try {
-            String[] parts = message.split(",");
-            Integer userId = Integer.parseInt(parts[0]);
-            String type = parts[1]; // buyer 或 seller
-            int page = Integer.parseInt(parts[2]);
-            int size = Integer.parseInt(parts[3]);
+            var event = eventCodec.decode(message, OrderEvents.CachePreheat.class, OrderEvents.CachePreheat::fromLegacy);
+            Integer userId = event.userId();
+            String type = event.role(); // buyer 或 seller
+            int page = event.page();
+            int size = event.size();
 
             System.out.println("开始预热订单缓存: " + type + ", userId: " + userId + ", page: " + page + ", size: " + size);
 
@@ -332,9 +335,10 @@ public class KafkaOrderConsumer {
     }
 
     // 处理订单详情缓存预热消息
-    @KafkaListener(topics = "orderDetailPreheat", groupId = "order-group")
-    public void handleOrderDetailPreheat(String orderId) {
+    @KafkaListener(topics = KafkaTopics.ORDER_DETAIL_PREHEAT, groupId = "order-group")
+    public void handleOrderDetailPreheat(String message) {
         try {
+            String orderId = eventCodec.decode(message, OrderEvents.Ref.class, OrderEvents.Ref::fromLegacy).orderId();
             System.out.println("开始预热订单详情缓存: " + orderId);
             
             Order order = orderDao.findByOrderId(orderId);
@@ -0,0 +1,77 @@
+package com.SE2025BackEnd_16.project.KafkaUtils;
+
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Kafka topic名称（保持原有命名，生产者和消费者统一引用这里）
+ */
+public final class KafkaTopics {
+
+    private KafkaTopics() {
+    }
+
+    // ==================== 商品 ====================
+    public static final String ITEM_DETAIL = "ItemDetail";
+    public static final String FAVORITE_ITEM = "favoriteItem";
+    public static final String UNFAVORITE_ITEM = "unfavoriteItem";
+    public static final String UPDATE_ITEM = "updateItem";
+    public static final String SELLER_ITEMS_CACHE = "sellerItemsCache";
+    public static final String TOGGLE_ITEM_AVAILABILITY = "toggleItemAvailability";
+    public static final String CREATE_ITEM = "createItem";
+    public static final String ITEM_CATEGORY = "itemCategory";
+    // 浏览事件，由 ItemViewTopology 按窗口聚合后输出到 itemViewCounts
+    public static final String ITEM_VIEW = "itemView";
+    public static final String ITEM_VIEW_COUNTS = "itemViewCounts";
+
+    // ==================== 订单 ====================
+    public static final String CREATE_ORDER = "createOrder";
+    public static final String BUY_ITEM = "buyItem";
+    public static final String ORDER_CONFIRM = "OrderConfirm";
+    public static final String ORDER_CANCEL = "OrderCancel";
+    public static final String ORDER_COMPLETE = "OrderComplete";
+    public static final String ORDER_CREDIT = "OrderCredit";
+    public static final String ORDER_CACHE_PREHEAT = "orderCachePreheat";
+    public static final String ORDER_DETAIL_PREHEAT = "orderDetailPreheat";
+
+    // ==================== 留言 ====================
+    public static final String MESSAGE_ROOT = "MessageRoot";
+    public static final String REPLY_MESSAGE = "replyMessage";
+    public static final String ADD_MESSAGE = "addMessage";
+    public static final String DELETE_MESSAGE = "deleteMessage";
+
+    // ==================== 重试 / 死信 ====================
+    // 非阻塞重试：失败消息依次进入 <topic>-retry-0、<topic>-retry-1 ...（延迟递增），次数用完进入 <topic>-dlt
+    public static final String RETRY_SUFFIX = "-retry";
+    public static final String DLT_SUFFIX = "-dlt";
+    // 批量监听的topic：整批失败后逐条处理仍失败的消息转入 <topic>-redo，由逐条监听器接入同一套重试链
+    public static final String REDO_SUFFIX = "-redo";
+
+    public static final String FAVORITE_ITEM_REDO = FAVORITE_ITEM + REDO_SUFFIX;
+    public static final String UNFAVORITE_ITEM_REDO = UNFAVORITE_ITEM + REDO_SUFFIX;
+    public static final String UPDATE_ITEM_REDO = UPDATE_ITEM + REDO_SUFFIX;
+    public static final String TOGGLE_ITEM_AVAILABILITY_REDO = TOGGLE_ITEM_AVAILABILITY + REDO_SUFFIX;
+    public static final String CREATE_ITEM_REDO = CREATE_ITEM + REDO_SUFFIX;
+
+    private static final Pattern DERIVED_SUFFIX = Pattern.compile("(" + RETRY_SUFFIX + "(-\\d+)?|" + DLT_SUFFIX + ")$");
+
+    // 走重试链的topic（商品、留言消费者）
+    public static final List<String> RETRYABLE = List.of(
+        ITEM_DETAIL, SELLER_ITEMS_CACHE,
+        FAVORITE_ITEM_REDO, UNFAVORITE_ITEM_REDO, UPDATE_ITEM_REDO, TOGGLE_ITEM_AVAILABILITY_REDO, CREATE_ITEM_REDO,
+        MESSAGE_ROOT, REPLY_MESSAGE, ADD_MESSAGE, DELETE_MESSAGE);
+
+    public static final List<String> DEAD_LETTER_TOPICS = RETRYABLE.stream().map(KafkaTopics::deadLetterTopic).toList();
+
+    /**
+     * 重试/死信/redo topic对应的业务topic，如 favoriteItem-redo、favoriteItem-retry-1、favoriteItem-dlt → favoriteItem
+     */
+    public static String baseTopic(String topic) {
+        String base = DERIVED_SUFFIX.matcher(topic).replaceFirst("");
+        return base.endsWith(REDO_SUFFIX) ? base.substring(0, base.length() - REDO_SUFFIX.length()) : base;
+    }
+
+    public static String deadLetterTopic(String topic) {
+        return baseTopic(topic) + DLT_SUFFIX;
+    }
+}
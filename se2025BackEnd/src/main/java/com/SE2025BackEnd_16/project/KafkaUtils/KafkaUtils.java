@@ -1,17 +1,148 @@
 package com.SE2025BackEnd_16.project.KafkaUtils;
 
 
-import jakarta.persistence.Column;
+import com.SE2025BackEnd_16.project.KafkaUtils.event.KafkaEvent;
+import com.SE2025BackEnd_16.project.KafkaUtils.event.KafkaEventCodec;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
 import org.springframework.stereotype.Component;
 
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Kafka发送入口
+ * 异步发送，完成回调中记录指标（kafka.producer.sends / kafka.producer.send.latency）并记录失败；
+ * 用信号量限制未确认的发送数，broker变慢时调用线程最多等待 acquire-timeout-ms，仍拿不到许可则抛出异常快速失败，
+ * 而不是让待发送消息在内存中无限堆积
+ * 批量、压缩、幂等等生产者参数见 application.properties 中的 spring.kafka.producer.*
+ */
+@Slf4j
 @Component
 public class KafkaUtils {
     @Autowired
     private KafkaTemplate<String, String> kafkaTemplate;
 
-    public void sendMessage(String topic, String message) {
-        kafkaTemplate.send(topic, message);
+    @Autowired
+    private KafkaEventCodec eventCodec;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // 同时未确认的发送数上限
+    @Value("${app.kafka.producer.max-in-flight:5000}")
+    private int maxInFlight;
+
+    // 达到上限时调用线程最多等待的时间，0表示不等待直接失败
+    @Value("${app.kafka.producer.acquire-timeout-ms:200}")
+    private long acquireTimeoutMs;
+
+    private Semaphore inFlight;
+
+    private final Map<String, Counter> successCounters = new ConcurrentHashMap<>();
+    private final Map<String, Counter> failureCounters = new ConcurrentHashMap<>();
+    private final Map<String, Timer> latencyTimers = new ConcurrentHashMap<>();
+    private Counter rejectedCounter;
+
+    @PostConstruct
+    public void init() {
+        inFlight = new Semaphore(maxInFlight);
+        Gauge.builder("kafka.producer.in-flight", inFlight, semaphore -> maxInFlight - semaphore.availablePermits())
+            .description("已发送未确认的消息数")
+            .register(meterRegistry);
+        rejectedCounter = Counter.builder("kafka.producer.rejected")
+            .description("发送积压达到上限被拒绝的消息数")
+            .register(meterRegistry);
+    }
+
+    /**
+     * 发送事件：以实体ID为key，同一实体的事件进入同一分区，按发送顺序消费
+     */
+    public CompletableFuture<SendResult<String, String>> send(String topic, KafkaEvent event) {
+        return sendMessage(topic, event.key(), eventCodec.encode(topic, event));
+    }
+
+    /**
+     * 原样发送已编码的消息（重试时保持原key）
+     * 返回的future在broker确认后完成；调用方不关心结果时可忽略，失败已在回调中记录
+     */
+    public CompletableFuture<SendResult<String, String>> sendMessage(String topic, String key, String message) {
+        acquire(topic, key);
+        long start = System.nanoTime();
+        CompletableFuture<SendResult<String, String>> future;
+        try {
+            future = kafkaTemplate.send(topic, key, message);
+        } catch (RuntimeException e) {
+            // send本身抛出（序列化失败、等待元数据超时等），回调不会执行
+            inFlight.release();
+            recordFailure(topic, key, start, e);
+            throw e;
+        }
+        return future.whenComplete((result, ex) -> {
+            inFlight.release();
+            if (ex == null) {
+                latencyTimer(topic).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                successCounters.computeIfAbsent(topic, t -> sendCounter(t, "success")).increment();
+            } else {
+                recordFailure(topic, key, start, ex);
+            }
+        });
+    }
+
+    public CompletableFuture<SendResult<String, String>> sendMessage(String topic, String message) {
+        return sendMessage(topic, null, message);
+    }
+
+    public int getInFlightCount() {
+        return maxInFlight - inFlight.availablePermits();
+    }
+
+    private void acquire(String topic, String key) {
+        boolean acquired;
+        try {
+            acquired = acquireTimeoutMs <= 0
+                ? inFlight.tryAcquire()
+                : inFlight.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("等待Kafka发送许可被中断: " + topic, e);
+        }
+        if (!acquired) {
+            rejectedCounter.increment();
+            throw new RuntimeException("Kafka发送积压（未确认消息已达" + maxInFlight + "条），请稍后重试: " + topic + ", key=" + key);
+        }
+    }
+
+    private void recordFailure(String topic, String key, long start, Throwable ex) {
+        latencyTimer(topic).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        failureCounters.computeIfAbsent(topic, t -> sendCounter(t, "failure")).increment();
+        log.error("Kafka消息发送失败: topic={}, key={}, {}", topic, key, ex.getMessage());
+    }
+
+    private Counter sendCounter(String topic, String result) {
+        return Counter.builder("kafka.producer.sends")
+            .description("Kafka消息发送次数")
+            .tag("topic", topic)
+            .tag("result", result)
+            .register(meterRegistry);
+    }
+
+    private Timer latencyTimer(String topic) {
+        return latencyTimers.computeIfAbsent(topic, t -> Timer.builder("kafka.producer.send.latency")
+            .description("从发送到broker确认的耗时")
+            .tag("topic", t)
+            .publishPercentileHistogram()
+            .register(meterRegistry));
     }
 }
@@ -0,0 +1,98 @@
+package com.SE2025BackEnd_16.project.KafkaUtils;
+
+import com.SE2025BackEnd_16.project.KafkaUtils.event.ItemEvents;
+import com.SE2025BackEnd_16.project.KafkaUtils.event.KafkaEventCodec;
+import com.SE2025BackEnd_16.project.entity.UserViewRecord;
+import com.SE2025BackEnd_16.project.repository.CategoryRepository;
+import com.SE2025BackEnd_16.project.repository.UserViewRecordRepository;
+import com.SE2025BackEnd_16.project.service.ItemViewStatsService;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 浏览量窗口计数（itemViewCounts，由 ItemViewTopology 输出）
+ * 一批消息中同一用户+分类的计数合并，一次查询、一次saveAll写入 user_views_record；
+ * 分类总数（含未登录用户）在同一事务中累加到 categories.view_counts，提交后把数据库中的总数写入Redis
+ * 只读取已提交的消息（Streams以exactly_once写出），重复投递由 ProcessedEventStore 过滤
+ */
+@Component
+public class KafkaViewStatsConsumer {
+
+    @Autowired
+    private KafkaEventCodec eventCodec;
+
+    @Autowired
+    private UserViewRecordRepository userViewRecordRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private ItemViewStatsService viewStatsService;
+
+    @Autowired
+    private ProcessedEventStore processedEvents;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @KafkaListener(topics = KafkaTopics.ITEM_VIEW_COUNTS, groupId = "view-stats",
+                   containerFactory = "batchKafkaListenerContainerFactory",
+                   properties = "isolation.level=read_committed")
+    public void handleViewCountBatch(List<ConsumerRecord<String, String>> records) {
+        List<ConsumerRecord<String, String>> fresh = processedEvents.filterNew(ProcessedEventStore.VIEW_STATS, records);
+        if (fresh.isEmpty()) return;
+        Map<Integer, Long> categoryCounts = new LinkedHashMap<>();
+        Map<UserViewRecord.UserViewRecordId, Long> userCounts = new LinkedHashMap<>();
+        Map<UserViewRecord.UserViewRecordId, Long> lastWindows = new LinkedHashMap<>();
+        for (ConsumerRecord<String, String> record : fresh) {
+            var event = eventCodec.decode(record.value(), ItemEvents.ViewCount.class, (raw, mapper) -> {
+                throw new IllegalArgumentException("浏览计数没有v1格式");
+            });
+            if (event.userId() == null) {
+                categoryCounts.merge(event.categoryId(), event.count(), Long::sum);
+            } else {
+                var id = new UserViewRecord.UserViewRecordId(event.userId(), event.categoryId());
+                userCounts.merge(id, event.count(), Long::sum);
+                lastWindows.merge(id, event.windowStart(), Math::max);
+            }
+        }
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            processedEvents.markProcessed(ProcessedEventStore.VIEW_STATS, fresh);
+            categoryCounts.forEach(categoryRepository::addViewCounts);
+            if (userCounts.isEmpty()) return;
+            Map<UserViewRecord.UserViewRecordId, UserViewRecord> existing = new LinkedHashMap<>();
+            for (UserViewRecord viewRecord : userViewRecordRepository.findAllById(userCounts.keySet())) {
+                existing.put(new UserViewRecord.UserViewRecordId(viewRecord.getUserId(), viewRecord.getCategoryId()), viewRecord);
+            }
+            List<UserViewRecord> changed = new ArrayList<>(userCounts.size());
+            userCounts.forEach((id, count) -> {
+                UserViewRecord viewRecord = existing.get(id);
+                if (viewRecord == null) {
+                    viewRecord = new UserViewRecord(id.getUserId(), id.getCategoryId(), null, 0);
+                }
+                int current = viewRecord.getCategoryViewCounts() != null ? viewRecord.getCategoryViewCounts() : 0;
+                viewRecord.setCategoryViewCounts(current + count.intValue());
+                viewRecord.setViewTime(new Timestamp(lastWindows.get(id)));
+                changed.add(viewRecord);
+            });
+            userViewRecordRepository.saveAll(changed);
+        });
+        // 数据库已提交，Redis失败只记录日志（ZSet过期或缺失时读取方会从数据库重建）
+        try {
+            viewStatsService.refreshCategoryViews(categoryCounts.keySet());
+        } catch (Exception e) {
+            System.err.println("刷新分类浏览量失败: " + e.getMessage());
+        }
+    }
+}
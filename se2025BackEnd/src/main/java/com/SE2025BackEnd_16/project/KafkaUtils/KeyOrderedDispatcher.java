@@ -0,0 +1,96 @@
+package com.SE2025BackEnd_16.project.KafkaUtils;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * 批量消费的按key并行执行
+ * 一批记录按key（itemId/orderId）哈希分到若干条lane，每条lane在一个虚拟线程上按原顺序处理自己的子批次，
+ * 不同lane并行；同一实体的记录总在同一条lane里按offset顺序执行，无关实体不再互相等待
+ * 所有lane处理完才返回，容器随后提交这一批的位点，因此不会出现前面的记录未完成、后面的位点已提交
+ */
+@Slf4j
+@Component
+public class KeyOrderedDispatcher {
+
+    @Value("${app.kafka.parallel.enabled:true}")
+    private boolean enabled;
+
+    // lane数，即一批记录最多同时处理的子批次数（每条lane各自占用一个数据库连接）
+    @Value("${app.kafka.parallel.lanes:4}")
+    private int lanes;
+
+    private ExecutorService executor;
+
+    @PostConstruct
+    public void init() {
+        executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("kafka-lane-", 0).factory());
+        log.info("Kafka按key并行消费已初始化，enabled={}, lanes={}", enabled, lanes);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * 按key分lane并行处理一批记录，全部完成后返回；任一lane抛出异常时等其它lane结束后再抛出
+     * @param handler 处理一个子批次（子批次内保持原顺序）
+     */
+    public void dispatch(List<ConsumerRecord<String, String>> records, Consumer<List<ConsumerRecord<String, String>>> handler) {
+        if (!enabled || lanes <= 1 || records.size() <= 1) {
+            handler.accept(records);
+            return;
+        }
+        Map<Integer, List<ConsumerRecord<String, String>>> groups = new LinkedHashMap<>();
+        for (ConsumerRecord<String, String> record : records) {
+            groups.computeIfAbsent(lane(record), k -> new ArrayList<>()).add(record);
+        }
+        if (groups.size() == 1) {
+            handler.accept(records);
+            return;
+        }
+        List<Future<?>> futures = new ArrayList<>(groups.size());
+        for (List<ConsumerRecord<String, String>> group : groups.values()) {
+            futures.add(executor.submit(() -> handler.accept(group)));
+        }
+        RuntimeException failure = null;
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failure = new RuntimeException("等待Kafka并行处理被中断", e);
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause() instanceof RuntimeException runtime
+                        ? runtime
+                        : new RuntimeException("Kafka并行处理失败: " + e.getCause().getMessage(), e.getCause());
+                }
+            }
+        }
+        if (failure != null) throw failure;
+    }
+
+    /**
+     * 有key按key哈希；没有key（旧版本生产者）按分区，保持分区内顺序
+     */
+    private int lane(ConsumerRecord<String, String> record) {
+        int hash = record.key() != null ? record.key().hashCode() : record.partition();
+        return Math.floorMod(hash, lanes);
+    }
+}
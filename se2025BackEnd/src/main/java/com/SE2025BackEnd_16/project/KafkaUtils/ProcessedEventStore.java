@@ -0,0 +1,227 @@
+package com.SE2025BackEnd_16.project.KafkaUtils;
+
+import com.SE2025BackEnd_16.project.KafkaUtils.event.KafkaEventCodec;
+import com.SE2025BackEnd_16.project.entity.ProcessedEvent;
+import com.SE2025BackEnd_16.project.repository.ProcessedEventRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Kafka消费端去重（按事件ID，见 KafkaEventCodec）
+ * 两层：
+ *   1. Redis：每个消费者按天一个Set（kafka:processed:{consumer}:yyyyMMdd），保留 redis-days 天；
+ *      重复投递通常在这里一次pipeline查询就被过滤掉，不再查库、写库、刷新缓存
+ *   2. MySQL processed_events：与业务写入同一事务插入，主键冲突使整个事务回滚，
+ *      Redis未命中（过期、写入失败）或并发重复投递时由它保证只生效一次，事务提交后再写入Redis
+ * v1消息没有事件ID，不参与去重
+ */
+@Slf4j
+@Component
+public class ProcessedEventStore {
+
+    public static final String ITEM = "item";
+    public static final String ORDER = "order";
+    public static final String VIEW_STATS = "view-stats";
+
+    private static final String KEY_PREFIX = "kafka:processed:";
+    private static final DateTimeFormatter DAY = DateTimeFormatter.BASIC_ISO_DATE;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private ProcessedEventRepository processedEventRepository;
+
+    @Autowired
+    private KafkaEventCodec eventCodec;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.kafka.dedupe.enabled:true}")
+    private boolean enabled;
+
+    // Redis中保留的天数（查询时检查最近这么多天的Set）
+    @Value("${app.kafka.dedupe.redis-days:2}")
+    private int redisDays;
+
+    // 数据库中保留的天数，应长于重试链和死信重放可能的最长间隔
+    @Value("${app.kafka.dedupe.db-retention-days:7}")
+    private int dbRetentionDays;
+
+    private final Map<String, Counter> duplicateCounters = new ConcurrentHashMap<>();
+
+    /**
+     * 过滤掉已处理过的记录（同一批内ID重复的只保留第一条），在产生任何副作用之前调用
+     */
+    public List<ConsumerRecord<String, String>> filterNew(String consumer, List<ConsumerRecord<String, String>> records) {
+        if (!enabled || records.isEmpty()) return records;
+        List<String> eventIds = new ArrayList<>(records.size());
+        Map<String, ConsumerRecord<String, String>> withId = new LinkedHashMap<>();
+        int duplicates = 0;
+        for (ConsumerRecord<String, String> record : records) {
+            String eventId = eventCodec.eventId(record.value());
+            eventIds.add(eventId);
+            if (eventId != null && withId.putIfAbsent(eventId, record) != null) duplicates++;
+        }
+        Set<String> processed = withId.isEmpty() ? Set.of() : processedIds(consumer, withId.keySet());
+        List<ConsumerRecord<String, String>> result = new ArrayList<>(records.size());
+        for (int i = 0; i < records.size(); i++) {
+            String eventId = eventIds.get(i);
+            if (eventId == null || (withId.get(eventId) == records.get(i) && !processed.contains(eventId))) {
+                result.add(records.get(i));
+            }
+        }
+        duplicates += processed.size();
+        if (duplicates > 0) {
+            duplicateCounter(consumer).increment(duplicates);
+            log.info("跳过重复的Kafka事件: consumer={}, {}条", consumer, duplicates);
+        }
+        return result;
+    }
+
+    /**
+     * 单条消息是否已处理过
+     */
+    public boolean isProcessed(String consumer, String message) {
+        if (!enabled) return false;
+        String eventId = eventCodec.eventId(message);
+        if (eventId == null || processedIds(consumer, Set.of(eventId)).isEmpty()) return false;
+        duplicateCounter(consumer).increment();
+        log.info("跳过重复的Kafka事件: consumer={}, eventId={}", consumer, eventId);
+        return true;
+    }
+
+    /**
+     * 记录为已处理：必须在业务写入的事务中调用，事务提交后再写入Redis
+     */
+    public void markProcessed(String consumer, List<ConsumerRecord<String, String>> records) {
+        if (!enabled) return;
+        List<ProcessedEvent> events = new ArrayList<>(records.size());
+        LocalDateTime now = LocalDateTime.now();
+        for (ConsumerRecord<String, String> record : records) {
+            String eventId = eventCodec.eventId(record.value());
+            if (eventId != null) {
+                events.add(new ProcessedEvent(consumer, eventId, KafkaTopics.baseTopic(record.topic()), now));
+            }
+        }
+        if (events.isEmpty()) return;
+        processedEventRepository.saveAll(events);
+        List<String> eventIds = events.stream().map(ProcessedEvent::getEventId).toList();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    remember(consumer, eventIds);
+                }
+            });
+        } else {
+            remember(consumer, eventIds);
+        }
+    }
+
+    public void markProcessed(String consumer, ConsumerRecord<String, String> record) {
+        markProcessed(consumer, List.of(record));
+    }
+
+    /**
+     * 清理过期的去重记录（Redis中的Set靠TTL过期）
+     */
+    @Scheduled(initialDelayString = "${app.kafka.dedupe.cleanup-initial-delay-ms:600000}",
+               fixedDelayString = "${app.kafka.dedupe.cleanup-interval-ms:3600000}")
+    public void cleanup() {
+        if (!enabled) return;
+        int deleted = processedEventRepository.deleteProcessedBefore(LocalDateTime.now().minusDays(dbRetentionDays));
+        if (deleted > 0) {
+            log.info("清理过期的Kafka去重记录: {}条", deleted);
+        }
+    }
+
+    /**
+     * 先查Redis最近几天的Set（一次pipeline），未命中的再查一次数据库；Redis不可用时只查数据库
+     */
+    private Set<String> processedIds(String consumer, Set<String> eventIds) {
+        Set<String> processed = new HashSet<>();
+        String[] ids = eventIds.toArray(new String[0]);
+        try {
+            List<Object> results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection redis = (StringRedisConnection) connection;
+                for (String key : recentKeys(consumer)) {
+                    redis.sMIsMember(key, ids);
+                }
+                return null;
+            });
+            for (Object result : results) {
+                List<?> members = (List<?>) result;
+                for (int i = 0; i < ids.length; i++) {
+                    if (Boolean.TRUE.equals(members.get(i))) processed.add(ids[i]);
+                }
+            }
+        } catch (Exception e) {
+            log.warn("查询Redis去重记录失败，改查数据库: {}", e.getMessage());
+        }
+        if (processed.size() < ids.length) {
+            List<String> remaining = eventIds.stream().filter(id -> !processed.contains(id)).toList();
+            processed.addAll(processedEventRepository.findProcessedIds(consumer, remaining));
+        }
+        return processed;
+    }
+
+    /**
+     * 写入当天的Set并续期；失败只记录日志，数据库记录仍能拦住重复
+     */
+    private void remember(String consumer, List<String> eventIds) {
+        try {
+            String key = KEY_PREFIX + consumer + ":" + LocalDate.now().format(DAY);
+            String[] ids = eventIds.toArray(new String[0]);
+            Duration ttl = Duration.ofDays(redisDays);
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection redis = (StringRedisConnection) connection;
+                redis.sAdd(key, ids);
+                redis.expire(key, ttl.getSeconds());
+                return null;
+            });
+        } catch (Exception e) {
+            log.warn("写入Redis去重记录失败: consumer={}, {}", consumer, e.getMessage());
+        }
+    }
+
+    private List<String> recentKeys(String consumer) {
+        List<String> keys = new ArrayList<>(redisDays);
+        LocalDate today = LocalDate.now();
+        for (int i = 0; i < Math.max(1, redisDays); i++) {
+            keys.add(KEY_PREFIX + consumer + ":" + today.minusDays(i).format(DAY));
+        }
+        return keys;
+    }
+
+    private Counter duplicateCounter(String consumer) {
+        return duplicateCounters.computeIfAbsent(consumer, c -> Counter.builder("kafka.consumer.duplicates")
+            .description("消费端去重跳过的重复事件数")
+            .tag("consumer", c)
+            .register(meterRegistry));
+    }
+}
@@ -0,0 +1,154 @@
+package com.SE2025BackEnd_16.project.KafkaUtils.event;
+
+import com.SE2025BackEnd_16.project.entity.Item;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * 商品相关事件，除卖家商品预热外均以itemId为key
+ * fromLegacy 解析v1格式（逗号分隔字符串/裸Item JSON），滚动升级期间旧消息仍可消费
+ */
+public final class ItemEvents {
+
+    private ItemEvents() {
+    }
+
+    /**
+     * 商品详情缓存预热（ItemDetail）
+     */
+    public record DetailPreheat(int itemId) implements KafkaEvent {
+        @Override
+        public String key() {
+            return String.valueOf(itemId);
+        }
+
+        public static DetailPreheat fromLegacy(String message) {
+            return new DetailPreheat(Integer.parseInt(message.trim()));
+        }
+    }
+
+    /**
+     * 收藏/取消收藏（favoriteItem / unfavoriteItem），delta为点赞数变化量
+     */
+    public record FavoriteChanged(int itemId, Integer userId, int delta) implements KafkaEvent {
+        @Override
+        public String key() {
+            return String.valueOf(itemId);
+        }
+
+        public static FavoriteChanged favoriteFromLegacy(String message) {
+            return new FavoriteChanged(Integer.parseInt(message.trim()), null, 1);
+        }
+
+        public static FavoriteChanged unfavoriteFromLegacy(String message) {
+            return new FavoriteChanged(Integer.parseInt(message.trim()), null, -1);
+        }
+    }
+
+    /**
+     * 商品信息更新（updateItem），携带编辑后的完整内容和写版本号（见 RedisUtils.nextItemVersion）
+     * version为0的是旧格式消息：只有分类和图片，其它字段以缓存中的最新值为准
+     */
+    public record Updated(int itemId, Integer oldCategoryId, Integer newCategoryId, String imageUrl,
+                          String itemName, String description, BigDecimal price, String itemCondition,
+                          long version) implements KafkaEvent {
+        @Override
+        public String key() {
+            return String.valueOf(itemId);
+        }
+
+        // v1：itemId,oldCategoryId,newCategoryId,imageUrl（URL中含逗号时会被截断，只能尽量拼回）
+        public static Updated fromLegacy(String message) {
+            String[] parts = message.split(",", 4);
+            String imageUrl = parts.length > 3 && !parts[3].isEmpty() ? parts[3] : null;
+            return new Updated(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]), Integer.parseInt(parts[2]), imageUrl,
+                null, null, null, null, 0);
+        }
+    }
+
+    /**
+     * 上架/下架（toggleItemAvailability），listedAt为上架时间（"最新发布"的排序分数），version为写版本号
+     * version为0的是旧格式消息
+     */
+    public record AvailabilityToggled(int itemId, boolean available, Integer operatorId,
+                                      LocalDateTime listedAt, long version) implements KafkaEvent {
+        @Override
+        public String key() {
+            return String.valueOf(itemId);
+        }
+
+        // v1：itemId,isAvailable,operatorId
+        public static AvailabilityToggled fromLegacy(String message) {
+            String[] parts = message.split(",");
+            Integer operatorId = parts.length > 2 && !parts[2].isEmpty() ? Integer.valueOf(parts[2]) : null;
+            return new AvailabilityToggled(Integer.parseInt(parts[0]), Boolean.parseBoolean(parts[1]), operatorId, null, 0);
+        }
+    }
+
+    /**
+     * 发布商品（createItem）：item为临时ID阶段的完整商品，入库后替换为真实ID
+     */
+    public record Created(int tempId, Item item) implements KafkaEvent {
+        @Override
+        public String key() {
+            return String.valueOf(tempId);
+        }
+
+        // v1：消息体就是临时商品的JSON
+        public static Created fromLegacy(String message, ObjectMapper mapper) throws Exception {
+            Item item = mapper.readValue(message, Item.class);
+            return new Created(item.getItemId(), item);
+        }
+    }
+
+    /**
+     * 卖家商品集合预热（sellerItemsCache），以sellerId为key
+     */
+    public record SellerItemsPreheat(int sellerId) implements KafkaEvent {
+        @Override
+        public String key() {
+            return String.valueOf(sellerId);
+        }
+
+        public static SellerItemsPreheat fromLegacy(String message) {
+            return new SellerItemsPreheat(Integer.parseInt(message.trim()));
+        }
+    }
+
+    /**
+     * 分类缓存预热（itemCategory），以categoryId为key
+     */
+    public record CategoryPreheat(int categoryId) implements KafkaEvent {
+        @Override
+        public String key() {
+            return String.valueOf(categoryId);
+        }
+
+        public static CategoryPreheat fromLegacy(String message) {
+            return new CategoryPreheat(Integer.parseInt(message.trim()));
+        }
+    }
+
+    /**
+     * 商品浏览（itemView），userId为空表示未登录；只有v2格式
+     */
+    public record Viewed(int itemId, Integer categoryId, Integer userId) implements KafkaEvent {
+        @Override
+        public String key() {
+            return String.valueOf(itemId);
+        }
+    }
+
+    /**
+     * 一个时间窗口内的浏览次数（itemViewCounts，由 ItemViewTopology 在窗口关闭后输出）
+     * userId为空时是分类总数，否则是该用户在该分类下的次数
+     */
+    public record ViewCount(int categoryId, Integer userId, long windowStart, long count) implements KafkaEvent {
+        @Override
+        public String key() {
+            return userId != null ? userId + ":" + categoryId : String.valueOf(categoryId);
+        }
+    }
+}
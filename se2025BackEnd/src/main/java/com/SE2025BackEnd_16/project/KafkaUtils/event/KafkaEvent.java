@@ -0,0 +1,9 @@
+package com.SE2025BackEnd_16.project.KafkaUtils.event;
+
+/**
+ * Kafka事件：key()作为消息key，同一实体（商品/订单/用户）的事件落在同一分区，分区内有序
+ */
+public interface KafkaEvent {
+
+    String key();
+}
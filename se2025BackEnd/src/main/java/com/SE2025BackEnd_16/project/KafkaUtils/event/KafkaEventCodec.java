@@ -0,0 +1,88 @@
+package com.SE2025BackEnd_16.project.KafkaUtils.event;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Kafka事件编解码（共用Spring容器中的ObjectMapper，不再每次new）
+ * v2格式：{"id":"事件ID","type":"topic名","v":2,"at":"发送时间","data":{事件字段}}
+ * 事件ID（UUID）在发送时生成一次，重试、redo、死信重放都原样转发消息，ID不变，消费端据此去重（见 ProcessedEventStore）
+ * v1格式：原有的逗号分隔字符串（createItem为裸Item JSON），解码时交给各事件的 fromLegacy 解析
+ */
+@Component
+public class KafkaEventCodec {
+
+    public static final int LEGACY_VERSION = 1;
+    public static final int CURRENT_VERSION = 2;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * v1消息解析器
+     */
+    @FunctionalInterface
+    public interface LegacyParser<T> {
+        T parse(String message, ObjectMapper mapper) throws Exception;
+    }
+
+    public String encode(String type, KafkaEvent event) {
+        ObjectNode envelope = objectMapper.createObjectNode();
+        envelope.put("id", UUID.randomUUID().toString());
+        envelope.put("type", type);
+        envelope.put("v", CURRENT_VERSION);
+        envelope.set("at", objectMapper.valueToTree(LocalDateTime.now()));
+        envelope.set("data", objectMapper.valueToTree(event));
+        try {
+            return objectMapper.writeValueAsString(envelope);
+        } catch (Exception e) {
+            throw new RuntimeException("Kafka事件序列化失败: " + type + ", " + e.getMessage(), e);
+        }
+    }
+
+    public <T extends KafkaEvent> T decode(String message, Class<T> type, LegacyParser<T> legacy) {
+        try {
+            JsonNode envelope = isEnvelope(message) ? objectMapper.readTree(message) : null;
+            if (envelope == null || !envelope.has("data") || !envelope.has("v")) {
+                return legacy.parse(message, objectMapper);
+            }
+            int version = envelope.get("v").asInt();
+            if (version > CURRENT_VERSION) {
+                throw new IllegalArgumentException("不支持的事件版本: " + version);
+            }
+            return objectMapper.treeToValue(envelope.get("data"), type);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Kafka事件解析失败: " + type.getSimpleName() + ", " + e.getMessage(), e);
+        }
+    }
+
+    public <T extends KafkaEvent> T decode(String message, Class<T> type, Function<String, T> legacy) {
+        return decode(message, type, (LegacyParser<T>) (raw, mapper) -> legacy.apply(raw));
+    }
+
+    /**
+     * 取事件ID；v1消息和无法解析的消息没有ID，返回null（不参与去重）
+     */
+    public String eventId(String message) {
+        if (!isEnvelope(message)) return null;
+        try {
+            JsonNode id = objectMapper.readTree(message).get("id");
+            return id != null && id.isTextual() ? id.asText() : null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private boolean isEnvelope(String message) {
+        return message != null && message.startsWith("{") && message.contains("\"data\"");
+    }
+}
@@ -0,0 +1,68 @@
+package com.SE2025BackEnd_16.project.KafkaUtils.event;
+
+/**
+ * 留言相关事件，以itemId（回复以parentId）为key，同一商品的留言变更按序处理
+ */
+public final class MessageEvents {
+
+    private MessageEvents() {
+    }
+
+    /**
+     * 根留言缓存预热（MessageRoot）
+     */
+    public record RootPreheat(int itemId) implements KafkaEvent {
+        @Override
+        public String key() {
+            return String.valueOf(itemId);
+        }
+
+        public static RootPreheat fromLegacy(String message) {
+            return new RootPreheat(Integer.parseInt(message.trim()));
+        }
+    }
+
+    /**
+     * 回复缓存预热（replyMessage）
+     */
+    public record RepliesPreheat(int parentId) implements KafkaEvent {
+        @Override
+        public String key() {
+            return String.valueOf(parentId);
+        }
+
+        public static RepliesPreheat fromLegacy(String message) {
+            return new RepliesPreheat(Integer.parseInt(message.trim()));
+        }
+    }
+
+    /**
+     * 新增留言（addMessage）
+     */
+    public record Added(int messageId, int itemId) implements KafkaEvent {
+        @Override
+        public String key() {
+            return String.valueOf(itemId);
+        }
+
+        // v1：messageId,itemId
+        public static Added fromLegacy(String message) {
+            String[] parts = message.split(",");
+            return new Added(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]));
+        }
+    }
+
+    /**
+     * 删除留言（deleteMessage），生产方只知道留言ID
+     */
+    public record Deleted(int messageId) implements KafkaEvent {
+        @Override
+        public String key() {
+            return String.valueOf(messageId);
+        }
+
+        public static Deleted fromLegacy(String message) {
+            return new Deleted(Integer.parseInt(message.trim()));
+        }
+    }
+}
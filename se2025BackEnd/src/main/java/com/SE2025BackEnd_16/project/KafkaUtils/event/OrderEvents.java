@@ -0,0 +1,103 @@
+package com.SE2025BackEnd_16.project.KafkaUtils.event;
+
+/**
+ * 订单相关事件，以orderId为key（订单缓存预热以userId为key）
+ */
+public final class OrderEvents {
+
+    private OrderEvents() {
+    }
+
+    /**
+     * 下单（createOrder）
+     */
+    public record Created(int buyerId, int itemId, String orderId) implements KafkaEvent {
+        @Override
+        public String key() {
+            return orderId;
+        }
+
+        // v1：buyerId,itemId,orderId
+        public static Created fromLegacy(String message) {
+            String[] parts = message.split(",");
+            return new Created(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]), parts[2]);
+        }
+    }
+
+    /**
+     * 购买商品（buyItem，兼容旧版本），以itemId为key
+     */
+    public record ItemBought(int buyerId, int itemId) implements KafkaEvent {
+        @Override
+        public String key() {
+            return String.valueOf(itemId);
+        }
+
+        public static ItemBought fromLegacy(String message) {
+            String[] parts = message.split(",");
+            return new ItemBought(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]));
+        }
+    }
+
+    /**
+     * 只携带订单ID的事件（OrderConfirm / OrderCancel / orderDetailPreheat）
+     */
+    public record Ref(String orderId) implements KafkaEvent {
+        @Override
+        public String key() {
+            return orderId;
+        }
+
+        public static Ref fromLegacy(String message) {
+            return new Ref(message.trim());
+        }
+    }
+
+    /**
+     * 确认收货（OrderComplete），role为buyer/seller
+     */
+    public record Completed(String orderId, String role) implements KafkaEvent {
+        @Override
+        public String key() {
+            return orderId;
+        }
+
+        // v1：orderId,role
+        public static Completed fromLegacy(String message) {
+            String[] parts = message.split(",");
+            return new Completed(parts[0], parts[1]);
+        }
+    }
+
+    /**
+     * 评价（OrderCredit），role为被评价方buyer/seller
+     */
+    public record Credited(String orderId, String role, int credit) implements KafkaEvent {
+        @Override
+        public String key() {
+            return orderId;
+        }
+
+        // v1：orderId,role,credit
+        public static Credited fromLegacy(String message) {
+            String[] parts = message.split(",");
+            return new Credited(parts[0], parts[1], Integer.parseInt(parts[2]));
+        }
+    }
+
+    /**
+     * 订单列表缓存预热（orderCachePreheat），role为buyer/seller
+     */
+    public record CachePreheat(int userId, String role, int page, int size) implements KafkaEvent {
+        @Override
+        public String key() {
+            return String.valueOf(userId);
+        }
+
+        // v1：userId,role,page,size
+        public static CachePreheat fromLegacy(String message) {
+            String[] parts = message.split(",");
+            return new CachePreheat(Integer.parseInt(parts[0]), parts[1], Integer.parseInt(parts[2]), Integer.parseInt(parts[3].trim()));
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.SE2025BackEnd_16.project.RedisUtils;
+
+import com.SE2025BackEnd_16.project.entity.Item;
+import com.SE2025BackEnd_16.project.entity.Order;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * RedisUtils 主要读操作的非阻塞版本（基于Lettuce响应式连接）
+ * 返回Mono，调用方用 toFuture() 转为CompletableFuture；互不依赖的读取（ID分页、总数、详情）可以同时发出再合并，
+ * 一个页面的耗时从各步之和变为最慢的一条依赖链
+ * key、编码、近端缓存与同步版本一致；详情未命中需要回源数据库时切到 boundedElastic 线程，不阻塞Lettuce事件循环
+ */
+@Component
+public class AsyncRedisUtils {
+
+    @Autowired
+    private ReactiveStringRedisTemplate reactiveStringRedisTemplate;
+
+    @Autowired
+    private ReactiveRedisTemplate<String, byte[]> reactiveBytesRedisTemplate;
+
+    @Autowired
+    private RedisUtils redisUtils;
+
+    @Autowired
+    private RedisKeySchema keySchema;
+
+    @Autowired
+    private NearCache nearCache;
+
+    @Autowired
+    private HotKeyDetector hotKeyDetector;
+
+    // ==================== 商品索引 ====================
+
+    /**
+     * 分页获取可售商品ID（按指定字段排序）
+     */
+    public Mono<List<Integer>> getOnSaleItemIdsSorted(int page, int size, boolean desc, String sortBy) {
+        return zsetRange(keySchema.onSaleSortedKey(sortBy), page, size, desc).map(this::toIntegers);
+    }
+
+    /**
+     * 分页获取分类下商品ID（按指定字段排序）
+     */
+    public Mono<List<Integer>> getCategoryItemIdsSorted(int categoryId, int page, int size, boolean desc, String sortBy) {
+        return zsetRange(keySchema.categorySortedKey(categoryId, sortBy), page, size, desc).map(this::toIntegers);
+    }
+
+    public Mono<Long> getOnSaleItemCount(String sortBy) {
+        return zsetCount(keySchema.onSaleSortedKey(sortBy));
+    }
+
+    public Mono<Long> getCategoryItemCount(int categoryId, String sortBy) {
+        return zsetCount(keySchema.categorySortedKey(categoryId, sortBy));
+    }
+
+    /**
+     * 批量获取商品详情（只返回可售商品），结果保持itemIds顺序
+     */
+    public Mono<List<Item>> getItemsByIds(List<Integer> itemIds) {
+        return getAllItemsByIds(itemIds).map(items -> items.stream()
+            .filter(item -> Boolean.TRUE.equals(item.getIsAvailable()))
+            .collect(Collectors.toList()));
+    }
+
+    /**
+     * 批量获取商品详情（不判断isAvailable），结果保持itemIds顺序
+     */
+    public Mono<List<Item>> getAllItemsByIds(List<Integer> itemIds) {
+        if (itemIds == null || itemIds.isEmpty()) return Mono.just(List.of());
+        if (redisUtils.isItemHashMode()) {
+            // Hash模式下详情是多个HGETALL，沿用同步pipeline实现
+            return Mono.fromCallable(() -> redisUtils.getAllItemsByIds(itemIds)).subscribeOn(Schedulers.boundedElastic());
+        }
+        List<String> keys = itemIds.stream().map(redisUtils::generateItemDetailKey).collect(Collectors.toList());
+        return resolve(itemIds, keys, redisUtils::resolveItemsByIds);
+    }
+
+    // ==================== 订单 ====================
+
+    /**
+     * 分页获取买家订单ID（按创建时间倒序）
+     */
+    public Mono<List<String>> getBuyerOrderIds(Integer buyerId, int page, int size) {
+        return zsetRange(keySchema.buyerOrdersKey(buyerId), page, size, true);
+    }
+
+    /**
+     * 分页获取卖家订单ID（按创建时间倒序）
+     */
+    public Mono<List<String>> getSellerOrderIds(Integer sellerId, int page, int size) {
+        return zsetRange(keySchema.sellerOrdersKey(sellerId), page, size, true);
+    }
+
+    public Mono<Long> getBuyerOrderCount(Integer buyerId) {
+        return zsetCount(keySchema.buyerOrdersKey(buyerId));
+    }
+
+    public Mono<Long> getSellerOrderCount(Integer sellerId) {
+        return zsetCount(keySchema.sellerOrdersKey(sellerId));
+    }
+
+    /**
+     * 批量获取订单详情，结果保持orderIds顺序
+     */
+    public Mono<List<Order>> getOrdersByIds(List<String> orderIds) {
+        if (orderIds == null || orderIds.isEmpty()) return Mono.just(List.of());
+        List<String> keys = orderIds.stream().map(redisUtils::generateOrderDetail).collect(Collectors.toList());
+        return resolve(orderIds, keys, redisUtils::resolveOrdersByIds);
+    }
+
+    // ==================== 公共 ====================
+
+    /**
+     * 按排名读取ZSet一段成员，热点key与同步版本共用本地副本
+     */
+    private Mono<List<String>> zsetRange(String key, int page, int size, boolean desc) {
+        long start = (long) page * size;
+        long end = start + size - 1;
+        Mono<Set<String>> members = hotKeyDetector.readAsync(key, "range:" + start + ":" + end + ":" + desc, () -> {
+            Range<Long> range = Range.closed(start, end);
+            Flux<String> flux = desc
+                ? reactiveStringRedisTemplate.opsForZSet().reverseRange(key, range)
+                : reactiveStringRedisTemplate.opsForZSet().range(key, range);
+            return flux.collect(() -> (Set<String>) new LinkedHashSet<String>(), Set::add);
+        });
+        return members.map(set -> (List<String>) new ArrayList<>(set)).defaultIfEmpty(List.of());
+    }
+
+    private Mono<Long> zsetCount(String key) {
+        return hotKeyDetector.readAsync(key, "zcard", () -> reactiveStringRedisTemplate.opsForZSet().size(key))
+            .defaultIfEmpty(0L);
+    }
+
+    /**
+     * 读取原始字节后交给同步版本的解码/回源逻辑（在 boundedElastic 线程执行）
+     */
+    private <K, T> Mono<List<T>> resolve(List<K> ids, List<String> keys, Resolver<K, T> resolver) {
+        return multiGetCache(keys)
+            .publishOn(Schedulers.boundedElastic())
+            .map(values -> resolver.resolve(ids, keys, values));
+    }
+
+    /**
+     * 批量读取缓存原始字节，结果与keys顺序一致，未命中的位置为null
+     * 先查近端缓存；单机模式一次MGET，集群模式按key并发GET（Lettuce按slot路由）
+     */
+    public Mono<List<byte[]>> multiGetCache(List<String> keys) {
+        List<byte[]> result = new ArrayList<>(keys.size());
+        List<Integer> remoteIndexes = new ArrayList<>();
+        List<String> remoteKeys = new ArrayList<>();
+        for (int i = 0; i < keys.size(); i++) {
+            byte[] local = nearCache.getIfPresent(keys.get(i));
+            result.add(local);
+            if (local == null) {
+                remoteIndexes.add(i);
+                remoteKeys.add(keys.get(i));
+            }
+        }
+        if (remoteKeys.isEmpty()) return Mono.just(result);
+
+        Mono<List<byte[]>> remote = redisUtils.isClusterMode()
+            ? Flux.fromIterable(remoteKeys)
+                .flatMapSequential(key -> reactiveBytesRedisTemplate.opsForValue().get(key)
+                    .map(Optional::of)
+                    .defaultIfEmpty(Optional.empty()))
+                .collectList()
+                .map(values -> values.stream().map(value -> value.orElse(null)).collect(Collectors.toList()))
+            : reactiveBytesRedisTemplate.opsForValue().multiGet(remoteKeys);
+        return remote.map(values -> {
+            for (int i = 0; i < remoteKeys.size(); i++) {
+                byte[] payload = values != null && i < values.size() ? values.get(i) : null;
+                if (payload != null) {
+                    result.set(remoteIndexes.get(i), payload);
+                    nearCache.put(remoteKeys.get(i), payload);
+                }
+            }
+            return result;
+        });
+    }
+
+    private List<Integer> toIntegers(List<String> members) {
+        return members.stream().map(Integer::parseInt).collect(Collectors.toList());
+    }
+
+    @FunctionalInterface
+    private interface Resolver<K, T> {
+        List<T> resolve(List<K> ids, List<String> keys, List<byte[]> values);
+    }
+}
@@ -0,0 +1,65 @@
+package com.SE2025BackEnd_16.project.RedisUtils;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * 把已有缓存组件的内部计数器注册为Micrometer指标：
+ * 近端缓存（Caffeine统计）、请求合并、穿透防护、软过期后台刷新、热点key
+ */
+@Component
+public class CacheMeterBinder implements MeterBinder {
+
+    @Autowired
+    private NearCache nearCache;
+
+    @Autowired
+    private SingleFlight singleFlight;
+
+    @Autowired
+    private CachePenetrationGuard penetrationGuard;
+
+    @Autowired
+    private CacheRefresher cacheRefresher;
+
+    @Autowired
+    private HotKeyDetector hotKeyDetector;
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, nearCache.getCache(), "near");
+
+        FunctionCounter.builder("cache.singleflight.loads", singleFlight, SingleFlight::getLoadCount)
+            .description("合并后实际回源次数").register(registry);
+        FunctionCounter.builder("cache.singleflight.coalesced", singleFlight, SingleFlight::getCoalescedCount)
+            .description("本节点被合并的请求数").register(registry);
+        FunctionCounter.builder("cache.singleflight.remote.coalesced", singleFlight, SingleFlight::getRemoteCoalescedCount)
+            .description("拿到分布式锁后重查缓存命中的请求数").register(registry);
+        FunctionCounter.builder("cache.singleflight.timeouts", singleFlight, SingleFlight::getTimeoutCount)
+            .description("等待合并结果超时次数").register(registry);
+        Gauge.builder("cache.singleflight.inflight", singleFlight, SingleFlight::getInFlightCount)
+            .description("正在回源的key数").register(registry);
+
+        FunctionCounter.builder("cache.penetration.bloom.rejected", penetrationGuard, CachePenetrationGuard::getBloomRejectedCount)
+            .description("布隆过滤器拦截的请求数").register(registry);
+        FunctionCounter.builder("cache.penetration.negative.hits", penetrationGuard, CachePenetrationGuard::getNegativeHitCount)
+            .description("空值缓存命中数").register(registry);
+
+        FunctionCounter.builder("cache.refresh.refreshed", cacheRefresher, CacheRefresher::getRefreshedCount)
+            .description("软过期后台刷新的key数").register(registry);
+        FunctionCounter.builder("cache.refresh.skipped", cacheRefresher, CacheRefresher::getSkippedCount)
+            .description("因去重或队列满跳过的刷新数").register(registry);
+
+        Gauge.builder("cache.hotkey.count", hotKeyDetector, HotKeyDetector::getHotKeyCount)
+            .description("当前热点key数").register(registry);
+        FunctionCounter.builder("cache.hotkey.replica.hits", hotKeyDetector, HotKeyDetector::getReplicaHitCount)
+            .description("热点key本地副本命中数").register(registry);
+        FunctionCounter.builder("cache.hotkey.replica.loads", hotKeyDetector, HotKeyDetector::getReplicaLoadCount)
+            .description("热点key本地副本回源次数").register(registry);
+    }
+}
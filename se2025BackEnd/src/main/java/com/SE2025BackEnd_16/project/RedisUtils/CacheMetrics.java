@@ -0,0 +1,279 @@
+package com.SE2025BackEnd_16.project.RedisUtils;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 缓存指标（Micrometer），按key族打标签：
+ *   cache.requests{family,result=hit|miss}  读取次数
+ *   cache.load{family}                     回源耗时
+ *   cache.payload.bytes{family,op}         读/写的序列化字节数
+ *   cache.ttl.seconds{family,op}           写入时的TTL / 读取时剩余TTL（按采样率额外发一次TTL命令）
+ * key族按前缀归类，取值有限，避免ID进入标签导致指标爆炸
+ */
+@Slf4j
+@Component
+public class CacheMetrics {
+
+    private static final String OTHER = "other";
+
+    // 前缀 → key族，按顺序匹配，越具体的前缀越靠前
+    private static final Map<String, String> FAMILIES = new LinkedHashMap<>();
+
+    static {
+        FAMILIES.put("item:detail:", "item_detail");
+        FAMILIES.put("item:hash:", "item_hash");
+        FAMILIES.put("item:{items}:", "item_index");
+        FAMILIES.put("items:", "item_index");
+        FAMILIES.put("item:onsale:", "item_index");
+        FAMILIES.put("item:all:", "item_index");
+        FAMILIES.put("item:condition:", "item_index");
+        FAMILIES.put("item:filter:", "item_filter");
+        FAMILIES.put("item:", "item");
+        FAMILIES.put("order:", "order");
+        FAMILIES.put("message:", "message");
+        FAMILIES.put("parent:", "message");
+        FAMILIES.put("user:info:", "user_info");
+        FAMILIES.put("user:login:", "user_login");
+        FAMILIES.put("user:email:", "user_email");
+        FAMILIES.put("user:", "user");
+        FAMILIES.put("category:", "category");
+        FAMILIES.put("seller:", "user");
+        FAMILIES.put("buyer:", "user");
+        FAMILIES.put("tag:", "tag");
+        FAMILIES.put("null:", "negative");
+    }
+
+    // 内存采样的key族 → SCAN模式
+    private static final Map<String, String> MEMORY_PATTERNS = new LinkedHashMap<>();
+
+    static {
+        MEMORY_PATTERNS.put("item_detail", "item:detail:*");
+        MEMORY_PATTERNS.put("item_hash", "item:hash:*");
+        MEMORY_PATTERNS.put("order", "order:*");
+        MEMORY_PATTERNS.put("message", "message:*");
+        MEMORY_PATTERNS.put("user_info", "user:info:*");
+        MEMORY_PATTERNS.put("user_login", "user:login:*");
+        MEMORY_PATTERNS.put("category", "category:*");
+        MEMORY_PATTERNS.put("tag", "tag:*");
+        MEMORY_PATTERNS.put("negative", "null:*");
+    }
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired(required = false)
+    private RedissonClient redissonClient;
+
+    @Autowired
+    private CacheTagRegistry cacheTagRegistry;
+
+    // 读取时查询剩余TTL的采样率（0~1），每次采样多一次Redis往返
+    @Value("${app.cache.metrics.ttl-sample-rate:0.01}")
+    private double ttlSampleRate;
+
+    private final Map<String, Counter> hitCounters = new ConcurrentHashMap<>();
+    private final Map<String, Counter> missCounters = new ConcurrentHashMap<>();
+    private final Map<String, Timer> loadTimers = new ConcurrentHashMap<>();
+    private final Map<String, DistributionSummary> summaries = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong[]> localCounts = new ConcurrentHashMap<>();
+
+    /**
+     * key所属的key族
+     */
+    public static String family(String key) {
+        if (key == null) return OTHER;
+        for (Map.Entry<String, String> entry : FAMILIES.entrySet()) {
+            if (key.startsWith(entry.getKey())) return entry.getValue();
+        }
+        return OTHER;
+    }
+
+    /**
+     * 记录一次读取，payload为null计为未命中
+     */
+    public void recordRead(String key, byte[] payload) {
+        String family = family(key);
+        if (payload == null) {
+            recordMiss(family);
+            return;
+        }
+        recordHit(family);
+        summary("cache.payload.bytes", family, "read").record(payload.length);
+        sampleTtl(key, family);
+    }
+
+    /**
+     * 记录一次读取（值已由模板反序列化，无法取得字节数）
+     */
+    public void recordRead(String key, boolean hit) {
+        String family = family(key);
+        if (!hit) {
+            recordMiss(family);
+            return;
+        }
+        recordHit(family);
+        sampleTtl(key, family);
+    }
+
+    public void recordWrite(String key, int bytes, long ttlSeconds) {
+        String family = family(key);
+        if (bytes >= 0) summary("cache.payload.bytes", family, "write").record(bytes);
+        if (ttlSeconds > 0) summary("cache.ttl.seconds", family, "write").record(ttlSeconds);
+    }
+
+    /**
+     * 计时执行一次回源
+     */
+    public <T> T timeLoad(String key, Supplier<T> loader) {
+        String family = family(key);
+        Timer timer = loadTimers.computeIfAbsent(family, f -> Timer.builder("cache.load")
+            .description("缓存未命中回源耗时")
+            .tag("family", f)
+            .publishPercentileHistogram()
+            .register(meterRegistry));
+        return timer.record(loader);
+    }
+
+    private void recordHit(String family) {
+        hitCounters.computeIfAbsent(family, f -> requestCounter(f, "hit")).increment();
+        counts(family)[0].incrementAndGet();
+    }
+
+    private void recordMiss(String family) {
+        missCounters.computeIfAbsent(family, f -> requestCounter(f, "miss")).increment();
+        counts(family)[1].incrementAndGet();
+    }
+
+    private Counter requestCounter(String family, String result) {
+        return Counter.builder("cache.requests")
+            .description("缓存读取次数")
+            .tag("family", family)
+            .tag("result", result)
+            .register(meterRegistry);
+    }
+
+    private DistributionSummary summary(String name, String family, String op) {
+        return summaries.computeIfAbsent(name + "|" + family + "|" + op, k -> DistributionSummary.builder(name)
+            .tag("family", family)
+            .tag("op", op)
+            .publishPercentileHistogram()
+            .register(meterRegistry));
+    }
+
+    private AtomicLong[] counts(String family) {
+        return localCounts.computeIfAbsent(family, f -> new AtomicLong[]{new AtomicLong(), new AtomicLong()});
+    }
+
+    private void sampleTtl(String key, String family) {
+        if (ttlSampleRate <= 0 || ThreadLocalRandom.current().nextDouble() >= ttlSampleRate) return;
+        try {
+            Long ttl = stringRedisTemplate.getExpire(key, TimeUnit.SECONDS);
+            if (ttl != null && ttl >= 0) {
+                summary("cache.ttl.seconds", family, "read").record(ttl);
+            }
+        } catch (Exception e) {
+            log.debug("采样TTL失败: {}, {}", key, e.getMessage());
+        }
+    }
+
+    /**
+     * 各key族的命中/未命中次数和命中率（本节点启动以来）
+     */
+    public Map<String, Object> hitRatios() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        localCounts.forEach((family, counts) -> {
+            long hits = counts[0].get();
+            long misses = counts[1].get();
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("hits", hits);
+            item.put("misses", misses);
+            item.put("hitRatio", hits + misses == 0 ? 0.0 : (double) hits / (hits + misses));
+            result.put(family, item);
+        });
+        return result;
+    }
+
+    /**
+     * 按key族采样内存占用（每个key族一次全量SCAN，只在运维接口中调用）
+     */
+    public Map<String, Object> sampleMemoryUsage(int sampleSize) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        MEMORY_PATTERNS.forEach((family, pattern) -> result.put(family, sampleMemoryUsage(pattern, sampleSize)));
+        return result;
+    }
+
+    /**
+     * 按模式采样 MEMORY USAGE：SCAN统计匹配的key数，对前sampleSize个key取内存占用，
+     * 用平均值估算该key族总占用
+     */
+    public Map<String, Object> sampleMemoryUsage(String pattern, int sampleSize) {
+        List<String> sampled = new ArrayList<>(sampleSize);
+        long[] total = {0};
+        cacheTagRegistry.scan(pattern, keys -> {
+            total[0] += keys.size();
+            for (String key : keys) {
+                if (sampled.size() >= sampleSize) break;
+                sampled.add(key);
+            }
+        });
+        long sum = 0;
+        long max = 0;
+        int measured = 0;
+        for (String key : sampled) {
+            Long bytes = memoryUsage(key);
+            if (bytes == null) continue;
+            sum += bytes;
+            max = Math.max(max, bytes);
+            measured++;
+        }
+        long avg = measured == 0 ? 0 : sum / measured;
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("keys", total[0]);
+        result.put("sampled", measured);
+        result.put("avgBytes", avg);
+        result.put("maxBytes", max);
+        result.put("estimatedBytes", avg * total[0]);
+        return result;
+    }
+
+    private Long memoryUsage(String key) {
+        try {
+            if (redissonClient != null) {
+                // Redisson按key路由到所在节点，集群模式下也能取到
+                return redissonClient.getBucket(key).sizeInMemory();
+            }
+            byte[] usage = "USAGE".getBytes(StandardCharsets.UTF_8);
+            return stringRedisTemplate.execute((RedisCallback<Long>) connection -> {
+                Object value = connection.execute("MEMORY", usage, key.getBytes(StandardCharsets.UTF_8));
+                return value instanceof Number number ? number.longValue() : null;
+            });
+        } catch (Exception e) {
+            log.debug("MEMORY USAGE失败: {}, {}", key, e.getMessage());
+            return null;
+        }
+    }
+}
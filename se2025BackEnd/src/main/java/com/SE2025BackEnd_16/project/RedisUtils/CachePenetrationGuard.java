@@ -0,0 +1,211 @@
+package com.SE2025BackEnd_16.project.RedisUtils;
+
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RBloomFilter;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 缓存穿透防护
+ * 1. 布隆过滤器（Redisson RBloomFilter）记录所有存在的商品ID、订单ID，
+ *    过滤器判定不存在的ID直接返回，不再查库、不再发预热消息
+ * 2. 空值缓存：查库确认不存在的ID写入短TTL的标记（null:item:{id}），
+ *    覆盖布隆过滤器误判和已删除的ID（布隆过滤器不支持删除）
+ * 过滤器在启动预热全量重建完成前不参与判断，Redis异常时一律放行，只影响防护不影响正确性
+ * 重建在临时过滤器中进行，完成后RENAME替换正式过滤器，重建期间正式过滤器照常使用；
+ * 多个实例同时启动时由分布式锁保证只有一个实例重建，其余跳过
+ */
+@Slf4j
+@Component
+public class CachePenetrationGuard {
+
+    private static final String ITEM_FILTER = "bloom:item:ids";
+    private static final String ORDER_FILTER = "bloom:order:ids";
+    private static final String READY_SUFFIX = ":ready";
+    private static final String REBUILD_SUFFIX = ":rebuild";
+    private static final String LOCK_SUFFIX = ":rebuild-lock";
+    private static final String ITEM_NULL_PREFIX = "null:item:";
+    private static final String ORDER_NULL_PREFIX = "null:order:";
+    private static final int BATCH_SIZE = 1000;
+
+    @Autowired(required = false)
+    private RedissonClient redissonClient;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Value("${app.cache.bloom.enabled:true}")
+    private boolean bloomEnabled;
+
+    @Value("${app.cache.bloom.item.expected-insertions:100000}")
+    private long itemExpectedInsertions;
+
+    @Value("${app.cache.bloom.order.expected-insertions:200000}")
+    private long orderExpectedInsertions;
+
+    @Value("${app.cache.bloom.false-probability:0.01}")
+    private double falseProbability;
+
+    @Value("${app.cache.negative.ttl-seconds:60}")
+    private long negativeTtlSeconds;
+
+    private final AtomicLong bloomRejected = new AtomicLong();
+    private final AtomicLong negativeHits = new AtomicLong();
+
+    // ==================== 商品 ====================
+
+    /**
+     * 商品ID是否可能存在（false表示一定不存在，可直接返回）
+     */
+    public boolean mightExistItem(int itemId) {
+        return mightExist(ITEM_NULL_PREFIX + itemId, ITEM_FILTER, String.valueOf(itemId));
+    }
+
+    /**
+     * 查库确认商品不存在（或已删除）时调用
+     */
+    public void markItemMissing(int itemId) {
+        markMissing(ITEM_NULL_PREFIX + itemId);
+    }
+
+    /**
+     * 商品入库或恢复时调用
+     */
+    public void onItemCreated(int itemId) {
+        onCreated(ITEM_NULL_PREFIX + itemId, ITEM_FILTER, itemExpectedInsertions, String.valueOf(itemId));
+    }
+
+    /**
+     * 用全部商品ID重建过滤器（启动预热时调用）
+     */
+    public void rebuildItemFilter(Collection<Integer> itemIds) {
+        rebuild(ITEM_FILTER, itemExpectedInsertions, itemIds.stream().map(String::valueOf).toList());
+    }
+
+    // ==================== 订单 ====================
+
+    public boolean mightExistOrder(String orderId) {
+        return mightExist(ORDER_NULL_PREFIX + orderId, ORDER_FILTER, orderId);
+    }
+
+    public void markOrderMissing(String orderId) {
+        markMissing(ORDER_NULL_PREFIX + orderId);
+    }
+
+    public void onOrderCreated(String orderId) {
+        onCreated(ORDER_NULL_PREFIX + orderId, ORDER_FILTER, orderExpectedInsertions, orderId);
+    }
+
+    public void rebuildOrderFilter(Collection<String> orderIds) {
+        rebuild(ORDER_FILTER, orderExpectedInsertions, orderIds);
+    }
+
+    // ==================== 内部实现 ====================
+
+    private boolean mightExist(String nullKey, String filterName, String id) {
+        try {
+            if (Boolean.TRUE.equals(stringRedisTemplate.hasKey(nullKey))) {
+                negativeHits.incrementAndGet();
+                return false;
+            }
+            if (!isFilterReady(filterName)) return true;
+            if (!redissonClient.<String>getBloomFilter(filterName).contains(id)) {
+                bloomRejected.incrementAndGet();
+                return false;
+            }
+        } catch (Exception e) {
+            log.warn("穿透防护检查失败，放行: {}, {}", id, e.getMessage());
+        }
+        return true;
+    }
+
+    private void markMissing(String nullKey) {
+        try {
+            stringRedisTemplate.opsForValue().set(nullKey, "1", negativeTtlSeconds, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            log.warn("写入空值缓存失败: {}, {}", nullKey, e.getMessage());
+        }
+    }
+
+    private void onCreated(String nullKey, String filterName, long expectedInsertions, String id) {
+        try {
+            stringRedisTemplate.delete(nullKey);
+            if (!bloomEnabled || redissonClient == null) return;
+            RBloomFilter<String> filter = redissonClient.getBloomFilter(filterName);
+            filter.tryInit(expectedInsertions, falseProbability);
+            filter.add(id);
+            // 正在重建时同时写入临时过滤器，替换后不丢失重建期间新增的ID
+            RBloomFilter<String> rebuilding = redissonClient.getBloomFilter(filterName + REBUILD_SUFFIX);
+            if (rebuilding.isExists()) rebuilding.add(id);
+        } catch (Exception e) {
+            log.warn("更新布隆过滤器失败: {}, {}", id, e.getMessage());
+        }
+    }
+
+    private void rebuild(String filterName, long expectedInsertions, Collection<String> ids) {
+        if (!bloomEnabled || redissonClient == null) return;
+        RLock lock = redissonClient.getLock(filterName + LOCK_SUFFIX);
+        if (!lock.tryLock()) {
+            log.info("布隆过滤器{}正由其他实例重建，跳过", filterName);
+            return;
+        }
+        try {
+            RBloomFilter<String> filter = redissonClient.getBloomFilter(filterName + REBUILD_SUFFIX);
+            filter.delete();
+            // 预留一倍余量，避免数据增长后误判率快速上升
+            filter.tryInit(Math.max(expectedInsertions, ids.size() * 2L), falseProbability);
+            List<String> batch = new ArrayList<>(BATCH_SIZE);
+            for (String id : ids) {
+                batch.add(id);
+                if (batch.size() >= BATCH_SIZE) {
+                    filter.add(batch);
+                    batch = new ArrayList<>(BATCH_SIZE);
+                }
+            }
+            if (!batch.isEmpty()) filter.add(batch);
+            // 位图和配置一起改名，覆盖正式过滤器
+            filter.rename(filterName);
+            stringRedisTemplate.opsForValue().set(filterName + READY_SUFFIX, "1");
+            log.info("布隆过滤器{}重建完成，元素数: {}", filterName, ids.size());
+        } catch (Exception e) {
+            // 正式过滤器未被替换，仍按上次重建的结果工作；残留的临时过滤器在下次重建时删除
+            log.error("重建布隆过滤器{}失败: {}", filterName, e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean isFilterReady(String filterName) {
+        return bloomEnabled && redissonClient != null
+            && Boolean.TRUE.equals(stringRedisTemplate.hasKey(filterName + READY_SUFFIX));
+    }
+
+    public long getBloomRejectedCount() {
+        return bloomRejected.get();
+    }
+
+    public long getNegativeHitCount() {
+        return negativeHits.get();
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("bloomRejected", bloomRejected.get());
+        stats.put("negativeHits", negativeHits.get());
+        stats.put("itemFilterReady", isFilterReady(ITEM_FILTER));
+        stats.put("orderFilterReady", isFilterReady(ORDER_FILTER));
+        return stats;
+    }
+}
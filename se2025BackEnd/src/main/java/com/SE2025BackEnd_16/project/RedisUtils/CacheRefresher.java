@@ -0,0 +1,138 @@
+package com.SE2025BackEnd_16.project.RedisUtils;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * 软过期缓存的后台刷新器
+ * 同一个key在本节点只会有一个刷新任务（本地去重），
+ * 多节点之间通过 SET NX 短锁去重，保证同一时刻只有一个节点回源
+ */
+@Slf4j
+@Component
+public class CacheRefresher {
+
+    private static final String REFRESH_LOCK_PREFIX = "cache:refresh:lock:";
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private CacheMetrics cacheMetrics;
+
+    @Value("${app.cache.refresh.threads:2}")
+    private int threads;
+
+    @Value("${app.cache.refresh.queue-size:1000}")
+    private int queueSize;
+
+    @Value("${app.cache.refresh.lock-seconds:10}")
+    private long lockSeconds;
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+    private final AtomicLong refreshed = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private volatile ThreadPoolExecutor executor;
+
+    /**
+     * 后台刷新一组已软过期的key
+     * 只有本地和Redis锁都抢到的key才交给reload，reload负责回源并重新写入缓存
+     */
+    public void refreshAll(Collection<String> keys, Consumer<List<String>> reload) {
+        List<String> claimed = new ArrayList<>();
+        for (String key : keys) {
+            if (!inFlight.add(key)) {
+                skipped.incrementAndGet();
+                continue;
+            }
+            Boolean locked;
+            try {
+                locked = stringRedisTemplate.opsForValue().setIfAbsent(REFRESH_LOCK_PREFIX + key, nodeId, lockSeconds, TimeUnit.SECONDS);
+            } catch (Exception e) {
+                locked = false;
+            }
+            if (Boolean.TRUE.equals(locked)) {
+                claimed.add(key);
+            } else {
+                inFlight.remove(key);
+                skipped.incrementAndGet();
+            }
+        }
+        if (claimed.isEmpty()) return;
+        try {
+            executor().execute(() -> {
+                try {
+                    cacheMetrics.timeLoad(claimed.get(0), () -> {
+                        reload.accept(claimed);
+                        return null;
+                    });
+                    refreshed.addAndGet(claimed.size());
+                } catch (Exception e) {
+                    log.warn("后台刷新缓存失败: {}, {}", claimed, e.getMessage());
+                } finally {
+                    claimed.forEach(inFlight::remove);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // 队列已满：放弃本次刷新，继续返回旧值，等待下一次读取或硬过期
+            claimed.forEach(inFlight::remove);
+            skipped.addAndGet(claimed.size());
+        }
+    }
+
+    public void refresh(String key, Runnable reload) {
+        refreshAll(List.of(key), claimed -> reload.run());
+    }
+
+    public long getRefreshedCount() {
+        return refreshed.get();
+    }
+
+    public long getSkippedCount() {
+        return skipped.get();
+    }
+
+    private ThreadPoolExecutor executor() {
+        if (executor == null) {
+            synchronized (this) {
+                if (executor == null) {
+                    AtomicInteger index = new AtomicInteger();
+                    executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                        new ArrayBlockingQueue<>(queueSize),
+                        runnable -> {
+                            Thread thread = new Thread(runnable, "cache-refresh-" + index.incrementAndGet());
+                            thread.setDaemon(true);
+                            return thread;
+                        });
+                }
+            }
+        }
+        return executor;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package com.SE2025BackEnd_16.project.RedisUtils;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.RedisClusterConnection;
+import org.springframework.data.redis.connection.RedisClusterNode;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scripting.support.ResourceScriptSource;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * 缓存标签注册表
+ * 记录每个用户、卖家、分类、商品关联了哪些缓存key（Set：tag:{类型}:{ID}），
+ * 失效时按标签批量UNLINK，不再猜测分页参数或使用KEYS枚举
+ * 标签本身带过期时间：每次登记都延长到不短于成员key的最长TTL（至少min-ttl，覆盖没有TTL的索引key）；
+ * 成员数超过prune-threshold时剔除已过期的成员，长期不失效的标签不会无限增长
+ */
+@Slf4j
+@Component
+public class CacheTagRegistry {
+
+    public static final String TAG_KEY_PREFIX = "tag:";
+    public static final String TYPE_USER = "user";
+    public static final String TYPE_SELLER = "seller";
+    public static final String TYPE_CATEGORY = "category";
+    public static final String TYPE_ITEM = "item";
+
+    // 每批UNLINK / SCAN的key数量
+    private static final int BATCH_SIZE = 500;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private NearCache nearCache;
+
+    @Autowired
+    private CacheTtlPolicy ttlPolicy;
+
+    // 标签最短保留时间（秒）：订单、商品留言等索引key没有TTL，靠每次写入时重新登记续期
+    @Value("${app.cache.tag.min-ttl-seconds:604800}")
+    private long minTagTtlSeconds;
+
+    // 标签成员数超过该值时，登记后剔除已过期的成员（同一标签每prune-interval-seconds最多一次）
+    @Value("${app.cache.tag.prune-threshold:200}")
+    private long pruneThreshold;
+
+    @Value("${app.cache.tag.prune-interval-seconds:600}")
+    private long pruneIntervalSeconds;
+
+    private static final String PRUNE_MARK_PREFIX = "tag-prune:";
+
+    private static final DefaultRedisScript<Long> REGISTER_SCRIPT = new DefaultRedisScript<>();
+
+    static {
+        REGISTER_SCRIPT.setScriptSource(new ResourceScriptSource(new ClassPathResource("lua/cache_tag_register.lua")));
+        REGISTER_SCRIPT.setResultType(Long.class);
+    }
+
+    public static String userTag(Integer userId) {
+        return TYPE_USER + ":" + userId;
+    }
+
+    public static String sellerTag(Integer sellerId) {
+        return TYPE_SELLER + ":" + sellerId;
+    }
+
+    public static String categoryTag(Integer categoryId) {
+        return TYPE_CATEGORY + ":" + categoryId;
+    }
+
+    public static String itemTag(Integer itemId) {
+        return TYPE_ITEM + ":" + itemId;
+    }
+
+    public static String tagKey(String tag) {
+        return TAG_KEY_PREFIX + tag;
+    }
+
+    /**
+     * 登记key属于某个标签，并续期标签
+     */
+    public void register(String tag, String... keys) {
+        if (keys.length == 0) return;
+        Object[] args = new Object[keys.length + 1];
+        args[0] = String.valueOf(tagTtlSeconds(keys));
+        System.arraycopy(keys, 0, args, 1, keys.length);
+        String tagKey = tagKey(tag);
+        Long size = stringRedisTemplate.execute(REGISTER_SCRIPT, List.of(tagKey), args);
+        if (size != null && size > pruneThreshold && Boolean.TRUE.equals(stringRedisTemplate.opsForValue()
+                .setIfAbsent(PRUNE_MARK_PREFIX + tag, "1", Duration.ofSeconds(pruneIntervalSeconds)))) {
+            prune(tagKey);
+        }
+    }
+
+    /**
+     * 登记这些key时标签应保留的时间：不短于它们的最长TTL，至少min-ttl
+     * 在Lua/pipeline中直接写标签Set的地方（商品索引变更、批量预热）也按它续期
+     */
+    public long tagTtlSeconds(String... keys) {
+        long ttl = minTagTtlSeconds;
+        for (String key : keys) {
+            ttl = Math.max(ttl, ttlPolicy.maxTtlSeconds(key));
+        }
+        return ttl;
+    }
+
+    /**
+     * 剔除标签中已经不存在（过期或被单独删除）的成员key
+     * @return 剔除的数量
+     */
+    public long prune(String tagKey) {
+        long pruned = 0;
+        List<String> batch = new ArrayList<>(BATCH_SIZE);
+        try (Cursor<String> cursor = stringRedisTemplate.opsForSet().scan(tagKey, ScanOptions.scanOptions().count(BATCH_SIZE).build())) {
+            while (cursor.hasNext()) {
+                batch.add(cursor.next());
+                if (batch.size() >= BATCH_SIZE) {
+                    pruned += removeMissing(tagKey, batch);
+                    batch = new ArrayList<>(BATCH_SIZE);
+                }
+            }
+        }
+        pruned += removeMissing(tagKey, batch);
+        if (pruned > 0) {
+            log.debug("标签{}剔除{}个已过期的key", tagKey, pruned);
+        }
+        return pruned;
+    }
+
+    /**
+     * 一次pipeline检查一批成员是否存在，再SREM不存在的
+     */
+    private long removeMissing(String tagKey, List<String> members) {
+        if (members.isEmpty()) return 0;
+        List<Object> exists = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (String member : members) {
+                connection.keyCommands().exists(member.getBytes(StandardCharsets.UTF_8));
+            }
+            return null;
+        });
+        List<String> missing = new ArrayList<>();
+        for (int i = 0; i < members.size(); i++) {
+            if (!Boolean.TRUE.equals(exists.get(i))) missing.add(members.get(i));
+        }
+        if (missing.isEmpty()) return 0;
+        Long removed = stringRedisTemplate.opsForSet().remove(tagKey, missing.toArray());
+        return removed == null ? 0 : removed;
+    }
+
+    /**
+     * 失效一个标签：SSCAN分批取出关联key并UNLINK，最后删除标签本身
+     * @return 删除的key数量
+     */
+    public long invalidateTag(String tag) {
+        String tagKey = tagKey(tag);
+        long removed = 0;
+        List<String> batch = new ArrayList<>(BATCH_SIZE);
+        try (Cursor<String> cursor = stringRedisTemplate.opsForSet().scan(tagKey, ScanOptions.scanOptions().count(BATCH_SIZE).build())) {
+            while (cursor.hasNext()) {
+                batch.add(cursor.next());
+                if (batch.size() >= BATCH_SIZE) {
+                    removed += unlinkKeys(batch);
+                    batch = new ArrayList<>(BATCH_SIZE);
+                }
+            }
+        }
+        removed += unlinkKeys(batch);
+        stringRedisTemplate.unlink(tagKey);
+        log.info("标签{}已失效，删除{}个key", tag, removed);
+        return removed;
+    }
+
+    /**
+     * 失效某一类型的全部标签（如全部分类），标签通过SCAN枚举
+     */
+    public long invalidateTagsOfType(String type) {
+        List<String> tags = new ArrayList<>();
+        scan(TAG_KEY_PREFIX + type + ":*", keys -> keys.forEach(key -> tags.add(key.substring(TAG_KEY_PREFIX.length()))));
+        long removed = 0;
+        for (String tag : tags) {
+            removed += invalidateTag(tag);
+        }
+        return removed;
+    }
+
+    /**
+     * 按模式删除key（用于没有登记标签的旧key），使用游标SCAN分批UNLINK
+     */
+    public long unlinkByPattern(String pattern) {
+        long[] removed = {0};
+        scan(pattern, keys -> removed[0] += unlinkKeys(keys));
+        return removed[0];
+    }
+
+    /**
+     * 分批UNLINK（后台释放内存，不阻塞Redis），并同步失效近端缓存
+     */
+    public long unlinkKeys(Collection<String> keys) {
+        if (keys == null || keys.isEmpty()) return 0;
+        long removed = 0;
+        List<String> all = new ArrayList<>(keys);
+        for (int from = 0; from < all.size(); from += BATCH_SIZE) {
+            List<String> batch = all.subList(from, Math.min(from + BATCH_SIZE, all.size()));
+            Long count = stringRedisTemplate.unlink(batch);
+            removed += count == null ? 0 : count;
+            nearCache.invalidateAll(batch);
+        }
+        return removed;
+    }
+
+    /**
+     * 游标SCAN，每凑满一批回调一次；集群模式下逐个主节点扫描
+     */
+    public void scan(String pattern, Consumer<List<String>> batchConsumer) {
+        ScanOptions options = ScanOptions.scanOptions().match(pattern).count(BATCH_SIZE).build();
+        stringRedisTemplate.execute((RedisCallback<Void>) connection -> {
+            if (connection instanceof RedisClusterConnection clusterConnection) {
+                for (RedisClusterNode node : clusterConnection.clusterGetNodes()) {
+                    if (node.isMaster()) {
+                        drain(clusterConnection.scan(node, options), batchConsumer);
+                    }
+                }
+            } else {
+                drain(connection.keyCommands().scan(options), batchConsumer);
+            }
+            return null;
+        });
+    }
+
+    private void drain(Cursor<byte[]> cursor, Consumer<List<String>> batchConsumer) {
+        List<String> batch = new ArrayList<>(BATCH_SIZE);
+        try (cursor) {
+            while (cursor.hasNext()) {
+                batch.add(new String(cursor.next(), StandardCharsets.UTF_8));
+                if (batch.size() >= BATCH_SIZE) {
+                    batchConsumer.accept(batch);
+                    batch = new ArrayList<>(BATCH_SIZE);
+                }
+            }
+        }
+        if (!batch.isEmpty()) batchConsumer.accept(batch);
+    }
+}
@@ -0,0 +1,123 @@
+package com.SE2025BackEnd_16.project.RedisUtils;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 缓存过期策略
+ * 按key族（商品详情、订单详情、留言、用户信息）配置基础TTL、随机抖动和软过期比例：
+ * 1. 抖动：实际TTL = 基础TTL × (1 + [0, jitter))，避免同一批预热的key同时过期击穿MySQL
+ * 2. 软过期：写入时记录 软过期时间 = 当前时间 + TTL × soft-ratio，
+ *    超过软过期但未真正过期的值继续返回，同时由 {@link CacheRefresher} 在后台重新加载
+ */
+@Slf4j
+@Component
+public class CacheTtlPolicy {
+
+    /**
+     * 单个key族的策略
+     * @param ttlSeconds 基础TTL（秒）
+     * @param jitter 抖动比例，0表示不抖动
+     * @param softRatio 软过期比例，0表示关闭软过期
+     */
+    public record Policy(long ttlSeconds, double jitter, double softRatio) {
+    }
+
+    @Value("${app.cache.ttl.item-detail.seconds:3600}")
+    private long itemDetailTtl;
+    @Value("${app.cache.ttl.item-detail.jitter:0.1}")
+    private double itemDetailJitter;
+    @Value("${app.cache.ttl.item-detail.soft-ratio:0}")
+    private double itemDetailSoftRatio;
+
+    @Value("${app.cache.ttl.order-detail.seconds:3600}")
+    private long orderDetailTtl;
+    @Value("${app.cache.ttl.order-detail.jitter:0.1}")
+    private double orderDetailJitter;
+    @Value("${app.cache.ttl.order-detail.soft-ratio:0}")
+    private double orderDetailSoftRatio;
+
+    @Value("${app.cache.ttl.message.seconds:3600}")
+    private long messageTtl;
+    @Value("${app.cache.ttl.message.jitter:0.1}")
+    private double messageJitter;
+    @Value("${app.cache.ttl.message.soft-ratio:0}")
+    private double messageSoftRatio;
+
+    @Value("${app.cache.ttl.user.seconds:86400}")
+    private long userTtl;
+    @Value("${app.cache.ttl.user.jitter:0.1}")
+    private double userJitter;
+
+    @Value("${app.cache.ttl.default.jitter:0.1}")
+    private double defaultJitter;
+
+    // key前缀 -> 策略
+    private final Map<String, Policy> policies = new LinkedHashMap<>();
+    private Policy defaultPolicy;
+
+    @PostConstruct
+    public void init() {
+        Policy itemPolicy = new Policy(itemDetailTtl, itemDetailJitter, itemDetailSoftRatio);
+        policies.put("item:detail:", itemPolicy);
+        // Hash模式的商品详情由HGETALL拼装，无法携带软过期时间，只使用TTL和抖动
+        policies.put("item:hash:", new Policy(itemDetailTtl, itemDetailJitter, 0));
+        policies.put("order:", new Policy(orderDetailTtl, orderDetailJitter, orderDetailSoftRatio));
+        policies.put("message:", new Policy(messageTtl, messageJitter, messageSoftRatio));
+        policies.put("user:info:", new Policy(userTtl, userJitter, 0));
+        defaultPolicy = new Policy(3600, defaultJitter, 0);
+        log.info("缓存过期策略: {}, 默认: {}", policies, defaultPolicy);
+    }
+
+    public Policy policyFor(String key) {
+        for (Map.Entry<String, Policy> entry : policies.entrySet()) {
+            if (key.startsWith(entry.getKey())) return entry.getValue();
+        }
+        return defaultPolicy;
+    }
+
+    /**
+     * 按key族的基础TTL计算实际TTL（带抖动）
+     */
+    public long ttlSeconds(String key) {
+        Policy policy = policyFor(key);
+        return jitter(policy.ttlSeconds(), policy.jitter());
+    }
+
+    /**
+     * 调用方指定TTL时，在其基础上按key族加抖动
+     */
+    public long ttlSeconds(String key, long timeout, TimeUnit unit) {
+        return jitter(unit.toSeconds(timeout), policyFor(key).jitter());
+    }
+
+    /**
+     * 该key族按策略写入时可能的最长TTL（基础TTL加满抖动）
+     */
+    public long maxTtlSeconds(String key) {
+        Policy policy = policyFor(key);
+        return (long) Math.ceil(policy.ttlSeconds() * (1 + Math.max(0, policy.jitter())));
+    }
+
+    /**
+     * 计算软过期时间戳（毫秒），该key族未开启软过期时返回0
+     */
+    public long softExpireAt(String key, long ttlSeconds) {
+        double softRatio = policyFor(key).softRatio();
+        if (softRatio <= 0 || softRatio >= 1) return 0;
+        return System.currentTimeMillis() + (long) (ttlSeconds * 1000 * softRatio);
+    }
+
+    private long jitter(long seconds, double ratio) {
+        if (seconds <= 0 || ratio <= 0) return seconds;
+        long extra = (long) (seconds * ratio * ThreadLocalRandom.current().nextDouble());
+        return seconds + extra;
+    }
+}
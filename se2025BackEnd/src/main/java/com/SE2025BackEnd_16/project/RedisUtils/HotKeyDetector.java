@@ -0,0 +1,236 @@
+package com.SE2025BackEnd_16.project.RedisUtils;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 客户端热点key探测与本地副本
+ * 对发往Redis的读取按采样率计数，每个统计窗口结束时估算每个key的QPS，超过阈值的key标记为热点并保持一段时间；
+ * 热点key的读取结果在本地保存一份短TTL副本（按 key + 读取参数区分，如ZSet的不同分页），
+ * 同一时间大量请求只有副本过期时的一次读取落到Redis分片上
+ * 本节点写入/删除这些key时立即清除副本，其它节点的副本依靠短TTL收敛
+ */
+@Slf4j
+@Component
+public class HotKeyDetector {
+
+    @Value("${app.cache.hot-key.enabled:true}")
+    private boolean enabled;
+
+    // 访问计数采样率（0~1）
+    @Value("${app.cache.hot-key.sample-rate:0.1}")
+    private double sampleRate;
+
+    // 估算QPS达到该值即视为热点
+    @Value("${app.cache.hot-key.threshold-qps:500}")
+    private long thresholdQps;
+
+    @Value("${app.cache.hot-key.window-ms:1000}")
+    private long windowMs;
+
+    // 热点标记保持时间，期间QPS回落也不立即取消，避免反复切换
+    @Value("${app.cache.hot-key.hold-ms:30000}")
+    private long holdMs;
+
+    // 本地副本过期时间
+    @Value("${app.cache.hot-key.replica-ttl-ms:1000}")
+    private long replicaTtlMs;
+
+    @Value("${app.cache.hot-key.replica-max-size:10000}")
+    private long replicaMaxSize;
+
+    // 单个窗口最多统计的key数，防止大量冷key撑大计数表
+    @Value("${app.cache.hot-key.max-tracked-keys:50000}")
+    private int maxTrackedKeys;
+
+    private volatile Map<String, LongAdder> window = new ConcurrentHashMap<>();
+    private final Map<String, HotKey> hotKeys = new ConcurrentHashMap<>();
+    private final AtomicLong replicaHits = new AtomicLong();
+    private final AtomicLong replicaLoads = new AtomicLong();
+
+    private Cache<ReplicaKey, Object> replica;
+
+    @PostConstruct
+    public void init() {
+        replica = Caffeine.newBuilder()
+            .maximumSize(replicaMaxSize)
+            .expireAfterWrite(Duration.ofMillis(replicaTtlMs))
+            .build();
+        log.info("热点key探测已初始化，enabled={}, sampleRate={}, thresholdQps={}, replicaTtlMs={}",
+            enabled, sampleRate, thresholdQps, replicaTtlMs);
+    }
+
+    /**
+     * 读取一个Redis key：记录访问，若是热点key则优先返回本地副本
+     * @param variant 同一个key的不同读取方式（如分页参数），副本按 key + variant 区分
+     * @param loader 实际从Redis读取，返回null时不保存副本
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T read(String key, String variant, Supplier<T> loader) {
+        if (!enabled) return loader.get();
+        record(key);
+        if (!hotKeys.containsKey(key)) return loader.get();
+        ReplicaKey replicaKey = new ReplicaKey(key, variant);
+        Object local = replica.getIfPresent(replicaKey);
+        if (local != null) {
+            replicaHits.incrementAndGet();
+            return (T) local;
+        }
+        T value = loader.get();
+        if (value != null) {
+            replica.put(replicaKey, value);
+            replicaLoads.incrementAndGet();
+        }
+        return value;
+    }
+
+    /**
+     * read 的异步版本，与同步读取共用同一份副本（variant需一致）
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Mono<T> readAsync(String key, String variant, Supplier<Mono<T>> loader) {
+        if (!enabled) return loader.get();
+        record(key);
+        if (!hotKeys.containsKey(key)) return loader.get();
+        ReplicaKey replicaKey = new ReplicaKey(key, variant);
+        Object local = replica.getIfPresent(replicaKey);
+        if (local != null) {
+            replicaHits.incrementAndGet();
+            return Mono.just((T) local);
+        }
+        return loader.get().doOnNext(value -> {
+            replica.put(replicaKey, value);
+            replicaLoads.incrementAndGet();
+        });
+    }
+
+    /**
+     * 采样记录一次访问
+     */
+    public void record(String key) {
+        if (sampleRate < 1 && ThreadLocalRandom.current().nextDouble() >= sampleRate) return;
+        Map<String, LongAdder> current = window;
+        LongAdder counter = current.get(key);
+        if (counter == null) {
+            if (current.size() >= maxTrackedKeys) return;
+            counter = current.computeIfAbsent(key, k -> new LongAdder());
+        }
+        counter.increment();
+    }
+
+    /**
+     * key被写入或删除时清除其本地副本
+     */
+    public void invalidate(String key) {
+        if (key != null && hotKeys.containsKey(key)) {
+            replica.asMap().keySet().removeIf(replicaKey -> replicaKey.key().equals(key));
+        }
+    }
+
+    public void invalidateAll(Collection<String> keys) {
+        if (hotKeys.isEmpty()) return;
+        for (String key : keys) {
+            invalidate(key);
+        }
+    }
+
+    public boolean isHot(String key) {
+        return hotKeys.containsKey(key);
+    }
+
+    /**
+     * 窗口结束：估算QPS，标记新的热点key，移除保持期已过的热点key
+     */
+    @Scheduled(fixedRateString = "${app.cache.hot-key.window-ms:1000}")
+    public void rotateWindow() {
+        if (!enabled) return;
+        Map<String, LongAdder> finished = window;
+        window = new ConcurrentHashMap<>();
+        long now = System.currentTimeMillis();
+        double scale = 1000.0 / windowMs / Math.max(sampleRate, 1e-6);
+        finished.forEach((key, counter) -> {
+            long qps = (long) (counter.sum() * scale);
+            if (qps < thresholdQps) return;
+            HotKey previous = hotKeys.get(key);
+            if (previous == null) {
+                log.info("发现热点key: {}, 估算QPS: {}", key, qps);
+            }
+            long since = previous != null ? previous.since() : now;
+            long peak = previous != null ? Math.max(previous.peakQps(), qps) : qps;
+            hotKeys.put(key, new HotKey(qps, peak, since, now + holdMs));
+        });
+        hotKeys.entrySet().removeIf(entry -> {
+            if (entry.getValue().expiresAt() > now) return false;
+            log.info("热点key已冷却: {}", entry.getKey());
+            replica.asMap().keySet().removeIf(replicaKey -> replicaKey.key().equals(entry.getKey()));
+            return true;
+        });
+    }
+
+    public int getHotKeyCount() {
+        return hotKeys.size();
+    }
+
+    public long getReplicaHitCount() {
+        return replicaHits.get();
+    }
+
+    public long getReplicaLoadCount() {
+        return replicaLoads.get();
+    }
+
+    /**
+     * 当前热点key（按最近一次估算QPS降序）及本地副本统计
+     */
+    public Map<String, Object> stats() {
+        List<Map<String, Object>> keys = new ArrayList<>();
+        hotKeys.entrySet().stream()
+            .sorted(Comparator.comparingLong((Map.Entry<String, HotKey> entry) -> entry.getValue().qps()).reversed())
+            .forEach(entry -> {
+                Map<String, Object> item = new LinkedHashMap<>();
+                item.put("key", entry.getKey());
+                item.put("qps", entry.getValue().qps());
+                item.put("peakQps", entry.getValue().peakQps());
+                item.put("since", Instant.ofEpochMilli(entry.getValue().since()));
+                item.put("expiresAt", Instant.ofEpochMilli(entry.getValue().expiresAt()));
+                keys.add(item);
+            });
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", enabled);
+        result.put("sampleRate", sampleRate);
+        result.put("thresholdQps", thresholdQps);
+        result.put("replicaTtlMs", replicaTtlMs);
+        result.put("trackedKeys", window.size());
+        result.put("replicaSize", replica.estimatedSize());
+        result.put("replicaHits", replicaHits.get());
+        result.put("replicaLoads", replicaLoads.get());
+        result.put("hotKeys", keys);
+        return result;
+    }
+
+    private record HotKey(long qps, long peakQps, long since, long expiresAt) {
+    }
+
+    private record ReplicaKey(String key, String variant) {
+    }
+}
@@ -0,0 +1,323 @@
+package com.SE2025BackEnd_16.project.RedisUtils;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisZSetCommands;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.connection.zset.Tuple;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scripting.support.ResourceScriptSource;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 商品组合筛选（分类 + 价格区间 + 新旧程度）
+ * 基于已有的可售/分类排序ZSet和按新旧程度分组的Set：
+ * 1. 价格区间：ZRANGESTORE ... BYSCORE 从 item:onsale:sorted:price 截取到临时ZSet（与EXPIRE在同一Lua脚本内执行）
+ * 2. 组合条件：ZINTERSTORE 基础排序ZSet（权重1，保留排序分数）∩ 价格临时集合（权重0）∩ 新旧程度Set（权重0）
+ * 3. 结果ZSet按筛选条件命名（item:filter:{条件}），短TTL缓存，同一组条件的翻页、正倒序共用；
+ *    结果为空时Redis不会保留空ZSet，改为写一个更短TTL的空结果标记（{结果key}:empty），避免每次请求都重新求交
+ * 4. 同一组条件只由抢到SETNX构建锁的请求构建，构建完成后释放锁，其余请求短暂等待结果出现，超时后自行构建；
+ *    新旧程度只接受白名单中的取值，防止任意参数生成大量结果key
+ * 分类筛选的价格区间和新旧程度都取自该分类自己的ZSet/Set，全局筛选取自全局索引；
+ * 集群模式下只有v2 key命名（同组key同一slot）才能服务端求交，v1命名时改为客户端求交后写入同样的结果ZSet
+ */
+@Slf4j
+@Component
+public class ItemFacetFilter {
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private RedisUtils redisUtils;
+
+    @Autowired
+    private RedisKeySchema keySchema;
+
+    // 筛选结果缓存时间（秒），商品上下架后最多延迟这么久反映到筛选结果
+    @Value("${app.cache.filter.ttl-seconds:30}")
+    private long ttlSeconds;
+
+    // 空结果标记的缓存时间（秒）
+    @Value("${app.cache.filter.empty-ttl-seconds:5}")
+    private long emptyTtlSeconds;
+
+    // 构建锁的过期时间（秒），以及未抢到锁时等待结果的最长时间（毫秒）
+    @Value("${app.cache.filter.build-lock-seconds:5}")
+    private long buildLockSeconds;
+
+    @Value("${app.cache.filter.build-wait-ms:200}")
+    private long buildWaitMs;
+
+    // 允许筛选的新旧程度
+    @Value("${app.cache.filter.conditions:全新,九五新,九成新,八成新,七成新}")
+    private Set<String> allowedConditions;
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private volatile Boolean clusterMode;
+
+    private static final DefaultRedisScript<Long> RANGE_STORE_SCRIPT = new DefaultRedisScript<>();
+
+    private static final DefaultRedisScript<Long> INTER_STORE_SCRIPT = new DefaultRedisScript<>();
+
+    private static final DefaultRedisScript<Long> UNLOCK_SCRIPT = new DefaultRedisScript<>();
+
+    static {
+        RANGE_STORE_SCRIPT.setScriptSource(new ResourceScriptSource(new ClassPathResource("lua/filter_range_store.lua")));
+        RANGE_STORE_SCRIPT.setResultType(Long.class);
+        INTER_STORE_SCRIPT.setScriptSource(new ResourceScriptSource(new ClassPathResource("lua/filter_inter_store.lua")));
+        INTER_STORE_SCRIPT.setResultType(Long.class);
+        UNLOCK_SCRIPT.setScriptSource(new ResourceScriptSource(new ClassPathResource("lua/filter_build_unlock.lua")));
+        UNLOCK_SCRIPT.setResultType(Long.class);
+    }
+
+    /**
+     * 筛选条件
+     * @param categoryId 分类ID，null表示全部分类
+     * @param minPrice 最低价格，可为null
+     * @param maxPrice 最高价格，可为null
+     * @param condition 新旧程度，可为null
+     * @param sortBy 排序字段（update_time/price/likes）
+     */
+    public record Query(Integer categoryId, BigDecimal minPrice, BigDecimal maxPrice, String condition, String sortBy) {
+
+        boolean hasPrice() {
+            return minPrice != null || maxPrice != null;
+        }
+
+        boolean hasCondition() {
+            return condition != null && !condition.isBlank();
+        }
+
+        String baseKey(RedisKeySchema schema) {
+            return categoryId != null
+                ? schema.categorySortedKey(categoryId, sortBy)
+                : schema.onSaleSortedKey(sortBy);
+        }
+
+        String priceKey(RedisKeySchema schema) {
+            return categoryId != null
+                ? schema.categorySortedKey(categoryId, "price")
+                : schema.onSaleSortedKey("price");
+        }
+
+        String conditionKey(RedisKeySchema schema) {
+            return categoryId != null
+                ? schema.categoryConditionSetKey(categoryId, condition)
+                : schema.conditionSetKey(condition);
+        }
+
+        double min() {
+            return minPrice != null ? minPrice.doubleValue() : Double.NEGATIVE_INFINITY;
+        }
+
+        double max() {
+            return maxPrice != null ? maxPrice.doubleValue() : Double.POSITIVE_INFINITY;
+        }
+    }
+
+    /**
+     * 分页获取筛选结果
+     */
+    public List<Integer> page(Query query, int page, int size, boolean desc) {
+        String key = resolve(query);
+        long start = (long) page * size;
+        long end = start + size - 1;
+        Set<String> ids = desc
+            ? stringRedisTemplate.opsForZSet().reverseRange(key, start, end)
+            : stringRedisTemplate.opsForZSet().range(key, start, end);
+        if (ids == null) return List.of();
+        return ids.stream().map(Integer::parseInt).collect(Collectors.toList());
+    }
+
+    /**
+     * 游标分页获取筛选结果
+     */
+    public ZSetCursor.Page<Integer> pageAfter(Query query, String cursor, int size, boolean desc) {
+        ZSetCursor.Page<String> page = redisUtils.zsetPageAfter(resolve(query), cursor, size, desc);
+        return new ZSetCursor.Page<>(page.content().stream().map(Integer::parseInt).collect(Collectors.toList()), page.nextCursor());
+    }
+
+    /**
+     * 筛选结果总数
+     */
+    public long count(Query query) {
+        Long count = stringRedisTemplate.opsForZSet().zCard(resolve(query));
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * 得到筛选结果所在的ZSet key：没有附加条件时直接使用基础排序ZSet，否则使用（必要时构建）缓存的结果集合；
+     * 结果为空时返回的key不存在，读取即为空
+     * @throws IllegalArgumentException 新旧程度不在白名单中
+     */
+    public String resolve(Query query) {
+        if (!query.hasPrice() && !query.hasCondition()) {
+            return query.baseKey(keySchema);
+        }
+        if (query.hasCondition() && !allowedConditions.contains(query.condition())) {
+            throw new IllegalArgumentException("不支持的新旧程度: " + query.condition());
+        }
+        String resultKey = resultKey(query);
+        if (isBuilt(resultKey)) {
+            return resultKey;
+        }
+        String lockKey = resultKey + ":building";
+        Boolean locked = stringRedisTemplate.opsForValue()
+            .setIfAbsent(lockKey, nodeId, buildLockSeconds, TimeUnit.SECONDS);
+        if (!Boolean.TRUE.equals(locked) && awaitBuilt(resultKey)) {
+            return resultKey;
+        }
+        try {
+            if (isClusterMode() && !keySchema.isHashTagged()) {
+                buildOnClient(query, resultKey);
+            } else {
+                buildOnServer(query, resultKey);
+            }
+        } finally {
+            if (Boolean.TRUE.equals(locked)) {
+                stringRedisTemplate.execute(UNLOCK_SCRIPT, List.of(lockKey), nodeId);
+            }
+        }
+        return resultKey;
+    }
+
+    private boolean isBuilt(String resultKey) {
+        return Boolean.TRUE.equals(stringRedisTemplate.hasKey(resultKey))
+            || Boolean.TRUE.equals(stringRedisTemplate.hasKey(emptyKey(resultKey)));
+    }
+
+    /**
+     * 其他请求正在构建：等待结果或空结果标记出现，超时返回false
+     */
+    private boolean awaitBuilt(String resultKey) {
+        long deadline = System.currentTimeMillis() + buildWaitMs;
+        while (System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            if (isBuilt(resultKey)) return true;
+        }
+        return false;
+    }
+
+    private String emptyKey(String resultKey) {
+        return resultKey + ":empty";
+    }
+
+    private void markEmpty(String resultKey) {
+        stringRedisTemplate.opsForValue().set(emptyKey(resultKey), "1", emptyTtlSeconds, TimeUnit.SECONDS);
+    }
+
+    private String resultKey(Query query) {
+        return keySchema.filterKey(query.categoryId(), query.sortBy())
+            + ":" + (query.minPrice() != null ? query.minPrice().stripTrailingZeros().toPlainString() : "")
+            + "-" + (query.maxPrice() != null ? query.maxPrice().stripTrailingZeros().toPlainString() : "")
+            + ":" + (query.hasCondition() ? query.condition() : "");
+    }
+
+    /**
+     * 服务端构建：ZRANGESTORE截取价格区间 + ZINTERSTORE求交，
+     * 每次存储都和EXPIRE在同一Lua脚本内执行，进程中途退出也不会留下永不过期的结果
+     */
+    private void buildOnServer(Query query, String resultKey) {
+        List<String> keys = new ArrayList<>();
+        keys.add(resultKey);
+        keys.add(query.baseKey(keySchema));
+        List<String> args = new ArrayList<>();
+        args.add(String.valueOf(ttlSeconds));
+        args.add("1");
+        if (query.hasPrice()) {
+            String priceKey = keySchema.filterKey(query.categoryId(), "price:" + query.min() + ":" + query.max());
+            if (!Boolean.TRUE.equals(stringRedisTemplate.hasKey(priceKey))) {
+                stringRedisTemplate.execute(RANGE_STORE_SCRIPT, List.of(query.priceKey(keySchema), priceKey),
+                    query.minPrice() != null ? query.minPrice().toPlainString() : "-inf",
+                    query.maxPrice() != null ? query.maxPrice().toPlainString() : "+inf",
+                    String.valueOf(ttlSeconds));
+            }
+            keys.add(priceKey);
+            args.add("0");
+        }
+        if (query.hasCondition()) {
+            keys.add(query.conditionKey(keySchema));
+            args.add("0");
+        }
+        Long stored = stringRedisTemplate.execute(INTER_STORE_SCRIPT, keys, args.toArray());
+        if (stored == null || stored == 0) {
+            markEmpty(resultKey);
+        }
+    }
+
+    /**
+     * 客户端构建（集群模式）：读取基础ZSet和各条件集合，在本地求交后一次pipeline写回结果ZSet
+     */
+    private void buildOnClient(Query query, String resultKey) {
+        Set<ZSetOperations.TypedTuple<String>> base = stringRedisTemplate.opsForZSet().rangeWithScores(query.baseKey(keySchema), 0, -1);
+        if (base == null || base.isEmpty()) {
+            markEmpty(resultKey);
+            return;
+        }
+        Set<String> allowed = null;
+        if (query.hasPrice()) {
+            Set<String> priceIds = stringRedisTemplate.opsForZSet().rangeByScore(query.priceKey(keySchema), query.min(), query.max());
+            allowed = priceIds != null ? new HashSet<>(priceIds) : new HashSet<>();
+        }
+        if (query.hasCondition()) {
+            Set<String> conditionIds = stringRedisTemplate.opsForSet().members(query.conditionKey(keySchema));
+            Set<String> conditionSet = conditionIds != null ? conditionIds : Set.of();
+            if (allowed == null) {
+                allowed = new HashSet<>(conditionSet);
+            } else {
+                allowed.retainAll(conditionSet);
+            }
+        }
+        Set<ZSetOperations.TypedTuple<String>> matched = new LinkedHashSet<>();
+        for (ZSetOperations.TypedTuple<String> tuple : base) {
+            if (allowed.contains(tuple.getValue())) matched.add(tuple);
+        }
+        if (matched.isEmpty()) {
+            markEmpty(resultKey);
+            return;
+        }
+        byte[] rawKey = resultKey.getBytes(StandardCharsets.UTF_8);
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            Set<Tuple> tuples = new LinkedHashSet<>();
+            for (ZSetOperations.TypedTuple<String> tuple : matched) {
+                tuples.add(Tuple.of(tuple.getValue().getBytes(StandardCharsets.UTF_8), tuple.getScore()));
+            }
+            connection.zSetCommands().zAdd(rawKey, tuples, RedisZSetCommands.ZAddArgs.empty());
+            connection.keyCommands().expire(rawKey, ttlSeconds);
+            return null;
+        });
+    }
+
+    private boolean isClusterMode() {
+        if (clusterMode == null) {
+            RedisConnectionFactory factory = stringRedisTemplate.getConnectionFactory();
+            clusterMode = factory instanceof LettuceConnectionFactory
+                && ((LettuceConnectionFactory) factory).isClusterAware();
+        }
+        return clusterMode;
+    }
+}
@@ -0,0 +1,94 @@
+package com.SE2025BackEnd_16.project.RedisUtils;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 商品索引变更操作序列
+ * 由RedisUtils通过Lua脚本一次性原子执行（见 resources/lua/item_index_transition.lua）
+ */
+public class ItemIndexTransition {
+
+    /**
+     * 单个操作：key + 操作类型 + 两个参数
+     */
+    public static class Op {
+        private final String key;
+        private final String type;
+        private final Object arg1;
+        private final String arg2;
+
+        Op(String key, String type, Object arg1, String arg2) {
+            this.key = key;
+            this.type = type;
+            this.arg1 = arg1;
+            this.arg2 = arg2;
+        }
+
+        public String getKey() { return key; }
+        public String getType() { return type; }
+        public Object getArg1() { return arg1; }
+        public String getArg2() { return arg2; }
+    }
+
+    private final List<Op> ops = new ArrayList<>();
+
+    public ItemIndexTransition zadd(String key, Object member, double score) {
+        ops.add(new Op(key, "ZADD", String.valueOf(member), BigDecimal.valueOf(score).toPlainString()));
+        return this;
+    }
+
+    public ItemIndexTransition zrem(String key, Object member) {
+        ops.add(new Op(key, "ZREM", String.valueOf(member), ""));
+        return this;
+    }
+
+    public ItemIndexTransition sadd(String key, Object member) {
+        ops.add(new Op(key, "SADD", String.valueOf(member), ""));
+        return this;
+    }
+
+    public ItemIndexTransition srem(String key, Object member) {
+        ops.add(new Op(key, "SREM", String.valueOf(member), ""));
+        return this;
+    }
+
+    /**
+     * @param value 已编码的缓存值（见CacheCodecRegistry）
+     * @param ttlSeconds 过期时间（秒），小于等于0表示不过期
+     */
+    public ItemIndexTransition set(String key, byte[] value, long ttlSeconds) {
+        ops.add(new Op(key, "SET", value, String.valueOf(ttlSeconds)));
+        return this;
+    }
+
+    /**
+     * 用JSON对象中的字段整体替换Hash（Hash模式的商品详情）
+     */
+    public ItemIndexTransition hsetAll(String key, String fieldsJson, long ttlSeconds) {
+        ops.add(new Op(key, "HSETALL", fieldsJson, String.valueOf(ttlSeconds)));
+        return this;
+    }
+
+    /**
+     * 登记到缓存标签，标签过期时间只延长不缩短
+     */
+    public ItemIndexTransition tag(String tagKey, String member, long ttlSeconds) {
+        ops.add(new Op(tagKey, "TAG", member, String.valueOf(ttlSeconds)));
+        return this;
+    }
+
+    public ItemIndexTransition del(String key) {
+        ops.add(new Op(key, "DEL", "", ""));
+        return this;
+    }
+
+    public List<Op> getOps() {
+        return ops;
+    }
+
+    public boolean isEmpty() {
+        return ops.isEmpty();
+    }
+}
@@ -0,0 +1,159 @@
+package com.SE2025BackEnd_16.project.RedisUtils;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * 商品详情、订单详情的进程内近端缓存（L1）
+ * 基于Caffeine（W-TinyLFU准入淘汰），缓存Redis中的原始字节，按大小计权重；
+ * 任何节点写入或删除这些key时通过Redis频道广播失效消息，保证多节点一致
+ */
+@Slf4j
+@Component
+public class NearCache implements MessageListener {
+
+    public static final String INVALIDATION_CHANNEL = "cache:invalidate";
+
+    // 只对这些前缀的key做近端缓存
+    private static final String[] NEAR_CACHE_PREFIXES = {"item:detail:", "item:hash:", "order:"};
+
+    @Value("${app.cache.near.enabled:true}")
+    private boolean enabled;
+
+    // 最大权重（按字节数计）
+    @Value("${app.cache.near.max-weight:33554432}")
+    private long maxWeight;
+
+    // 本地兜底过期时间，防止失效消息丢失导致长期脏读
+    @Value("${app.cache.near.expire-seconds:30}")
+    private long expireSeconds;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    private Cache<String, byte[]> cache;
+
+    @PostConstruct
+    public void init() {
+        cache = Caffeine.newBuilder()
+            .maximumWeight(maxWeight)
+            .weigher((String key, byte[] value) -> key.length() + value.length)
+            .expireAfterWrite(Duration.ofSeconds(expireSeconds))
+            .recordStats()
+            .build();
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(INVALIDATION_CHANNEL));
+        log.info("近端缓存已初始化，enabled={}, maxWeight={}, expireSeconds={}", enabled, maxWeight, expireSeconds);
+    }
+
+    /**
+     * 该key是否走近端缓存
+     */
+    public boolean accepts(String key) {
+        if (!enabled || key == null) return false;
+        for (String prefix : NEAR_CACHE_PREFIXES) {
+            if (key.startsWith(prefix)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * 读取缓存，本地未命中时通过loader从Redis加载（null不缓存）
+     */
+    public byte[] get(String key, Function<String, byte[]> loader) {
+        if (!accepts(key)) return loader.apply(key);
+        return cache.get(key, loader);
+    }
+
+    /**
+     * 只查本地，不回源
+     */
+    public byte[] getIfPresent(String key) {
+        return accepts(key) ? cache.getIfPresent(key) : null;
+    }
+
+    public void put(String key, byte[] value) {
+        if (accepts(key) && value != null) {
+            cache.put(key, value);
+        }
+    }
+
+    /**
+     * 本地失效并广播给其它节点
+     */
+    public void invalidate(String key) {
+        if (!accepts(key)) return;
+        cache.invalidate(key);
+        stringRedisTemplate.convertAndSend(INVALIDATION_CHANNEL, key);
+    }
+
+    /**
+     * 批量失效，合并为一条广播消息（key之间以换行分隔）
+     */
+    public void invalidateAll(Collection<String> keys) {
+        StringBuilder sb = new StringBuilder();
+        for (String key : keys) {
+            if (!accepts(key)) continue;
+            cache.invalidate(key);
+            if (sb.length() > 0) sb.append('\n');
+            sb.append(key);
+        }
+        if (sb.length() > 0) {
+            stringRedisTemplate.convertAndSend(INVALIDATION_CHANNEL, sb.toString());
+        }
+    }
+
+    /**
+     * 收到其它节点（或本节点）的失效广播
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        for (String key : body.split("\n")) {
+            if (!key.isEmpty()) cache.invalidate(key);
+        }
+    }
+
+    /**
+     * 近端缓存统计：命中率、淘汰数量等
+     */
+    public Map<String, Object> stats() {
+        CacheStats stats = cache.stats();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", enabled);
+        result.put("size", cache.estimatedSize());
+        result.put("maxWeight", maxWeight);
+        result.put("hitCount", stats.hitCount());
+        result.put("missCount", stats.missCount());
+        result.put("hitRate", stats.hitRate());
+        result.put("evictionCount", stats.evictionCount());
+        result.put("evictionWeight", stats.evictionWeight());
+        result.put("loadSuccessCount", stats.loadSuccessCount());
+        result.put("loadFailureCount", stats.loadFailureCount());
+        return result;
+    }
+
+    public Cache<String, byte[]> getCache() {
+        return cache;
+    }
+}
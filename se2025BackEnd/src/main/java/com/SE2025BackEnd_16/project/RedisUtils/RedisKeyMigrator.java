@@ -0,0 +1,248 @@
+package com.SE2025BackEnd_16.project.RedisUtils;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Redis key 在线迁移（v1原有命名 → v2 hash tag命名）
+ * 逐个key族SCAN旧key，按规则算出新key，每次复制都记下旧key内容的摘要（DUMP的MD5）：
+ *   - 新key不存在：DUMP + RESTORE（保留类型和剩余TTL）
+ *   - 新key已存在、旧key内容与上次迁移时相同：切换后应用只写新key，以新key为准，不再合并
+ *     （合并会把切换后已从新key删除的成员、已更新的分数带回来）
+ *   - 新key已存在、旧key在上次迁移后又被写过（或从未迁移过）：以旧key整体覆盖新key（RESTORE REPLACE），String/Hash同样处理
+ * 标签集合（tag:*）里登记的旧key名同时改写为新key名
+ * 推荐步骤：1. v1运行时执行一次迁移；2. 切换 app.cache.key-schema.version=2 并重启；
+ * 3. 再执行一次迁移（带deleteSource=true）补齐切换前写入旧key的数据并删除旧key；
+ * 4. 执行一次索引对账（覆盖的key可能丢掉切换后写入新key的少量变更）
+ * 组合筛选结果、分布式锁等短TTL的key不迁移，到期自然失效
+ */
+@Slf4j
+@Component
+public class RedisKeyMigrator {
+
+    // 旧key → 上次迁移时的内容摘要
+    private static final String DIGEST_KEY = "migration:key-digest";
+    private static final long DIGEST_TTL_DAYS = 30;
+    private static final RedisKeySchema FROM = RedisKeySchema.of(RedisKeySchema.LEGACY);
+    private static final RedisKeySchema TO = RedisKeySchema.of(RedisKeySchema.HASH_TAGGED);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private CacheTagRegistry cacheTagRegistry;
+
+    /**
+     * 迁移规则：scanPattern 用于SCAN，regex 精确匹配旧key（排除已经是新格式的key），target 生成新key
+     */
+    private record Rule(String scanPattern, Pattern regex, Function<Matcher, String> target) {
+    }
+
+    private final List<Rule> rules = List.of(
+        new Rule("item:detail:*", Pattern.compile("item:detail:(\\d+)"), m -> TO.itemDetailKey(Integer.parseInt(m.group(1)))),
+        new Rule("item:hash:*", Pattern.compile("item:hash:(\\d+)"), m -> TO.itemHashKey(Integer.parseInt(m.group(1)))),
+        new Rule("order:*", Pattern.compile("order:([^{}:]+)"), m -> TO.orderDetailKey(m.group(1))),
+        new Rule(FROM.itemIdsSetKey(), Pattern.compile(Pattern.quote(FROM.itemIdsSetKey())), m -> TO.itemIdsSetKey()),
+        new Rule(FROM.availableSetKey(), Pattern.compile(Pattern.quote(FROM.availableSetKey())), m -> TO.availableSetKey()),
+        new Rule(FROM.availableListKey(), Pattern.compile(Pattern.quote(FROM.availableListKey())), m -> TO.availableListKey()),
+        new Rule(FROM.allListKey(), Pattern.compile(Pattern.quote(FROM.allListKey())), m -> TO.allListKey()),
+        new Rule(FROM.allSetKey(), Pattern.compile(Pattern.quote(FROM.allSetKey())), m -> TO.allSetKey()),
+        new Rule("item:onsale:sorted:*", Pattern.compile("item:onsale:sorted:(\\w+)"), m -> TO.onSaleSortedKey(m.group(1))),
+        new Rule("item:all:sorted:*", Pattern.compile("item:all:sorted:(\\w+)"), m -> TO.allSortedKey(m.group(1))),
+        new Rule("item:condition:*", Pattern.compile("item:condition:(.+):set"), m -> TO.conditionSetKey(m.group(1))),
+        new Rule("category:*", Pattern.compile("category:(\\d+):items:set"), m -> TO.categorySetKey(Integer.parseInt(m.group(1)))),
+        new Rule("category:*", Pattern.compile("category:(\\d+):items:zset:(\\w+)"),
+            m -> TO.categorySortedKey(Integer.parseInt(m.group(1)), m.group(2))),
+        new Rule("category:*", Pattern.compile("category:(\\d+):condition:(.+):set"),
+            m -> TO.categoryConditionSetKey(Integer.parseInt(m.group(1)), m.group(2))),
+        new Rule("seller:*", Pattern.compile("seller:(\\d+):items:set"), m -> TO.sellerItemsKey(Integer.parseInt(m.group(1)))),
+        new Rule("seller:*", Pattern.compile("seller:(\\d+):orders:zset"), m -> TO.sellerOrdersKey(Integer.parseInt(m.group(1)))),
+        new Rule("buyer:*", Pattern.compile("buyer:(\\d+):orders:zset"), m -> TO.buyerOrdersKey(Integer.parseInt(m.group(1)))),
+        new Rule("user:*", Pattern.compile("user:(\\d+):purchased:page:(\\d+):size:(\\d+)"),
+            m -> TO.buyerPageKey(Integer.parseInt(m.group(1)), Integer.parseInt(m.group(2)), Integer.parseInt(m.group(3)))),
+        new Rule("user:*", Pattern.compile("user:(\\d+):seller:page:(\\d+):size:(\\d+)"),
+            m -> TO.sellerPageKey(Integer.parseInt(m.group(1)), Integer.parseInt(m.group(2)), Integer.parseInt(m.group(3))))
+    );
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private final AtomicLong scanned = new AtomicLong();
+    private final AtomicLong copied = new AtomicLong();
+    private final AtomicLong overwritten = new AtomicLong();
+    private final AtomicLong unchanged = new AtomicLong();
+    private final AtomicLong deleted = new AtomicLong();
+    private final AtomicLong tagsRewritten = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private volatile LocalDateTime startedAt;
+    private volatile LocalDateTime finishedAt;
+    private volatile String lastError;
+
+    /**
+     * 计算旧key对应的新key，不属于任何迁移规则时返回null
+     */
+    public String mapKey(String legacyKey) {
+        for (Rule rule : rules) {
+            Matcher matcher = rule.regex().matcher(legacyKey);
+            if (matcher.matches()) {
+                return rule.target().apply(matcher);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 后台启动一次迁移
+     * @param deleteSource 迁移后是否删除旧key
+     * @return 已有迁移在运行时返回false
+     */
+    public boolean start(boolean deleteSource) {
+        if (running.get()) return false;
+        Thread thread = new Thread(() -> run(deleteSource), "redis-key-migrator");
+        thread.setDaemon(true);
+        thread.start();
+        return true;
+    }
+
+    public boolean run(boolean deleteSource) {
+        if (!running.compareAndSet(false, true)) {
+            log.warn("Redis key迁移已在进行中，忽略本次请求");
+            return false;
+        }
+        resetStatus();
+        try {
+            Set<String> patterns = new LinkedHashSet<>();
+            rules.forEach(rule -> patterns.add(rule.scanPattern()));
+            for (String pattern : patterns) {
+                cacheTagRegistry.scan(pattern, keys -> keys.forEach(key -> migrateKey(key, deleteSource)));
+                log.info("Redis key迁移进度: {} 完成，已扫描: {}, 复制: {}, 覆盖: {}", pattern, scanned.get(), copied.get(), overwritten.get());
+            }
+            cacheTagRegistry.scan(CacheTagRegistry.TAG_KEY_PREFIX + "*", keys -> keys.forEach(key -> rewriteTag(key, deleteSource)));
+            log.info("Redis key迁移完成: {}", status());
+        } catch (Exception e) {
+            lastError = e.getMessage();
+            log.error("Redis key迁移失败: {}", e.getMessage(), e);
+        } finally {
+            finishedAt = LocalDateTime.now();
+            running.set(false);
+        }
+        return true;
+    }
+
+    private void migrateKey(String source, boolean deleteSource) {
+        String target = mapKey(source);
+        if (target == null || target.equals(source)) return;
+        scanned.incrementAndGet();
+        try {
+            byte[] dump = stringRedisTemplate.dump(source);
+            if (dump == null) return;
+            String digest = DigestUtils.md5DigestAsHex(dump);
+            Object recorded = stringRedisTemplate.opsForHash().get(DIGEST_KEY, source);
+            boolean targetExists = Boolean.TRUE.equals(stringRedisTemplate.hasKey(target));
+            if (targetExists && digest.equals(recorded)) {
+                unchanged.incrementAndGet();
+            } else if (restore(source, target, dump, targetExists)) {
+                (targetExists ? overwritten : copied).incrementAndGet();
+                stringRedisTemplate.opsForHash().put(DIGEST_KEY, source, digest);
+                stringRedisTemplate.expire(DIGEST_KEY, DIGEST_TTL_DAYS, TimeUnit.DAYS);
+            }
+            if (deleteSource) {
+                stringRedisTemplate.unlink(source);
+                stringRedisTemplate.opsForHash().delete(DIGEST_KEY, source);
+                deleted.incrementAndGet();
+            }
+        } catch (Exception e) {
+            failed.incrementAndGet();
+            lastError = source + ": " + e.getMessage();
+            log.warn("迁移key失败: {} -> {}, {}", source, target, e.getMessage());
+        }
+    }
+
+    /**
+     * RESTORE到新key，保留旧key的剩余TTL
+     * @param replace 新key已存在时整体覆盖
+     * @return 旧key已过期时返回false
+     */
+    private boolean restore(String source, String target, byte[] dump, boolean replace) {
+        Long ttlMs = stringRedisTemplate.getExpire(source, TimeUnit.MILLISECONDS);
+        if (ttlMs != null && ttlMs == -2) return false;
+        stringRedisTemplate.restore(target, dump, ttlMs != null && ttlMs > 0 ? ttlMs : 0, TimeUnit.MILLISECONDS, replace);
+        return true;
+    }
+
+    /**
+     * 标签集合中登记的旧key名改写为新key名
+     */
+    private void rewriteTag(String tagKey, boolean deleteSource) {
+        try {
+            Set<String> members = stringRedisTemplate.opsForSet().members(tagKey);
+            if (members == null || members.isEmpty()) return;
+            List<String> mapped = new ArrayList<>();
+            List<String> legacy = new ArrayList<>();
+            for (String member : members) {
+                String target = mapKey(member);
+                if (target != null && !target.equals(member)) {
+                    mapped.add(target);
+                    legacy.add(member);
+                }
+            }
+            if (mapped.isEmpty()) return;
+            stringRedisTemplate.opsForSet().add(tagKey, mapped.toArray(new String[0]));
+            if (deleteSource) {
+                stringRedisTemplate.opsForSet().remove(tagKey, legacy.toArray());
+            }
+            tagsRewritten.incrementAndGet();
+        } catch (Exception e) {
+            failed.incrementAndGet();
+            log.warn("改写标签失败: {}, {}", tagKey, e.getMessage());
+        }
+    }
+
+    private void resetStatus() {
+        scanned.set(0);
+        copied.set(0);
+        overwritten.set(0);
+        unchanged.set(0);
+        deleted.set(0);
+        tagsRewritten.set(0);
+        failed.set(0);
+        lastError = null;
+        finishedAt = null;
+        startedAt = LocalDateTime.now();
+    }
+
+    /**
+     * 迁移进度：scanned为需要迁移的旧key数，copied为直接复制的数量，overwritten为旧key在上次迁移后又被写过、
+     * 覆盖新key的数量，unchanged为上次迁移后未再变化、保留新key的数量
+     */
+    public Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("running", running.get());
+        status.put("scanned", scanned.get());
+        status.put("copied", copied.get());
+        status.put("overwritten", overwritten.get());
+        status.put("unchanged", unchanged.get());
+        status.put("deleted", deleted.get());
+        status.put("tagsRewritten", tagsRewritten.get());
+        status.put("failed", failed.get());
+        status.put("startedAt", startedAt);
+        status.put("finishedAt", finishedAt);
+        status.put("lastError", lastError);
+        return status;
+    }
+}
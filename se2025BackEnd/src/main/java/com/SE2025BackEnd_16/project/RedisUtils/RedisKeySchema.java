@@ -0,0 +1,232 @@
+package com.SE2025BackEnd_16.project.RedisUtils;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Redis key 命名规则（带版本）
+ * v1：原有命名，相关key分散在不同slot，集群模式下无法一起进Lua脚本/事务
+ * v2：用hash tag（key中第一对花括号里的内容）把需要一起操作的key放到同一个slot：
+ *   - {items}：全局商品索引（首页ZSet、可售集合、ID集合、新旧程度集合、全局筛选结果、列表缓存）
+ *   - {分类ID}：分类集合、分类ZSet、分类内新旧程度集合、分类筛选结果
+ *   - {用户ID}：卖家商品集合、买家/卖家订单ZSet、订单分页缓存
+ *   - {商品ID}/{订单ID}：详情缓存（前缀不变，TTL策略和编码按前缀匹配的规则不受影响）
+ * 所有key都通过这里生成，切换版本前用 RedisKeyMigrator 在线迁移旧数据
+ */
+@Component
+public class RedisKeySchema {
+
+    public static final int LEGACY = 1;
+    public static final int HASH_TAGGED = 2;
+
+    private static final String ITEMS_TAG = "{items}";
+
+    private static final Pattern CATEGORY_KEY = Pattern.compile("^category:\\{?(\\d+)\\}?:");
+
+    @Value("${app.cache.key-schema.version:1}")
+    private int version = LEGACY;
+
+    public RedisKeySchema() {
+    }
+
+    private RedisKeySchema(int version) {
+        this.version = version;
+    }
+
+    /**
+     * 指定版本的命名规则（迁移工具用来同时生成新旧key）
+     */
+    public static RedisKeySchema of(int version) {
+        if (version != LEGACY && version != HASH_TAGGED) {
+            throw new IllegalArgumentException("不支持的key版本: " + version);
+        }
+        return new RedisKeySchema(version);
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public boolean isHashTagged() {
+        return version >= HASH_TAGGED;
+    }
+
+    private String tag(Object id) {
+        return isHashTagged() ? "{" + id + "}" : String.valueOf(id);
+    }
+
+    // ==================== 详情 ====================
+
+    public String itemDetailKey(int itemId) {
+        return "item:detail:" + tag(itemId);
+    }
+
+    public String itemHashKey(int itemId) {
+        return "item:hash:" + tag(itemId);
+    }
+
+    public String itemVersionKey(int itemId) {
+        return "item:version:" + tag(itemId);
+    }
+
+    public String orderDetailKey(String orderId) {
+        return "order:" + tag(orderId);
+    }
+
+    // ==================== 全局商品索引 ====================
+
+    private String itemsPrefix() {
+        return isHashTagged() ? "item:" + ITEMS_TAG + ":" : "";
+    }
+
+    public String itemIdsSetKey() {
+        return isHashTagged() ? itemsPrefix() + "ids:set" : "items:ids:set";
+    }
+
+    public String availableSetKey() {
+        return isHashTagged() ? itemsPrefix() + "available:set" : "items:available:set";
+    }
+
+    public String availableListKey() {
+        return isHashTagged() ? itemsPrefix() + "available:list" : "items:available:list";
+    }
+
+    public String allListKey() {
+        return isHashTagged() ? itemsPrefix() + "all:list" : "items:all:list";
+    }
+
+    public String allSetKey() {
+        return isHashTagged() ? itemsPrefix() + "all:set" : "item:all:set";
+    }
+
+    public String onSaleSortedKey(String sortBy) {
+        return (isHashTagged() ? itemsPrefix() + "onsale:sorted:" : "item:onsale:sorted:") + sortBy;
+    }
+
+    public String allSortedKey(String sortBy) {
+        return (isHashTagged() ? itemsPrefix() + "all:sorted:" : "item:all:sorted:") + sortBy;
+    }
+
+    public String conditionSetKey(String condition) {
+        return (isHashTagged() ? itemsPrefix() + "condition:" : "item:condition:") + condition + ":set";
+    }
+
+    public String conditionSetPattern() {
+        return isHashTagged() ? itemsPrefix() + "condition:*" : "item:condition:*";
+    }
+
+    // ==================== 热度榜（ItemTrendingService 定时写入） ====================
+
+    public String trendingKey() {
+        return isHashTagged() ? itemsPrefix() + "trending" : "item:trending";
+    }
+
+    public String categoryTrendingKey(int categoryId) {
+        return "item:trending:category:" + tag(categoryId);
+    }
+
+    /**
+     * 单个实例写入的部分榜单（只含该实例分区内的商品）
+     * 只有v2命名时与所属榜单在同一个slot；v1命名在集群模式下跨slot，合并时不能用ZUNIONSTORE
+     * @param categoryId 分类ID，null表示全局榜
+     */
+    public String trendingPartKey(Integer categoryId, String instanceId) {
+        return (categoryId == null ? trendingKey() : categoryTrendingKey(categoryId)) + ":part:" + instanceId;
+    }
+
+    /**
+     * 正在写入热度榜的实例（ZSet，分数为最近一次写入时间）
+     */
+    public String trendingInstancesKey() {
+        return trendingKey() + ":instances";
+    }
+
+    /**
+     * 出现过上榜商品的分类
+     */
+    public String trendingCategoriesKey() {
+        return trendingKey() + ":categories";
+    }
+
+    // ==================== 分类索引 ====================
+
+    public String categorySetKey(int categoryId) {
+        return "category:" + tag(categoryId) + ":items:set";
+    }
+
+    public String categorySortedKey(int categoryId, String sortBy) {
+        return "category:" + tag(categoryId) + ":items:zset:" + sortBy;
+    }
+
+    public String categoryConditionSetKey(int categoryId, String condition) {
+        return "category:" + tag(categoryId) + ":condition:" + condition + ":set";
+    }
+
+    /**
+     * 所有分类的某个排序ZSet
+     */
+    public String categorySortedPattern(String sortBy) {
+        return "category:*:items:zset:" + sortBy;
+    }
+
+    /**
+     * 从分类key中解析分类ID（兼容带/不带hash tag两种写法），不是分类key时返回null
+     */
+    public static Integer parseCategoryId(String key) {
+        Matcher matcher = CATEGORY_KEY.matcher(key);
+        return matcher.find() ? Integer.valueOf(matcher.group(1)) : null;
+    }
+
+    /**
+     * 所有分类下的key（集合、ZSet、新旧程度集合、筛选结果）
+     */
+    public String categoryPattern() {
+        return "category:*";
+    }
+
+    // ==================== 组合筛选结果 ====================
+
+    /**
+     * 筛选结果/临时集合key：与其来源索引在同一个slot
+     * @param categoryId 分类ID，null表示全局
+     */
+    public String filterKey(Integer categoryId, String suffix) {
+        if (categoryId != null) {
+            return "category:" + tag(categoryId) + ":filter:" + suffix;
+        }
+        return (isHashTagged() ? itemsPrefix() + "filter:" : "item:filter:") + suffix;
+    }
+
+    public String globalFilterPattern() {
+        return isHashTagged() ? itemsPrefix() + "filter:*" : "item:filter:*";
+    }
+
+    // ==================== 用户维度 ====================
+
+    public String sellerItemsKey(int sellerId) {
+        return isHashTagged() ? "user:" + tag(sellerId) + ":items:set" : "seller:" + sellerId + ":items:set";
+    }
+
+    public String sellerItemsPattern() {
+        return isHashTagged() ? "user:*:items:set" : "seller:*:items:set";
+    }
+
+    public String buyerOrdersKey(int buyerId) {
+        return isHashTagged() ? "user:" + tag(buyerId) + ":orders:buyer:zset" : "buyer:" + buyerId + ":orders:zset";
+    }
+
+    public String sellerOrdersKey(int sellerId) {
+        return isHashTagged() ? "user:" + tag(sellerId) + ":orders:seller:zset" : "seller:" + sellerId + ":orders:zset";
+    }
+
+    public String buyerPageKey(int userId, int page, int size) {
+        return "user:" + tag(userId) + ":purchased:page:" + page + ":size:" + size;
+    }
+
+    public String sellerPageKey(int userId, int page, int size) {
+        return "user:" + tag(userId) + ":seller:page:" + page + ":size:" + size;
+    }
+}
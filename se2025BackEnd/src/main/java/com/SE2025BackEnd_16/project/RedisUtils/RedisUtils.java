@@ -1,21 +1,45 @@
 package com.SE2025BackEnd_16.project.RedisUtils;
 
 
+import com.SE2025BackEnd_16.project.RedisUtils.codec.CacheCodecRegistry;
 import com.SE2025BackEnd_16.project.repository.ItemRepository;
+import com.SE2025BackEnd_16.project.repository.MessageRepository;
+import com.SE2025BackEnd_16.project.repository.OrderRepository;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.SE2025BackEnd_16.project.dto.response.ItemResponseDTO;
 import com.SE2025BackEnd_16.project.entity.Item;
 import com.SE2025BackEnd_16.project.entity.Order;
 import com.SE2025BackEnd_16.project.dto.converter.ItemConverter;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.ClusterSlotHashUtil;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
 import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.serializer.GenericToStringSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.scripting.support.ResourceScriptSource;
 import org.springframework.stereotype.Component;
 import com.SE2025BackEnd_16.project.service.DistributedLockService;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import java.util.Set;
 import java.util.stream.Collectors;
 import com.SE2025BackEnd_16.project.entity.Message;
@@ -27,8 +51,15 @@ public class RedisUtils {
     @Autowired
     private StringRedisTemplate stringRedisTemplate;
 
+    // 二进制值模板（缓存值按key族编码，可能是JSON也可能是Smile/LZ4）
+    @Autowired
+    private RedisTemplate<String, byte[]> bytesRedisTemplate;
+
     @Autowired
     private ObjectMapper objectMapper;
+
+    @Autowired
+    private CacheCodecRegistry cacheCodecs;
     
     @Autowired
     private ItemConverter itemConverter;
@@ -36,33 +67,106 @@ public class RedisUtils {
     @Autowired
     private ItemRepository itemRepository;
 
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private MessageRepository messageRepository;
+
     @Autowired(required = false)
     private DistributedLockService distributedLockService;
 
-    // Redis Key 常量
-    private static final String ITEM_DETAIL_KEY_PREFIX = "item:detail:";
-    private static final String AVAILABLE_ITEMS_LIST_KEY = "items:available:list"; // String类型
-    private static final String AVAILABLE_ITEMS_SET_KEY = "items:available:set";   // Set类型
-    private static final String ALL_ITEMS_LIST_KEY = "items:all:list";             // String类型
-    private static final String ITEM_IDS_SET_KEY = "items:ids:set";                // Set类型
+    @Autowired
+    private NearCache nearCache;
+
+    @Autowired
+    private HotKeyDetector hotKeyDetector;
+
+    @Autowired
+    private CacheTagRegistry cacheTagRegistry;
+
+    @Autowired
+    private CacheTtlPolicy ttlPolicy;
+
+    @Autowired
+    private CacheRefresher cacheRefresher;
+
+    @Autowired
+    private CachePenetrationGuard penetrationGuard;
+
+    @Autowired
+    private CacheMetrics cacheMetrics;
+
+    // Redis Key 命名规则（v1原有命名 / v2集群hash tag命名），所有key都从这里生成
+    @Autowired
+    private RedisKeySchema keySchema;
+
+    // 商品详情是否以Hash存储（支持likes/isAvailable等字段级原子更新）
+    @Value("${app.cache.item.hash-mode:false}")
+    private boolean itemHashMode;
+
+    // 商品写版本号key的过期时间（丢失后以服务器时间为下限继续递增，只需覆盖消息积压的时长）
+    @Value("${app.item.version.ttl-seconds:604800}")
+    private long itemVersionTtlSeconds;
 
     /**
-     * 设置缓存
+     * 设置缓存（在指定TTL基础上按key族加随机抖动）
      */
     public void setCache(String key, Object value, long timeout, TimeUnit unit) {
+        writeCache(key, value, ttlPolicy.ttlSeconds(key, timeout, unit));
+    }
+
+    /**
+     * 设置缓存（使用key族配置的TTL策略）
+     */
+    public void setCache(String key, Object value) {
+        writeCache(key, value, ttlPolicy.ttlSeconds(key));
+    }
+
+    private void writeCache(String key, Object value, long ttlSeconds) {
         try {
-            String jsonValue = objectMapper.writeValueAsString(value);
-            stringRedisTemplate.opsForValue().set(key, jsonValue, 60, TimeUnit.MINUTES);
-        } catch (JsonProcessingException e) {
+            byte[] payload = cacheCodecs.encode(key, value, ttlPolicy.softExpireAt(key, ttlSeconds));
+            bytesRedisTemplate.opsForValue().set(key, payload, ttlSeconds, TimeUnit.SECONDS);
+            nearCache.invalidate(key);
+            hotKeyDetector.invalidate(key);
+            cacheMetrics.recordWrite(key, payload.length, ttlSeconds);
+        } catch (IOException e) {
             System.err.println("序列化缓存数据失败: " + e.getMessage());
         }
     }
 
     /**
-     * 获取缓存
+     * 获取缓存（统一转为JSON文本）
      */
     public String getCache(String key) {
-        return stringRedisTemplate.opsForValue().get(key);
+        try {
+            byte[] payload = getCacheBytes(key);
+            cacheMetrics.recordRead(key, payload);
+            return cacheCodecs.toJson(payload);
+        } catch (IOException e) {
+            System.err.println("解码缓存数据失败: " + key + ", " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 获取缓存原始字节（带版本头的二进制或旧JSON）
+     */
+    public byte[] getCacheBytes(String key) {
+        return hotKeyDetector.read(key, "get", () -> bytesRedisTemplate.opsForValue().get(key));
+    }
+
+    /**
+     * 获取缓存并解码为对象
+     */
+    private <T> T decodeCache(String key, byte[] payload, Class<T> type) {
+        if (payload == null) return null;
+        try {
+            return cacheCodecs.decode(payload, type);
+        } catch (IOException e) {
+            System.err.println("反序列化缓存数据失败: " + key + ", " + e.getMessage());
+            return null;
+        }
     }
 
 
@@ -71,6 +175,8 @@ public class RedisUtils {
      */
     public void deleteCache(String key) {
         stringRedisTemplate.delete(key);
+        nearCache.invalidate(key);
+        hotKeyDetector.invalidate(key);
     }
 
 
@@ -87,43 +193,194 @@ public class RedisUtils {
     public void expireCache(String key, long timeout, TimeUnit unit) {
         stringRedisTemplate.expire(key, timeout, unit);
     }
-    public String generateBuyerKey(Integer userId,int page, int size){
-        return "user:" + userId + ":purchased:page:" + page + ":size:" + size;
+
+    // ==================== 批量读写（MGET / Pipeline） ====================
+
+    private volatile Boolean clusterMode;
+
+    /**
+     * 当前连接是否为集群模式（集群下MGET跨slot会被拆成逐key请求，改走pipeline）
+     */
+    boolean isClusterMode() {
+        if (clusterMode == null) {
+            RedisConnectionFactory factory = stringRedisTemplate.getConnectionFactory();
+            clusterMode = factory instanceof LettuceConnectionFactory
+                && ((LettuceConnectionFactory) factory).isClusterAware();
+        }
+        return clusterMode;
     }
 
-    public String generateSellerKey(Integer userId, int page, int size){
-        return "user:" + userId + ":seller:page:" + page + ":size:" + size;
+    /**
+     * 批量获取缓存，返回结果与keys顺序一致，未命中的位置为null
+     * 单机模式一次MGET，集群模式一次pipeline
+     */
+    public List<byte[]> multiGetCache(List<String> keys) {
+        if (keys == null || keys.isEmpty()) return List.of();
+        // 先查近端缓存，只把本地未命中的key发给Redis
+        List<byte[]> result = new ArrayList<>(keys.size());
+        List<Integer> remoteIndexes = new ArrayList<>();
+        List<String> remoteKeys = new ArrayList<>();
+        for (int i = 0; i < keys.size(); i++) {
+            byte[] local = nearCache.getIfPresent(keys.get(i));
+            result.add(local);
+            if (local == null) {
+                remoteIndexes.add(i);
+                remoteKeys.add(keys.get(i));
+            }
+        }
+        if (remoteKeys.isEmpty()) return result;
+
+        List<?> values;
+        if (isClusterMode()) {
+            values = bytesRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (String key : remoteKeys) {
+                    connection.stringCommands().get(key.getBytes(StandardCharsets.UTF_8));
+                }
+                return null;
+            });
+        } else {
+            values = bytesRedisTemplate.opsForValue().multiGet(remoteKeys);
+        }
+        for (int i = 0; i < remoteKeys.size(); i++) {
+            Object value = values != null && i < values.size() ? values.get(i) : null;
+            if (value instanceof byte[] payload) {
+                result.set(remoteIndexes.get(i), payload);
+                nearCache.put(remoteKeys.get(i), payload);
+            }
+        }
+        return result;
     }
 
-    public String generateOrderDetail(String orderId){
-        return "order:" + orderId;
+    /**
+     * 批量设置缓存（一次pipeline写回）
+     */
+    public void multiSetCache(Map<String, ?> values, long timeout, TimeUnit unit) {
+        if (values == null || values.isEmpty()) return;
+        Map<String, byte[]> payloads = new LinkedHashMap<>();
+        Map<String, Long> ttls = new HashMap<>();
+        for (Map.Entry<String, ?> entry : values.entrySet()) {
+            String key = entry.getKey();
+            // 每个key单独抖动，避免同一批回填的key同时过期
+            long ttlSeconds = ttlPolicy.ttlSeconds(key, timeout, unit);
+            try {
+                payloads.put(key, cacheCodecs.encode(key, entry.getValue(), ttlPolicy.softExpireAt(key, ttlSeconds)));
+                ttls.put(key, ttlSeconds);
+                cacheMetrics.recordWrite(key, payloads.get(key).length, ttlSeconds);
+            } catch (IOException e) {
+                System.err.println("序列化缓存数据失败: " + e.getMessage());
+            }
+        }
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (Map.Entry<String, byte[]> entry : payloads.entrySet()) {
+                connection.stringCommands().setEx(entry.getKey().getBytes(StandardCharsets.UTF_8),
+                    ttls.get(entry.getKey()), entry.getValue());
+            }
+            return null;
+        });
+        nearCache.invalidateAll(values.keySet());
+        hotKeyDetector.invalidateAll(values.keySet());
     }
 
-    public String generateIteKey(int itemId){
-        return "item:" + itemId;
+    /**
+     * 批量读取实体缓存：一次MGET/pipeline读取，未命中的ID一次findAllById回源并pipeline回填
+     * @return 与ids顺序一致的结果，缓存和数据库都不存在的ID被跳过
+     */
+    private <K, T> List<T> multiGetEntities(List<K> ids, Function<K, String> keyFn, Class<T> type,
+                                            Function<List<K>, List<T>> loader, Function<T, K> idFn,
+                                            long timeout, TimeUnit unit) {
+        if (ids == null || ids.isEmpty()) return List.of();
+        List<String> keys = ids.stream().map(keyFn).collect(Collectors.toList());
+        boolean itemHash = itemHashMode && type == Item.class;
+        List<byte[]> values = itemHash ? multiGetItemHashes(keys) : multiGetCache(keys);
+        return resolveEntities(ids, keys, values, keyFn, type, loader, idFn, timeout, unit);
     }
 
-    // 批量删除买家分页缓存
-    public void deleteAllBuyerPageCache(int buyerId) {
-        // 假设分页最多100页，size为常用的5、10、20
-        int[] sizes = {5, 10, 20};
-        for (int size : sizes) {
-            for (int page = 0; page < 100; page++) {
-                String key = generateBuyerKey(buyerId, page, size);
-                deleteCache(key);
+    /**
+     * 解码批量读取到的原始字节：未命中的ID一次回源并回填，软过期的后台刷新
+     * @param values 与keys顺序一致的原始字节（同步MGET/pipeline或异步读取的结果）
+     */
+    @SuppressWarnings("unchecked")
+    private <K, T> List<T> resolveEntities(List<K> ids, List<String> keys, List<byte[]> values,
+                                           Function<K, String> keyFn, Class<T> type,
+                                           Function<List<K>, List<T>> loader, Function<T, K> idFn,
+                                           long timeout, TimeUnit unit) {
+        boolean itemHash = itemHashMode && type == Item.class;
+        Map<K, T> found = new HashMap<>();
+        List<K> misses = new ArrayList<>();
+        Map<String, K> stale = new LinkedHashMap<>();
+        for (int i = 0; i < ids.size(); i++) {
+            K id = ids.get(i);
+            cacheMetrics.recordRead(keys.get(i), values.get(i));
+            T entity = decodeCache(keys.get(i), values.get(i), type);
+            if (entity != null) {
+                found.put(id, entity);
+                if (cacheCodecs.isSoftExpired(values.get(i))) stale.put(keys.get(i), id);
+            } else if (!misses.contains(id)) {
+                misses.add(id);
             }
         }
-    }
 
-    // 批量删除卖家分页缓存
-    public void deleteAllSellerPageCache(int sellerId) {
-        int[] sizes = {5, 10, 20};
-        for (int size : sizes) {
-            for (int page = 0; page < 100; page++) {
-                String key = generateSellerKey(sellerId, page, size);
-                deleteCache(key);
+        if (!misses.isEmpty() && loader != null) {
+            Map<String, T> backfill = new LinkedHashMap<>();
+            for (T entity : cacheMetrics.timeLoad(keys.get(0), () -> loader.apply(misses))) {
+                K id = idFn.apply(entity);
+                found.put(id, entity);
+                backfill.put(keyFn.apply(id), entity);
             }
+            backfillEntities(backfill, itemHash, timeout, unit);
         }
+
+        // 软过期的值照常返回，后台批量回源刷新
+        if (!stale.isEmpty() && loader != null) {
+            cacheRefresher.refreshAll(stale.keySet(), claimed -> {
+                List<K> staleIds = claimed.stream().map(stale::get).collect(Collectors.toList());
+                Map<String, T> backfill = new LinkedHashMap<>();
+                for (T entity : loader.apply(staleIds)) {
+                    backfill.put(keyFn.apply(idFn.apply(entity)), entity);
+                }
+                if (type == Item.class) {
+                    // 缓存比库新的商品（事件尚未落库）不回写，否则会回滚刚写入的编辑/上下架
+                    Set<String> current = withoutNewerCache((Collection<Item>) backfill.values()).stream()
+                        .map(item -> generateItemDetailKey(item.getItemId())).collect(Collectors.toSet());
+                    backfill.keySet().retainAll(current);
+                }
+                backfillEntities(backfill, itemHash, timeout, unit);
+            });
+        }
+
+        List<T> result = new ArrayList<>(ids.size());
+        for (K id : ids) {
+            T entity = found.get(id);
+            if (entity != null) result.add(entity);
+        }
+        return result;
+    }
+    private <T> void backfillEntities(Map<String, T> backfill, boolean itemHash, long timeout, TimeUnit unit) {
+        if (backfill.isEmpty()) return;
+        if (itemHash) {
+            ItemIndexTransition transition = new ItemIndexTransition();
+            backfill.forEach((key, entity) -> transition.hsetAll(key, toItemHashJson((Item) entity),
+                ttlPolicy.ttlSeconds(key, timeout, unit)));
+            applyItemIndexTransition(transition);
+        } else {
+            multiSetCache(backfill, timeout, unit);
+        }
+    }
+
+    public String generateBuyerKey(Integer userId,int page, int size){
+        return keySchema.buyerPageKey(userId, page, size);
+    }
+
+    public String generateSellerKey(Integer userId, int page, int size){
+        return keySchema.sellerPageKey(userId, page, size);
+    }
+
+    public String generateOrderDetail(String orderId){
+        return keySchema.orderDetailKey(orderId);
+    }
+
+    public String generateIteKey(int itemId){
+        return "item:" + itemId;
     }
 
     // ==================== 商品缓存相关方法 ====================
@@ -132,7 +389,7 @@ public class RedisUtils {
      * 生成商品详情缓存Key
      */
     public String generateItemDetailKey(int itemId) {
-        return ITEM_DETAIL_KEY_PREFIX + itemId;
+        return itemHashMode ? keySchema.itemHashKey(itemId) : keySchema.itemDetailKey(itemId);
     }
 
     /**
@@ -141,20 +398,31 @@ public class RedisUtils {
      */
     public void cacheItemDetail(int itemId) {
         Item item = itemRepository.findByItemId(itemId);
-        String key = generateItemDetailKey(itemId);
-        setCache(key, item, 60, TimeUnit.MINUTES); // 缓存1小时
+        if (item == null) {
+            // 商品不存在或已删除：写空值缓存，不再抛异常触发预热消息重试
+            penetrationGuard.markItemMissing(itemId);
+            return;
+        }
+        cacheItemDetail(itemId, item);
         // 将商品ID添加到商品ID集合中（Set类型）
-        stringRedisTemplate.opsForSet().remove(ITEM_IDS_SET_KEY, String.valueOf(itemId));
-        stringRedisTemplate.opsForSet().add(ITEM_IDS_SET_KEY, String.valueOf(itemId));
+        stringRedisTemplate.opsForSet().remove(keySchema.itemIdsSetKey(), String.valueOf(itemId));
+        stringRedisTemplate.opsForSet().add(keySchema.itemIdsSetKey(), String.valueOf(itemId));
         // 如果商品可售，添加到可售商品ID集合
         if (item.getIsAvailable()) {
-            stringRedisTemplate.opsForSet().remove(AVAILABLE_ITEMS_SET_KEY, String.valueOf(itemId));
-            stringRedisTemplate.opsForSet().add(AVAILABLE_ITEMS_SET_KEY, String.valueOf(itemId));
+            stringRedisTemplate.opsForSet().remove(keySchema.availableSetKey(), String.valueOf(itemId));
+            stringRedisTemplate.opsForSet().add(keySchema.availableSetKey(), String.valueOf(itemId));
         } else {
-            stringRedisTemplate.opsForSet().remove(AVAILABLE_ITEMS_SET_KEY, String.valueOf(itemId));
+            stringRedisTemplate.opsForSet().remove(keySchema.availableSetKey(), String.valueOf(itemId));
         }
         // 将商品ID加入分类集合
-        stringRedisTemplate.opsForSet().add("category:" + item.getCategoryId() + ":items:set", String.valueOf(itemId));
+        stringRedisTemplate.opsForSet().add(keySchema.categorySetKey(item.getCategoryId()), String.valueOf(itemId));
+        if (item.getItemCondition() != null) {
+            if (Boolean.TRUE.equals(item.getIsAvailable())) {
+                addItemToConditionSet(item.getCategoryId(), item.getItemCondition(), itemId);
+            } else {
+                removeItemFromConditionSet(item.getCategoryId(), item.getItemCondition(), itemId);
+            }
+        }
         // 新增：将商品ID加入所有排序字段的分类ZSet
         double updateScore = item.getUpdateTime() != null
             ? item.getUpdateTime().atZone(java.time.ZoneId.systemDefault()).toEpochSecond()
@@ -166,8 +434,98 @@ public class RedisUtils {
         addItemToCategorySortedSet(item.getCategoryId(), itemId, likesScore, "likes");
     }
 
+    /**
+     * 缓存单个商品详情（使用商品详情的TTL策略）
+     */
     public void cacheItemDetail(int itemId, Item item) {
-        setCache(generateItemDetailKey(itemId), item, 60, TimeUnit.MINUTES);
+        String key = generateItemDetailKey(itemId);
+        if (!itemHashMode) {
+            setCache(key, item);
+            return;
+        }
+        applyItemIndexTransition(new ItemIndexTransition()
+            .hsetAll(key, toItemHashJson(item), ttlPolicy.ttlSeconds(key)));
+    }
+
+    /**
+     * 缓存单个商品详情（按配置写入JSON字符串或Hash）
+     */
+    public void cacheItemDetail(int itemId, Item item, long timeout, TimeUnit unit) {
+        String key = generateItemDetailKey(itemId);
+        if (!itemHashMode) {
+            setCache(key, item, timeout, unit);
+            return;
+        }
+        applyItemIndexTransition(new ItemIndexTransition()
+            .hsetAll(key, toItemHashJson(item), ttlPolicy.ttlSeconds(key, timeout, unit)));
+    }
+
+    /**
+     * 批量写入一批商品的全部索引（一次pipeline）：同一个key的成员合并为一条SADD/ZADD，
+     * 写入 items:ids:set、卖家集合，以及可售商品的可售集合、分类集合、分类ZSet、首页ZSet、新旧程度集合
+     * @param cacheDetails 是否同时写入商品详情缓存
+     * @return 写入的命令数
+     */
+    public int bulkIndexItems(List<Item> items, boolean cacheDetails) {
+        if (items == null || items.isEmpty()) return 0;
+        Map<String, Set<byte[]>> setMembers = new LinkedHashMap<>();
+        Map<String, Set<org.springframework.data.redis.connection.zset.Tuple>> zsetMembers = new LinkedHashMap<>();
+        Map<String, byte[]> details = new LinkedHashMap<>();
+        Set<Integer> categories = new java.util.HashSet<>();
+        for (Item item : items) {
+            byte[] id = String.valueOf(item.getItemId()).getBytes(StandardCharsets.UTF_8);
+            setMembers.computeIfAbsent(keySchema.itemIdsSetKey(), k -> new java.util.HashSet<>()).add(id);
+            setMembers.computeIfAbsent(keySchema.sellerItemsKey(item.getSellerId()), k -> new java.util.HashSet<>()).add(id);
+            if (Boolean.TRUE.equals(item.getIsAvailable())) {
+                int categoryId = item.getCategoryId();
+                categories.add(categoryId);
+                setMembers.computeIfAbsent(keySchema.availableSetKey(), k -> new java.util.HashSet<>()).add(id);
+                setMembers.computeIfAbsent(keySchema.categorySetKey(categoryId), k -> new java.util.HashSet<>()).add(id);
+                if (item.getItemCondition() != null) {
+                    setMembers.computeIfAbsent(keySchema.conditionSetKey(item.getItemCondition()), k -> new java.util.HashSet<>()).add(id);
+                    setMembers.computeIfAbsent(keySchema.categoryConditionSetKey(categoryId, item.getItemCondition()), k -> new java.util.HashSet<>()).add(id);
+                }
+                for (String sortBy : ITEM_SORT_FIELDS) {
+                    double score = itemScore(item, sortBy);
+                    zsetMembers.computeIfAbsent(keySchema.categorySortedKey(categoryId, sortBy), k -> new LinkedHashSet<>())
+                        .add(org.springframework.data.redis.connection.zset.Tuple.of(id, score));
+                    zsetMembers.computeIfAbsent(keySchema.onSaleSortedKey(sortBy), k -> new LinkedHashSet<>())
+                        .add(org.springframework.data.redis.connection.zset.Tuple.of(id, score));
+                }
+            }
+            if (cacheDetails && !itemHashMode) {
+                String key = generateItemDetailKey(item.getItemId());
+                try {
+                    details.put(key, cacheCodecs.encode(key, item, ttlPolicy.softExpireAt(key, ttlPolicy.ttlSeconds(key))));
+                } catch (IOException e) {
+                    System.err.println("序列化商品数据失败: " + item.getItemId() + ", " + e.getMessage());
+                }
+            }
+        }
+        // 分类索引登记到分类标签（标签随后续期）
+        Map<String, Long> tagTtls = new LinkedHashMap<>();
+        for (Integer categoryId : categories) {
+            String tagKey = CacheTagRegistry.tagKey(CacheTagRegistry.categoryTag(categoryId));
+            tagTtls.put(tagKey, cacheTagRegistry.tagTtlSeconds(keySchema.categorySetKey(categoryId)));
+            Set<byte[]> tagged = setMembers.computeIfAbsent(tagKey, k -> new java.util.HashSet<>());
+            tagged.add((keySchema.categorySetKey(categoryId)).getBytes(StandardCharsets.UTF_8));
+            for (String sortBy : ITEM_SORT_FIELDS) {
+                tagged.add((keySchema.categorySortedKey(categoryId, sortBy)).getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            setMembers.forEach((key, members) ->
+                connection.setCommands().sAdd(key.getBytes(StandardCharsets.UTF_8), members.toArray(new byte[0][])));
+            zsetMembers.forEach((key, tuples) ->
+                connection.zSetCommands().zAdd(key.getBytes(StandardCharsets.UTF_8), tuples,
+                    org.springframework.data.redis.connection.RedisZSetCommands.ZAddArgs.empty()));
+            details.forEach((key, payload) ->
+                connection.stringCommands().setEx(key.getBytes(StandardCharsets.UTF_8), ttlPolicy.ttlSeconds(key), payload));
+            tagTtls.forEach((key, ttl) -> connection.keyCommands().expire(key.getBytes(StandardCharsets.UTF_8), ttl));
+            return null;
+        });
+        if (!details.isEmpty()) nearCache.invalidateAll(details.keySet());
+        return setMembers.size() + zsetMembers.size() + details.size();
     }
 
     /**
@@ -178,9 +536,9 @@ public class RedisUtils {
         Set<Integer> allCategoryIds = allItems.stream().map(Item::getCategoryId).collect(Collectors.toSet());
         String[] sortFields = {"update_time", "price", "likes"};
         for (Integer categoryId : allCategoryIds) {
-            stringRedisTemplate.delete("category:" + categoryId + ":items:set");
+            stringRedisTemplate.delete(keySchema.categorySetKey(categoryId));
             for (String sortBy : sortFields) {
-                stringRedisTemplate.delete("category:" + categoryId + ":items:zset:" + sortBy);
+                stringRedisTemplate.delete(keySchema.categorySortedKey(categoryId, sortBy));
             }
         }
         // 分类分组
@@ -190,7 +548,7 @@ public class RedisUtils {
             List<Item> items = entry.getValue();
             for (Item item : items) {
                 if (Boolean.TRUE.equals(item.getIsAvailable())) { // 只缓存可售商品
-                    stringRedisTemplate.opsForSet().add("category:" + categoryId + ":items:set", String.valueOf(item.getItemId()));
+                    stringRedisTemplate.opsForSet().add(keySchema.categorySetKey(categoryId), String.valueOf(item.getItemId()));
                     double updateScore = item.getUpdateTime() != null
                         ? item.getUpdateTime().atZone(java.time.ZoneId.systemDefault()).toEpochSecond()
                         : System.currentTimeMillis() / 1000.0;
@@ -208,7 +566,7 @@ public class RedisUtils {
      * 获取某分类下所有商品ID
      */
     public Set<String> getCategoryItemIds(int categoryId) {
-        return stringRedisTemplate.opsForSet().members("category:" + categoryId + ":items:set");
+        return stringRedisTemplate.opsForSet().members(keySchema.categorySetKey(categoryId));
     }
 
     /**
@@ -216,14 +574,9 @@ public class RedisUtils {
      */
     public List<Item> getCategoryItems(int categoryId) {
         Set<String> ids = getCategoryItemIds(categoryId);
-        List<Item> result = new ArrayList<>();
-        if (ids != null) {
-            for (String id : ids) {
-                Item item = getItemDetail(Integer.parseInt(id));
-                if (item != null) result.add(item);
-            }
-        }
-        return result;
+        if (ids == null || ids.isEmpty()) return new ArrayList<>();
+        List<Integer> itemIds = ids.stream().map(Integer::parseInt).collect(Collectors.toList());
+        return multiGetEntities(itemIds, this::generateItemDetailKey, Item.class, null, Item::getItemId, 0, TimeUnit.MINUTES);
     }
 
     /**
@@ -231,15 +584,16 @@ public class RedisUtils {
      */
     public Item getItemDetail(int itemId) {
         String key = generateItemDetailKey(itemId);
-        String json = getCache(key);
-        if (json != null) {
-            try {
-                return objectMapper.readValue(json, Item.class);
-            } catch (JsonProcessingException e) {
-                System.err.println("反序列化商品详情失败: " + e.getMessage());
-            }
+        byte[] payload = nearCache.get(key, itemHashMode ? this::getItemHashPayload : this::getCacheBytes);
+        cacheMetrics.recordRead(key, payload);
+        if (cacheCodecs.isSoftExpired(payload)) {
+            cacheRefresher.refresh(key, () -> {
+                Item fresh = itemRepository.findByItemId(itemId);
+                // 缓存比库新（编辑/上下架事件尚未落库）时不回写，以免回滚
+                if (fresh != null && !withoutNewerCache(List.of(fresh)).isEmpty()) cacheItemDetail(itemId, fresh);
+            });
         }
-        return null;
+        return decodeCache(key, payload, Item.class);
     }
 
     /**
@@ -250,24 +604,24 @@ public class RedisUtils {
         deleteCache(key);
         
         // 从商品ID集合中移除
-        stringRedisTemplate.opsForSet().remove(ITEM_IDS_SET_KEY, String.valueOf(itemId));
+        stringRedisTemplate.opsForSet().remove(keySchema.itemIdsSetKey(), String.valueOf(itemId));
         
         // 从可售商品集合中移除
-        stringRedisTemplate.opsForSet().remove(AVAILABLE_ITEMS_SET_KEY, String.valueOf(itemId));
+        stringRedisTemplate.opsForSet().remove(keySchema.availableSetKey(), String.valueOf(itemId));
     }
 
     /**
      * 缓存可售商品列表（缓存Item实体对象列表，String类型）
      */
     public void cacheAvailableItems(List<Item> items) {
-        setCache(AVAILABLE_ITEMS_LIST_KEY, items, 60, TimeUnit.MINUTES);
+        setCache(keySchema.availableListKey(), items, 60, TimeUnit.MINUTES);
     }
 
     /**
      * 获取可售商品列表缓存（返回ItemResponseDTO列表，String类型）
      */
     public List<ItemResponseDTO> getAvailableItems() {
-        String json = getCache(AVAILABLE_ITEMS_LIST_KEY);
+        String json = getCache(keySchema.availableListKey());
         if (json != null) {
             try {
                 List<Item> items = objectMapper.readValue(json, 
@@ -286,14 +640,14 @@ public class RedisUtils {
      * 缓存所有商品列表（缓存Item实体对象列表，String类型）
      */
     public void cacheAllItems(List<Item> items) {
-        setCache(ALL_ITEMS_LIST_KEY, items, 60, TimeUnit.MINUTES);
+        setCache(keySchema.allListKey(), items, 60, TimeUnit.MINUTES);
     }
 
     /**
      * 获取所有商品列表缓存（返回ItemResponseDTO列表，String类型）
      */
     public List<ItemResponseDTO> getAllItems() {
-        String json = getCache(ALL_ITEMS_LIST_KEY);
+        String json = getCache(keySchema.allListKey());
         if (json != null) {
             try {
                 List<Item> items = objectMapper.readValue(json, 
@@ -317,6 +671,7 @@ public class RedisUtils {
                 .itemId(item.getItemId())
                 .title(item.getItemName())
                 .price(item.getPrice())
+                .categoryId(item.getCategoryId())
                 .categoryName("") // 缓存中没有分类名称，需要后续补充
                 .condition(item.getItemCondition())
                 .description(item.getDescription())
@@ -334,14 +689,14 @@ public class RedisUtils {
      * 获取所有商品ID集合（Set类型）
      */
     public Set<String> getAllItemIds() {
-        return stringRedisTemplate.opsForSet().members(ITEM_IDS_SET_KEY);
+        return stringRedisTemplate.opsForSet().members(keySchema.itemIdsSetKey());
     }
 
     /**
      * 获取可售商品ID集合（Set类型）
      */
     public Set<String> getAvailableItemIds() {
-        return stringRedisTemplate.opsForSet().members(AVAILABLE_ITEMS_SET_KEY);
+        return stringRedisTemplate.opsForSet().members(keySchema.availableSetKey());
     }
 
     /**
@@ -353,65 +708,31 @@ public class RedisUtils {
     public void clearAllItemCache() {
         try {
             System.out.println("开始清除所有商品相关缓存...");
-            
-            // 1. 删除所有商品详情缓存
-            Set<String> itemIds = getAllItemIds();
-            if (itemIds != null && !itemIds.isEmpty()) {
-                System.out.println("清除 " + itemIds.size() + " 个商品详情缓存");
-                for (String itemId : itemIds) {
-                    try {
-                        deleteItemDetail(Integer.parseInt(itemId));
-                    } catch (Exception e) {
-                        System.err.println("清除商品详情缓存失败，itemId: " + itemId + ", 错误: " + e.getMessage());
-                    }
-                }
-            }
-            
-            // 2. 删除基础集合缓存
-            deleteCache(AVAILABLE_ITEMS_SET_KEY);
-            deleteCache(ALL_ITEMS_LIST_KEY);
-            deleteCache(ITEM_IDS_SET_KEY);
-            deleteCache(AVAILABLE_ITEMS_LIST_KEY);
-            deleteCache("item:all:set");
-            
-            // 3. 删除可售商品排序集合
-            String[] sortFields = {"update_time", "price", "likes"};
-            for (String sortBy : sortFields) {
-                deleteCache("item:onsale:sorted:" + sortBy);
-                deleteCache("item:all:sorted:" + sortBy);
-            }
-            
-            // 4. 删除分类相关缓存
-            // 获取所有可能的分类ID（这里假设分类ID范围是1-10，实际应该从数据库获取）
-            for (int categoryId = 1; categoryId <= 10; categoryId++) {
-                deleteCache("category:" + categoryId + ":items:set");
-                for (String sortBy : sortFields) {
-                    deleteCache("category:" + categoryId + ":items:zset:" + sortBy);
-                }
-            }
-            
-            // 5. 删除商品留言相关缓存
-            if (itemIds != null) {
-                for (String itemId : itemIds) {
-                    deleteCache("item:" + itemId + ":comments:root");
-                }
-            }
-            
-            // 6. 删除卖家商品集合缓存
-            if (itemIds != null) {
-                for (String itemId : itemIds) {
-                    try {
-                        Item item = getItemDetail(Integer.parseInt(itemId));
-                        if (item != null && item.getSellerId() != null) {
-                            deleteCache("seller:" + item.getSellerId() + ":items:set");
-                        }
-                    } catch (Exception e) {
-                        // 忽略错误，继续处理下一个
-                    }
-                }
+            long removed = 0;
+
+            // 1. 按标签清除商品、分类、卖家关联的key
+            removed += cacheTagRegistry.invalidateTagsOfType(CacheTagRegistry.TYPE_ITEM);
+            removed += cacheTagRegistry.invalidateTagsOfType(CacheTagRegistry.TYPE_CATEGORY);
+
+            // 2. 未登记标签的旧key：SCAN兜底
+            removed += cacheTagRegistry.unlinkByPattern("item:detail:*");
+            removed += cacheTagRegistry.unlinkByPattern("item:hash:*");
+            removed += cacheTagRegistry.unlinkByPattern(keySchema.categoryPattern());
+            removed += cacheTagRegistry.unlinkByPattern(keySchema.sellerItemsPattern());
+            removed += cacheTagRegistry.unlinkByPattern("item:*:comments:root");
+            removed += cacheTagRegistry.unlinkByPattern(keySchema.conditionSetPattern());
+            removed += cacheTagRegistry.unlinkByPattern(keySchema.globalFilterPattern());
+
+            // 3. 删除基础集合和排序集合
+            List<String> globalKeys = new ArrayList<>(List.of(
+                keySchema.availableSetKey(), keySchema.allListKey(), keySchema.itemIdsSetKey(), keySchema.availableListKey(), keySchema.allSetKey()));
+            for (String sortBy : ITEM_SORT_FIELDS) {
+                globalKeys.add(keySchema.onSaleSortedKey(sortBy));
+                globalKeys.add(keySchema.allSortedKey(sortBy));
             }
-            
-            System.out.println("所有商品相关缓存清除完成");
+            removed += cacheTagRegistry.unlinkKeys(globalKeys);
+
+            System.out.println("所有商品相关缓存清除完成，共删除 " + removed + " 个key");
             
         } catch (Exception e) {
             System.err.println("清除商品相关缓存时出错: " + e.getMessage());
@@ -424,14 +745,14 @@ public class RedisUtils {
      */
     public void updateItemAvailability(int itemId, boolean isAvailable) {
         if (isAvailable) {
-            stringRedisTemplate.opsForSet().remove(AVAILABLE_ITEMS_SET_KEY, String.valueOf(itemId));
-            stringRedisTemplate.opsForSet().add(AVAILABLE_ITEMS_SET_KEY, String.valueOf(itemId));
+            stringRedisTemplate.opsForSet().remove(keySchema.availableSetKey(), String.valueOf(itemId));
+            stringRedisTemplate.opsForSet().add(keySchema.availableSetKey(), String.valueOf(itemId));
         } else {
-            stringRedisTemplate.opsForSet().remove(AVAILABLE_ITEMS_SET_KEY, String.valueOf(itemId));
+            stringRedisTemplate.opsForSet().remove(keySchema.availableSetKey(), String.valueOf(itemId));
         }
         // 清除相关列表缓存，强制重新加载
-        deleteCache(AVAILABLE_ITEMS_LIST_KEY);
-        deleteCache(ALL_ITEMS_LIST_KEY);
+        deleteCache(keySchema.availableListKey());
+        deleteCache(keySchema.allListKey());
     }
 
     // ==================== 商品留言缓存相关方法 ====================
@@ -447,14 +768,17 @@ public class RedisUtils {
      */
     public void addMessage(int itemId, Message message) {
         String messageKey = "message:" + message.getMessageId();
-        setCache(messageKey, message, 60, TimeUnit.MINUTES);
+        setCache(messageKey, message);
+        String setKey;
         if (message.getParentId() == null || message.getParentId() == 0) {
             // 根留言
-            stringRedisTemplate.opsForSet().add("item:" + itemId + ":comments:root", String.valueOf(message.getMessageId()));
+            setKey = "item:" + itemId + ":comments:root";
         } else {
             // 回复留言（只用parentId分组，不用itemId）
-            stringRedisTemplate.opsForSet().add("parent:" + message.getParentId() + ":replies", String.valueOf(message.getMessageId()));
+            setKey = "parent:" + message.getParentId() + ":replies";
         }
+        stringRedisTemplate.opsForSet().add(setKey, String.valueOf(message.getMessageId()));
+        cacheTagRegistry.register(CacheTagRegistry.itemTag(itemId), messageKey, setKey);
     }
 
     /**
@@ -498,18 +822,12 @@ public class RedisUtils {
      */
     private List<Message> getMessagesByIds(Set<String> ids) {
         if (ids == null || ids.isEmpty()) return List.of();
-        List<Message> result = new ArrayList<>();
-        for (String id : ids) {
-            String json = getCache("message:" + id);
-            if (json != null) {
-                try {
-                    result.add(objectMapper.readValue(json, Message.class));
-                } catch (Exception e) {
-                    // 可加日志
-                }
-            }
-        }
-        return result;
+        List<Integer> messageIds = ids.stream().map(Integer::parseInt).collect(Collectors.toList());
+        return multiGetEntities(messageIds, this::generateMessageKey, Message.class,
+            misses -> messageRepository.findAllById(misses).stream()
+                .filter(m -> !Boolean.TRUE.equals(m.getIsDeleted()))
+                .collect(Collectors.toList()),
+            Message::getMessageId, 60, TimeUnit.MINUTES);
     }
 
     /**
@@ -521,10 +839,14 @@ public class RedisUtils {
         if (messages == null) return;
         // 清空原有Set
         stringRedisTemplate.delete("item:" + itemId + ":comments:root");
+        List<String> taggedKeys = new ArrayList<>();
+        taggedKeys.add("item:" + itemId + ":comments:root");
         for (Message msg : messages) {
-            setCache("message:" + msg.getMessageId(), msg, 60, TimeUnit.MINUTES);
+            setCache("message:" + msg.getMessageId(), msg);
             stringRedisTemplate.opsForSet().add("item:" + itemId + ":comments:root", String.valueOf(msg.getMessageId()));
+            taggedKeys.add("message:" + msg.getMessageId());
         }
+        cacheTagRegistry.register(CacheTagRegistry.itemTag(itemId), taggedKeys.toArray(new String[0]));
     }
 
     /**
@@ -537,7 +859,7 @@ public class RedisUtils {
         // 清空原有Set
         stringRedisTemplate.delete("parent:" + parentId + ":replies");
         for (Message msg : replies) {
-            setCache("message:" + msg.getMessageId(), msg, 60, TimeUnit.MINUTES);
+            setCache("message:" + msg.getMessageId(), msg);
             stringRedisTemplate.opsForSet().add("parent:" + parentId + ":replies", String.valueOf(msg.getMessageId()));
         }
     }
@@ -546,29 +868,64 @@ public class RedisUtils {
 
     // 添加商品到分类Sorted Set，score为指定字段
     public void addItemToCategorySortedSet(int categoryId, int itemId, double score, String sortBy) {
-        String key = "category:" + categoryId + ":items:zset:" + sortBy;
+        String key = keySchema.categorySortedKey(categoryId, sortBy);
         stringRedisTemplate.opsForZSet().add(key, String.valueOf(itemId), score);
+        hotKeyDetector.invalidate(key);
     }
 
     // 获取分类下商品ID分页（按指定字段score排序）
     public List<Integer> getCategoryItemIdsSorted(int categoryId, int page, int size, boolean desc, String sortBy) {
-        String key = "category:" + categoryId + ":items:zset:" + sortBy;
+        String key = keySchema.categorySortedKey(categoryId, sortBy);
         long start = page * size;
         long end = start + size - 1;
-        Set<String> idSet = desc
-                ? stringRedisTemplate.opsForZSet().reverseRange(key, start, end)
-                : stringRedisTemplate.opsForZSet().range(key, start, end);
+        Set<String> idSet = zsetRange(key, start, end, desc);
         if (idSet == null) return List.of();
         return idSet.stream().map(Integer::parseInt).collect(Collectors.toList());
     }
 
+    // 游标分页获取分类商品ID（按指定排序字段）
+    public ZSetCursor.Page<Integer> getCategoryItemIdsAfter(int categoryId, String cursor, int size, boolean desc, String sortBy) {
+        return toIntegerPage(zsetPageAfter(keySchema.categorySortedKey(categoryId, sortBy), cursor, size, desc));
+    }
+
     // 获取分类商品总数（按指定排序字段）
     public long getCategoryItemCount(int categoryId, String sortBy) {
-        String key = "category:" + categoryId + ":items:zset:" + sortBy;
-        Long count = stringRedisTemplate.opsForZSet().zCard(key);
+        String key = keySchema.categorySortedKey(categoryId, sortBy);
+        Long count = hotKeyDetector.read(key, "zcard", () -> stringRedisTemplate.opsForZSet().zCard(key));
         return count == null ? 0 : count;
     }
 
+    // ==================== 游标（keyset）分页 ====================
+
+    /**
+     * 从游标位置之后读取一页：ZRANGEBYSCORE / ZREVRANGEBYSCORE 以游标score为边界加LIMIT，
+     * 边界与同分元素的处理见 ZSetCursor.readPage
+     * @throws IllegalArgumentException 游标格式错误或每页条数超出范围
+     */
+    public ZSetCursor.Page<String> zsetPageAfter(String key, String cursor, int size, boolean desc) {
+        ZSetCursor.checkSize(size);
+        return hotKeyDetector.read(key, "after:" + cursor + ":" + size + ":" + desc,
+            () -> ZSetCursor.readPage(cursor, size, desc, (bound, offset, count) -> {
+                Set<ZSetOperations.TypedTuple<String>> batch = desc
+                    ? stringRedisTemplate.opsForZSet().reverseRangeByScoreWithScores(key, Double.NEGATIVE_INFINITY, bound, offset, count)
+                    : stringRedisTemplate.opsForZSet().rangeByScoreWithScores(key, bound, Double.POSITIVE_INFINITY, offset, count);
+                return batch == null ? null : new ArrayList<>(batch);
+            }));
+    }
+
+    /**
+     * 按排名读取ZSet一段成员（热点key走本地副本）
+     */
+    private Set<String> zsetRange(String key, long start, long end, boolean desc) {
+        return hotKeyDetector.read(key, "range:" + start + ":" + end + ":" + desc, () -> desc
+                ? stringRedisTemplate.opsForZSet().reverseRange(key, start, end)
+                : stringRedisTemplate.opsForZSet().range(key, start, end));
+    }
+
+    private ZSetCursor.Page<Integer> toIntegerPage(ZSetCursor.Page<String> page) {
+        return new ZSetCursor.Page<>(page.content().stream().map(Integer::parseInt).collect(Collectors.toList()), page.nextCursor());
+    }
+
     // ==================== 全局商品Sorted Set分页相关方法 ====================
 
     /**
@@ -580,7 +937,7 @@ public class RedisUtils {
      * @return 商品ID列表
      */
     public List<Integer> getAllItemIdsSorted(int page, int size, boolean desc, String sortBy) {
-        String key = "item:all:sorted:" + sortBy;
+        String key = keySchema.allSortedKey(sortBy);
         long start = page * size;
         long end = start + size - 1;
         Set<String> idSet = desc
@@ -595,60 +952,71 @@ public class RedisUtils {
      * 全部商品集合（Set）
      */
     public void addItemToAllSet(int itemId) {
-        stringRedisTemplate.opsForSet().add("item:all:set", String.valueOf(itemId));
+        stringRedisTemplate.opsForSet().add(keySchema.allSetKey(), String.valueOf(itemId));
     }
     /**
      * 可售商品Sorted Set（按指定字段排序）
      */
     public void addItemToOnSaleSortedSet(int itemId, double score, String sortBy) {
-        String key = "item:onsale:sorted:" + sortBy;
+        String key = keySchema.onSaleSortedKey(sortBy);
         stringRedisTemplate.opsForZSet().add(key, String.valueOf(itemId), score);
+        hotKeyDetector.invalidate(key);
     }
     /**
      * 分页获取可售商品ID（按指定字段排序）
      */
     public List<Integer> getOnSaleItemIdsSorted(int page, int size, boolean desc, String sortBy) {
-        String key = "item:onsale:sorted:" + sortBy;
+        String key = keySchema.onSaleSortedKey(sortBy);
         long start = page * size;
         long end = start + size - 1;
-        Set<String> idSet = desc
-                ? stringRedisTemplate.opsForZSet().reverseRange(key, start, end)
-                : stringRedisTemplate.opsForZSet().range(key, start, end);
+        Set<String> idSet = zsetRange(key, start, end, desc);
         if (idSet == null) return List.of();
         return idSet.stream().map(Integer::parseInt).collect(Collectors.toList());
     }
+    /**
+     * 游标分页获取可售商品ID（按指定字段排序）
+     * @param cursor 上一页返回的游标，第一页传null或空串
+     */
+    public ZSetCursor.Page<Integer> getOnSaleItemIdsAfter(String cursor, int size, boolean desc, String sortBy) {
+        return toIntegerPage(zsetPageAfter(keySchema.onSaleSortedKey(sortBy), cursor, size, desc));
+    }
+
+    /**
+     * 加入按新旧程度分组的可售商品集合（全局集合 + 分类内集合）
+     */
+    public void addItemToConditionSet(int categoryId, String condition, int itemId) {
+        stringRedisTemplate.opsForSet().add(keySchema.conditionSetKey(condition), String.valueOf(itemId));
+        stringRedisTemplate.opsForSet().add(keySchema.categoryConditionSetKey(categoryId, condition), String.valueOf(itemId));
+    }
+
+    public void removeItemFromConditionSet(int categoryId, String condition, int itemId) {
+        stringRedisTemplate.opsForSet().remove(keySchema.conditionSetKey(condition), String.valueOf(itemId));
+        stringRedisTemplate.opsForSet().remove(keySchema.categoryConditionSetKey(categoryId, condition), String.valueOf(itemId));
+    }
+
     /**
      * 获取可售商品总数
      */
     public long getOnSaleItemCount(String sortBy) {
-        String key = "item:onsale:sorted:" + sortBy;
-        Long count = stringRedisTemplate.opsForZSet().zCard(key);
+        String key = keySchema.onSaleSortedKey(sortBy);
+        Long count = hotKeyDetector.read(key, "zcard", () -> stringRedisTemplate.opsForZSet().zCard(key));
         return count == null ? 0 : count;
     }
     /**
      * 批量获取商品详情（只返回可售商品）
      */
     public List<Item> getItemsByIds(List<Integer> itemIds) {
-        List<Item> result = new ArrayList<>();
-        for (Integer id : itemIds) {
-            Item item = getItemDetail(id);
-            if (item == null) {
-                item = itemRepository.findByItemId(id);
-                if (item != null) {
-                    setCache(generateItemDetailKey(id), item, 5, TimeUnit.MINUTES);
-                }
-            }
-            // 只返回可售商品
-            if (item != null && Boolean.TRUE.equals(item.getIsAvailable())) result.add(item);
-        }
-        return result;
+        // 只返回可售商品
+        return getAllItemsByIds(itemIds).stream()
+            .filter(item -> Boolean.TRUE.equals(item.getIsAvailable()))
+            .collect(Collectors.toList());
     }
 
     /**
      * 获取全局Sorted Set商品总数
      */
     public long getAllItemCount(String sortBy) {
-        String key = "item:all:sorted:" + sortBy;
+        String key = keySchema.allSortedKey(sortBy);
         Long count = stringRedisTemplate.opsForZSet().zCard(key);
         return count == null ? 0 : count;
     }
@@ -657,7 +1025,7 @@ public class RedisUtils {
      * 将商品ID加入全局Sorted Set，score为指定字段
      */
     public void addItemToAllSortedSet(int itemId, double score, String sortBy) {
-        String key = "item:all:sorted:" + sortBy;
+        String key = keySchema.allSortedKey(sortBy);
         stringRedisTemplate.opsForZSet().add(key, String.valueOf(itemId), score);
     }
 
@@ -665,85 +1033,116 @@ public class RedisUtils {
      * 从全局可售Sorted Set移除商品
      */
     public void removeItemFromOnSaleSortedSet(int itemId, String sortBy) {
-        String key = "item:onsale:sorted:" + sortBy;
+        String key = keySchema.onSaleSortedKey(sortBy);
         stringRedisTemplate.opsForZSet().remove(key, String.valueOf(itemId));
+        hotKeyDetector.invalidate(key);
     }
     /**
      * 从分类可售Sorted Set移除商品
      */
     public void removeItemFromCategorySortedSet(int categoryId, int itemId, String sortBy) {
-        String key = "category:" + categoryId + ":items:zset:" + sortBy;
+        String key = keySchema.categorySortedKey(categoryId, sortBy);
         stringRedisTemplate.opsForZSet().remove(key, String.valueOf(itemId));
+        hotKeyDetector.invalidate(key);
     }
 
     public void addItemToCategorySet(int categoryId, int itemId) {
-        stringRedisTemplate.opsForSet().add("category:" + categoryId + ":items:set", String.valueOf(itemId));
+        stringRedisTemplate.opsForSet().add(keySchema.categorySetKey(categoryId), String.valueOf(itemId));
     }
 
     public void removeItemFromCategorySet(int categoryId, int itemId) {
-        stringRedisTemplate.opsForSet().remove("category:" + categoryId + ":items:set", String.valueOf(itemId));
+        stringRedisTemplate.opsForSet().remove(keySchema.categorySetKey(categoryId), String.valueOf(itemId));
     }
 
     public void migrateItemCacheAndSets(int tempId, int realId, Item realItem) {
-        // 1. 迁移缓存
-        String tempKey = generateItemDetailKey(tempId);
-        String realKey = generateItemDetailKey(realId);
-        String json = getCache(tempKey);
-        if (json != null) {
-            setCache(realKey, realItem, 5, java.util.concurrent.TimeUnit.MINUTES);
-            deleteCache(tempKey);
-        }
-        // 2. 替换所有集合中的ID
-        // 分类集合
-        stringRedisTemplate.opsForSet().remove("category:" + realItem.getCategoryId() + ":items:set", String.valueOf(tempId));
-        stringRedisTemplate.opsForSet().add("category:" + realItem.getCategoryId() + ":items:set", String.valueOf(realId));
-        // 卖家集合
-        stringRedisTemplate.opsForSet().remove("seller:" + realItem.getSellerId() + ":items:set", String.valueOf(tempId));
-        stringRedisTemplate.opsForSet().add("seller:" + realItem.getSellerId() + ":items:set", String.valueOf(realId));
-        // 可售集合（如果商品可售）
-        if (Boolean.TRUE.equals(realItem.getIsAvailable())) {
-            stringRedisTemplate.opsForSet().add("items:available:set", String.valueOf(realId));
-        }
-        // 首页可售商品Sorted Set & 分类ZSet
-        if (Boolean.TRUE.equals(realItem.getIsAvailable())) {
-            double updateScore = realItem.getUpdateTime() != null ? realItem.getUpdateTime().atZone(java.time.ZoneId.systemDefault()).toEpochSecond() : System.currentTimeMillis() / 1000.0;
-            double priceScore = realItem.getPrice() != null ? realItem.getPrice().doubleValue() : 0.0;
-            double likesScore = realItem.getLikes() != null ? realItem.getLikes() : 0.0;
-            // 先移除所有临时ID
-            removeItemFromCategorySortedSet(realItem.getCategoryId(), tempId, "update_time");
-            removeItemFromCategorySortedSet(realItem.getCategoryId(), tempId, "price");
-            removeItemFromCategorySortedSet(realItem.getCategoryId(), tempId, "likes");
-            removeItemFromOnSaleSortedSet(tempId, "update_time");
-            removeItemFromOnSaleSortedSet(tempId, "price");
-            removeItemFromOnSaleSortedSet(tempId, "likes");
-            // 再加入真实ID
-            addItemToCategorySortedSet(realItem.getCategoryId(), realId, updateScore, "update_time");
-            addItemToCategorySortedSet(realItem.getCategoryId(), realId, priceScore, "price");
-            addItemToCategorySortedSet(realItem.getCategoryId(), realId, likesScore, "likes");
-            addItemToOnSaleSortedSet(realId, updateScore, "update_time");
-            addItemToOnSaleSortedSet(realId, priceScore, "price");
-            addItemToOnSaleSortedSet(realId, likesScore, "likes");
-        }
-        // 其它集合可按需补充
+        ItemIndexTransition transition = new ItemIndexTransition();
+        // 1. 移除临时ID的详情缓存和所有集合成员
+        transition.del(generateItemDetailKey(tempId));
+        transition.srem(keySchema.itemIdsSetKey(), tempId);
+        transition.srem(keySchema.availableSetKey(), tempId);
+        transition.srem(keySchema.categorySetKey(realItem.getCategoryId()), tempId);
+        transition.srem(keySchema.sellerItemsKey(realItem.getSellerId()), tempId);
+        for (String sortBy : ITEM_SORT_FIELDS) {
+            transition.zrem(keySchema.categorySortedKey(realItem.getCategoryId(), sortBy), tempId);
+            transition.zrem(keySchema.onSaleSortedKey(sortBy), tempId);
+        }
+        if (realItem.getItemCondition() != null) {
+            transition.srem(keySchema.conditionSetKey(realItem.getItemCondition()), tempId);
+            transition.srem(keySchema.categoryConditionSetKey(realItem.getCategoryId(), realItem.getItemCondition()), tempId);
+        }
+        // 2. 以真实ID写入详情和索引
+        transition.sadd(keySchema.sellerItemsKey(realItem.getSellerId()), realId);
+        appendItemStateOps(transition, realId, realItem, null, null, 5 * 60);
+        applyItemIndexTransition(transition);
+    }
+
+    /**
+     * 把商品从所有索引中移除（详情缓存、ID集合、可售集合、新旧程度集合、首页/分类ZSet、卖家集合）
+     * 用于对账时清理孤立的临时ID和已删除但仍在索引中的商品
+     * @param item 商品的已知信息（数据库或缓存），用来定位分类/卖家/新旧程度相关的key；为null时只清理全局索引
+     */
+    public void removeItemFromIndexes(int itemId, Item item) {
+        ItemIndexTransition transition = new ItemIndexTransition();
+        transition.del(generateItemDetailKey(itemId));
+        transition.srem(keySchema.itemIdsSetKey(), itemId);
+        transition.srem(keySchema.availableSetKey(), itemId);
+        for (String sortBy : ITEM_SORT_FIELDS) {
+            transition.zrem(keySchema.onSaleSortedKey(sortBy), itemId);
+        }
+        if (item != null) {
+            if (item.getCategoryId() != null) {
+                appendCategoryRemoval(transition, item.getCategoryId(), itemId, item.getItemCondition());
+            }
+            if (item.getSellerId() != null) {
+                transition.srem(keySchema.sellerItemsKey(item.getSellerId()), itemId);
+            }
+            if (item.getItemCondition() != null) {
+                transition.srem(keySchema.conditionSetKey(item.getItemCondition()), itemId);
+            }
+        }
+        transition.del(keySchema.availableListKey());
+        transition.del(keySchema.allListKey());
+        applyItemIndexTransition(transition);
+    }
+
+    /**
+     * 把商品从某个分类的集合、ZSet和新旧程度集合中移除（对账时清理分类不一致的残留）
+     */
+    public void removeItemFromCategoryIndexes(int categoryId, int itemId, String condition) {
+        ItemIndexTransition transition = new ItemIndexTransition();
+        appendCategoryRemoval(transition, categoryId, itemId, condition);
+        applyItemIndexTransition(transition);
+    }
+
+    private void appendCategoryRemoval(ItemIndexTransition transition, int categoryId, int itemId, String condition) {
+        transition.srem(keySchema.categorySetKey(categoryId), itemId);
+        for (String sortBy : ITEM_SORT_FIELDS) {
+            transition.zrem(keySchema.categorySortedKey(categoryId, sortBy), itemId);
+        }
+        if (condition != null) {
+            transition.srem(keySchema.categoryConditionSetKey(categoryId, condition), itemId);
+        }
     }
 
     /**
      * 添加商品到卖家商品集合
      */
     public void addItemToSellerSet(int sellerId, int itemId) {
-        stringRedisTemplate.opsForSet().add("seller:" + sellerId + ":items:set", String.valueOf(itemId));
+        String key = keySchema.sellerItemsKey(sellerId);
+        stringRedisTemplate.opsForSet().add(key, String.valueOf(itemId));
+        cacheTagRegistry.register(CacheTagRegistry.sellerTag(sellerId), key);
     }
     /**
      * 从卖家商品集合移除商品
      */
     public void removeItemFromSellerSet(int sellerId, int itemId) {
-        stringRedisTemplate.opsForSet().remove("seller:" + sellerId + ":items:set", String.valueOf(itemId));
+        stringRedisTemplate.opsForSet().remove(keySchema.sellerItemsKey(sellerId), String.valueOf(itemId));
     }
     /**
      * 分页获取卖家商品ID（Set无序，适合小数据量，若需排序建议用Sorted Set）
      */
     public List<Integer> getSellerItemIds(int sellerId, int page, int size) {
-        Set<String> idSet = stringRedisTemplate.opsForSet().members("seller:" + sellerId + ":items:set");
+        Set<String> idSet = stringRedisTemplate.opsForSet().members(keySchema.sellerItemsKey(sellerId));
         if (idSet == null) return List.of();
         List<Integer> ids = idSet.stream().map(Integer::parseInt).collect(Collectors.toList());
         int from = Math.min(page * size, ids.size());
@@ -758,7 +1157,56 @@ public class RedisUtils {
      */
     public void cacheOrderDetail(String orderId, Order order) {
         String key = generateOrderDetail(orderId);
-        setCache(key, order, 60, TimeUnit.MINUTES); // 订单缓存1小时
+        setCache(key, order); // 订单缓存按订单详情TTL策略
+        if (order.getBuyer() != null) {
+            cacheTagRegistry.register(CacheTagRegistry.userTag(order.getBuyer().getUserId()), key);
+        }
+        if (order.getSeller() != null) {
+            cacheTagRegistry.register(CacheTagRegistry.sellerTag(order.getSeller().getUserId()), key);
+        }
+    }
+
+    /**
+     * 批量写入订单详情缓存及标签登记（一次pipeline）
+     */
+    public void cacheOrderDetails(Collection<Order> orders) {
+        if (orders == null || orders.isEmpty()) return;
+        Map<String, byte[]> payloads = new LinkedHashMap<>();
+        Map<String, Long> ttls = new HashMap<>();
+        // 标签key → 订单详情key
+        List<String[]> tags = new ArrayList<>();
+        for (Order order : orders) {
+            String key = generateOrderDetail(order.getOrderId());
+            long ttlSeconds = ttlPolicy.ttlSeconds(key);
+            try {
+                payloads.put(key, cacheCodecs.encode(key, order, ttlPolicy.softExpireAt(key, ttlSeconds)));
+                ttls.put(key, ttlSeconds);
+                cacheMetrics.recordWrite(key, payloads.get(key).length, ttlSeconds);
+            } catch (IOException e) {
+                System.err.println("序列化缓存数据失败: " + e.getMessage());
+                continue;
+            }
+            if (order.getBuyer() != null) {
+                tags.add(new String[]{CacheTagRegistry.tagKey(CacheTagRegistry.userTag(order.getBuyer().getUserId())), key});
+            }
+            if (order.getSeller() != null) {
+                tags.add(new String[]{CacheTagRegistry.tagKey(CacheTagRegistry.sellerTag(order.getSeller().getUserId())), key});
+            }
+        }
+        bytesRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (Map.Entry<String, byte[]> entry : payloads.entrySet()) {
+                connection.stringCommands().setEx(entry.getKey().getBytes(StandardCharsets.UTF_8),
+                    ttls.get(entry.getKey()), entry.getValue());
+            }
+            for (String[] tag : tags) {
+                byte[] tagKey = tag[0].getBytes(StandardCharsets.UTF_8);
+                connection.setCommands().sAdd(tagKey, tag[1].getBytes(StandardCharsets.UTF_8));
+                connection.keyCommands().expire(tagKey, cacheTagRegistry.tagTtlSeconds(tag[1]));
+            }
+            return null;
+        });
+        nearCache.invalidateAll(payloads.keySet());
+        hotKeyDetector.invalidateAll(payloads.keySet());
     }
 
     /**
@@ -766,15 +1214,13 @@ public class RedisUtils {
      */
     public Order getOrderDetail(String orderId) {
         String key = generateOrderDetail(orderId);
-        String json = getCache(key);
-        if (json != null) {
-            try {
-                return objectMapper.readValue(json, Order.class);
-            } catch (Exception e) {
-                System.err.println("反序列化订单数据失败: " + e.getMessage());
-            }
+        byte[] payload = nearCache.get(key, this::getCacheBytes);
+        cacheMetrics.recordRead(key, payload);
+        if (cacheCodecs.isSoftExpired(payload)) {
+            cacheRefresher.refresh(key, () -> orderRepository.findById(orderId)
+                .ifPresent(fresh -> cacheOrderDetail(orderId, fresh)));
         }
-        return null;
+        return decodeCache(key, payload, Order.class);
     }
 
     /**
@@ -789,31 +1235,33 @@ public class RedisUtils {
      * 添加订单到买家订单集合（按创建时间排序）
      */
     public void addOrderToBuyerSet(Integer buyerId, String orderId, Order order) {
-        String key = "buyer:" + buyerId + ":orders:zset";
+        String key = keySchema.buyerOrdersKey(buyerId);
         // 使用订单创建时间作为score，确保按时间排序
         double score = order.getCreateTime() != null
             ? order.getCreateTime().atZone(java.time.ZoneId.systemDefault()).toEpochSecond()
             : System.currentTimeMillis() / 1000.0;
         stringRedisTemplate.opsForZSet().add(key, orderId, score);
+        cacheTagRegistry.register(CacheTagRegistry.userTag(buyerId), key);
     }
 
     /**
      * 添加订单到卖家订单集合（按创建时间排序）
      */
     public void addOrderToSellerSet(Integer sellerId, String orderId, Order order) {
-        String key = "seller:" + sellerId + ":orders:zset";
+        String key = keySchema.sellerOrdersKey(sellerId);
         // 使用订单创建时间作为score，确保按时间排序
         double score = order.getCreateTime() != null
             ? order.getCreateTime().atZone(java.time.ZoneId.systemDefault()).toEpochSecond()
             : System.currentTimeMillis() / 1000.0;
         stringRedisTemplate.opsForZSet().add(key, orderId, score);
+        cacheTagRegistry.register(CacheTagRegistry.sellerTag(sellerId), key);
     }
 
     /**
      * 从买家订单集合移除订单
      */
     public void removeOrderFromBuyerSet(Integer buyerId, String orderId) {
-        String key = "buyer:" + buyerId + ":orders:zset";
+        String key = keySchema.buyerOrdersKey(buyerId);
         stringRedisTemplate.opsForZSet().remove(key, orderId);
     }
 
@@ -821,7 +1269,7 @@ public class RedisUtils {
      * 从卖家订单集合移除订单
      */
     public void removeOrderFromSellerSet(Integer sellerId, String orderId) {
-        String key = "seller:" + sellerId + ":orders:zset";
+        String key = keySchema.sellerOrdersKey(sellerId);
         stringRedisTemplate.opsForZSet().remove(key, orderId);
     }
 
@@ -829,7 +1277,7 @@ public class RedisUtils {
      * 分页获取买家订单ID（按创建时间倒序）
      */
     public List<String> getBuyerOrderIds(Integer buyerId, int page, int size) {
-        String key = "buyer:" + buyerId + ":orders:zset";
+        String key = keySchema.buyerOrdersKey(buyerId);
         long start = page * size;
         long end = start + size - 1;
         Set<String> orderIds = stringRedisTemplate.opsForZSet().reverseRange(key, start, end);
@@ -840,18 +1288,41 @@ public class RedisUtils {
      * 分页获取卖家订单ID（按创建时间倒序）
      */
     public List<String> getSellerOrderIds(Integer sellerId, int page, int size) {
-        String key = "seller:" + sellerId + ":orders:zset";
+        String key = keySchema.sellerOrdersKey(sellerId);
         long start = page * size;
         long end = start + size - 1;
         Set<String> orderIds = stringRedisTemplate.opsForZSet().reverseRange(key, start, end);
         return orderIds != null ? new ArrayList<>(orderIds) : List.of();
     }
 
+    /**
+     * 游标分页获取买家订单ID（按创建时间倒序）
+     */
+    public ZSetCursor.Page<String> getBuyerOrderIdsAfter(Integer buyerId, String cursor, int size) {
+        return zsetPageAfter(keySchema.buyerOrdersKey(buyerId), cursor, size, true);
+    }
+
+    /**
+     * 游标分页获取卖家订单ID（按创建时间倒序）
+     */
+    public ZSetCursor.Page<String> getSellerOrderIdsAfter(Integer sellerId, String cursor, int size) {
+        return zsetPageAfter(keySchema.sellerOrdersKey(sellerId), cursor, size, true);
+    }
+
+    /**
+     * 订单在买家/卖家ZSet中的score（创建时间秒数），用于数据库兜底时生成游标
+     */
+    public double orderScore(Order order) {
+        return order.getCreateTime() != null
+            ? order.getCreateTime().atZone(java.time.ZoneId.systemDefault()).toEpochSecond()
+            : System.currentTimeMillis() / 1000.0;
+    }
+
     /**
      * 获取买家订单总数
      */
     public long getBuyerOrderCount(Integer buyerId) {
-        String key = "buyer:" + buyerId + ":orders:zset";
+        String key = keySchema.buyerOrdersKey(buyerId);
         Long count = stringRedisTemplate.opsForZSet().zCard(key);
         return count == null ? 0 : count;
     }
@@ -860,7 +1331,7 @@ public class RedisUtils {
      * 获取卖家订单总数
      */
     public long getSellerOrderCount(Integer sellerId) {
-        String key = "seller:" + sellerId + ":orders:zset";
+        String key = keySchema.sellerOrdersKey(sellerId);
         Long count = stringRedisTemplate.opsForZSet().zCard(key);
         return count == null ? 0 : count;
     }
@@ -869,21 +1340,23 @@ public class RedisUtils {
      * 批量获取订单详情
      */
     public List<Order> getOrdersByIds(List<String> orderIds) {
-        List<Order> result = new ArrayList<>();
-        for (String orderId : orderIds) {
-            Order order = getOrderDetail(orderId);
-            if (order != null) {
-                result.add(order);
-            }
-        }
-        return result;
+        return multiGetEntities(orderIds, this::generateOrderDetail, Order.class,
+            orderRepository::findAllById, Order::getOrderId, 60, TimeUnit.MINUTES);
+    }
+
+    /**
+     * 解码异步读取到的订单详情，未命中的回源数据库
+     */
+    List<Order> resolveOrdersByIds(List<String> orderIds, List<String> keys, List<byte[]> values) {
+        return resolveEntities(orderIds, keys, values, this::generateOrderDetail, Order.class,
+            orderRepository::findAllById, Order::getOrderId, 60, TimeUnit.MINUTES);
     }
 
     /**
      * 清除买家所有订单缓存
      */
     public void clearBuyerOrderCache(Integer buyerId) {
-        String key = "buyer:" + buyerId + ":orders:zset";
+        String key = keySchema.buyerOrdersKey(buyerId);
         stringRedisTemplate.delete(key);
     }
 
@@ -907,8 +1380,7 @@ public class RedisUtils {
             }
             
             // 非原子性地更新商品状态为不可售
-            item.setIsAvailable(false);
-            setCache(generateItemDetailKey(itemId), item, 5, TimeUnit.MINUTES);
+            updateCachedItemAvailability(item, false, 5, TimeUnit.MINUTES);
             
             // 从可售商品集合中移除
             removeItemFromOnSaleSortedSet(itemId, "update_time");
@@ -938,8 +1410,7 @@ public class RedisUtils {
             }
             
             // 原子性地更新商品状态为不可售
-            item.setIsAvailable(false);
-            setCache(generateItemDetailKey(itemId), item, 5, TimeUnit.MINUTES);
+            updateCachedItemAvailability(item, false, 5, TimeUnit.MINUTES);
             
             // 从可售商品集合中移除
             removeItemFromOnSaleSortedSet(itemId, "update_time");
@@ -989,23 +1460,25 @@ public class RedisUtils {
      * 清除卖家所有订单缓存
      */
     public void clearSellerOrderCache(Integer sellerId) {
-        String key = "seller:" + sellerId + ":orders:zset";
+        String key = keySchema.sellerOrdersKey(sellerId);
         stringRedisTemplate.delete(key);
     }
 
+    /**
+     * 批量获取商品详情（不判断isAvailable），结果保持itemIds顺序
+     */
     public List<Item> getAllItemsByIds(List<Integer> itemIds) {
-        List<Item> result = new ArrayList<>();
-        for (Integer id : itemIds) {
-            Item item = getItemDetail(id);
-            if (item == null) {
-                item = itemRepository.findByItemId(id);
-                if (item != null) {
-                    setCache(generateItemDetailKey(id), item, 5, TimeUnit.MINUTES);
-                }
-            }
-            if (item != null) result.add(item); // 不判断isAvailable
-        }
-        return result;
+        return multiGetEntities(itemIds, this::generateItemDetailKey, Item.class,
+            itemRepository::findAllById, Item::getItemId, 5, TimeUnit.MINUTES);
+    }
+
+    /**
+     * 解码异步读取到的商品详情（不判断isAvailable），未命中的回源数据库
+     * @param values 与itemIds顺序一致的原始字节，由 AsyncRedisUtils 读取
+     */
+    List<Item> resolveItemsByIds(List<Integer> itemIds, List<String> keys, List<byte[]> values) {
+        return resolveEntities(itemIds, keys, values, this::generateItemDetailKey, Item.class,
+            itemRepository::findAllById, Item::getItemId, 5, TimeUnit.MINUTES);
     }
 
     public void addItemToOnSaleSortedSets(int itemId, Item item) {
@@ -1016,4 +1489,426 @@ public class RedisUtils {
         addItemToOnSaleSortedSet(itemId, priceScore, "price");
         addItemToOnSaleSortedSet(itemId, likesScore, "likes");
     }
+
+    // ==================== 商品索引原子变更（Lua） ====================
+
+    // 商品索引支持的排序字段（首页/分类ZSet各一份）
+    public static final List<String> ITEM_SORT_FIELDS = List.of("update_time", "price", "likes");
+
+    private static final DefaultRedisScript<Long> ITEM_INDEX_SCRIPT = new DefaultRedisScript<>();
+
+    private static final RedisSerializer<Long> SCRIPT_RESULT_SERIALIZER = new GenericToStringSerializer<>(Long.class);
+
+    // 脚本参数序列化：二进制缓存值原样传递，其它参数按UTF-8字符串
+    private static final RedisSerializer<Object> SCRIPT_ARGS_SERIALIZER = new RedisSerializer<>() {
+        @Override
+        public byte[] serialize(Object value) {
+            return value instanceof byte[] bytes ? bytes : String.valueOf(value).getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public Object deserialize(byte[] bytes) {
+            return bytes;
+        }
+    };
+
+    static {
+        ITEM_INDEX_SCRIPT.setScriptSource(new ResourceScriptSource(new ClassPathResource("lua/item_index_transition.lua")));
+        ITEM_INDEX_SCRIPT.setResultType(Long.class);
+    }
+
+    /**
+     * 按商品当前状态原子更新详情缓存及全部索引（上架/下架/改价/改分类/点赞数变化通用）
+     * 可售：加入可售集合、分类集合、分类ZSet和首页ZSet；不可售：从上述集合中移除
+     * @param oldCategoryId 原分类ID，分类发生变化时传入以便从旧分类移除，否则传null
+     * @param ttlMinutes 详情缓存过期时间（分钟）
+     */
+    public void applyItemState(Item item, Integer oldCategoryId, long ttlMinutes) {
+        applyItemState(item, oldCategoryId, null, ttlMinutes);
+    }
+
+    /**
+     * @param oldCondition 原新旧程度，发生变化时传入以便从旧的新旧程度集合移除，否则传null
+     */
+    public void applyItemState(Item item, Integer oldCategoryId, String oldCondition, long ttlMinutes) {
+        ItemIndexTransition transition = new ItemIndexTransition();
+        appendItemStateOps(transition, item.getItemId(), item, oldCategoryId, oldCondition, ttlMinutes * 60);
+        applyItemIndexTransition(transition);
+    }
+
+    /**
+     * applyItemState 的批量版本（Kafka批量消费使用）
+     * 每个商品仍是各自一次脚本调用、单个商品内原子，所有调用放进一个pipeline发出，一批商品只有一次网络往返
+     * @param oldCategoryIds 分类发生变化的商品ID → 原分类ID
+     * @param oldConditions 新旧程度发生变化的商品ID → 原新旧程度
+     */
+    public void applyItemStates(Collection<Item> items, Map<Integer, Integer> oldCategoryIds,
+                                Map<Integer, String> oldConditions, long ttlMinutes) {
+        if (items == null || items.isEmpty()) return;
+        List<List<ItemIndexTransition.Op>> scripts = new ArrayList<>();
+        for (Item item : items) {
+            ItemIndexTransition transition = new ItemIndexTransition();
+            appendItemStateOps(transition, item.getItemId(), item, oldCategoryIds.get(item.getItemId()),
+                oldConditions.get(item.getItemId()), ttlMinutes * 60);
+            scripts.addAll(splitBySlot(transition));
+        }
+        if (scripts.size() == 1) {
+            executeItemIndexScript(scripts.get(0));
+            return;
+        }
+        try {
+            pipelineItemIndexScripts(scripts, true);
+        } catch (RuntimeException e) {
+            if (!isNoScriptError(e)) throw e;
+            // 脚本尚未加载到该节点：各操作都是按最终状态的幂等写入，整批改用EVAL重发
+            pipelineItemIndexScripts(scripts, false);
+        }
+        for (List<ItemIndexTransition.Op> ops : scripts) {
+            List<String> keys = ops.stream().map(ItemIndexTransition.Op::getKey).collect(Collectors.toList());
+            nearCache.invalidateAll(keys);
+            hotKeyDetector.invalidateAll(keys);
+        }
+    }
+
+    private void appendItemStateOps(ItemIndexTransition transition, int itemId, Item item, Integer oldCategoryId,
+                                    String oldCondition, long ttlSeconds) {
+        int categoryId = item.getCategoryId();
+        String detailKey = generateItemDetailKey(itemId);
+        long detailTtl = ttlPolicy.ttlSeconds(detailKey, ttlSeconds, TimeUnit.SECONDS);
+        if (itemHashMode) {
+            transition.hsetAll(detailKey, toItemHashJson(item), detailTtl);
+        } else {
+            try {
+                transition.set(detailKey, cacheCodecs.encode(detailKey, item, ttlPolicy.softExpireAt(detailKey, detailTtl)), detailTtl);
+            } catch (IOException e) {
+                throw new RuntimeException("序列化商品数据失败: " + e.getMessage(), e);
+            }
+        }
+        transition.sadd(keySchema.itemIdsSetKey(), itemId);
+        // 登记标签：商品详情属于商品标签，分类索引属于分类标签
+        transition.tag(CacheTagRegistry.tagKey(CacheTagRegistry.itemTag(itemId)), detailKey,
+            cacheTagRegistry.tagTtlSeconds(detailKey));
+        String categoryTagKey = CacheTagRegistry.tagKey(CacheTagRegistry.categoryTag(categoryId));
+        long categoryTagTtl = cacheTagRegistry.tagTtlSeconds(keySchema.categorySetKey(categoryId));
+        transition.tag(categoryTagKey, keySchema.categorySetKey(categoryId), categoryTagTtl);
+        for (String sortBy : ITEM_SORT_FIELDS) {
+            transition.tag(categoryTagKey, keySchema.categorySortedKey(categoryId, sortBy), categoryTagTtl);
+        }
+        // 分类变更：从旧分类集合移除
+        String condition = item.getItemCondition();
+        if (oldCategoryId != null && oldCategoryId != categoryId) {
+            transition.srem(keySchema.categorySetKey(oldCategoryId), itemId);
+            for (String sortBy : ITEM_SORT_FIELDS) {
+                transition.zrem(keySchema.categorySortedKey(oldCategoryId, sortBy), itemId);
+            }
+            String previousCondition = oldCondition != null ? oldCondition : condition;
+            if (previousCondition != null) {
+                transition.srem(keySchema.categoryConditionSetKey(oldCategoryId, previousCondition), itemId);
+            }
+        }
+        // 新旧程度变更：从旧集合移除
+        if (oldCondition != null && !oldCondition.equals(condition)) {
+            transition.srem(keySchema.conditionSetKey(oldCondition), itemId);
+            transition.srem(keySchema.categoryConditionSetKey(categoryId, oldCondition), itemId);
+        }
+        if (Boolean.TRUE.equals(item.getIsAvailable())) {
+            transition.sadd(keySchema.availableSetKey(), itemId);
+            if (condition != null) {
+                transition.sadd(keySchema.conditionSetKey(condition), itemId);
+                transition.sadd(keySchema.categoryConditionSetKey(categoryId, condition), itemId);
+            }
+            transition.sadd(keySchema.categorySetKey(categoryId), itemId);
+            for (String sortBy : ITEM_SORT_FIELDS) {
+                double score = itemScore(item, sortBy);
+                transition.zadd(keySchema.categorySortedKey(categoryId, sortBy), itemId, score);
+                transition.zadd(keySchema.onSaleSortedKey(sortBy), itemId, score);
+            }
+        } else {
+            transition.srem(keySchema.availableSetKey(), itemId);
+            if (condition != null) {
+                transition.srem(keySchema.conditionSetKey(condition), itemId);
+                transition.srem(keySchema.categoryConditionSetKey(categoryId, condition), itemId);
+            }
+            transition.srem(keySchema.categorySetKey(categoryId), itemId);
+            for (String sortBy : ITEM_SORT_FIELDS) {
+                transition.zrem(keySchema.categorySortedKey(categoryId, sortBy), itemId);
+                transition.zrem(keySchema.onSaleSortedKey(sortBy), itemId);
+            }
+        }
+        // 清除列表缓存，强制重新加载
+        transition.del(keySchema.availableListKey());
+        transition.del(keySchema.allListKey());
+    }
+
+    /**
+     * 计算商品在指定排序字段下的分数
+     */
+    public double itemScore(Item item, String sortBy) {
+        switch (sortBy) {
+            case "price":
+                return item.getPrice() != null ? item.getPrice().doubleValue() : 0.0;
+            case "likes":
+                return item.getLikes() != null ? item.getLikes() : 0.0;
+            default:
+                return item.getUpdateTime() != null
+                    ? item.getUpdateTime().atZone(java.time.ZoneId.systemDefault()).toEpochSecond()
+                    : System.currentTimeMillis() / 1000.0;
+        }
+    }
+
+    /**
+     * 执行商品索引变更脚本（EVALSHA，脚本未加载时自动回退EVAL）
+     * 单机模式一次调用完成；集群模式下Lua不允许跨slot，按slot分组后每组一次调用，组内原子
+     */
+    public void applyItemIndexTransition(ItemIndexTransition transition) {
+        if (transition == null || transition.isEmpty()) return;
+        for (List<ItemIndexTransition.Op> ops : splitBySlot(transition)) {
+            executeItemIndexScript(ops);
+        }
+    }
+
+    /**
+     * 单机模式整体作为一次脚本调用；集群模式按slot分组，每组一次调用
+     */
+    private List<List<ItemIndexTransition.Op>> splitBySlot(ItemIndexTransition transition) {
+        if (transition.isEmpty()) return List.of();
+        if (!isClusterMode()) return List.of(transition.getOps());
+        Map<Integer, List<ItemIndexTransition.Op>> slotGroups = new LinkedHashMap<>();
+        for (ItemIndexTransition.Op op : transition.getOps()) {
+            int slot = ClusterSlotHashUtil.calculateSlot(op.getKey());
+            slotGroups.computeIfAbsent(slot, k -> new ArrayList<>()).add(op);
+        }
+        return new ArrayList<>(slotGroups.values());
+    }
+
+    private void pipelineItemIndexScripts(List<List<ItemIndexTransition.Op>> scripts, boolean useSha) {
+        byte[] body = ITEM_INDEX_SCRIPT.getScriptAsString().getBytes(StandardCharsets.UTF_8);
+        String sha = ITEM_INDEX_SCRIPT.getSha1();
+        bytesRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (List<ItemIndexTransition.Op> ops : scripts) {
+                byte[][] keysAndArgs = new byte[ops.size() * 4][];
+                for (int i = 0; i < ops.size(); i++) {
+                    ItemIndexTransition.Op op = ops.get(i);
+                    keysAndArgs[i] = op.getKey().getBytes(StandardCharsets.UTF_8);
+                    keysAndArgs[ops.size() + i * 3] = SCRIPT_ARGS_SERIALIZER.serialize(op.getType());
+                    keysAndArgs[ops.size() + i * 3 + 1] = SCRIPT_ARGS_SERIALIZER.serialize(op.getArg1());
+                    keysAndArgs[ops.size() + i * 3 + 2] = SCRIPT_ARGS_SERIALIZER.serialize(op.getArg2());
+                }
+                if (useSha) {
+                    connection.scriptingCommands().evalSha(sha, ReturnType.INTEGER, ops.size(), keysAndArgs);
+                } else {
+                    connection.scriptingCommands().eval(body, ReturnType.INTEGER, ops.size(), keysAndArgs);
+                }
+            }
+            return null;
+        });
+    }
+
+    private static boolean isNoScriptError(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause.getMessage() != null && cause.getMessage().contains("NOSCRIPT")) return true;
+        }
+        return false;
+    }
+
+    private void executeItemIndexScript(List<ItemIndexTransition.Op> ops) {
+        List<String> keys = new ArrayList<>(ops.size());
+        Object[] args = new Object[ops.size() * 3];
+        for (int i = 0; i < ops.size(); i++) {
+            ItemIndexTransition.Op op = ops.get(i);
+            keys.add(op.getKey());
+            args[i * 3] = op.getType();
+            args[i * 3 + 1] = op.getArg1();
+            args[i * 3 + 2] = op.getArg2();
+        }
+        bytesRedisTemplate.execute(ITEM_INDEX_SCRIPT, SCRIPT_ARGS_SERIALIZER, SCRIPT_RESULT_SERIALIZER, keys, args);
+        nearCache.invalidateAll(keys);
+        hotKeyDetector.invalidateAll(keys);
+    }
+
+    // ==================== 商品写版本号 ====================
+
+    private static final DefaultRedisScript<Long> ITEM_VERSION_SCRIPT = new DefaultRedisScript<>();
+
+    static {
+        ITEM_VERSION_SCRIPT.setScriptSource(new ResourceScriptSource(new ClassPathResource("lua/item_version.lua")));
+        ITEM_VERSION_SCRIPT.setResultType(Long.class);
+    }
+
+    /**
+     * 为商品的一次写入分配版本号（同一商品单调递增，跨实例有效）
+     * 请求路径写缓存时记入商品，随Kafka事件发出；消费端只在库中版本不更新时落库，
+     * 不同topic（编辑/上下架/订单）之间、重试链中的乱序事件因此不会用旧值覆盖新值
+     */
+    public long nextItemVersion(int itemId) {
+        Long version = stringRedisTemplate.execute(ITEM_VERSION_SCRIPT, List.of(keySchema.itemVersionKey(itemId)),
+            String.valueOf(itemVersionTtlSeconds));
+        if (version == null) throw new RuntimeException("生成商品版本号失败: " + itemId);
+        return version;
+    }
+
+    /**
+     * 缓存中的商品是否比库中的新（请求路径已写缓存、对应事件尚未落库）
+     */
+    public static boolean isCacheNewer(Item cached, Item stored) {
+        if (cached == null || stored == null) return false;
+        return versionOf(cached.getContentVersion()) > versionOf(stored.getContentVersion())
+            || versionOf(cached.getAvailabilityVersion()) > versionOf(stored.getAvailabilityVersion());
+    }
+
+    private static long versionOf(Long version) {
+        return version != null ? version : 0L;
+    }
+
+    /**
+     * 去掉缓存比库更新的商品，用于落库后回写缓存：这些商品还有事件未落库，由那条事件落库后再回写
+     */
+    public List<Item> withoutNewerCache(Collection<Item> items) {
+        if (items == null || items.isEmpty()) return List.of();
+        List<Integer> ids = items.stream().map(Item::getItemId).collect(Collectors.toList());
+        Map<Integer, Item> cached = multiGetEntities(ids, this::generateItemDetailKey, Item.class, null, Item::getItemId, 0, TimeUnit.MINUTES)
+            .stream().collect(Collectors.toMap(Item::getItemId, item -> item, (a, b) -> a));
+        return items.stream().filter(item -> !isCacheNewer(cached.get(item.getItemId()), item)).collect(Collectors.toList());
+    }
+
+    // ==================== 商品Hash缓存（字段级更新） ====================
+
+    private static final DefaultRedisScript<Long> ITEM_HASH_FIELD_SCRIPT = new DefaultRedisScript<>();
+
+    static {
+        ITEM_HASH_FIELD_SCRIPT.setScriptSource(new ResourceScriptSource(new ClassPathResource("lua/item_hash_field.lua")));
+        ITEM_HASH_FIELD_SCRIPT.setResultType(Long.class);
+    }
+
+    public boolean isItemHashMode() {
+        return itemHashMode;
+    }
+
+    /**
+     * 商品对象转为Hash字段（所有值均为字符串，null字段不写入），以JSON对象形式交给Lua脚本
+     */
+    private String toItemHashJson(Item item) {
+        ObjectNode source = objectMapper.valueToTree(item);
+        ObjectNode fields = objectMapper.createObjectNode();
+        source.fields().forEachRemaining(entry -> {
+            JsonNode value = entry.getValue();
+            if (value != null && !value.isNull()) {
+                fields.put(entry.getKey(), value.isTextual() ? value.asText() : value.toString());
+            }
+        });
+        return fields.toString();
+    }
+
+    /**
+     * Hash字段还原为商品JSON（依赖Jackson将字符串强制转换为数字/布尔/时间）
+     */
+    private byte[] itemHashToJson(Map<?, ?> hash) {
+        if (hash == null || hash.isEmpty()) return null;
+        ObjectNode node = objectMapper.createObjectNode();
+        hash.forEach((field, value) -> node.put(String.valueOf(field), String.valueOf(value)));
+        try {
+            return objectMapper.writeValueAsBytes(objectMapper.treeToValue(node, Item.class));
+        } catch (JsonProcessingException e) {
+            System.err.println("还原商品Hash缓存失败: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private byte[] getItemHashPayload(String key) {
+        return hotKeyDetector.read(key, "hgetall", () -> itemHashToJson(stringRedisTemplate.opsForHash().entries(key)));
+    }
+
+    /**
+     * 批量读取商品Hash（先查近端缓存，其余一次pipeline HGETALL），返回与keys顺序一致的JSON
+     */
+    @SuppressWarnings("unchecked")
+    private List<byte[]> multiGetItemHashes(List<String> keys) {
+        List<byte[]> result = new ArrayList<>(keys.size());
+        List<Integer> remoteIndexes = new ArrayList<>();
+        List<String> remoteKeys = new ArrayList<>();
+        for (int i = 0; i < keys.size(); i++) {
+            byte[] local = nearCache.getIfPresent(keys.get(i));
+            result.add(local);
+            if (local == null) {
+                remoteIndexes.add(i);
+                remoteKeys.add(keys.get(i));
+            }
+        }
+        if (remoteKeys.isEmpty()) return result;
+        List<Object> hashes = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (String key : remoteKeys) {
+                connection.hashCommands().hGetAll(key.getBytes(StandardCharsets.UTF_8));
+            }
+            return null;
+        });
+        for (int i = 0; i < remoteKeys.size(); i++) {
+            Object hash = i < hashes.size() ? hashes.get(i) : null;
+            byte[] json = hash instanceof Map ? itemHashToJson((Map<Object, Object>) hash) : null;
+            if (json != null) {
+                result.set(remoteIndexes.get(i), json);
+                nearCache.put(remoteKeys.get(i), json);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 只读取商品的部分字段（Hash模式下HMGET，否则从完整缓存中截取）
+     * @return 字段名到字符串值的映射，缓存不存在时返回空Map
+     */
+    public Map<String, String> getItemFields(int itemId, String... fields) {
+        Map<String, String> result = new LinkedHashMap<>();
+        if (itemHashMode) {
+            List<Object> values = stringRedisTemplate.opsForHash().multiGet(generateItemDetailKey(itemId), List.of((Object[]) fields));
+            for (int i = 0; i < fields.length; i++) {
+                Object value = values != null && i < values.size() ? values.get(i) : null;
+                if (value != null) result.put(fields[i], value.toString());
+            }
+            return result;
+        }
+        Item item = getItemDetail(itemId);
+        if (item == null) return result;
+        JsonNode node = objectMapper.valueToTree(item);
+        for (String field : fields) {
+            JsonNode value = node.get(field);
+            if (value != null && !value.isNull()) result.put(field, value.asText());
+        }
+        return result;
+    }
+
+    /**
+     * 修改商品缓存的likes（结果不小于0）
+     * Hash模式下Lua内HINCRBY原子修改；完整缓存模式下值可能是Smile/LZ4二进制，Lua无法解析，
+     * 也不能用WATCH/MULTI（集群连接不支持事务），改为删除详情缓存，由收藏消费端写库后整体回填
+     * 缓存只是加速，失败只记录日志，不影响收藏本身
+     * @return 修改后的likes，缓存不存在或已删除时返回null
+     */
+    public Integer incrementCachedItemLikes(int itemId, int delta) {
+        String key = generateItemDetailKey(itemId);
+        try {
+            if (itemHashMode) {
+                Long likes = stringRedisTemplate.execute(ITEM_HASH_FIELD_SCRIPT, List.of(key), "HINCRBY", "likes", String.valueOf(delta), "0");
+                nearCache.invalidate(key);
+                return likes != null ? likes.intValue() : null;
+            }
+            deleteCache(key);
+        } catch (Exception e) {
+            System.err.println("更新商品缓存likes失败: " + key + ", " + e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * 修改商品缓存的可售状态（Hash模式下只HSET isAvailable字段）
+     */
+    public void updateCachedItemAvailability(Item item, boolean isAvailable, long timeout, TimeUnit unit) {
+        item.setIsAvailable(isAvailable);
+        if (itemHashMode) {
+            String key = generateItemDetailKey(item.getItemId());
+            Long updated = stringRedisTemplate.execute(ITEM_HASH_FIELD_SCRIPT, List.of(key), "HSET", "isAvailable", String.valueOf(isAvailable));
+            nearCache.invalidate(key);
+            if (updated != null) return;
+        }
+        cacheItemDetail(item.getItemId(), item, timeout, unit);
+    }
 }
@@ -0,0 +1,160 @@
+package com.SE2025BackEnd_16.project.RedisUtils;
+
+import com.SE2025BackEnd_16.project.service.DistributedLockService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 缓存未命中时的请求合并（single-flight）
+ * 同一节点上同一个key的并发未命中只有一个线程回源，其余线程等待并共享结果；
+ * 开启分布式模式时，回源线程再抢一把短时Redis锁，抢不到说明其他节点正在回源，
+ * 拿到锁（或等待超时）后先重查缓存，命中则不再查库；
+ * 因此loader必须在返回前（即释放锁前）同步写入缓存，异步补缓存时其他节点重查仍会未命中
+ */
+@Slf4j
+@Component
+public class SingleFlight {
+
+    private static final String LOCK_PREFIX = "singleflight:lock:";
+
+    @Autowired(required = false)
+    private DistributedLockService distributedLockService;
+
+    @Autowired
+    private CacheMetrics cacheMetrics;
+
+    @Value("${app.cache.single-flight.distributed:true}")
+    private boolean distributed;
+
+    // 等待其他节点回源的最长时间
+    @Value("${app.cache.single-flight.lock-wait-ms:200}")
+    private long lockWaitMs;
+
+    // 锁自动释放时间，防止回源线程异常退出后锁一直存在
+    @Value("${app.cache.single-flight.lock-lease-ms:3000}")
+    private long lockLeaseMs;
+
+    // 本节点跟随线程等待结果的最长时间，超时后自行回源
+    @Value("${app.cache.single-flight.wait-timeout-ms:3000}")
+    private long waitTimeoutMs;
+
+    private final Map<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong remoteCoalesced = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+
+    /**
+     * 合并执行回源
+     * @param key 合并的key（如 item:123）
+     * @param recheck 重查缓存，拿到分布式锁后调用，返回非null则不再回源；可为null
+     * @param loader 回源逻辑（查库并同步写入缓存），结果同时交给本节点等待中的线程
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String key, Supplier<T> recheck, Supplier<T> loader) {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            coalesced.incrementAndGet();
+            return (T) await(existing, loader);
+        }
+        try {
+            T result = loadWithLock(key, recheck, loader);
+            future.complete(result);
+            return result;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    private <T> T loadWithLock(String key, Supplier<T> recheck, Supplier<T> loader) {
+        if (!distributed || distributedLockService == null) {
+            loads.incrementAndGet();
+            return cacheMetrics.timeLoad(key, loader);
+        }
+        String lockKey = LOCK_PREFIX + key;
+        boolean locked = distributedLockService.tryLock(lockKey, lockWaitMs, lockLeaseMs, TimeUnit.MILLISECONDS);
+        try {
+            if (recheck != null) {
+                T cached = recheck.get();
+                if (cached != null) {
+                    remoteCoalesced.incrementAndGet();
+                    return cached;
+                }
+            }
+            loads.incrementAndGet();
+            return cacheMetrics.timeLoad(key, loader);
+        } finally {
+            if (locked) {
+                distributedLockService.unlock(lockKey);
+            }
+        }
+    }
+
+    private Object await(CompletableFuture<Object> future, Supplier<?> loader) {
+        try {
+            return future.get(waitTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            timeouts.incrementAndGet();
+            log.warn("等待合并回源结果超时，自行回源");
+            loads.incrementAndGet();
+            return loader.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) throw runtime;
+            throw new RuntimeException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("等待回源结果被中断", e);
+        }
+    }
+
+    public long getLoadCount() {
+        return loads.get();
+    }
+
+    public long getCoalescedCount() {
+        return coalesced.get();
+    }
+
+    public long getRemoteCoalescedCount() {
+        return remoteCoalesced.get();
+    }
+
+    public long getTimeoutCount() {
+        return timeouts.get();
+    }
+
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    /**
+     * 合并统计：loads为实际回源次数，coalesced为本节点被合并的请求数，
+     * remoteCoalesced为拿到分布式锁后重查缓存命中的请求数
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("loads", loads.get());
+        stats.put("coalesced", coalesced.get());
+        stats.put("remoteCoalesced", remoteCoalesced.get());
+        stats.put("timeouts", timeouts.get());
+        stats.put("inFlight", inFlight.size());
+        return stats;
+    }
+}
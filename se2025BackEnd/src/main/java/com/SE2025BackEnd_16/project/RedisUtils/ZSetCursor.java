@@ -0,0 +1,137 @@
+package com.SE2025BackEnd_16.project.RedisUtils;
+
+import org.springframework.data.redis.core.ZSetOperations;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Sorted Set游标（keyset分页）
+ * 游标记录上一页最后一个元素的 score + member，下一页从该位置之后继续读取，
+ * 新商品上架、排名变化时不会像 start=page*size 那样跳过或重复；
+ * 对外是不透明的Base64字符串，score以原始位存储，保证精确比较
+ */
+public final class ZSetCursor {
+
+    private static final String VERSION = "v1";
+
+    /** 游标分页每页最多条数 */
+    public static final int MAX_PAGE_SIZE = 100;
+
+    private final double score;
+    private final String member;
+
+    public ZSetCursor(double score, String member) {
+        this.score = score;
+        this.member = member;
+    }
+
+    public double getScore() {
+        return score;
+    }
+
+    public String getMember() {
+        return member;
+    }
+
+    public String encode() {
+        String raw = VERSION + "|" + Long.toHexString(Double.doubleToLongBits(score)) + "|" + member;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 解析游标，null或空串表示第一页
+     * @throws IllegalArgumentException 游标格式错误
+     */
+    public static ZSetCursor decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) return null;
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|", 3);
+            if (parts.length != 3 || !VERSION.equals(parts[0])) {
+                throw new IllegalArgumentException("无效的分页游标");
+            }
+            double score = Double.longBitsToDouble(Long.parseUnsignedLong(parts[1], 16));
+            return new ZSetCursor(score, parts[2]);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("无效的分页游标", e);
+        }
+    }
+
+    /**
+     * 校验每页条数（1..MAX_PAGE_SIZE）
+     * @throws IllegalArgumentException 超出范围
+     */
+    public static int checkSize(int size) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("每页条数必须在1到" + MAX_PAGE_SIZE + "之间");
+        }
+        return size;
+    }
+
+    /**
+     * 该元素是否在游标位置之后：先比较score，同分时按member字典序（与Redis同分排序一致，倒序时整体反转）
+     */
+    public boolean isBefore(double otherScore, String otherMember, boolean desc) {
+        int cmp = Double.compare(otherScore, score);
+        if (cmp == 0) cmp = otherMember.compareTo(member);
+        return desc ? cmp < 0 : cmp > 0;
+    }
+
+    /**
+     * 按score范围读取ZSet的一批元素（含边界score）
+     */
+    @FunctionalInterface
+    public interface RangeReader {
+        /**
+         * @param bound 游标score（第一页为正/负无穷）；正序读取 [bound, +inf]，倒序读取 [-inf, bound]
+         * @param offset 跳过的元素数
+         * @param count 最多读取的元素数
+         */
+        List<ZSetOperations.TypedTuple<String>> read(double bound, long offset, int count);
+    }
+
+    /**
+     * 从游标位置之后读取一页：以游标score为边界分批读取，边界上不在游标之后的同分元素跳过
+     * （同分元素较多时继续向后取），多读一条用于判断是否还有下一页
+     */
+    public static Page<String> readPage(String cursor, int size, boolean desc, RangeReader reader) {
+        checkSize(size);
+        ZSetCursor after = decode(cursor);
+        double bound = after == null ? (desc ? Double.POSITIVE_INFINITY : Double.NEGATIVE_INFINITY) : after.getScore();
+        int fetch = Math.max(size + 1, 64);
+        long offset = 0;
+        List<ZSetOperations.TypedTuple<String>> page = new ArrayList<>(size + 1);
+        while (page.size() <= size) {
+            List<ZSetOperations.TypedTuple<String>> batch = reader.read(bound, offset, fetch);
+            if (batch == null || batch.isEmpty()) break;
+            for (ZSetOperations.TypedTuple<String> tuple : batch) {
+                double tupleScore = tuple.getScore() == null ? 0 : tuple.getScore();
+                if (after != null && !after.isBefore(tupleScore, tuple.getValue(), desc)) continue;
+                page.add(tuple);
+                if (page.size() > size) break;
+            }
+            if (batch.size() < fetch) break;
+            offset += batch.size();
+        }
+        String nextCursor = null;
+        if (page.size() > size) {
+            page = page.subList(0, size);
+            ZSetOperations.TypedTuple<String> last = page.get(size - 1);
+            nextCursor = new ZSetCursor(last.getScore() == null ? 0 : last.getScore(), last.getValue()).encode();
+        }
+        List<String> members = page.stream().map(ZSetOperations.TypedTuple::getValue).collect(Collectors.toList());
+        return new Page<>(members, nextCursor);
+    }
+
+    /**
+     * 游标分页结果
+     * @param content 当前页元素
+     * @param nextCursor 下一页游标，没有更多数据时为null
+     */
+    public record Page<T>(List<T> content, String nextCursor) {
+    }
+}
@@ -0,0 +1,206 @@
+package com.SE2025BackEnd_16.project.RedisUtils.codec;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 缓存值编解码注册表
+ * 按key前缀（key族）选择编解码器，二进制格式统一带版本头：
+ * <pre>
+ * [0xFF 魔数][版本][编解码器ID][标志位] [版本2时：软过期时间戳long] [LZ4时：原始长度int] [数据]
+ * </pre>
+ * 版本2用于开启软过期的key族，其余情况仍写版本1
+ * 0xFF不可能出现在UTF-8 JSON的首字节，因此没有版本头的值按旧JSON格式读取，
+ * 旧缓存无需迁移，到期后自然被新格式替换
+ */
+@Slf4j
+@Component
+public class CacheCodecRegistry {
+
+    public static final byte MAGIC = (byte) 0xFF;
+    public static final byte VERSION = 1;
+    public static final byte VERSION_SOFT_TTL = 2;
+    public static final byte FLAG_LZ4 = 0x01;
+    private static final int HEADER_LENGTH = 4;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${app.cache.codec.item-detail:json}")
+    private String itemDetailCodec;
+
+    @Value("${app.cache.codec.order-detail:json}")
+    private String orderDetailCodec;
+
+    @Value("${app.cache.codec.message:json}")
+    private String messageCodec;
+
+    @Value("${app.cache.codec.default:json}")
+    private String defaultCodec;
+
+    // 超过该字节数才做LZ4压缩（商品描述较长时收益明显）
+    @Value("${app.cache.codec.lz4-threshold:512}")
+    private int lz4Threshold;
+
+    private final Map<Byte, CacheValueCodec> codecsById = new LinkedHashMap<>();
+    private final Map<String, CacheValueCodec> codecsByName = new LinkedHashMap<>();
+    // key前缀 -> 编码配置
+    private final Map<String, String> familyCodecs = new LinkedHashMap<>();
+
+    private final LZ4Compressor lz4Compressor = LZ4Factory.fastestInstance().fastCompressor();
+    private final LZ4FastDecompressor lz4Decompressor = LZ4Factory.fastestInstance().fastDecompressor();
+
+    @PostConstruct
+    public void init() {
+        register(new JsonCacheValueCodec(objectMapper));
+        register(new SmileCacheValueCodec());
+        familyCodecs.put("item:detail:", itemDetailCodec);
+        familyCodecs.put("order:", orderDetailCodec);
+        familyCodecs.put("message:", messageCodec);
+        log.info("缓存编解码配置: {}, 默认: {}", familyCodecs, defaultCodec);
+    }
+
+    private void register(CacheValueCodec codec) {
+        codecsById.put(codec.id(), codec);
+        codecsByName.put(codec.name(), codec);
+    }
+
+    /**
+     * 获取key所属key族的编码配置，如 json、smile、smile+lz4
+     */
+    public String codecFor(String key) {
+        for (Map.Entry<String, String> entry : familyCodecs.entrySet()) {
+            if (key.startsWith(entry.getKey())) return entry.getValue();
+        }
+        return defaultCodec;
+    }
+
+    /**
+     * 按key族配置编码
+     * 配置为纯json时不写版本头，与旧格式完全一致
+     */
+    public byte[] encode(String key, Object value) throws IOException {
+        return encode(key, value, 0);
+    }
+
+    /**
+     * 按key族配置编码，并写入软过期时间
+     * @param softExpireAt 软过期时间戳（毫秒），0表示不带软过期
+     */
+    public byte[] encode(String key, Object value, long softExpireAt) throws IOException {
+        String spec = codecFor(key);
+        boolean lz4 = spec.endsWith("+lz4");
+        String name = lz4 ? spec.substring(0, spec.length() - 4) : spec;
+        CacheValueCodec codec = codecsByName.getOrDefault(name, codecsByName.get("json"));
+        byte[] body = codec.encode(value);
+        boolean soft = softExpireAt > 0;
+        if (codec.id() == JsonCacheValueCodec.ID && !lz4 && !soft) {
+            return body;
+        }
+        byte version = soft ? VERSION_SOFT_TTL : VERSION;
+        int softLength = soft ? 8 : 0;
+        if (lz4 && body.length >= lz4Threshold) {
+            byte[] compressed = new byte[lz4Compressor.maxCompressedLength(body.length)];
+            int length = lz4Compressor.compress(body, 0, body.length, compressed, 0, compressed.length);
+            ByteBuffer buffer = ByteBuffer.allocate(HEADER_LENGTH + softLength + 4 + length)
+                .put(MAGIC).put(version).put(codec.id()).put(FLAG_LZ4);
+            if (soft) buffer.putLong(softExpireAt);
+            return buffer.putInt(body.length)
+                .put(compressed, 0, length)
+                .array();
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_LENGTH + softLength + body.length)
+            .put(MAGIC).put(version).put(codec.id()).put((byte) 0);
+        if (soft) buffer.putLong(softExpireAt);
+        return buffer.put(body).array();
+    }
+
+    /**
+     * 读取软过期时间戳，没有软过期信息时返回0
+     */
+    public long softExpireAt(byte[] payload) {
+        if (payload == null || payload.length < HEADER_LENGTH + 8
+            || payload[0] != MAGIC || payload[1] != VERSION_SOFT_TTL) {
+            return 0;
+        }
+        return ByteBuffer.wrap(payload, HEADER_LENGTH, 8).getLong();
+    }
+
+    /**
+     * 是否已超过软过期时间（仍可返回，但需要后台刷新）
+     */
+    public boolean isSoftExpired(byte[] payload) {
+        long softExpireAt = softExpireAt(payload);
+        return softExpireAt > 0 && System.currentTimeMillis() >= softExpireAt;
+    }
+
+    public <T> T decode(byte[] payload, Class<T> type) throws IOException {
+        return decode(payload, objectMapper.constructType(type));
+    }
+
+    public <T> T decode(byte[] payload, TypeReference<T> type) throws IOException {
+        return decode(payload, objectMapper.getTypeFactory().constructType(type));
+    }
+
+    /**
+     * 解码缓存值，兼容无版本头的旧JSON
+     * @return 无法识别的版本或编解码器返回null，调用方按未命中处理
+     */
+    public <T> T decode(byte[] payload, JavaType type) throws IOException {
+        if (payload == null || payload.length == 0) return null;
+        if (payload[0] != MAGIC) {
+            return objectMapper.readValue(payload, type);
+        }
+        if (payload.length < HEADER_LENGTH || (payload[1] != VERSION && payload[1] != VERSION_SOFT_TTL)) {
+            log.warn("不支持的缓存版本: {}", payload.length > 1 ? payload[1] : -1);
+            return null;
+        }
+        CacheValueCodec codec = codecsById.get(payload[2]);
+        if (codec == null) {
+            log.warn("未知的缓存编解码器ID: {}", payload[2]);
+            return null;
+        }
+        return codec.decode(body(payload), type);
+    }
+
+    /**
+     * 将任意格式的缓存值转为JSON文本
+     */
+    public String toJson(byte[] payload) throws IOException {
+        if (payload == null) return null;
+        if (payload.length == 0 || payload[0] != MAGIC) {
+            return new String(payload, StandardCharsets.UTF_8);
+        }
+        JsonNode node = decode(payload, JsonNode.class);
+        return node != null ? objectMapper.writeValueAsString(node) : null;
+    }
+
+    private byte[] body(byte[] payload) {
+        int offset = HEADER_LENGTH + (payload[1] == VERSION_SOFT_TTL ? 8 : 0);
+        if ((payload[3] & FLAG_LZ4) == 0) {
+            byte[] body = new byte[payload.length - offset];
+            System.arraycopy(payload, offset, body, 0, body.length);
+            return body;
+        }
+        int originalLength = ByteBuffer.wrap(payload, offset, 4).getInt();
+        byte[] body = new byte[originalLength];
+        lz4Decompressor.decompress(payload, offset + 4, body, 0, originalLength);
+        return body;
+    }
+}
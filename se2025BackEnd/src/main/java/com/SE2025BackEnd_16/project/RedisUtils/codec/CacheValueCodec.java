@@ -0,0 +1,26 @@
+package com.SE2025BackEnd_16.project.RedisUtils.codec;
+
+import com.fasterxml.jackson.databind.JavaType;
+
+import java.io.IOException;
+
+/**
+ * 缓存值编解码器
+ * 负责对象与字节之间的转换，版本头和压缩由CacheCodecRegistry统一处理
+ */
+public interface CacheValueCodec {
+
+    /**
+     * 编解码器ID，写入版本头，读取时据此选择编解码器（取值不可变更）
+     */
+    byte id();
+
+    /**
+     * 配置中使用的名称，如 json、smile
+     */
+    String name();
+
+    byte[] encode(Object value) throws IOException;
+
+    <T> T decode(byte[] body, JavaType type) throws IOException;
+}
@@ -0,0 +1,50 @@
+package com.SE2025BackEnd_16.project.RedisUtils.codec;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import java.io.IOException;
+
+/**
+ * Smile二进制编解码器（Jackson二进制JSON）
+ * 字段名和重复字符串值会被共享引用，时间以数组形式写入，比JSON文本更紧凑、解析更快
+ */
+public class SmileCacheValueCodec implements CacheValueCodec {
+
+    public static final byte ID = 2;
+
+    private final ObjectMapper smileMapper;
+
+    public SmileCacheValueCodec() {
+        SmileFactory factory = new SmileFactory();
+        factory.enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES);
+        smileMapper = new ObjectMapper(factory);
+        smileMapper.registerModule(new JavaTimeModule());
+        // 新版本实体增删字段时仍可读取旧缓存
+        smileMapper.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+    }
+
+    @Override
+    public byte id() {
+        return ID;
+    }
+
+    @Override
+    public String name() {
+        return "smile";
+    }
+
+    @Override
+    public byte[] encode(Object value) throws IOException {
+        return smileMapper.writeValueAsBytes(value);
+    }
+
+    @Override
+    public <T> T decode(byte[] body, JavaType type) throws IOException {
+        return smileMapper.readValue(body, type);
+    }
+}
@@ -0,0 +1,112 @@
+package com.SE2025BackEnd_16.project.config;
+
+import com.SE2025BackEnd_16.project.KafkaUtils.KafkaTopics;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.DefaultErrorHandler;
+import org.springframework.kafka.retrytopic.RetryTopicComponentFactory;
+import org.springframework.kafka.retrytopic.RetryTopicConfiguration;
+import org.springframework.kafka.retrytopic.RetryTopicConfigurationBuilder;
+import org.springframework.kafka.retrytopic.RetryTopicNamesProviderFactory;
+import org.springframework.kafka.retrytopic.SuffixingRetryTopicNamesProviderFactory;
+import org.springframework.util.backoff.ExponentialBackOff;
+
+import java.util.Properties;
+
+@Configuration
+public class KafkaConfig {
+
+    // 批量消费每次poll最多拉取的记录数
+    @Value("${app.kafka.batch.max-records:200}")
+    private int batchMaxRecords;
+
+    @Value("${app.kafka.batch.concurrency:1}")
+    private int batchConcurrency;
+
+    // 总处理次数（含第一次），用完进入死信topic
+    @Value("${app.kafka.retry.max-attempts:4}")
+    private int retryMaxAttempts;
+
+    // 重试延迟：initial-delay-ms 起按 multiplier 倍增，不超过 max-delay-ms
+    @Value("${app.kafka.retry.initial-delay-ms:1000}")
+    private long retryInitialDelayMs;
+
+    @Value("${app.kafka.retry.multiplier:4.0}")
+    private double retryMultiplier;
+
+    @Value("${app.kafka.retry.max-delay-ms:60000}")
+    private long retryMaxDelayMs;
+
+    // 自动创建重试/死信topic时的分区数和副本数
+    @Value("${app.kafka.retry.topic-partitions:1}")
+    private int retryTopicPartitions;
+
+    @Value("${app.kafka.retry.topic-replicas:1}")
+    private short retryTopicReplicas;
+
+    /**
+     * 批量监听容器：监听方法一次收到一批 ConsumerRecord，整批处理完后提交位点
+     * 用于写库的商品/订单消息，同一实体的多条消息合并后一次saveAll、一次pipeline刷新缓存
+     * 监听方法抛出异常（如失败记录转入redo topic时发送失败）时不提交位点，按重试延迟退避后重新投递整批，
+     * 不会在重试若干次后记录日志并跳过；无法解析的消息（IllegalArgumentException）不重试
+     */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, String> batchKafkaListenerContainerFactory(
+            ConsumerFactory<String, String> consumerFactory) {
+        ConcurrentKafkaListenerContainerFactory<String, String> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(consumerFactory);
+        factory.setBatchListener(true);
+        factory.setConcurrency(batchConcurrency);
+        Properties overrides = new Properties();
+        overrides.setProperty(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, String.valueOf(batchMaxRecords));
+        factory.getContainerProperties().setKafkaConsumerProperties(overrides);
+        ExponentialBackOff backOff = new ExponentialBackOff(retryInitialDelayMs, retryMultiplier);
+        backOff.setMaxInterval(retryMaxDelayMs);
+        DefaultErrorHandler errorHandler = new DefaultErrorHandler(backOff);
+        errorHandler.addNotRetryableExceptions(IllegalArgumentException.class);
+        factory.setCommonErrorHandler(errorHandler);
+        return factory;
+    }
+
+    /**
+     * 非阻塞重试：KafkaTopics.RETRYABLE 中的topic处理失败时转入重试topic，延迟到期后再消费，
+     * 不阻塞原topic的后续消息；次数用完或消息无法解析（IllegalArgumentException）时进入死信topic
+     */
+    @Bean
+    public RetryTopicConfiguration retryTopicConfiguration(KafkaTemplate<String, String> kafkaTemplate) {
+        return RetryTopicConfigurationBuilder.newInstance()
+            .maxAttempts(retryMaxAttempts)
+            .exponentialBackoff(retryInitialDelayMs, retryMultiplier, retryMaxDelayMs)
+            .retryTopicSuffix(KafkaTopics.RETRY_SUFFIX)
+            .dltSuffix(KafkaTopics.DLT_SUFFIX)
+            .suffixTopicsWithIndexValues()
+            .autoCreateTopicsWith(retryTopicPartitions, retryTopicReplicas)
+            .notRetryOn(IllegalArgumentException.class)
+            .traversingCauses(true)
+            .includeTopics(KafkaTopics.RETRYABLE)
+            .create(kafkaTemplate);
+    }
+
+    /**
+     * 重试/死信topic命名：<topic>-redo 入口的重试链去掉 -redo，与逐条监听的topic统一为 <topic>-retry-N、<topic>-dlt
+     */
+    @Bean
+    public RetryTopicComponentFactory retryTopicComponentFactory() {
+        return new RetryTopicComponentFactory() {
+            @Override
+            public RetryTopicNamesProviderFactory retryTopicNamesProviderFactory() {
+                return properties -> new SuffixingRetryTopicNamesProviderFactory.SuffixingRetryTopicNamesProvider(properties) {
+                    @Override
+                    public String getTopicName(String topic) {
+                        return properties.isMainEndpoint() ? topic : super.getTopicName(KafkaTopics.baseTopic(topic));
+                    }
+                };
+            }
+        };
+    }
+}
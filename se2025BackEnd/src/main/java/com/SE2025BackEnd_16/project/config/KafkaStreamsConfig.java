@@ -0,0 +1,29 @@
+package com.SE2025BackEnd_16.project.config;
+
+import com.SE2025BackEnd_16.project.KafkaUtils.KafkaTopics;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.kstream.Consumed;
+import org.apache.kafka.streams.kstream.KStream;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.annotation.EnableKafkaStreams;
+
+/**
+ * Kafka Streams：application-id、exactly_once 等参数见 application.properties 中的 spring.kafka.streams.*
+ * 拓扑见 ItemViewTopology（浏览量）、ItemTrendingTopology（热度）
+ */
+@Configuration
+@EnableKafkaStreams
+@ConditionalOnProperty(name = "app.kafka.streams.enabled", havingValue = "true", matchIfMissing = true)
+public class KafkaStreamsConfig {
+
+    /**
+     * 浏览事件流：同一个topic在一个拓扑中只能注册一次，浏览量和热度共用这一个source
+     */
+    @Bean
+    public KStream<String, String> itemViewStream(StreamsBuilder builder) {
+        return builder.stream(KafkaTopics.ITEM_VIEW, Consumed.with(Serdes.String(), Serdes.String()));
+    }
+}
@@ -0,0 +1,12 @@
+package com.SE2025BackEnd_16.project.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * 开启定时任务（商品索引对账等）
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -61,9 +61,16 @@ public class SecurityConfig {
                     authorize.requestMatchers("/", "/login", "/register").permitAll();
                     authorize.requestMatchers("/static/**", "/assets/**").permitAll();
 
+                    // 运维接口仅管理员可用：缓存（清空近端缓存、重建索引、迁移key、对账等）、Kafka死信（含其他用户数据，可重放）
+                    authorize.requestMatchers("/api/admin/**").hasRole("ADMIN");
+
                     // 其他API需要认证
                     authorize.requestMatchers("/api/**").authenticated();
 
+                    // 监控端点：健康检查匿名可访问，指标需要认证
+                    authorize.requestMatchers("/actuator/health").permitAll();
+                    authorize.requestMatchers("/actuator/**").authenticated();
+
                     // 其他请求允许
                     authorize.anyRequest().permitAll();
                 })
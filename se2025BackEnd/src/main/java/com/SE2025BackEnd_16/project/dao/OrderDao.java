@@ -7,6 +7,7 @@ import com.SE2025BackEnd_16.project.entity.UserInfo;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface OrderDao {
@@ -24,6 +25,11 @@ public interface OrderDao {
     Order findByOrderId(String orderId);
 
     Order save(Order order);
+
+    // 批量查询/保存订单（Kafka批量消费使用）
+    List<Order> findAllByOrderIds(Collection<String> orderIds);
+
+    List<Order> saveAll(Collection<Order> orders);
     
     List<Order> findAll();
 }
@@ -11,6 +11,7 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -51,6 +52,16 @@ public class OrderDaolmpl implements OrderDao {
         return orderRepository.save(order);
     }
 
+    @Override
+    public List<Order> findAllByOrderIds(Collection<String> orderIds){
+        return orderRepository.findAllById(orderIds);
+    }
+
+    @Override
+    public List<Order> saveAll(Collection<Order> orders){
+        return orderRepository.saveAll(orders);
+    }
+
     @Override
     public List<Order> findAll(){
         return orderRepository.findAll();
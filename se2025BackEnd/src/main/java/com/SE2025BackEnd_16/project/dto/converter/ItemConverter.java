@@ -71,6 +71,7 @@ public class ItemConverter {
                 .itemId(item.getItemId())
                 .title(item.getItemName())
                 .price(item.getPrice())
+                .categoryId(item.getCategoryId())
                 .categoryName(categoryName)
                 .condition(item.getItemCondition())
                 .description(item.getDescription())
@@ -40,6 +40,8 @@ public class ItemQueryRequestDTO {
     @Min(value = 1, message = "每页大小不能小于1")
     @Max(value = 100, message = "每页大小不能超过100")
     private Integer size = 20; // 每页大小
+
+    private String cursor; // 分页游标（不为null时按游标分页，空串表示第一页）
     
     /**
      * 是否有关键词搜索
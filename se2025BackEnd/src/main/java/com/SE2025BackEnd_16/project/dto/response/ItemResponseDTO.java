@@ -21,6 +21,7 @@ public class ItemResponseDTO {
     private Integer itemId;
     private String title;
     private BigDecimal price;
+    private Integer categoryId;
     private String categoryName;
     private String condition;
     private String description;
@@ -24,6 +24,7 @@ public class PageResponseDTO<T> {
     private Boolean first; // 是否为第一页
     private Boolean last; // 是否为最后一页
     private Boolean empty; // 是否为空
+    private String nextCursor; // 下一页游标（游标分页时返回，没有更多数据为null）
     
     /**
      * 创建分页响应
@@ -43,6 +44,22 @@ public class PageResponseDTO<T> {
                 .build();
     }
     
+    /**
+     * 创建游标分页响应（page为null，通过nextCursor翻页）
+     */
+    public static <T> PageResponseDTO<T> ofCursor(List<T> content, Integer size, Long totalElements, String cursor, String nextCursor) {
+        return PageResponseDTO.<T>builder()
+                .content(content)
+                .size(size)
+                .totalElements(totalElements)
+                .totalPages(size == null || size <= 0 || totalElements == null ? 0 : (int) Math.ceil((double) totalElements / size))
+                .first(cursor == null || cursor.isEmpty())
+                .last(nextCursor == null)
+                .empty(content == null || content.isEmpty())
+                .nextCursor(nextCursor)
+                .build();
+    }
+
     /**
      * 创建空的分页响应
      */
@@ -63,14 +80,14 @@ public class PageResponseDTO<T> {
      * 是否有下一页
      */
     public boolean hasNext() {
-        return !last && page < totalPages - 1;
+        return page != null && !last && page < totalPages - 1;
     }
     
     /**
      * 是否有上一页
      */
     public boolean hasPrevious() {
-        return page > 0;
+        return page != null && page > 0;
     }
     
     /**
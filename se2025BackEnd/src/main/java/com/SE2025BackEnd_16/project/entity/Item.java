@@ -46,6 +46,13 @@ public class Item {
     @Column(name = "update_time")
     private LocalDateTime updateTime;
     
+    // 写版本号（见 RedisUtils.nextItemVersion）：异步写库时旧版本的事件不会覆盖新版本，缓存比库新时不被库中旧值回写
+    @Column(name = "content_version")
+    private Long contentVersion = 0L;
+
+    @Column(name = "availability_version")
+    private Long availabilityVersion = 0L;
+    
     @Column(name = "seller_id", nullable = false)
     private Integer sellerId;
     
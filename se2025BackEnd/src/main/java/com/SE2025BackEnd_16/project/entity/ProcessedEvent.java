@@ -0,0 +1,59 @@
+package com.SE2025BackEnd_16.project.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import org.springframework.data.domain.Persistable;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * 已处理的Kafka事件（消费端去重）
+ * 与业务写入在同一事务中插入，主键(consumer, event_id)保证同一事件对同一消费者只生效一次
+ */
+@Entity
+@Table(name = "processed_events")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@IdClass(ProcessedEvent.ProcessedEventId.class)
+public class ProcessedEvent implements Persistable<ProcessedEvent.ProcessedEventId> {
+
+    @Id
+    @Column(name = "consumer", nullable = false)
+    private String consumer;
+
+    @Id
+    @Column(name = "event_id", nullable = false)
+    private String eventId;
+
+    @Column(name = "topic")
+    private String topic;
+
+    @Column(name = "processed_at")
+    private LocalDateTime processedAt;
+
+    @Override
+    public ProcessedEventId getId() {
+        return new ProcessedEventId(consumer, eventId);
+    }
+
+    /**
+     * 总是按新记录persist：重复事件直接触发主键冲突回滚，而不是被merge成一次更新
+     */
+    @Override
+    public boolean isNew() {
+        return true;
+    }
+
+    // 复合主键类
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ProcessedEventId implements Serializable {
+        private String consumer;
+        private String eventId;
+    }
+}
@@ -2,8 +2,13 @@ package com.SE2025BackEnd_16.project.repository;
 
 import com.SE2025BackEnd_16.project.entity.Category;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -11,4 +16,17 @@ public interface CategoryRepository extends JpaRepository<Category, Integer> {
     
     // 根据分类名称查找
     Optional<Category> findByCategoryName(String categoryName);
-} 
\ No newline at end of file
+
+    // 累加分类总浏览次数（view_counts不映射到实体，分类的保存不会覆盖它）
+    @Modifying
+    @Query(value = "UPDATE categories SET view_counts = COALESCE(view_counts, 0) + :count WHERE category_id = :categoryId", nativeQuery = true)
+    int addViewCounts(@Param("categoryId") Integer categoryId, @Param("count") long count);
+
+    // 全部分类的总浏览次数，返回 [categoryId, viewCounts]
+    @Query(value = "SELECT category_id, COALESCE(view_counts, 0) FROM categories", nativeQuery = true)
+    List<Object[]> findAllViewCounts();
+
+    // 指定分类的总浏览次数，返回 [categoryId, viewCounts]
+    @Query(value = "SELECT category_id, COALESCE(view_counts, 0) FROM categories WHERE category_id IN :categoryIds", nativeQuery = true)
+    List<Object[]> findViewCountsByIds(@Param("categoryIds") Collection<Integer> categoryIds);
+}
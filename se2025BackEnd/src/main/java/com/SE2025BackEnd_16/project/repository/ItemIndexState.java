@@ -0,0 +1,32 @@
+package com.SE2025BackEnd_16.project.repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * 商品索引相关字段的投影（Redis↔MySQL对账用，不加载描述、图片等大字段）
+ */
+public interface ItemIndexState {
+
+    Integer getItemId();
+
+    Integer getCategoryId();
+
+    Integer getSellerId();
+
+    BigDecimal getPrice();
+
+    Integer getLikes();
+
+    Boolean getIsAvailable();
+
+    Boolean getIsDeleted();
+
+    LocalDateTime getUpdateTime();
+
+    String getItemCondition();
+
+    Long getContentVersion();
+
+    Long getAvailabilityVersion();
+}
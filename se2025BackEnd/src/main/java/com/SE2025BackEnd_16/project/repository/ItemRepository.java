@@ -1,17 +1,23 @@
 package com.SE2025BackEnd_16.project.repository;
 
 import com.SE2025BackEnd_16.project.entity.Item;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface ItemRepository extends JpaRepository<Item, Integer> {
@@ -78,14 +84,47 @@ public interface ItemRepository extends JpaRepository<Item, Integer> {
     
     // 增加收藏数（只对未删除的商品）
     @Modifying
-    @Query("UPDATE Item i SET i.likes = i.likes + 1 WHERE i.itemId = :itemId AND i.isDeleted = false")
+    @Query("UPDATE Item i SET i.likes = i.likes + 1, i.updateTime = i.updateTime WHERE i.itemId = :itemId AND i.isDeleted = false")
     void incrementLikes(@Param("itemId") Integer itemId);
     
     // 减少收藏数（只对未删除的商品）
     @Modifying
-    @Query("UPDATE Item i SET i.likes = i.likes - 1 WHERE i.itemId = :itemId AND i.likes > 0 AND i.isDeleted = false")
+    @Query("UPDATE Item i SET i.likes = i.likes - 1, i.updateTime = i.updateTime WHERE i.itemId = :itemId AND i.likes > 0 AND i.isDeleted = false")
     void decrementLikes(@Param("itemId") Integer itemId);
 
+    // likes增减delta（批量消费合并后的增量），结果不小于0
+    // update_time显式赋原值：否则 ON UPDATE CURRENT_TIMESTAMP 会把被收藏的商品顶到"最新发布"前面
+    @Modifying
+    @Query("UPDATE Item i SET i.likes = CASE WHEN i.likes + :delta < 0 THEN 0 ELSE i.likes + :delta END, " +
+           "i.updateTime = i.updateTime WHERE i.itemId = :itemId AND i.isDeleted = false")
+    void adjustLikes(@Param("itemId") Integer itemId, @Param("delta") int delta);
+
+    // ========== 异步写库（只写各自的列，不用saveAll整行覆盖，避免冲掉并发的likes等字段） ==========
+    // 带写版本号：库中版本比事件新时不更新（返回0），乱序到达的旧事件不会覆盖新值；旧格式事件版本为0
+
+    // 编辑商品内容；imageUrl为空时保留原图；编辑不算重新发布，update_time保持不变
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Item i SET i.itemName = :itemName, i.description = :description, i.price = :price, " +
+           "i.itemCondition = :itemCondition, i.categoryId = :categoryId, i.imageUrl = COALESCE(:imageUrl, i.imageUrl), " +
+           "i.contentVersion = :version, i.updateTime = i.updateTime " +
+           "WHERE i.itemId = :itemId AND i.isDeleted = false AND i.contentVersion <= :version")
+    int updateContent(@Param("itemId") Integer itemId, @Param("itemName") String itemName,
+                      @Param("description") String description, @Param("price") BigDecimal price,
+                      @Param("itemCondition") String itemCondition, @Param("categoryId") Integer categoryId,
+                      @Param("imageUrl") String imageUrl, @Param("version") long version);
+
+    // 上架：update_time记为上架时间（"最新发布"的排序分数）
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Item i SET i.isAvailable = true, i.updateTime = :listedAt, i.availabilityVersion = :version " +
+           "WHERE i.itemId = :itemId AND i.isDeleted = false AND i.availabilityVersion <= :version")
+    int markAvailable(@Param("itemId") Integer itemId, @Param("listedAt") LocalDateTime listedAt,
+                      @Param("version") long version);
+
+    // 下架/售出：update_time保持不变
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Item i SET i.isAvailable = false, i.updateTime = i.updateTime, i.availabilityVersion = :version " +
+           "WHERE i.itemId = :itemId AND i.isDeleted = false AND i.availabilityVersion <= :version")
+    int markUnavailable(@Param("itemId") Integer itemId, @Param("version") long version);
 
     // 全部商品分页
     Page<Item> findAll(Pageable pageable);
@@ -113,4 +152,31 @@ public interface ItemRepository extends JpaRepository<Item, Integer> {
     @Query("SELECT i FROM Item i WHERE i.isDeleted = false")
     List<Item> findByIsDeletedFalse();
 
-} 
\ No newline at end of file
+    // 流式读取所有未删除的物品（用于批量重建Redis索引）
+    // fetchSize=Integer.MIN_VALUE 时MySQL驱动逐行流式返回，不会把整表读进内存；需在只读事务中消费并关闭Stream
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+        @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "false")
+    })
+    @Query("SELECT i FROM Item i WHERE i.isDeleted = false")
+    Stream<Item> streamAllActive();
+
+    // ========== Redis索引对账 ==========
+
+    // 按ID批量查询索引相关字段（包含已删除的物品，用于判断Redis中的残留）
+    @Query("SELECT i.itemId AS itemId, i.categoryId AS categoryId, i.sellerId AS sellerId, i.price AS price, " +
+           "i.likes AS likes, i.isAvailable AS isAvailable, i.isDeleted AS isDeleted, " +
+           "i.updateTime AS updateTime, i.itemCondition AS itemCondition, " +
+           "i.contentVersion AS contentVersion, i.availabilityVersion AS availabilityVersion FROM Item i WHERE i.itemId IN :itemIds")
+    List<ItemIndexState> findIndexStateByIds(@Param("itemIds") Collection<Integer> itemIds);
+
+    // 按ID游标分页查询可售物品的索引字段
+    @Query("SELECT i.itemId AS itemId, i.categoryId AS categoryId, i.sellerId AS sellerId, i.price AS price, " +
+           "i.likes AS likes, i.isAvailable AS isAvailable, i.isDeleted AS isDeleted, " +
+           "i.updateTime AS updateTime, i.itemCondition AS itemCondition, " +
+           "i.contentVersion AS contentVersion, i.availabilityVersion AS availabilityVersion FROM Item i " +
+           "WHERE i.isAvailable = true AND i.isDeleted = false AND i.itemId > :afterId ORDER BY i.itemId")
+    List<ItemIndexState> findAvailableIndexStateAfter(@Param("afterId") Integer afterId, Pageable pageable);
+
+}
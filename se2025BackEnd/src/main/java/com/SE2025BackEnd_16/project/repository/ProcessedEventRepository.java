@@ -0,0 +1,27 @@
+package com.SE2025BackEnd_16.project.repository;
+
+import com.SE2025BackEnd_16.project.entity.ProcessedEvent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface ProcessedEventRepository extends JpaRepository<ProcessedEvent, ProcessedEvent.ProcessedEventId> {
+
+    // 一批事件ID中已被该消费者处理过的
+    @Query("SELECT p.eventId FROM ProcessedEvent p WHERE p.consumer = :consumer AND p.eventId IN :eventIds")
+    List<String> findProcessedIds(@Param("consumer") String consumer, @Param("eventIds") Collection<String> eventIds);
+
+    // 清理保留期之前的记录
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM ProcessedEvent p WHERE p.processedAt < :before")
+    int deleteProcessedBefore(@Param("before") LocalDateTime before);
+}
@@ -52,6 +52,13 @@ public interface UserInfoRepository extends JpaRepository<UserInfo, Integer> {
                        @Param("username") String username,
                        @Param("phone") String phone,
                        @Param("note") String note);
+
+    // 计入一次评分：creditScore = (creditScore * creditTime + credit) / (creditTime + 1)，保留两位小数
+    // 在一条UPDATE内完成读改写，并行消费不同订单的评价落到同一用户时不会丢失更新（MySQL按从左到右的顺序赋值，creditScore用的是旧creditTime）
+    @Modifying
+    @Query("UPDATE UserInfo u SET u.creditScore = ROUND((u.creditScore * u.creditTime + :credit) / (u.creditTime + 1), 2), " +
+           "u.creditTime = u.creditTime + 1 WHERE u.userId = :userId")
+    int addCredit(@Param("userId") Integer userId, @Param("credit") int credit);
                        
     // 检查邮箱是否已被其他用户使用
     @Query("SELECT CASE WHEN COUNT(u) > 0 THEN true ELSE false END FROM UserInfo u WHERE u.email = :email AND u.userId <> :userId")
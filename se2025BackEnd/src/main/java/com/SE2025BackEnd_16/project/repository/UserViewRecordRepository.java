@@ -35,7 +35,7 @@ public interface UserViewRecordRepository extends JpaRepository<UserViewRecord,
     // 查询某分类的热门程度（总浏览次数）
     @Query("SELECT SUM(uvr.categoryViewCounts) FROM UserViewRecord uvr WHERE uvr.categoryId = :categoryId")
     Long getTotalViewsByCategoryId(@Param("categoryId") Integer categoryId);
-    
+
     // 根据时间范围查询浏览记录
     List<UserViewRecord> findByViewTimeBetween(LocalDateTime startTime, LocalDateTime endTime);
     
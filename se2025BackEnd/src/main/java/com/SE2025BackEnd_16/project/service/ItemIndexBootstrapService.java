@@ -0,0 +1,279 @@
+package com.SE2025BackEnd_16.project.service;
+
+import com.SE2025BackEnd_16.project.RedisUtils.CachePenetrationGuard;
+import com.SE2025BackEnd_16.project.RedisUtils.RedisUtils;
+import com.SE2025BackEnd_16.project.entity.Item;
+import com.SE2025BackEnd_16.project.repository.ItemRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * 商品索引全量重建
+ * 从MySQL流式读取 items（服务端游标，不把整表读进内存），按批交给工作线程，
+ * 每批一次pipeline写入 items:ids:set、卖家集合、可售/分类集合、分类ZSet、首页ZSet；
+ * 工作线程队列满时由读取线程自己执行（CallerRunsPolicy），读取速度自动跟随Redis写入速度；
+ * 本实例内用 running 标志、实例之间用Redisson锁保证同一时间只有一次重建，
+ * 所有批次都写入成功才重建商品布隆过滤器，否则保留原过滤器
+ */
+@Slf4j
+@Service
+public class ItemIndexBootstrapService {
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Autowired
+    private RedisUtils redisUtils;
+
+    @Autowired
+    private CachePenetrationGuard penetrationGuard;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired(required = false)
+    private DistributedLockService distributedLockService;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${app.bootstrap.item-index.threads:4}")
+    private int threads;
+
+    @Value("${app.bootstrap.item-index.batch-size:1000}")
+    private int batchSize;
+
+    // 是否同时写入商品详情缓存（百万级数据时建议关闭，详情按需回源）
+    @Value("${app.bootstrap.item-index.cache-details:false}")
+    private boolean cacheDetails;
+
+    // 每处理多少条输出一次进度
+    @Value("${app.bootstrap.item-index.progress-interval:50000}")
+    private int progressInterval;
+
+    private static final String LOCK_KEY = "item-index-bootstrap:lock";
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong indexed = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong failedBatches = new AtomicLong();
+    private volatile long startedAtMs;
+    private volatile long finishedAtMs;
+    private volatile LocalDateTime startedAt;
+    private volatile LocalDateTime finishedAt;
+    private volatile String lastError;
+
+    /**
+     * 后台启动一次重建
+     * @param reset 是否先清空所有商品相关缓存
+     * @return 已有重建任务在运行时返回false
+     */
+    public boolean start(boolean reset) {
+        if (isLockedElsewhere()) return false;
+        if (!running.compareAndSet(false, true)) return false;
+        Thread thread = new Thread(() -> runLocked(reset), "item-index-bootstrap");
+        thread.setDaemon(true);
+        try {
+            thread.start();
+        } catch (RuntimeException e) {
+            running.set(false);
+            throw e;
+        }
+        return true;
+    }
+
+    /**
+     * 在当前线程执行一次重建，完成（所有批次写入结束）后返回
+     * @return 已有重建任务在运行时返回false
+     */
+    public boolean run(boolean reset) {
+        if (!running.compareAndSet(false, true)) {
+            log.warn("商品索引重建已在进行中，忽略本次请求");
+            return false;
+        }
+        return runLocked(reset);
+    }
+
+    /**
+     * 已置running标志后执行：再抢实例间的Redisson锁（看门狗续期），抢不到说明其他实例正在重建
+     */
+    private boolean runLocked(boolean reset) {
+        boolean locked = false;
+        try {
+            if (distributedLockService != null) {
+                locked = distributedLockService.tryLock(LOCK_KEY, 0, -1, TimeUnit.SECONDS);
+                if (!locked) {
+                    lastError = "其他实例正在重建商品索引";
+                    log.warn("其他实例正在重建商品索引，忽略本次请求");
+                    return false;
+                }
+            }
+            rebuild(reset);
+            return true;
+        } finally {
+            if (locked) {
+                distributedLockService.unlock(LOCK_KEY);
+            }
+            running.set(false);
+        }
+    }
+
+    private void rebuild(boolean reset) {
+        resetStatus();
+        ThreadPoolExecutor executor = newExecutor();
+        try {
+            if (reset) {
+                redisUtils.clearAllItemCache();
+            }
+            List<Integer> itemIds = new ArrayList<>();
+            TransactionTemplate template = new TransactionTemplate(transactionManager);
+            template.setReadOnly(true);
+            template.executeWithoutResult(status -> {
+                try (Stream<Item> stream = itemRepository.streamAllActive()) {
+                    List<Item> batch = new ArrayList<>(batchSize);
+                    stream.forEach(item -> {
+                        batch.add(item);
+                        itemIds.add(item.getItemId());
+                        if (batch.size() >= batchSize) {
+                            submit(executor, new ArrayList<>(batch));
+                            batch.clear();
+                            // 实体只读且已交给工作线程，清空持久化上下文避免一级缓存无限增长
+                            entityManager.clear();
+                        }
+                    });
+                    if (!batch.isEmpty()) {
+                        submit(executor, new ArrayList<>(batch));
+                    }
+                }
+            });
+            executor.shutdown();
+            if (!executor.awaitTermination(1, TimeUnit.HOURS)) {
+                throw new RuntimeException("等待索引写入超时");
+            }
+            if (failedBatches.get() == 0) {
+                penetrationGuard.rebuildItemFilter(itemIds);
+            } else {
+                // 有批次失败时ID列表与Redis索引不一致，保留原布隆过滤器，避免误判已有商品不存在
+                log.warn("有{}个批次写入失败，跳过商品布隆过滤器重建", failedBatches.get());
+            }
+            finish();
+            log.info("商品索引重建完成，商品数: {}, 批次: {}, 失败批次: {}, 耗时: {}ms, 速度: {}条/秒",
+                processed.get(), batches.get(), failedBatches.get(), elapsedMs(), throughput());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            lastError = "重建被中断";
+            finish();
+        } catch (Exception e) {
+            lastError = e.getMessage();
+            finish();
+            log.error("商品索引重建失败: {}", e.getMessage(), e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void submit(ThreadPoolExecutor executor, List<Item> batch) {
+        executor.execute(() -> {
+            try {
+                indexed.addAndGet(redisUtils.bulkIndexItems(batch, cacheDetails));
+                batches.incrementAndGet();
+            } catch (Exception e) {
+                failedBatches.incrementAndGet();
+                lastError = e.getMessage();
+                log.warn("写入商品索引批次失败，起始ID: {}, {}", batch.get(0).getItemId(), e.getMessage());
+            }
+            long done = processed.addAndGet(batch.size());
+            if (done / progressInterval != (done - batch.size()) / progressInterval) {
+                log.info("商品索引重建进度: {}条, 速度: {}条/秒", done, throughput());
+            }
+        });
+    }
+
+    private ThreadPoolExecutor newExecutor() {
+        AtomicInteger index = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(threads * 2),
+            runnable -> {
+                Thread thread = new Thread(runnable, "item-index-writer-" + index.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            },
+            new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    private void resetStatus() {
+        processed.set(0);
+        indexed.set(0);
+        batches.set(0);
+        failedBatches.set(0);
+        lastError = null;
+        finishedAt = null;
+        finishedAtMs = 0;
+        startedAt = LocalDateTime.now();
+        startedAtMs = System.currentTimeMillis();
+    }
+
+    private void finish() {
+        finishedAt = LocalDateTime.now();
+        finishedAtMs = System.currentTimeMillis();
+    }
+
+    private long elapsedMs() {
+        if (startedAtMs == 0) return 0;
+        return (finishedAtMs > 0 ? finishedAtMs : System.currentTimeMillis()) - startedAtMs;
+    }
+
+    private long throughput() {
+        long elapsed = elapsedMs();
+        return elapsed > 0 ? processed.get() * 1000 / elapsed : 0;
+    }
+
+    /**
+     * 本实例或其他实例是否正在重建
+     */
+    public boolean isRunning() {
+        return running.get() || isLockedElsewhere();
+    }
+
+    private boolean isLockedElsewhere() {
+        return distributedLockService != null && distributedLockService.getLock(LOCK_KEY).isLocked();
+    }
+
+    /**
+     * 重建进度：processed为已写入的商品数，indexed为写入的key数（每个key一条命令），throughput为条/秒
+     */
+    public Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("running", isRunning());
+        status.put("processed", processed.get());
+        status.put("indexed", indexed.get());
+        status.put("batches", batches.get());
+        status.put("failedBatches", failedBatches.get());
+        status.put("elapsedMs", elapsedMs());
+        status.put("throughput", throughput());
+        status.put("startedAt", startedAt);
+        status.put("finishedAt", finishedAt);
+        status.put("lastError", lastError);
+        return status;
+    }
+}
@@ -0,0 +1,484 @@
+package com.SE2025BackEnd_16.project.service;
+
+import com.SE2025BackEnd_16.project.RedisUtils.CacheTagRegistry;
+import com.SE2025BackEnd_16.project.RedisUtils.RedisKeySchema;
+import com.SE2025BackEnd_16.project.RedisUtils.RedisUtils;
+import com.SE2025BackEnd_16.project.entity.Item;
+import com.SE2025BackEnd_16.project.repository.ItemIndexState;
+import com.SE2025BackEnd_16.project.repository.ItemRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * 商品索引对账（Redis ↔ MySQL）
+ * 异步写入路径会留下不一致：createItem消息失败后残留的负数临时ID、deleteItem软删除后仍在首页ZSet中的商品、过期的点赞数分数等。
+ * 对账分三步，每步都按批（ZSCAN/主键游标）读取，用投影查询只取索引相关字段，只修复有差异的商品：
+ *   1. ZSCAN首页ZSet：清理孤立临时ID、已删除/不存在的商品，不可售或分数不一致的商品按数据库重新写入索引
+ *   2. SCAN各分类ZSet：清理不属于该分类或已不可售的商品
+ *   3. 按主键游标遍历数据库中的可售商品：补回缺失的索引
+ * 每批之间按 max-batches-per-second 限速，单次修复数量超过 max-repairs 后只统计不再修复
+ * 缓存版本比库新的商品（编辑/上下架事件尚未落库）视为进行中，跳过不修复，以免用库中旧值回滚刚写入的缓存和索引
+ * 多实例时由分布式锁保证同一时间只有一个实例在对账
+ */
+@Slf4j
+@Service
+public class ItemIndexReconciler {
+
+    private static final String SCORE_FIELD = "update_time";
+
+    // 报告中每类问题最多列出的商品ID数
+    private static final int SAMPLE_LIMIT = 20;
+
+    private static final String LOCK_KEY = "item-index-reconcile:lock";
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Autowired
+    private RedisUtils redisUtils;
+
+    @Autowired
+    private RedisKeySchema keySchema;
+
+    @Autowired
+    private CacheTagRegistry cacheTagRegistry;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private ItemIndexBootstrapService bootstrapService;
+
+    @Autowired(required = false)
+    private DistributedLockService distributedLockService;
+
+    @Value("${app.reconcile.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.reconcile.batch-size:500}")
+    private int batchSize;
+
+    // 每秒最多处理的批次数（限速，避免对账挤占Redis和MySQL）
+    @Value("${app.reconcile.max-batches-per-second:5}")
+    private double maxBatchesPerSecond;
+
+    // 单次对账最多修复的商品数，超过后只统计
+    @Value("${app.reconcile.max-repairs:10000}")
+    private int maxRepairs;
+
+    // 临时ID超过该时间仍未被替换为真实ID才视为孤立（给Kafka消息留出处理时间）
+    @Value("${app.reconcile.temp-id-grace-seconds:600}")
+    private long tempIdGraceSeconds;
+
+    // 修复时写入详情缓存的过期时间（分钟）
+    @Value("${app.reconcile.detail-ttl-minutes:60}")
+    private long detailTtlMinutes;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private volatile Map<String, Object> lastReport;
+
+    /**
+     * 定时对账
+     */
+    @Scheduled(initialDelayString = "${app.reconcile.initial-delay-ms:300000}",
+               fixedDelayString = "${app.reconcile.interval-ms:600000}")
+    public void scheduledRun() {
+        if (!enabled) return;
+        run(false);
+    }
+
+    /**
+     * 后台启动一次对账
+     * @param dryRun 只统计差异不修复
+     * @return 已有对账或索引重建在运行时返回false
+     */
+    public boolean start(boolean dryRun) {
+        if (running.get() || bootstrapService.isRunning()) return false;
+        Thread thread = new Thread(() -> run(dryRun), "item-index-reconciler");
+        thread.setDaemon(true);
+        thread.start();
+        return true;
+    }
+
+    /**
+     * 在当前线程执行一次对账
+     * @return 已有对账或索引重建在运行时返回false
+     */
+    public boolean run(boolean dryRun) {
+        if (bootstrapService.isRunning()) {
+            log.info("商品索引重建中，跳过本次对账");
+            return false;
+        }
+        if (!running.compareAndSet(false, true)) {
+            log.warn("商品索引对账已在进行中，忽略本次请求");
+            return false;
+        }
+        // 不设租期，由Redisson看门狗续期，对账结束或实例退出后释放
+        if (distributedLockService != null && !distributedLockService.tryLock(LOCK_KEY, 0, -1, TimeUnit.SECONDS)) {
+            running.set(false);
+            log.info("其他实例正在对账，跳过本次对账");
+            return false;
+        }
+        Report report = new Report(dryRun);
+        try {
+            reconcileOnSale(report);
+            reconcileCategories(report);
+            reconcileMissing(report);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            report.error = "对账被中断";
+        } catch (Exception e) {
+            report.error = e.getMessage();
+            log.error("商品索引对账失败: {}", e.getMessage(), e);
+        } finally {
+            lastReport = report.finish();
+            if (distributedLockService != null) distributedLockService.unlock(LOCK_KEY);
+            running.set(false);
+        }
+        log.info("商品索引对账完成: {}", lastReport);
+        return true;
+    }
+
+    // ==================== 1. 首页ZSet ====================
+
+    private void reconcileOnSale(Report report) throws InterruptedException {
+        String key = keySchema.onSaleSortedKey(SCORE_FIELD);
+        zscan(key, report, batch -> {
+            List<Integer> ids = new ArrayList<>(batch.size());
+            Map<Integer, Double> updateScores = new HashMap<>();
+            for (ZSetOperations.TypedTuple<String> tuple : batch) {
+                Integer itemId = parseId(tuple.getValue());
+                if (itemId == null) continue;
+                if (itemId < 0) {
+                    if (isOrphanTempId(tuple.getScore())) {
+                        repair(report, "orphanTempId", itemId, () -> redisUtils.removeItemFromIndexes(itemId, redisUtils.getItemDetail(itemId)));
+                    }
+                    continue;
+                }
+                ids.add(itemId);
+                updateScores.put(itemId, tuple.getScore());
+            }
+            if (ids.isEmpty()) return;
+            Map<Integer, ItemIndexState> states = loadStates(ids);
+            Set<Integer> inFlight = newerInCache(states, report);
+            Map<String, List<Double>> scores = new HashMap<>();
+            for (String sortBy : RedisUtils.ITEM_SORT_FIELDS) {
+                if (!SCORE_FIELD.equals(sortBy)) {
+                    scores.put(sortBy, stringRedisTemplate.opsForZSet().score(keySchema.onSaleSortedKey(sortBy), ids.toArray()));
+                }
+            }
+            List<Integer> reload = new ArrayList<>();
+            for (int i = 0; i < ids.size(); i++) {
+                int itemId = ids.get(i);
+                ItemIndexState state = states.get(itemId);
+                if (inFlight.contains(itemId)) {
+                    continue;
+                } else if (state == null) {
+                    repair(report, "missingInDb", itemId, () -> redisUtils.removeItemFromIndexes(itemId, redisUtils.getItemDetail(itemId)));
+                } else if (Boolean.TRUE.equals(state.getIsDeleted())) {
+                    repair(report, "deleted", itemId, () -> redisUtils.removeItemFromIndexes(itemId, toItem(state)));
+                } else if (!Boolean.TRUE.equals(state.getIsAvailable())) {
+                    reload.add(itemId);
+                    report.found("unavailable", itemId);
+                } else if (hasScoreDrift(state, updateScores.get(itemId), scores, i)) {
+                    reload.add(itemId);
+                    report.found("staleScore", itemId);
+                }
+            }
+            reloadAndApply(report, reload);
+        });
+    }
+
+    private boolean hasScoreDrift(ItemIndexState state, Double updateScore, Map<String, List<Double>> scores, int index) {
+        Item item = toItem(state);
+        // update_time为空时写入的是写入时刻，无法比较
+        if (state.getUpdateTime() != null && differs(updateScore, redisUtils.itemScore(item, SCORE_FIELD), 1.0)) {
+            return true;
+        }
+        for (Map.Entry<String, List<Double>> entry : scores.entrySet()) {
+            List<Double> values = entry.getValue();
+            Double actual = values != null && index < values.size() ? values.get(index) : null;
+            if (differs(actual, redisUtils.itemScore(item, entry.getKey()), 1e-6)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean differs(Double actual, double expected, double tolerance) {
+        return actual == null || Math.abs(actual - expected) > tolerance;
+    }
+
+    private boolean isOrphanTempId(Double score) {
+        // 临时ID的update_time分数即创建时间（秒）
+        return score == null || score < System.currentTimeMillis() / 1000.0 - tempIdGraceSeconds;
+    }
+
+    // ==================== 2. 分类ZSet ====================
+
+    private void reconcileCategories(Report report) throws InterruptedException {
+        List<String> keys = new ArrayList<>();
+        cacheTagRegistry.scan(keySchema.categorySortedPattern(SCORE_FIELD), keys::addAll);
+        for (String key : keys) {
+            Integer categoryId = RedisKeySchema.parseCategoryId(key);
+            if (categoryId == null) continue;
+            zscan(key, report, batch -> {
+                List<Integer> ids = new ArrayList<>(batch.size());
+                for (ZSetOperations.TypedTuple<String> tuple : batch) {
+                    Integer itemId = parseId(tuple.getValue());
+                    if (itemId == null) continue;
+                    if (itemId < 0) {
+                        if (isOrphanTempId(tuple.getScore())) {
+                            repair(report, "categoryOrphanTempId", itemId,
+                                () -> redisUtils.removeItemFromCategoryIndexes(categoryId, itemId, null));
+                        }
+                        continue;
+                    }
+                    ids.add(itemId);
+                }
+                if (ids.isEmpty()) return;
+                Map<Integer, ItemIndexState> states = loadStates(ids);
+                Set<Integer> inFlight = newerInCache(states, report);
+                for (Integer itemId : ids) {
+                    if (inFlight.contains(itemId)) continue;
+                    ItemIndexState state = states.get(itemId);
+                    boolean stale = state == null
+                        || Boolean.TRUE.equals(state.getIsDeleted())
+                        || !Boolean.TRUE.equals(state.getIsAvailable())
+                        || !categoryId.equals(state.getCategoryId());
+                    if (stale) {
+                        String condition = state != null ? state.getItemCondition() : null;
+                        repair(report, "wrongCategory", itemId,
+                            () -> redisUtils.removeItemFromCategoryIndexes(categoryId, itemId, condition));
+                    }
+                }
+            });
+        }
+    }
+
+    // ==================== 3. 数据库中可售但缺失索引 ====================
+
+    private void reconcileMissing(Report report) throws InterruptedException {
+        String key = keySchema.onSaleSortedKey(SCORE_FIELD);
+        int afterId = 0;
+        while (true) {
+            long batchStart = System.currentTimeMillis();
+            List<ItemIndexState> states = itemRepository.findAvailableIndexStateAfter(afterId, PageRequest.of(0, batchSize));
+            if (states.isEmpty()) break;
+            List<Integer> ids = new ArrayList<>(states.size());
+            states.forEach(state -> ids.add(state.getItemId()));
+            List<Double> scores = stringRedisTemplate.opsForZSet().score(key, ids.toArray());
+            List<Integer> reload = new ArrayList<>();
+            for (int i = 0; i < ids.size(); i++) {
+                Double score = scores != null && i < scores.size() ? scores.get(i) : null;
+                if (score == null) {
+                    reload.add(ids.get(i));
+                    report.found("missingFromIndex", ids.get(i));
+                }
+            }
+            reloadAndApply(report, reload);
+            report.scanned += states.size();
+            report.batches++;
+            afterId = ids.get(ids.size() - 1);
+            throttle(batchStart);
+        }
+    }
+
+    // ==================== 公共 ====================
+
+    /**
+     * ZSCAN一个ZSet，每凑满一批回调一次，批次之间限速
+     */
+    private void zscan(String key, Report report, Consumer<List<ZSetOperations.TypedTuple<String>>> batchConsumer)
+            throws InterruptedException {
+        ScanOptions options = ScanOptions.scanOptions().count(batchSize).build();
+        try (Cursor<ZSetOperations.TypedTuple<String>> cursor = stringRedisTemplate.opsForZSet().scan(key, options)) {
+            List<ZSetOperations.TypedTuple<String>> batch = new ArrayList<>(batchSize);
+            long batchStart = System.currentTimeMillis();
+            while (cursor.hasNext()) {
+                batch.add(cursor.next());
+                if (batch.size() >= batchSize) {
+                    processBatch(report, batch, batchConsumer);
+                    batch = new ArrayList<>(batchSize);
+                    throttle(batchStart);
+                    batchStart = System.currentTimeMillis();
+                }
+            }
+            if (!batch.isEmpty()) {
+                processBatch(report, batch, batchConsumer);
+            }
+        }
+    }
+
+    private void processBatch(Report report, List<ZSetOperations.TypedTuple<String>> batch,
+                              Consumer<List<ZSetOperations.TypedTuple<String>>> batchConsumer) {
+        batchConsumer.accept(batch);
+        report.scanned += batch.size();
+        report.batches++;
+    }
+
+    /**
+     * 按限速补足本批次的最短耗时
+     */
+    private void throttle(long batchStart) throws InterruptedException {
+        if (maxBatchesPerSecond <= 0) return;
+        long wait = (long) (1000 / maxBatchesPerSecond) - (System.currentTimeMillis() - batchStart);
+        if (wait > 0) Thread.sleep(wait);
+    }
+
+    private Map<Integer, ItemIndexState> loadStates(List<Integer> ids) {
+        Map<Integer, ItemIndexState> states = new HashMap<>();
+        itemRepository.findIndexStateByIds(ids).forEach(state -> states.put(state.getItemId(), state));
+        return states;
+    }
+
+    /**
+     * 缓存版本比库新的商品ID（请求路径已写缓存，事件尚未落库）
+     */
+    private Set<Integer> newerInCache(Map<Integer, ItemIndexState> states, Report report) {
+        List<Item> stored = states.values().stream().map(this::toItem).collect(Collectors.toList());
+        Set<Integer> inFlight = stored.stream().map(Item::getItemId).collect(Collectors.toCollection(HashSet::new));
+        redisUtils.withoutNewerCache(stored).forEach(item -> inFlight.remove(item.getItemId()));
+        inFlight.forEach(itemId -> report.found("inFlight", itemId));
+        return inFlight;
+    }
+
+    /**
+     * 从数据库加载完整商品并按当前状态重写详情缓存和索引（缓存比库新的跳过）
+     */
+    private void reloadAndApply(Report report, List<Integer> ids) {
+        if (ids.isEmpty() || report.dryRun || report.limitReached()) return;
+        List<Item> items = itemRepository.findAllById(ids);
+        List<Item> current = redisUtils.withoutNewerCache(items);
+        if (current.size() < items.size()) {
+            Set<Integer> kept = current.stream().map(Item::getItemId).collect(Collectors.toSet());
+            items.stream().filter(item -> !kept.contains(item.getItemId()))
+                .forEach(item -> report.found("inFlight", item.getItemId()));
+        }
+        for (Item item : current) {
+            if (report.limitReached()) break;
+            try {
+                redisUtils.applyItemState(item, null, detailTtlMinutes);
+                report.repaired++;
+            } catch (Exception e) {
+                report.failed++;
+                log.warn("对账重写商品索引失败, itemId: {}, {}", item.getItemId(), e.getMessage());
+            }
+        }
+    }
+
+    private void repair(Report report, String type, int itemId, Runnable action) {
+        report.found(type, itemId);
+        if (report.dryRun || report.limitReached()) return;
+        try {
+            action.run();
+            report.repaired++;
+        } catch (Exception e) {
+            report.failed++;
+            log.warn("对账修复失败, type: {}, itemId: {}, {}", type, itemId, e.getMessage());
+        }
+    }
+
+    private Integer parseId(String member) {
+        try {
+            return Integer.valueOf(member);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private Item toItem(ItemIndexState state) {
+        Item item = new Item();
+        item.setItemId(state.getItemId());
+        item.setCategoryId(state.getCategoryId());
+        item.setSellerId(state.getSellerId());
+        item.setPrice(state.getPrice());
+        item.setLikes(state.getLikes());
+        item.setIsAvailable(state.getIsAvailable());
+        item.setIsDeleted(state.getIsDeleted());
+        item.setUpdateTime(state.getUpdateTime());
+        item.setItemCondition(state.getItemCondition());
+        item.setContentVersion(state.getContentVersion());
+        item.setAvailabilityVersion(state.getAvailabilityVersion());
+        return item;
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    /**
+     * 最近一次对账的报告，尚未执行过时返回null
+     */
+    public Map<String, Object> lastReport() {
+        return lastReport;
+    }
+
+    /**
+     * 单次对账的统计：issues为各类问题的数量，samples为各类问题的部分商品ID
+     */
+    private class Report {
+        private final boolean dryRun;
+        private final LocalDateTime startedAt = LocalDateTime.now();
+        private final long startedAtMs = System.currentTimeMillis();
+        private final Map<String, Long> issues = new LinkedHashMap<>();
+        private final Map<String, List<Integer>> samples = new LinkedHashMap<>();
+        private long scanned;
+        private long batches;
+        private long repaired;
+        private long failed;
+        private String error;
+
+        private Report(boolean dryRun) {
+            this.dryRun = dryRun;
+        }
+
+        private void found(String type, int itemId) {
+            issues.merge(type, 1L, Long::sum);
+            List<Integer> ids = samples.computeIfAbsent(type, k -> new ArrayList<>());
+            if (ids.size() < SAMPLE_LIMIT) ids.add(itemId);
+        }
+
+        private boolean limitReached() {
+            return repaired >= maxRepairs;
+        }
+
+        private Map<String, Object> finish() {
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("dryRun", dryRun);
+            result.put("scanned", scanned);
+            result.put("batches", batches);
+            result.put("issues", issues);
+            result.put("repaired", repaired);
+            result.put("failed", failed);
+            result.put("repairLimitReached", !dryRun && limitReached());
+            result.put("samples", samples);
+            result.put("startedAt", startedAt);
+            result.put("finishedAt", LocalDateTime.now());
+            result.put("elapsedMs", System.currentTimeMillis() - startedAtMs);
+            result.put("error", error);
+            return result;
+        }
+    }
+}
@@ -85,6 +85,11 @@ public interface ItemService {
      */
     PageResponseDTO<ItemResponseDTO> getItemsByCategoryPaged(Integer categoryId, int page, int size, String sortBy, String sortDirection);
 
+    /**
+     * 分类游标分页查询商品（cursor为空串表示第一页）
+     */
+    PageResponseDTO<ItemResponseDTO> getItemsByCategoryCursor(Integer categoryId, String cursor, int size, String sortBy, String sortDirection);
+
 
     
     /**
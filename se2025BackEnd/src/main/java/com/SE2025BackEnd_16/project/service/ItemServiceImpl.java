@@ -1,7 +1,14 @@
 package com.SE2025BackEnd_16.project.service;
 
+import com.SE2025BackEnd_16.project.KafkaUtils.KafkaTopics;
 import com.SE2025BackEnd_16.project.KafkaUtils.KafkaUtils;
+import com.SE2025BackEnd_16.project.KafkaUtils.event.ItemEvents;
+import com.SE2025BackEnd_16.project.RedisUtils.AsyncRedisUtils;
+import com.SE2025BackEnd_16.project.RedisUtils.CachePenetrationGuard;
+import com.SE2025BackEnd_16.project.RedisUtils.ItemFacetFilter;
 import com.SE2025BackEnd_16.project.RedisUtils.RedisUtils;
+import com.SE2025BackEnd_16.project.RedisUtils.SingleFlight;
+import com.SE2025BackEnd_16.project.RedisUtils.ZSetCursor;
 import com.SE2025BackEnd_16.project.dao.ItemDao;
 import com.SE2025BackEnd_16.project.dto.converter.ItemConverter;
 import com.SE2025BackEnd_16.project.dto.request.ItemCreateRequestDTO;
@@ -30,7 +37,6 @@ import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 
-import java.sql.Timestamp;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
@@ -38,13 +44,8 @@ import java.util.Optional;
 import java.util.stream.Collectors;
 import java.util.Map;
 import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicInteger;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
-import com.fasterxml.jackson.databind.SerializationFeature;
-import java.nio.file.Files;
-import java.nio.file.Paths;
-import java.nio.file.StandardOpenOption;
 
 /**
  * 商品服务实现类
@@ -68,6 +69,12 @@ public class ItemServiceImpl implements ItemService {
     
     @Autowired
     private UserViewRecordRepository userViewRecordRepository;
+
+    @Autowired
+    private ItemViewStatsService itemViewStatsService;
+
+    @Autowired
+    private ItemTrendingService itemTrendingService;
     
     @Autowired
     private ItemConverter itemConverter;
@@ -84,6 +91,14 @@ public class ItemServiceImpl implements ItemService {
     private RedisUtils redisUtils;
     @Autowired
     private KafkaUtils kafkaUtils;
+    @Autowired
+    private SingleFlight singleFlight;
+    @Autowired
+    private CachePenetrationGuard penetrationGuard;
+    @Autowired
+    private ItemFacetFilter itemFacetFilter;
+    @Autowired
+    private AsyncRedisUtils asyncRedisUtils;
 
     private static final AtomicInteger tempIdGenerator = new AtomicInteger(-1);
 
@@ -129,31 +144,12 @@ public class ItemServiceImpl implements ItemService {
         item.setIsAvailable(true);
         item.setUpdateTime(java.time.LocalDateTime.now()); // 保证有时间分数
         
-        // 6. 写入缓存和集合
-        redisUtils.cacheItemDetail(tempItemId, item); // 新增重载方法
-        redisUtils.addItemToCategorySet(category.getCategoryId(), tempItemId);
+        // 6. 写入缓存和集合（临时ID阶段也加入首页和分类可售商品Sorted Set）
         redisUtils.addItemToSellerSet(requestDTO.getSellerId(), tempItemId);
-        // 新增：临时ID阶段也加入首页可售商品Sorted Set
-        redisUtils.addItemToOnSaleSortedSets(tempItemId, item);
-        // 新增：临时ID阶段也加入分类可售商品Sorted Set
-        double updateScore = item.getUpdateTime() != null
-            ? item.getUpdateTime().atZone(java.time.ZoneId.systemDefault()).toEpochSecond()
-            : System.currentTimeMillis() / 1000.0;
-        double priceScore = item.getPrice() != null ? item.getPrice().doubleValue() : 0.0;
-        double likesScore = item.getLikes() != null ? item.getLikes() : 0.0;
-        redisUtils.addItemToCategorySortedSet(category.getCategoryId(), tempItemId, updateScore, "update_time");
-        redisUtils.addItemToCategorySortedSet(category.getCategoryId(), tempItemId, priceScore, "price");
-        redisUtils.addItemToCategorySortedSet(category.getCategoryId(), tempItemId, likesScore, "likes");
+        redisUtils.applyItemState(item, null, 60);
         
         // 7. 发送Kafka消息，异步入库
-        try {
-            ObjectMapper mapper = new ObjectMapper();
-            mapper.registerModule(new JavaTimeModule());
-            mapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
-            kafkaUtils.sendMessage("createItem", mapper.writeValueAsString(item));
-        } catch (com.fasterxml.jackson.core.JsonProcessingException e) {
-            throw new RuntimeException("商品发布消息序列化失败: " + e.getMessage(), e);
-        }
+        kafkaUtils.send(KafkaTopics.CREATE_ITEM, new ItemEvents.Created(tempItemId, item));
         
         // 8. 返回临时ID和基本信息
         UserInfo seller = userInfoRepository.findById(requestDTO.getSellerId()).orElse(null);
@@ -166,51 +162,22 @@ public class ItemServiceImpl implements ItemService {
     public ItemResponseDTO getItemById(Integer itemId) {
 //        log.info("获取商品详情，商品ID: {}", itemId);
         
+        // 布隆过滤器或空值缓存判定不存在的ID不查库
+        if (!penetrationGuard.mightExistItem(itemId)) {
+            throw new RuntimeException("商品不存在，ID: " + itemId);
+        }
         Optional<Item> itemOpt = itemDao.findById(itemId);
         if (itemOpt.isEmpty()) {
+            penetrationGuard.markItemMissing(itemId);
             throw new RuntimeException("商品不存在，ID: " + itemId);
         }
         
         Item item = itemOpt.get();
         
-        // 记录浏览记录 - 使用固定用户ID（实际应用中应从认证信息获取）
-        recordUserViewAsync(1, item.getCategoryId());
-        
+        // 浏览记录由控制器发送浏览事件，经 ItemViewTopology 聚合后批量写库（见 ItemViewStatsService）
         return buildItemResponseDTO(item);
     }
     
-    /**
-     * 异步记录用户浏览记录
-     */
-    private void recordUserViewAsync(Integer userId, Integer categoryId) {
-        try {
-            // 查找是否已有该用户和分类的记录
-            Optional<UserViewRecord> existingRecord = userViewRecordRepository
-                    .findByUserIdAndCategoryId(userId, categoryId);
-            
-            if (existingRecord.isPresent()) {
-                // 更新浏览次数
-                UserViewRecord record = existingRecord.get();
-                record.setCategoryViewCounts(record.getCategoryViewCounts() + 1);
-                record.setViewTime(Timestamp.valueOf(LocalDateTime.now()));
-                userViewRecordRepository.save(record);
-            } else {
-                // 创建新记录
-                UserViewRecord newRecord = new UserViewRecord();
-                newRecord.setUserId(userId);
-                newRecord.setCategoryId(categoryId);
-                newRecord.setCategoryViewCounts(1);
-                newRecord.setViewTime(Timestamp.valueOf(LocalDateTime.now()));
-                userViewRecordRepository.save(newRecord);
-            }
-            
-            log.info("浏览记录已更新: 用户{}, 分类{}", userId, categoryId);
-        } catch (Exception e) {
-            log.error("记录浏览记录失败: 用户{}, 分类{}, 错误: {}", userId, categoryId, e.getMessage());
-            // 浏览记录失败不影响主要功能，只记录错误日志
-        }
-    }
-    
     @Override
     @Transactional(readOnly = true)
     public List<ItemResponseDTO> getAllItems() {
@@ -235,7 +202,7 @@ public class ItemServiceImpl implements ItemService {
                 // 不再直接补集合，改为异步
             }
             // 发送Kafka消息异步预热卖家商品集合缓存
-            kafkaUtils.sendMessage("sellerItemsCache", String.valueOf(sellerId));
+            kafkaUtils.send(KafkaTopics.SELLER_ITEMS_CACHE, new ItemEvents.SellerItemsPreheat(sellerId));
         }
         else{
             System.out.println("Redis命中" + items.size() + "个商品");
@@ -250,12 +217,29 @@ public class ItemServiceImpl implements ItemService {
         List<Item> items = redisUtils.getCategoryItems(categoryId);
         if (items == null) items = List.of();
         if (items.isEmpty()) {
-
-            items = itemDao.findByCategoryId(categoryId);
-            if(!items.isEmpty()) {
-                System.out.println("商品种类" + categoryId + "缓存未命中");
-                kafkaUtils.sendMessage("itemCategory" , String.valueOf(categoryId));
-            }
+            // 同一分类的并发未命中合并为一次查库；持锁期间同步回填分类索引和详情再释放锁，
+            // 其他节点拿到锁后重查缓存即可命中，不再各自查库
+            items = singleFlight.execute("category:" + categoryId,
+                () -> {
+                    List<Item> cached = redisUtils.getCategoryItems(categoryId);
+                    return cached == null || cached.isEmpty() ? null : cached;
+                },
+                () -> {
+                    List<Item> loaded = itemDao.findByCategoryId(categoryId);
+                    if (!loaded.isEmpty()) {
+                        System.out.println("商品种类" + categoryId + "缓存未命中");
+                        try {
+                            // 缓存比库新（编辑/上下架事件尚未落库）的商品不回写
+                            List<Item> active = loaded.stream()
+                                    .filter(item -> !Boolean.TRUE.equals(item.getIsDeleted()))
+                                    .collect(Collectors.toList());
+                            redisUtils.applyItemStates(redisUtils.withoutNewerCache(active), Map.of(), Map.of(), 60);
+                        } catch (Exception e) {
+                            log.warn("回填分类{}缓存失败: {}", categoryId, e.getMessage());
+                        }
+                    }
+                    return loaded;
+                });
         }
         else{
             System.out.println("缓存命中" + categoryId + ": " + items.size());
@@ -312,11 +296,14 @@ public class ItemServiceImpl implements ItemService {
             .orElseThrow(() -> new RuntimeException("商品分类不存在: " + requestDTO.getCategory()))
             .getCategoryId();
         item.setCategoryId(newCategoryId);
+        // 分配写版本号，落库时不会被更早的编辑覆盖
+        long version = redisUtils.nextItemVersion(itemId);
+        item.setContentVersion(version);
         // 5. set回缓存
-        redisUtils.setCache(redisUtils.generateItemDetailKey(itemId), item, 60, java.util.concurrent.TimeUnit.MINUTES);
-        // 6. 发送Kafka消息，内容包含itemId, oldCategoryId, newCategoryId, newImageUrl
-        String kafkaMsg = itemId + "," + oldCategoryId + "," + newCategoryId + "," + (newImageUrl != null ? newImageUrl : "");
-        kafkaUtils.sendMessage("updateItem", kafkaMsg);
+        redisUtils.cacheItemDetail(itemId, item, 60, java.util.concurrent.TimeUnit.MINUTES);
+        // 6. 发送Kafka消息，携带编辑后的完整内容（消费端不再从缓存读取）
+        kafkaUtils.send(KafkaTopics.UPDATE_ITEM, new ItemEvents.Updated(itemId, oldCategoryId, newCategoryId, newImageUrl,
+            item.getItemName(), item.getDescription(), item.getPrice(), item.getItemCondition(), version));
         // 7. 返回最新DTO
         return buildItemResponseDTO(item);
     }
@@ -342,46 +329,18 @@ public class ItemServiceImpl implements ItemService {
         }
         // 3. 更新缓存
         item.setIsAvailable(requestDTO.getIsAvailable());
-        redisUtils.setCache(redisUtils.generateItemDetailKey(itemId), item, 60, java.util.concurrent.TimeUnit.MINUTES);
-        // 4. 分类集合和Sorted Set同步
-        int categoryId = item.getCategoryId();
         if (requestDTO.getIsAvailable()) {
-            // 上架：加入分类集合和所有Sorted Set
+            // 上架：刷新更新时间，作为排序分数
             item.setUpdateTime(java.time.LocalDateTime.now());
-            redisUtils.setCache(redisUtils.generateItemDetailKey(itemId), item, 60, java.util.concurrent.TimeUnit.MINUTES);
-
-    // 先移除再添加，防止脏数据
-            redisUtils.removeItemFromOnSaleSortedSet(itemId, "update_time");
-            redisUtils.removeItemFromOnSaleSortedSet(itemId, "price");
-            redisUtils.removeItemFromOnSaleSortedSet(itemId, "likes");
-
-            redisUtils.addItemToCategorySet(categoryId, itemId);
-            double updateScore = item.getUpdateTime() != null ? item.getUpdateTime().atZone(java.time.ZoneId.systemDefault()).toEpochSecond() : System.currentTimeMillis() / 1000.0;
-            double priceScore = item.getPrice() != null ? item.getPrice().doubleValue() : 0.0;
-            double likesScore = item.getLikes() != null ? item.getLikes() : 0.0;
-            redisUtils.addItemToCategorySortedSet(categoryId, itemId, updateScore, "update_time");
-            redisUtils.addItemToCategorySortedSet(categoryId, itemId, priceScore, "price");
-            redisUtils.addItemToCategorySortedSet(categoryId, itemId, likesScore, "likes");
-            // 首页可售商品Sorted Set
-            redisUtils.addItemToOnSaleSortedSet(itemId, updateScore, "update_time");
-            redisUtils.addItemToOnSaleSortedSet(itemId, priceScore, "price");
-            redisUtils.addItemToOnSaleSortedSet(itemId, likesScore, "likes");
-        } else {
-            // 下架：移除分类集合和所有Sorted Set
-            redisUtils.removeItemFromCategorySet(categoryId, itemId);
-            redisUtils.removeItemFromCategorySortedSet(categoryId, itemId, "update_time");
-            redisUtils.removeItemFromCategorySortedSet(categoryId, itemId, "price");
-            redisUtils.removeItemFromCategorySortedSet(categoryId, itemId, "likes");
-            // 首页可售商品Sorted Set
-            redisUtils.removeItemFromOnSaleSortedSet(itemId, "update_time");
-            redisUtils.removeItemFromOnSaleSortedSet(itemId, "price");
-            redisUtils.removeItemFromOnSaleSortedSet(itemId, "likes");
-        }
-        // 5. 从可售集合移除或加入
-        redisUtils.updateItemAvailability(itemId, requestDTO.getIsAvailable());
-        // 6. 发送Kafka消息，异步更新数据库
-        String kafkaMsg = itemId + "," + requestDTO.getIsAvailable() + "," + requestDTO.getOperatorId();
-        kafkaUtils.sendMessage("toggleItemAvailability", kafkaMsg);
+        }
+        long version = redisUtils.nextItemVersion(itemId);
+        item.setAvailabilityVersion(version);
+        // 4. 详情缓存、可售集合、分类集合和所有Sorted Set一次原子更新
+        redisUtils.applyItemState(item, null, 60);
+        // 5. 发送Kafka消息，异步更新数据库（上架时间随消息落库，与缓存中的排序分数一致）
+        kafkaUtils.send(KafkaTopics.TOGGLE_ITEM_AVAILABILITY,
+            new ItemEvents.AvailabilityToggled(itemId, requestDTO.getIsAvailable(), requestDTO.getOperatorId(),
+                requestDTO.getIsAvailable() ? item.getUpdateTime() : null, version));
         log.info("商品{}成功，ID: {}, 操作者: {}", 
                 requestDTO.getOperationDescription(), itemId, requestDTO.getOperatorId());
     }
@@ -425,6 +384,9 @@ public class ItemServiceImpl implements ItemService {
             log.info("商品软删除成功，ID: {}, 操作者: {}", 
                     itemId, requestDTO.getOperatorId());
         }
+        // 布隆过滤器不支持删除，用空值缓存挡住已删除商品的回源
+        redisUtils.deleteItemDetail(itemId);
+        penetrationGuard.markItemMissing(itemId);
     }
     
     @Override
@@ -449,6 +411,7 @@ public class ItemServiceImpl implements ItemService {
         
         // 恢复商品
         itemDao.restoreItem(itemId);
+        penetrationGuard.onItemCreated(itemId);
         log.info("商品恢复成功，ID: {}, 操作者: {}", itemId, operatorId);
     }
     
@@ -474,34 +437,41 @@ public class ItemServiceImpl implements ItemService {
                 sortBy = "update_time";
             }
             boolean desc = requestDTO.isDescending();
+            // 有价格、新旧程度筛选时走组合筛选
+            boolean hasFacets = requestDTO.hasPriceFilter()
+                    || (requestDTO.getCondition() != null && !requestDTO.getCondition().isBlank());
+            if (ItemTrendingService.isTrending(sortBy)) {
+                if (!hasFacets) {
+                    return getTrendingPage(requestDTO.getCategoryId(), page, size);
+                }
+                // 热度榜不参与组合筛选，按更新时间排序
+                sortBy = "update_time";
+            }
+            if (useGlobalRedis && hasFacets) {
+                return queryItemsByFacets(requestDTO, sortBy, desc);
+            }
+            if (useGlobalRedis && requestDTO.getCursor() != null) {
+                // 游标分页：从上一页最后一个元素之后读取，不受新上架商品影响
+                String cursor = requestDTO.getCursor();
+                // 总数与ID分页、详情互不依赖，先异步发出
+                CompletableFuture<Long> totalFuture = asyncRedisUtils.getOnSaleItemCount(sortBy).toFuture();
+                ZSetCursor.Page<Integer> idPage = redisUtils.getOnSaleItemIdsAfter(cursor, size, desc, sortBy);
+                List<ItemResponseDTO> responseItems = asyncRedisUtils.getItemsByIds(idPage.content()).toFuture().join().stream()
+                        .map(this::buildItemResponseDTO).collect(Collectors.toList());
+                return PageResponseDTO.ofCursor(responseItems, size, totalFuture.join(), cursor, idPage.nextCursor());
+            }
             if (useGlobalRedis) {
-                // 只查可售商品集合
-                List<Integer> itemIds = redisUtils.getOnSaleItemIdsSorted(page, size, desc, sortBy);
+                // 只查可售商品集合；总数与ID分页、详情互不依赖，同时发出
+                CompletableFuture<Long> totalFuture = asyncRedisUtils.getOnSaleItemCount(sortBy).toFuture();
+                List<Integer> itemIds = asyncRedisUtils.getOnSaleItemIdsSorted(page, size, desc, sortBy).toFuture().join();
 
-                // 输出到本地文件调试
-                try {
-                    StringBuilder sb = new StringBuilder();
-                    sb.append("page=").append(page).append(",size=").append(size).append(",sortBy=").append(sortBy).append(",desc=").append(desc).append("\n");
-                    for (Integer id : itemIds) {
-                        sb.append(id).append(",");
-                    }
-                    sb.append("\n");
-                    Files.write(Paths.get("item_ids_debug.txt"), sb.toString().getBytes(), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
-                } catch (Exception e) {
-                    System.err.println("写入item_ids_debug.txt失败: " + e.getMessage());
-                }
-                // 按顺序获取商品详情
-                List<Item> items = itemIds.stream()
-                    .map(redisUtils::getItemDetail)
-                    .filter(item -> item != null && Boolean.TRUE.equals(item.getIsAvailable()))
-                    .collect(Collectors.toList());
-                long total = redisUtils.getOnSaleItemCount(sortBy);
+                // 按顺序批量获取商品详情（一次MGET，未命中统一回源）
+                List<Item> items = asyncRedisUtils.getItemsByIds(itemIds).toFuture().join();
+                long total = totalFuture.join();
                 List<ItemResponseDTO> responseItems = items.stream().map(this::buildItemResponseDTO).collect(Collectors.toList());
-                System.out.println("items: " + responseItems.size());
                 return PageResponseDTO.of(responseItems, page, size, total);
             } else {
-                // 分类分页如需支持Redis分页可单独实现，否则抛异常或返回空
-                throw new UnsupportedOperationException("分类分页请使用专用接口");
+                return queryItemsByFacets(requestDTO, sortBy, desc);
             }
         } catch (Exception e) {
             log.error("分页查询商品失败: {}", e.getMessage(), e);
@@ -509,7 +479,48 @@ public class ItemServiceImpl implements ItemService {
         }
     }
     
+    /**
+     * 组合筛选（分类、价格区间、新旧程度）：在Redis中求交得到有序ID集合后分页，不再整类查库
+     * 关键词搜索请使用 /api/items/smart-search
+     */
+    private PageResponseDTO<ItemResponseDTO> queryItemsByFacets(ItemQueryRequestDTO requestDTO, String sortBy, boolean desc) {
+        Integer categoryId = requestDTO.getCategoryId();
+        int size = requestDTO.getSize();
+        if (categoryId != null && redisUtils.getCategoryItemCount(categoryId, sortBy) == 0) {
+            // 分类ZSet未命中：先查库回填分类索引
+            getItemsByCategoryPaged(categoryId, 0, size, sortBy, desc ? "DESC" : "ASC");
+        }
+        ItemFacetFilter.Query query = new ItemFacetFilter.Query(categoryId, requestDTO.getMinPrice(),
+                requestDTO.getMaxPrice(), requestDTO.getCondition(), sortBy);
+        long total = itemFacetFilter.count(query);
+        if (requestDTO.getCursor() != null) {
+            ZSetCursor.Page<Integer> idPage = itemFacetFilter.pageAfter(query, requestDTO.getCursor(), size, desc);
+            List<ItemResponseDTO> dtos = redisUtils.getItemsByIds(idPage.content()).stream()
+                    .map(this::buildItemResponseDTO).collect(Collectors.toList());
+            return PageResponseDTO.ofCursor(dtos, size, total, requestDTO.getCursor(), idPage.nextCursor());
+        }
+        int page = requestDTO.getPage();
+        List<Integer> itemIds = itemFacetFilter.page(query, page, size, desc);
+        List<ItemResponseDTO> dtos = redisUtils.getItemsByIds(itemIds).stream()
+                .map(this::buildItemResponseDTO).collect(Collectors.toList());
+        return PageResponseDTO.of(dtos, page, size, total);
+    }
+
+    /**
+     * 热度榜分页（全局或分类），榜单由 ItemTrendingService 定时写入，只支持页码分页
+     */
+    private PageResponseDTO<ItemResponseDTO> getTrendingPage(Integer categoryId, int page, int size) {
+        List<Integer> itemIds = itemTrendingService.getTrendingItemIds(categoryId, page, size);
+        List<ItemResponseDTO> dtos = redisUtils.getItemsByIds(itemIds).stream()
+                .filter(item -> Boolean.TRUE.equals(item.getIsAvailable()))
+                .map(this::buildItemResponseDTO).collect(Collectors.toList());
+        return PageResponseDTO.of(dtos, page, size, itemTrendingService.getTrendingCount(categoryId));
+    }
+
     public PageResponseDTO<ItemResponseDTO> getItemsByCategoryPaged(Integer categoryId, int page, int size, String sortBy, String sortDirection) {
+        if (ItemTrendingService.isTrending(sortBy)) {
+            return getTrendingPage(categoryId, page, size);
+        }
         boolean desc = "DESC".equalsIgnoreCase(sortDirection);
         if (sortBy == null || sortBy.isEmpty()) sortBy = "update_time";
 
@@ -519,13 +530,11 @@ public class ItemServiceImpl implements ItemService {
         String finalSortBy = sortBy;
 
         final boolean finalDesc = desc;
-        // 1. 优先从Redis获取分页ID
-        List<Integer> itemIds = redisUtils.getCategoryItemIdsSorted(categoryId, page, size, desc, sortBy);
-        List<Item> items = new ArrayList<>();
-        for (Integer id : itemIds) {
-            Item item = redisUtils.getItemDetail(id);
-            if (item != null && Boolean.TRUE.equals(item.getIsAvailable())) items.add(item); // 只返回可售商品
-        }
+        // 1. 优先从Redis获取分页ID和详情，总数同时异步查询
+        CompletableFuture<Long> totalFuture = asyncRedisUtils.getCategoryItemCount(categoryId, sortBy).toFuture();
+        List<Item> items = new ArrayList<>(asyncRedisUtils.getCategoryItemIdsSorted(categoryId, page, size, desc, sortBy)
+                .flatMap(asyncRedisUtils::getItemsByIds)
+                .toFuture().join()); // 只返回可售商品
         // 2. 如果Redis未命中，查库并补充缓存
         if (items.isEmpty()) {
             System.out.println("缓存未命中category： " + categoryId );
@@ -562,10 +571,30 @@ public class ItemServiceImpl implements ItemService {
             return PageResponseDTO.of(dtos, page, size, (long)totalElements);
         }
         // Redis命中时也要构造分页元数据
-        long totalElements = redisUtils.getCategoryItemCount(categoryId, sortBy);
+        long totalElements = totalFuture.join();
         List<ItemResponseDTO> dtos = items.stream().map(this::buildItemResponseDTO).collect(Collectors.toList());
         return PageResponseDTO.of(dtos, page, size, totalElements);
     }
+
+    @Override
+    public PageResponseDTO<ItemResponseDTO> getItemsByCategoryCursor(Integer categoryId, String cursor, int size, String sortBy, String sortDirection) {
+        if (ItemTrendingService.isTrending(sortBy)) {
+            // 热度榜分数每次刷新都会变化，游标无法稳定定位，始终返回第一页
+            return getTrendingPage(categoryId, 0, size);
+        }
+        boolean desc = "DESC".equalsIgnoreCase(sortDirection);
+        if (sortBy == null || sortBy.isEmpty() || sortBy.equals("updateTime")) sortBy = "update_time";
+        ZSetCursor.Page<Integer> idPage = redisUtils.getCategoryItemIdsAfter(categoryId, cursor, size, desc, sortBy);
+        if (idPage.content().isEmpty() && (cursor == null || cursor.isEmpty())) {
+            // 第一页未命中：走分页接口查库并回填分类ZSet，再按游标读取
+            getItemsByCategoryPaged(categoryId, 0, size, sortBy, sortDirection);
+            idPage = redisUtils.getCategoryItemIdsAfter(categoryId, cursor, size, desc, sortBy);
+        }
+        List<ItemResponseDTO> dtos = redisUtils.getItemsByIds(idPage.content()).stream()
+                .map(this::buildItemResponseDTO).collect(Collectors.toList());
+        long totalElements = redisUtils.getCategoryItemCount(categoryId, sortBy);
+        return PageResponseDTO.ofCursor(dtos, size, totalElements, cursor, idPage.nextCursor());
+    }
     
     // ==================== 收藏相关方法实现 ====================
     
@@ -614,14 +643,9 @@ public class ItemServiceImpl implements ItemService {
                 favorite.setItemId(itemId);
                 favoriteRepository.save(favorite);
                 // 立即更新商品缓存的likes字段+1（只更新itemDetail缓存）
-                Item item = redisUtils.getItemDetail(itemId);
-                if (item != null) {
-                    int newLikes = (item.getLikes() == null ? 0 : item.getLikes()) + 1;
-                    item.setLikes(newLikes);
-                    redisUtils.setCache(redisUtils.generateItemDetailKey(itemId), item, 60, java.util.concurrent.TimeUnit.MINUTES);
-                }
+                redisUtils.incrementCachedItemLikes(itemId, 1);
                 // 发送kafka消息异步修改数据库和ZSet
-                kafkaUtils.sendMessage("favoriteItem", String.valueOf(itemId));
+                kafkaUtils.send(KafkaTopics.FAVORITE_ITEM, new ItemEvents.FavoriteChanged(itemId, userId, 1));
                 log.info("收藏成功: 用户{}, 商品{}", userId, itemId);
             } catch (Exception e) {
                 log.error("收藏失败: 用户{}, 商品{}, 错误: {}", userId, itemId, e.getMessage());
@@ -640,15 +664,9 @@ public class ItemServiceImpl implements ItemService {
             if (favoriteRepository.existsByUserIdAndItemId(userId, itemId)) {
                 favoriteRepository.deleteByUserIdAndItemId(userId, itemId);
                 // 立即更新商品缓存的likes字段-1（只更新itemDetail缓存）
-                Item item = redisUtils.getItemDetail(itemId);
-                if (item != null) {
-                    int newLikes = (item.getLikes() == null ? 0 : item.getLikes()) - 1;
-                    if (newLikes < 0) newLikes = 0;
-                    item.setLikes(newLikes);
-                    redisUtils.setCache(redisUtils.generateItemDetailKey(itemId), item, 60, java.util.concurrent.TimeUnit.MINUTES);
-                }
+                redisUtils.incrementCachedItemLikes(itemId, -1);
                 // 发送kafka消息异步修改数据库和ZSet
-                kafkaUtils.sendMessage("unfavoriteItem", String.valueOf(itemId));
+                kafkaUtils.send(KafkaTopics.UNFAVORITE_ITEM, new ItemEvents.FavoriteChanged(itemId, userId, -1));
                 log.info("取消收藏成功: 用户{}, 商品{}", userId, itemId);
             } else {
                 log.info("用户{}未收藏商品{}", userId, itemId);
@@ -707,13 +725,17 @@ public class ItemServiceImpl implements ItemService {
         log.info("获取用户浏览记录统计，用户ID: {}", userId);
         
         try {
+            // 由浏览量流处理按窗口批量写入（见 KafkaViewStatsConsumer）
             List<UserViewRecord> records = userViewRecordRepository.findByUserId(userId);
+            // 分类名称一次查出
+            Map<Integer, String> categoryNames = categoryRepository.findAllById(
+                            records.stream().map(UserViewRecord::getCategoryId).distinct().collect(Collectors.toList()))
+                    .stream()
+                    .collect(Collectors.toMap(Category::getCategoryId, Category::getCategoryName, (a, b) -> a));
             return records.stream()
                     .map(record -> {
                         // 获取分类名称
-                        String categoryName = categoryRepository.findById(record.getCategoryId())
-                                .map(Category::getCategoryName)
-                                .orElse("未知分类");
+                        String categoryName = categoryNames.getOrDefault(record.getCategoryId(), "未知分类");
                         
                         // 返回包含分类名称的统计信息
                         return Map.of(
@@ -737,15 +759,16 @@ public class ItemServiceImpl implements ItemService {
         
         try {
             List<Category> categories = categoryRepository.findAll();
+            // 各分类总浏览次数一次读取（Redis，由浏览量流处理累加）
+            Map<Integer, Long> viewTotals = itemViewStatsService.getCategoryViewTotals();
             return categories.stream()
                     .map(category -> {
-                        // 获取分类总浏览次数
-                        Long totalViews = userViewRecordRepository.getTotalViewsByCategoryId(category.getCategoryId());
+                        Long totalViews = viewTotals.getOrDefault(category.getCategoryId(), 0L);
                         
                         return Map.of(
                                 "categoryId", category.getCategoryId(),
                                 "categoryName", category.getCategoryName(),
-                                "totalViews", totalViews != null ? totalViews : 0L,
+                                "totalViews", totalViews,
                                 "icon", category.getIcon() != null ? category.getIcon() : ""
                         );
                     })
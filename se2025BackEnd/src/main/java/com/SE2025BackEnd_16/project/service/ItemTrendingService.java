@@ -0,0 +1,333 @@
+package com.SE2025BackEnd_16.project.service;
+
+import com.SE2025BackEnd_16.project.KafkaUtils.ItemTrendingTopology;
+import com.SE2025BackEnd_16.project.RedisUtils.RedisKeySchema;
+import com.SE2025BackEnd_16.project.entity.Item;
+import com.SE2025BackEnd_16.project.repository.ItemRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.streams.KafkaStreams;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.StoreQueryParameters;
+import org.apache.kafka.streams.errors.InvalidStateStoreException;
+import org.apache.kafka.streams.kstream.Windowed;
+import org.apache.kafka.streams.state.KeyValueIterator;
+import org.apache.kafka.streams.state.QueryableStoreTypes;
+import org.apache.kafka.streams.state.ReadOnlyWindowStore;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.DefaultStringTuple;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.kafka.config.StreamsBuilderFactoryBean;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * 商品热度榜
+ * 定时读取本实例 ItemTrendingTopology 状态存储中最近 window-hours 的各个小窗口，
+ * 按 score = Σ 窗口增量 × 0.5^(距今时长 / half-life) 求和，取前 max-items 个可售商品写入
+ * item:trending（全局）和 item:trending:category:{分类ID}（分类）两个ZSet
+ * 状态存储按itemId分区，多实例时每个实例只有自己分区内的商品：
+ *   1. 每个实例在一次pipeline中DEL+ZADD+EXPIRE重写自己的部分榜单（跌出榜单、换了分类的商品随之消失）
+ *   2. 再把所有存活实例的部分榜单合并为正式榜单（整体覆盖，只保留前max-items个）：
+ *      部分榜单与正式榜单同slot（v2命名或非集群）时用ZUNIONSTORE，集群模式下v1命名跨slot，改为客户端求和后写回
+ * 实例下线或分区被再均衡走后，它的部分榜单到期消失，下次合并时不再出现在正式榜单中
+ */
+@Slf4j
+@Service
+public class ItemTrendingService {
+
+    public static final String SORT_BY = "trending";
+
+    @Autowired(required = false)
+    private StreamsBuilderFactoryBean streamsBuilderFactoryBean;
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private RedisKeySchema keySchema;
+
+    @Value("${app.trending.window-hours:24}")
+    private long windowHours;
+
+    // 热度半衰期：一次浏览在这么久之后只计一半
+    @Value("${app.trending.half-life-minutes:120}")
+    private double halfLifeMinutes;
+
+    // 每个实例写入榜单的商品数上限
+    @Value("${app.trending.max-items:1000}")
+    private int maxItems;
+
+    // 部分榜单的过期时间，需大于写入间隔；实例停止写入后超过该时间其部分榜单不再参与合并
+    @Value("${app.trending.part-ttl-seconds:300}")
+    private long partTtlSeconds;
+
+    // 本实例标识（每次启动不同），用于区分各实例的部分榜单
+    private final String instanceId = UUID.randomUUID().toString().substring(0, 8);
+
+    private volatile Boolean clusterMode;
+
+    @Scheduled(initialDelayString = "${app.trending.publish-initial-delay-ms:60000}",
+               fixedDelayString = "${app.trending.publish-interval-ms:30000}")
+    public void publish() {
+        ReadOnlyWindowStore<String, Double> store = store();
+        if (store == null) {
+            // 本实例暂时没有分区可写，仍然合并一次，让已过期的部分榜单从正式榜单中消失
+            merge();
+            return;
+        }
+        Map<Integer, Double> scores = decayedScores(store);
+        List<Integer> top = scores.entrySet().stream()
+            .filter(entry -> entry.getValue() > 0)
+            .sorted((a, b) -> Double.compare(b.getValue(), a.getValue()))
+            .limit(maxItems)
+            .map(Map.Entry::getKey)
+            .toList();
+        Map<Integer, Integer> categories = new HashMap<>();
+        if (!top.isEmpty()) {
+            for (Item item : itemRepository.findAllById(top)) {
+                if (Boolean.TRUE.equals(item.getIsAvailable()) && !Boolean.TRUE.equals(item.getIsDeleted())) {
+                    categories.put(item.getItemId(), item.getCategoryId());
+                }
+            }
+        }
+        write(scores, categories);
+        log.debug("热度榜已更新: {}个商品", categories.size());
+    }
+
+    /**
+     * 热度榜一页商品ID（按热度从高到低）；categoryId为空时为全局榜
+     */
+    public List<Integer> getTrendingItemIds(Integer categoryId, int page, int size) {
+        long start = (long) page * size;
+        Set<String> members = stringRedisTemplate.opsForZSet().reverseRange(key(categoryId), start, start + size - 1);
+        if (members == null) return List.of();
+        return members.stream().map(Integer::valueOf).toList();
+    }
+
+    public long getTrendingCount(Integer categoryId) {
+        Long count = stringRedisTemplate.opsForZSet().zCard(key(categoryId));
+        return count != null ? count : 0L;
+    }
+
+    public static boolean isTrending(String sortBy) {
+        return SORT_BY.equalsIgnoreCase(sortBy);
+    }
+
+    private String key(Integer categoryId) {
+        return categoryId == null ? keySchema.trendingKey() : keySchema.categoryTrendingKey(categoryId);
+    }
+
+    private ReadOnlyWindowStore<String, Double> store() {
+        KafkaStreams streams = streamsBuilderFactoryBean != null ? streamsBuilderFactoryBean.getKafkaStreams() : null;
+        if (streams == null || streams.state() != KafkaStreams.State.RUNNING) return null;
+        try {
+            return streams.store(StoreQueryParameters.fromNameAndType(ItemTrendingTopology.TRENDING_STORE,
+                QueryableStoreTypes.windowStore()));
+        } catch (InvalidStateStoreException e) {
+            // 再均衡期间存储暂不可读，下次再试
+            log.debug("热度状态存储暂不可用: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private Map<Integer, Double> decayedScores(ReadOnlyWindowStore<String, Double> store) {
+        Instant now = Instant.now();
+        double halfLifeMillis = halfLifeMinutes * 60_000;
+        Map<Integer, Double> scores = new HashMap<>();
+        try (KeyValueIterator<Windowed<String>, Double> iterator = store.fetchAll(now.minusSeconds(windowHours * 3600), now)) {
+            while (iterator.hasNext()) {
+                KeyValue<Windowed<String>, Double> bucket = iterator.next();
+                if (bucket.value == null) continue;
+                long age = Math.max(0, now.toEpochMilli() - bucket.key.window().end());
+                double decayed = bucket.value * Math.pow(0.5, age / halfLifeMillis);
+                scores.merge(Integer.valueOf(bucket.key.key()), decayed, Double::sum);
+            }
+        }
+        return scores;
+    }
+
+    /**
+     * 一次pipeline写入本实例的部分榜单，再一次pipeline合并所有存活实例的部分榜单
+     */
+    private void write(Map<Integer, Double> scores, Map<Integer, Integer> categories) {
+        Map<String, Double> global = new HashMap<>();
+        Map<Integer, Map<String, Double>> byCategory = new HashMap<>();
+        categories.forEach((itemId, categoryId) -> {
+            double score = scores.get(itemId);
+            global.put(String.valueOf(itemId), score);
+            byCategory.computeIfAbsent(categoryId, k -> new HashMap<>()).put(String.valueOf(itemId), score);
+        });
+        long now = System.currentTimeMillis();
+        Set<String> previousCategories = stringRedisTemplate.opsForSet().members(keySchema.trendingCategoriesKey());
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection redis = (StringRedisConnection) connection;
+            writePart(redis, null, global);
+            // 本实例上次上榜、这次没有商品的分类：删除部分榜单
+            if (previousCategories != null) {
+                for (String categoryId : previousCategories) {
+                    if (!byCategory.containsKey(Integer.valueOf(categoryId))) {
+                        redis.del(keySchema.trendingPartKey(Integer.valueOf(categoryId), instanceId));
+                    }
+                }
+            }
+            byCategory.forEach((categoryId, members) -> writePart(redis, categoryId, members));
+            if (!byCategory.isEmpty()) {
+                redis.sAdd(keySchema.trendingCategoriesKey(),
+                    byCategory.keySet().stream().map(String::valueOf).toArray(String[]::new));
+            }
+            redis.zAdd(keySchema.trendingInstancesKey(), now, instanceId);
+            redis.zRemRangeByScore(keySchema.trendingInstancesKey(), 0, now - partTtlSeconds * 1000);
+            return null;
+        });
+        merge();
+    }
+
+    private void writePart(StringRedisConnection redis, Integer categoryId, Map<String, Double> members) {
+        String part = keySchema.trendingPartKey(categoryId, instanceId);
+        if (members.isEmpty()) {
+            redis.del(part);
+            return;
+        }
+        Set<StringRedisConnection.StringTuple> tuples = new HashSet<>();
+        members.forEach((member, score) -> tuples.add(new DefaultStringTuple(member, score)));
+        redis.del(part);
+        redis.zAdd(part, tuples);
+        redis.expire(part, partTtlSeconds);
+    }
+
+    /**
+     * 合并所有存活实例的部分榜单，整体覆盖正式榜单（所有部分榜单都已过期时正式榜单被删除），只保留前max-items个；
+     * 各分类都已没有上榜商品时从分类登记中移除
+     */
+    private void merge() {
+        Set<String> instances = stringRedisTemplate.opsForZSet().range(keySchema.trendingInstancesKey(), 0, -1);
+        if (instances == null || instances.isEmpty()) return;
+        Set<String> categoryIds = stringRedisTemplate.opsForSet().members(keySchema.trendingCategoriesKey());
+        List<Integer> targets = new ArrayList<>();
+        targets.add(null);
+        if (categoryIds != null) categoryIds.forEach(categoryId -> targets.add(Integer.valueOf(categoryId)));
+        List<Long> sizes = isClusterMode() && !keySchema.isHashTagged()
+            ? mergeOnClient(targets, instances)
+            : mergeOnServer(targets, instances);
+        List<String> emptyCategories = new ArrayList<>();
+        for (int i = 1; i < targets.size(); i++) {
+            if (sizes.get(i) == 0) emptyCategories.add(String.valueOf(targets.get(i)));
+        }
+        if (!emptyCategories.isEmpty()) {
+            stringRedisTemplate.opsForSet().remove(keySchema.trendingCategoriesKey(), emptyCategories.toArray());
+        }
+    }
+
+    /**
+     * 服务端合并：ZUNIONSTORE（部分榜单与正式榜单同slot），再裁剪到前max-items个
+     * @return 各榜单合并后的商品数（与targets一一对应）
+     */
+    private List<Long> mergeOnServer(List<Integer> targets, Set<String> instances) {
+        List<Object> results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection redis = (StringRedisConnection) connection;
+            for (Integer categoryId : targets) {
+                String[] parts = instances.stream()
+                    .map(instance -> keySchema.trendingPartKey(categoryId, instance)).toArray(String[]::new);
+                redis.zUnionStore(key(categoryId), parts);
+                redis.zRemRange(key(categoryId), 0, -(maxItems + 1L));
+            }
+            return null;
+        });
+        List<Long> sizes = new ArrayList<>(targets.size());
+        for (int i = 0; i < targets.size(); i++) {
+            Object count = results.get(i * 2);
+            sizes.add(count instanceof Long size ? size : 0L);
+        }
+        return sizes;
+    }
+
+    /**
+     * 客户端合并（集群模式下v1命名，部分榜单与正式榜单不在同一slot）：
+     * 一次pipeline读取所有部分榜单和正式榜单的现有成员，本地按商品求和取前max-items个，
+     * 再一次pipeline写回：先ZADD新成员再ZREM跌出榜单的成员，读取方不会看到空榜单
+     */
+    @SuppressWarnings("unchecked")
+    private List<Long> mergeOnClient(List<Integer> targets, Set<String> instances) {
+        List<String> instanceList = new ArrayList<>(instances);
+        List<Object> results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection redis = (StringRedisConnection) connection;
+            for (Integer categoryId : targets) {
+                redis.zRange(key(categoryId), 0, -1);
+                for (String instance : instanceList) {
+                    redis.zRangeWithScores(keySchema.trendingPartKey(categoryId, instance), 0, -1);
+                }
+            }
+            return null;
+        });
+        List<Set<String>> current = new ArrayList<>(targets.size());
+        List<Map<String, Double>> merged = new ArrayList<>(targets.size());
+        int index = 0;
+        for (int t = 0; t < targets.size(); t++) {
+            Object existing = results.get(index++);
+            current.add(existing instanceof Set<?> members ? (Set<String>) members : Set.of());
+            Map<String, Double> sums = new HashMap<>();
+            for (int i = 0; i < instanceList.size(); i++) {
+                Object part = results.get(index++);
+                if (!(part instanceof Set<?> tuples)) continue;
+                for (Object tuple : tuples) {
+                    if (tuple instanceof ZSetOperations.TypedTuple<?> typed && typed.getValue() != null && typed.getScore() != null) {
+                        sums.merge(String.valueOf(typed.getValue()), typed.getScore(), Double::sum);
+                    } else if (tuple instanceof StringRedisConnection.StringTuple stringTuple) {
+                        sums.merge(stringTuple.getValueAsString(), stringTuple.getScore(), Double::sum);
+                    }
+                }
+            }
+            Map<String, Double> top = new HashMap<>();
+            sums.entrySet().stream()
+                .sorted((a, b) -> Double.compare(b.getValue(), a.getValue()))
+                .limit(maxItems)
+                .forEach(entry -> top.put(entry.getKey(), entry.getValue()));
+            merged.add(top);
+        }
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection redis = (StringRedisConnection) connection;
+            for (int t = 0; t < targets.size(); t++) {
+                String key = key(targets.get(t));
+                Map<String, Double> top = merged.get(t);
+                if (top.isEmpty()) {
+                    redis.del(key);
+                    continue;
+                }
+                Set<StringRedisConnection.StringTuple> tuples = new HashSet<>();
+                top.forEach((member, score) -> tuples.add(new DefaultStringTuple(member, score)));
+                redis.zAdd(key, tuples);
+                String[] stale = current.get(t).stream().filter(member -> !top.containsKey(member)).toArray(String[]::new);
+                if (stale.length > 0) redis.zRem(key, stale);
+            }
+            return null;
+        });
+        return merged.stream().map(top -> (long) top.size()).toList();
+    }
+
+    private boolean isClusterMode() {
+        if (clusterMode == null) {
+            RedisConnectionFactory factory = stringRedisTemplate.getConnectionFactory();
+            clusterMode = factory instanceof LettuceConnectionFactory
+                && ((LettuceConnectionFactory) factory).isClusterAware();
+        }
+        return clusterMode;
+    }
+}
@@ -0,0 +1,161 @@
+package com.SE2025BackEnd_16.project.service;
+
+import com.SE2025BackEnd_16.project.KafkaUtils.KafkaTopics;
+import com.SE2025BackEnd_16.project.KafkaUtils.KafkaUtils;
+import com.SE2025BackEnd_16.project.KafkaUtils.event.ItemEvents;
+import com.SE2025BackEnd_16.project.repository.CategoryRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.RedisZSetCommands;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 浏览统计
+ * 详情页只发送一条 itemView 事件；ItemViewTopology 按窗口聚合，KafkaViewStatsConsumer 每个窗口批量写库，
+ * 分类总数（含未登录用户）持久化在 categories.view_counts，Redis ZSet（{stats:category:views}）只是它的带TTL副本：
+ * 写入方提交后用数据库中的总数覆盖已有成员（ZADD XX，不会在键过期后生成残缺的ZSet），
+ * 读取方在键缺失时加锁从同一数据源整体重建，两边写入的都是绝对值，不存在重建与累加交错导致的重复计数
+ */
+@Slf4j
+@Service
+public class ItemViewStatsService {
+
+    // 正式key与重建用的临时key带同一个hash tag，集群模式下在同一slot，RENAME不会跨slot
+    public static final String CATEGORY_VIEWS_KEY = "{stats:category:views}";
+
+    private static final String REBUILD_KEY = CATEGORY_VIEWS_KEY + ":rebuild";
+
+    private static final String REBUILD_LOCK_KEY = CATEGORY_VIEWS_KEY + ":rebuild-lock";
+
+    @Autowired
+    private KafkaUtils kafkaUtils;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired(required = false)
+    private DistributedLockService distributedLockService;
+
+    @Value("${app.stats.category-views.ttl-seconds:600}")
+    private long categoryViewsTtlSeconds;
+
+    @Value("${app.stats.category-views.lock-wait-ms:500}")
+    private long rebuildLockWaitMs;
+
+    /**
+     * 记录一次浏览（异步，失败只记录日志，不影响详情页）
+     */
+    public void recordView(Integer itemId, Integer categoryId, Integer userId) {
+        if (itemId == null || categoryId == null) return;
+        try {
+            kafkaUtils.send(KafkaTopics.ITEM_VIEW, new ItemEvents.Viewed(itemId, categoryId, userId));
+        } catch (Exception e) {
+            log.warn("发送浏览事件失败: 商品{}, {}", itemId, e.getMessage());
+        }
+    }
+
+    /**
+     * 各分类总浏览次数；Redis中没有时加锁从 categories.view_counts 重建，
+     * 未抢到锁的请求直接返回数据库中的值，不写Redis
+     */
+    public Map<Integer, Long> getCategoryViewTotals() {
+        Map<Integer, Long> totals = readCategoryViews();
+        if (!totals.isEmpty()) return totals;
+        if (distributedLockService == null) {
+            totals = loadCategoryViews();
+            writeCategoryViews(totals);
+            return totals;
+        }
+        if (!distributedLockService.tryLock(REBUILD_LOCK_KEY, rebuildLockWaitMs, 10_000, TimeUnit.MILLISECONDS)) {
+            return loadCategoryViews();
+        }
+        try {
+            // 等锁期间可能已被其他实例重建
+            totals = readCategoryViews();
+            if (!totals.isEmpty()) return totals;
+            totals = loadCategoryViews();
+            writeCategoryViews(totals);
+            return totals;
+        } finally {
+            distributedLockService.unlock(REBUILD_LOCK_KEY);
+        }
+    }
+
+    /**
+     * 数据库累加提交后，用最新总数覆盖ZSet中对应分类（只更新已存在的成员）
+     */
+    public void refreshCategoryViews(Collection<Integer> categoryIds) {
+        if (categoryIds.isEmpty()) return;
+        List<Object[]> rows = categoryRepository.findViewCountsByIds(categoryIds);
+        if (rows.isEmpty()) return;
+        byte[] key = CATEGORY_VIEWS_KEY.getBytes(StandardCharsets.UTF_8);
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (Object[] row : rows) {
+                byte[] member = String.valueOf(row[0]).getBytes(StandardCharsets.UTF_8);
+                connection.zSetCommands().zAdd(key, ((Number) row[1]).doubleValue(), member,
+                        RedisZSetCommands.ZAddArgs.ifExists());
+            }
+            return null;
+        });
+    }
+
+    private Map<Integer, Long> readCategoryViews() {
+        Map<Integer, Long> totals = new HashMap<>();
+        try {
+            Set<ZSetOperations.TypedTuple<String>> tuples = stringRedisTemplate.opsForZSet().rangeWithScores(CATEGORY_VIEWS_KEY, 0, -1);
+            if (tuples == null) return totals;
+            for (ZSetOperations.TypedTuple<String> tuple : tuples) {
+                if (tuple.getValue() == null || tuple.getScore() == null) continue;
+                totals.put(Integer.valueOf(tuple.getValue()), tuple.getScore().longValue());
+            }
+        } catch (Exception e) {
+            log.warn("读取Redis分类浏览量失败，改查数据库: {}", e.getMessage());
+        }
+        return totals;
+    }
+
+    private Map<Integer, Long> loadCategoryViews() {
+        Map<Integer, Long> totals = new HashMap<>();
+        for (Object[] row : categoryRepository.findAllViewCounts()) {
+            totals.put(((Number) row[0]).intValue(), row[1] != null ? ((Number) row[1]).longValue() : 0L);
+        }
+        return totals;
+    }
+
+    /**
+     * 整体写入：先写临时键再RENAME，读取方不会看到只写了一部分的ZSet
+     */
+    private void writeCategoryViews(Map<Integer, Long> totals) {
+        if (totals.isEmpty()) return;
+        try {
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection redis = (StringRedisConnection) connection;
+                redis.del(REBUILD_KEY);
+                totals.forEach((categoryId, count) -> redis.zAdd(REBUILD_KEY, count, String.valueOf(categoryId)));
+                // RENAME失败时临时key也会过期，不留无TTL的残留
+                redis.expire(REBUILD_KEY, categoryViewsTtlSeconds);
+                redis.rename(REBUILD_KEY, CATEGORY_VIEWS_KEY);
+                redis.expire(CATEGORY_VIEWS_KEY, categoryViewsTtlSeconds);
+                return null;
+            });
+        } catch (Exception e) {
+            log.warn("重建Redis分类浏览量失败: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.SE2025BackEnd_16.project.service;
+
+import com.SE2025BackEnd_16.project.KafkaUtils.KafkaTopics;
+import com.SE2025BackEnd_16.project.KafkaUtils.KafkaUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.Header;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 死信topic运维：查看积压、查看死信内容、把死信重放回业务topic
+ * 用独立消费组记录重放进度，查看不提交位点；死信topic自身的消费者（框架默认只打日志）不受影响
+ */
+@Slf4j
+@Service
+public class KafkaDeadLetterService {
+
+    private static final String REPLAY_GROUP = "dead-letter-replay";
+
+    @Autowired
+    private ConsumerFactory<String, String> consumerFactory;
+
+    @Autowired
+    private KafkaUtils kafkaUtils;
+
+    @Value("${app.kafka.dlt.poll-timeout-ms:2000}")
+    private long pollTimeoutMs;
+
+    @Value("${app.kafka.dlt.send-timeout-ms:10000}")
+    private long sendTimeoutMs;
+
+    /**
+     * 各死信topic的总条数和尚未重放的条数
+     */
+    public List<Map<String, Object>> summary() {
+        List<Map<String, Object>> result = new ArrayList<>();
+        try (Consumer<String, String> consumer = createConsumer(100)) {
+            for (String topic : KafkaTopics.DEAD_LETTER_TOPICS) {
+                List<TopicPartition> partitions = partitions(consumer, topic);
+                long total = 0;
+                long pending = 0;
+                if (!partitions.isEmpty()) {
+                    Map<TopicPartition, Long> begin = consumer.beginningOffsets(partitions);
+                    Map<TopicPartition, Long> end = consumer.endOffsets(partitions);
+                    Map<TopicPartition, OffsetAndMetadata> committed = consumer.committed(new HashSet<>(partitions));
+                    for (TopicPartition partition : partitions) {
+                        long first = begin.getOrDefault(partition, 0L);
+                        long last = end.getOrDefault(partition, 0L);
+                        OffsetAndMetadata replayed = committed.get(partition);
+                        total += last - first;
+                        pending += last - Math.max(first, replayed != null ? replayed.offset() : first);
+                    }
+                }
+                Map<String, Object> item = new LinkedHashMap<>();
+                item.put("topic", topic);
+                item.put("sourceTopic", KafkaTopics.baseTopic(topic));
+                item.put("total", total);
+                item.put("pending", pending);
+                result.add(item);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 查看尚未重放的死信（从重放进度处开始，最多limit条，不提交位点）
+     */
+    public List<Map<String, Object>> peek(String topic, int limit) {
+        checkTopic(topic);
+        try (Consumer<String, String> consumer = createConsumer(limit)) {
+            return readPending(consumer, topic, limit).stream().map(this::describe).toList();
+        }
+    }
+
+    /**
+     * 把尚未重放的死信按原key发回业务topic（最多limit条），全部发送成功后提交重放进度
+     * @return 重放条数
+     */
+    public int replay(String topic, int limit) {
+        checkTopic(topic);
+        String target = KafkaTopics.baseTopic(topic);
+        try (Consumer<String, String> consumer = createConsumer(limit)) {
+            List<ConsumerRecord<String, String>> records = readPending(consumer, topic, limit);
+            Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+            int replayed = 0;
+            for (ConsumerRecord<String, String> record : records) {
+                try {
+                    kafkaUtils.sendMessage(target, record.key(), record.value()).get(sendTimeoutMs, TimeUnit.MILLISECONDS);
+                } catch (Exception e) {
+                    // 已发送的部分照常提交，失败的这条及之后的留待下次重放
+                    log.error("重放死信失败: {}-{}@{}, {}", record.topic(), record.partition(), record.offset(), e.getMessage());
+                    break;
+                }
+                offsets.put(new TopicPartition(record.topic(), record.partition()), new OffsetAndMetadata(record.offset() + 1));
+                replayed++;
+            }
+            if (!offsets.isEmpty()) {
+                consumer.commitSync(offsets);
+            }
+            log.info("死信重放完成: {} -> {}, 共{}条", topic, target, replayed);
+            return replayed;
+        }
+    }
+
+    private void checkTopic(String topic) {
+        if (!KafkaTopics.DEAD_LETTER_TOPICS.contains(topic)) {
+            throw new IllegalArgumentException("不是死信topic: " + topic);
+        }
+    }
+
+    private Consumer<String, String> createConsumer(int maxPollRecords) {
+        Properties properties = new Properties();
+        properties.setProperty(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
+        properties.setProperty(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        properties.setProperty(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, String.valueOf(Math.max(1, maxPollRecords)));
+        return consumerFactory.createConsumer(REPLAY_GROUP, null, "-dlt-admin", properties);
+    }
+
+    private List<TopicPartition> partitions(Consumer<String, String> consumer, String topic) {
+        List<PartitionInfo> infos = consumer.partitionsFor(topic, Duration.ofMillis(pollTimeoutMs));
+        if (infos == null) return List.of();
+        return infos.stream().map(info -> new TopicPartition(topic, info.partition())).toList();
+    }
+
+    /**
+     * 从重放进度处读取最多limit条，读到各分区末尾或一次poll无数据即停止
+     * 同一分区的记录按offset顺序取，按记录提交位点时不会跳过未处理的记录
+     */
+    private List<ConsumerRecord<String, String>> readPending(Consumer<String, String> consumer, String topic, int limit) {
+        List<TopicPartition> partitions = partitions(consumer, topic);
+        List<ConsumerRecord<String, String>> result = new ArrayList<>();
+        if (partitions.isEmpty() || limit <= 0) return result;
+        consumer.assign(partitions);
+        Map<TopicPartition, OffsetAndMetadata> committed = consumer.committed(new HashSet<>(partitions));
+        Map<TopicPartition, Long> end = consumer.endOffsets(partitions);
+        for (TopicPartition partition : partitions) {
+            OffsetAndMetadata replayed = committed.get(partition);
+            if (replayed != null) {
+                consumer.seek(partition, replayed.offset());
+            } else {
+                consumer.seekToBeginning(List.of(partition));
+            }
+        }
+        while (result.size() < limit) {
+            boolean reachedEnd = partitions.stream().allMatch(partition -> consumer.position(partition) >= end.getOrDefault(partition, 0L));
+            if (reachedEnd) break;
+            var records = consumer.poll(Duration.ofMillis(pollTimeoutMs));
+            if (records.isEmpty()) break;
+            for (ConsumerRecord<String, String> record : records) {
+                if (result.size() >= limit) break;
+                result.add(record);
+            }
+        }
+        return result;
+    }
+
+    private Map<String, Object> describe(ConsumerRecord<String, String> record) {
+        Map<String, Object> item = new LinkedHashMap<>();
+        item.put("partition", record.partition());
+        item.put("offset", record.offset());
+        item.put("timestamp", Instant.ofEpochMilli(record.timestamp()));
+        item.put("key", record.key());
+        item.put("value", record.value());
+        item.put("originalTopic", header(record, KafkaHeaders.DLT_ORIGINAL_TOPIC));
+        item.put("exception", header(record, KafkaHeaders.DLT_EXCEPTION_FQCN));
+        item.put("exceptionMessage", header(record, KafkaHeaders.DLT_EXCEPTION_MESSAGE));
+        return item;
+    }
+
+    private String header(ConsumerRecord<String, String> record, String name) {
+        Header header = record.headers().lastHeader(name);
+        return header != null && header.value() != null ? new String(header.value(), StandardCharsets.UTF_8) : null;
+    }
+}
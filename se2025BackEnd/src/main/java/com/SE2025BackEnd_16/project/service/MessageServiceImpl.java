@@ -1,6 +1,8 @@
 package com.SE2025BackEnd_16.project.service;
 
+import com.SE2025BackEnd_16.project.KafkaUtils.KafkaTopics;
 import com.SE2025BackEnd_16.project.KafkaUtils.KafkaUtils;
+import com.SE2025BackEnd_16.project.KafkaUtils.event.MessageEvents;
 import com.SE2025BackEnd_16.project.RedisUtils.RedisUtils;
 import com.SE2025BackEnd_16.project.dao.MessageDao;
 import com.SE2025BackEnd_16.project.dto.converter.MessageConverter;
@@ -61,8 +63,7 @@ public class MessageServiceImpl implements MessageService {
         // 4. 保存留言
         Message savedMessage = messageDao.save(message);
         // 发送Kafka消息，异步缓存新留言
-        String messageInfo = savedMessage.getMessageId() +"," + requestDTO.getItemId();
-        kafkaUtils.sendMessage("addMessage", messageInfo);
+        kafkaUtils.send(KafkaTopics.ADD_MESSAGE, new MessageEvents.Added(savedMessage.getMessageId(), requestDTO.getItemId()));
 //        log.info("留言添加成功，ID: {}", savedMessage.getMessageId());
         
         // 5. 获取用户信息并转换为ResponseDTO
@@ -106,7 +107,7 @@ public class MessageServiceImpl implements MessageService {
             replies = messageDao.findByParentIdAndIsDeletedOrderByReplyTimeAsc(parentId, false);
             if (replies != null && !replies.isEmpty()) {
                 System.out.println("缓存未命中ReplyMessage：" + parentId);
-                kafkaUtils.sendMessage("replyMessage", String.valueOf(parentId));
+                kafkaUtils.send(KafkaTopics.REPLY_MESSAGE, new MessageEvents.RepliesPreheat(parentId));
             }
         }
         // 2. 转换为ResponseDTO
@@ -131,7 +132,7 @@ public class MessageServiceImpl implements MessageService {
         
         // 2. 软删除留言
         messageDao.softDeleteById(messageId);
-        kafkaUtils.sendMessage("deleteMessage", String.valueOf(messageId));
+        kafkaUtils.send(KafkaTopics.DELETE_MESSAGE, new MessageEvents.Deleted(messageId));
 //        log.info("留言删除成功，ID: {}", messageId);
     }
     
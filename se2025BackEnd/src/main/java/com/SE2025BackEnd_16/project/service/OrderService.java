@@ -1,6 +1,8 @@
 package com.SE2025BackEnd_16.project.service;
 
+import com.SE2025BackEnd_16.project.KafkaUtils.KafkaTopics;
 import com.SE2025BackEnd_16.project.KafkaUtils.KafkaUtils;
+import com.SE2025BackEnd_16.project.KafkaUtils.event.OrderEvents;
 import com.SE2025BackEnd_16.project.dao.OrderDao;
 import com.SE2025BackEnd_16.project.entity.Order;
 import com.SE2025BackEnd_16.project.entity.Item;
@@ -8,18 +10,26 @@ import com.SE2025BackEnd_16.project.entity.UserInfo;
 import com.SE2025BackEnd_16.project.repository.OrderRepository;
 import com.SE2025BackEnd_16.project.repository.ItemRepository;
 import com.SE2025BackEnd_16.project.repository.UserInfoRepository;
+import com.SE2025BackEnd_16.project.RedisUtils.AsyncRedisUtils;
+import com.SE2025BackEnd_16.project.RedisUtils.CachePenetrationGuard;
 import com.SE2025BackEnd_16.project.RedisUtils.RedisUtils;
+import com.SE2025BackEnd_16.project.RedisUtils.SingleFlight;
+import com.SE2025BackEnd_16.project.RedisUtils.ZSetCursor;
 import com.SE2025BackEnd_16.project.dto.response.OrderResponseDTO;
+import com.SE2025BackEnd_16.project.dto.response.PageResponseDTO;
 import com.SE2025BackEnd_16.project.dto.converter.OrderConverter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 @Service
 public class OrderService {
@@ -36,6 +46,12 @@ public class OrderService {
     private KafkaUtils kafkaUtils;
     @Autowired
     private RedisUtils redisUtils;
+    @Autowired
+    private AsyncRedisUtils asyncRedisUtils;
+    @Autowired
+    private SingleFlight singleFlight;
+    @Autowired
+    private CachePenetrationGuard penetrationGuard;
     
     @Autowired
     private OrderConverter orderConverter;
@@ -46,7 +62,9 @@ public class OrderService {
         int size = pageable.getPageSize();
         
         // 1. 从Redis获取买家订单ID列表
-        List<String> orderIds = redisUtils.getBuyerOrderIds(userId, page, size);
+        // 总数与ID分页、详情互不依赖，同时发出
+        CompletableFuture<Long> totalFuture = asyncRedisUtils.getBuyerOrderCount(userId).toFuture();
+        List<String> orderIds = asyncRedisUtils.getBuyerOrderIds(userId, page, size).toFuture().join();
         
         List<Order> orders;
         long total;
@@ -54,8 +72,8 @@ public class OrderService {
         if (!orderIds.isEmpty()) {
             // Redis命中，批量获取订单详情
             System.out.println("Redis命中买家订单，获取到" + orderIds.size() + "个订单ID");
-            orders = redisUtils.getOrdersByIds(orderIds);
-            total = redisUtils.getBuyerOrderCount(userId);
+            orders = asyncRedisUtils.getOrdersByIds(orderIds).toFuture().join();
+            total = totalFuture.join();
         } else {
             // Redis未命中，从数据库查询并立即返回，同时异步补缓存
             System.out.println("Redis未命中买家订单，从数据库查询并异步补缓存");
@@ -71,7 +89,7 @@ public class OrderService {
             }
             
             // 发送Kafka消息异步补缓存其他页数据
-            kafkaUtils.sendMessage("orderCachePreheat", userId + ",buyer," + page + "," + size);
+            kafkaUtils.send(KafkaTopics.ORDER_CACHE_PREHEAT, new OrderEvents.CachePreheat(userId, "buyer", page, size));
         }
         
         return new org.springframework.data.domain.PageImpl<>(orders, pageable, total);
@@ -84,7 +102,9 @@ public class OrderService {
         int size = pageable.getPageSize();
         
         // 1. 从Redis获取卖家订单ID列表
-        List<String> orderIds = redisUtils.getSellerOrderIds(userId, page, size);
+        // 总数与ID分页、详情互不依赖，同时发出
+        CompletableFuture<Long> totalFuture = asyncRedisUtils.getSellerOrderCount(userId).toFuture();
+        List<String> orderIds = asyncRedisUtils.getSellerOrderIds(userId, page, size).toFuture().join();
         
         List<Order> orders;
         long total;
@@ -92,8 +112,8 @@ public class OrderService {
         if (!orderIds.isEmpty()) {
             // Redis命中，批量获取订单详情
             System.out.println("Redis命中卖家订单，获取到" + orderIds.size() + "个订单ID");
-            orders = redisUtils.getOrdersByIds(orderIds);
-            total = redisUtils.getSellerOrderCount(userId);
+            orders = asyncRedisUtils.getOrdersByIds(orderIds).toFuture().join();
+            total = totalFuture.join();
         } else {
             // Redis未命中，从数据库查询并立即返回，同时异步补缓存
             System.out.println("Redis未命中卖家订单，从数据库查询并异步补缓存");
@@ -109,21 +129,60 @@ public class OrderService {
             }
             
             // 发送Kafka消息异步补缓存其他页数据
-            kafkaUtils.sendMessage("orderCachePreheat", userId + ",seller," + page + "," + size);
+            kafkaUtils.send(KafkaTopics.ORDER_CACHE_PREHEAT, new OrderEvents.CachePreheat(userId, "seller", page, size));
         }
         
         return new org.springframework.data.domain.PageImpl<>(orders, pageable, total);
     }
+
+    // ✅ 游标分页获取用户的购买订单（cursor为空串表示第一页）
+    public PageResponseDTO<Order> getUserBuyOrdersByCursor(Integer userId, String cursor, int size) {
+        CompletableFuture<Long> totalFuture = asyncRedisUtils.getBuyerOrderCount(userId).toFuture();
+        ZSetCursor.Page<String> idPage = redisUtils.getBuyerOrderIdsAfter(userId, cursor, size);
+        if (idPage.content().isEmpty() && (cursor == null || cursor.isEmpty())) {
+            // 第一页未命中：查库返回并补缓存
+            Page<Order> orderPage = getUserBuyOrders(userId, PageRequest.of(0, size, Sort.by(Sort.Direction.DESC, "createTime")));
+            return fallbackCursorPage(orderPage, size, cursor);
+        }
+        List<Order> orders = asyncRedisUtils.getOrdersByIds(idPage.content()).toFuture().join();
+        return PageResponseDTO.ofCursor(orders, size, totalFuture.join(), cursor, idPage.nextCursor());
+    }
+
+    // ✅ 游标分页获取用户的销售订单（cursor为空串表示第一页）
+    public PageResponseDTO<Order> getUserSellOrdersByCursor(Integer userId, String cursor, int size) {
+        CompletableFuture<Long> totalFuture = asyncRedisUtils.getSellerOrderCount(userId).toFuture();
+        ZSetCursor.Page<String> idPage = redisUtils.getSellerOrderIdsAfter(userId, cursor, size);
+        if (idPage.content().isEmpty() && (cursor == null || cursor.isEmpty())) {
+            Page<Order> orderPage = getUserSellOrders(userId, PageRequest.of(0, size, Sort.by(Sort.Direction.DESC, "createTime")));
+            return fallbackCursorPage(orderPage, size, cursor);
+        }
+        List<Order> orders = asyncRedisUtils.getOrdersByIds(idPage.content()).toFuture().join();
+        return PageResponseDTO.ofCursor(orders, size, totalFuture.join(), cursor, idPage.nextCursor());
+    }
+
+    /**
+     * 数据库兜底的第一页：用最后一条订单的创建时间和ID生成游标，与订单ZSet的score/member一致
+     */
+    private PageResponseDTO<Order> fallbackCursorPage(Page<Order> orderPage, int size, String cursor) {
+        List<Order> orders = orderPage.getContent();
+        String nextCursor = null;
+        if (orderPage.hasNext() && !orders.isEmpty()) {
+            Order last = orders.get(orders.size() - 1);
+            nextCursor = new ZSetCursor(redisUtils.orderScore(last), last.getOrderId()).encode();
+        }
+        return PageResponseDTO.ofCursor(orders, size, orderPage.getTotalElements(), cursor, nextCursor);
+    }
     
     // 🔍 创建订单（高并发安全，纯缓存操作，数据库操作异步）
     public boolean createOrder(Integer buyerId, Integer itemId) {
         // 1. 买家不能购买自己的商品（先检查，避免不必要的锁竞争）
-        Item item = redisUtils.getItemDetail(itemId);
-        if (item == null) {
+        // 只需卖家ID，Hash模式下只读取该字段
+        java.util.Map<String, String> itemFields = redisUtils.getItemFields(itemId, "sellerId");
+        if (itemFields.isEmpty()) {
             throw new RuntimeException("商品不存在或缓存未命中");
         }
         
-        if (buyerId.equals(item.getSellerId())) {
+        if (String.valueOf(buyerId).equals(itemFields.get("sellerId"))) {
             throw new RuntimeException("不能购买自己的商品");
         }
         
@@ -133,7 +192,7 @@ public class OrderService {
         }
         
         // 3. 重新获取最新的商品信息（因为状态已经更新）
-        item = redisUtils.getItemDetail(itemId);
+        Item item = redisUtils.getItemDetail(itemId);
         
         // 4. 创建订单对象（纯内存操作）
         Order order = new Order();
@@ -153,11 +212,12 @@ public class OrderService {
         
         // 5. 立即缓存订单详情和订单集合
         redisUtils.cacheOrderDetail(order.getOrderId(), order);
+        penetrationGuard.onOrderCreated(order.getOrderId());
         redisUtils.addOrderToBuyerSet(buyerId, order.getOrderId(), order);
         redisUtils.addOrderToSellerSet(item.getSellerId(), order.getOrderId(), order);
         
         // 6. 发送Kafka消息异步处理数据库操作
-        kafkaUtils.sendMessage("createOrder", buyerId + "," + itemId + "," + order.getOrderId());
+        kafkaUtils.send(KafkaTopics.CREATE_ORDER, new OrderEvents.Created(buyerId, itemId, order.getOrderId()));
         
         return true;
     }
@@ -186,7 +246,7 @@ public class OrderService {
         redisUtils.cacheOrderDetail(orderId, order);
         
         // 3. 发送Kafka消息异步更新数据库
-        kafkaUtils.sendMessage("OrderConfirm", orderId);
+        kafkaUtils.send(KafkaTopics.ORDER_CONFIRM, new OrderEvents.Ref(orderId));
     }
     
     // 🔍 获取订单详情（缓存优先，数据库兜底）
@@ -194,15 +254,22 @@ public class OrderService {
         // 1. 从Redis缓存获取订单
         Order order = redisUtils.getOrderDetail(orderId);
         if (order == null) {
-            // 2. Redis未命中，从数据库查询并立即返回，同时异步补缓存
-            System.out.println("订单详情缓存未命中，从数据库查询并异步补缓存: " + orderId);
-            order = orderDao.findByOrderId(orderId);
-            if (order != null) {
-                // 立即补缓存
-                redisUtils.cacheOrderDetail(orderId, order);
-                // 发送Kafka消息异步补缓存其他相关数据
-                kafkaUtils.sendMessage("orderDetailPreheat", orderId);
-            }
+            // 2. Redis未命中，从数据库查询并立即返回，同时异步补缓存（并发未命中只回源一次）
+            order = singleFlight.execute("order:" + orderId, () -> redisUtils.getOrderDetail(orderId), () -> {
+                // 布隆过滤器或空值缓存判定不存在的订单不查库
+                if (!penetrationGuard.mightExistOrder(orderId)) return null;
+                System.out.println("订单详情缓存未命中，从数据库查询并异步补缓存: " + orderId);
+                Order loaded = orderDao.findByOrderId(orderId);
+                if (loaded != null) {
+                    // 立即补缓存
+                    redisUtils.cacheOrderDetail(orderId, loaded);
+                    // 发送Kafka消息异步补缓存其他相关数据
+                    kafkaUtils.send(KafkaTopics.ORDER_DETAIL_PREHEAT, new OrderEvents.Ref(orderId));
+                } else {
+                    penetrationGuard.markOrderMissing(orderId);
+                }
+                return loaded;
+            });
         }
         return order;
     }
@@ -229,12 +296,11 @@ public class OrderService {
         // 3. 恢复商品可售状态
         Item item = order.getItem();
         if (item != null) {
-            item.setIsAvailable(true);
-            redisUtils.setCache(redisUtils.generateItemDetailKey(item.getItemId()), item, 5, java.util.concurrent.TimeUnit.MINUTES);
+            redisUtils.updateCachedItemAvailability(item, true, 5, java.util.concurrent.TimeUnit.MINUTES);
         }
         
         // 4. 发送Kafka消息异步更新数据库
-        kafkaUtils.sendMessage("OrderCancel", orderId);
+        kafkaUtils.send(KafkaTopics.ORDER_CANCEL, new OrderEvents.Ref(orderId));
     }
 
     // 🔍 买家确认订单（缓存优先，数据库兜底）
@@ -265,7 +331,7 @@ public class OrderService {
         redisUtils.cacheOrderDetail(orderId, order);
         
         // 3. 发送Kafka消息异步更新数据库
-        kafkaUtils.sendMessage("OrderComplete", orderId + "," + "buyer");
+        kafkaUtils.send(KafkaTopics.ORDER_COMPLETE, new OrderEvents.Completed(orderId, "buyer"));
     }
 
     // 🔍 卖家确认订单（缓存优先，数据库兜底）
@@ -296,7 +362,7 @@ public class OrderService {
         redisUtils.cacheOrderDetail(orderId, order);
         
         // 3. 发送Kafka消息异步更新数据库
-        kafkaUtils.sendMessage("OrderComplete", orderId + "," + "seller");
+        kafkaUtils.send(KafkaTopics.ORDER_COMPLETE, new OrderEvents.Completed(orderId, "seller"));
     }
 
     // 🔍 买家评价（缓存优先，数据库兜底）
@@ -321,7 +387,7 @@ public class OrderService {
         redisUtils.cacheOrderDetail(orderId, order);
         
         // 3. 发送Kafka消息异步更新数据库
-        kafkaUtils.sendMessage("OrderCredit", orderId + "," + "buyer" + "," + credit);
+        kafkaUtils.send(KafkaTopics.ORDER_CREDIT, new OrderEvents.Credited(orderId, "buyer", credit));
     }
     // 🔍 卖家评价（缓存优先，数据库兜底）
     public void sellerCredit(String orderId, Integer credit) {
@@ -345,7 +411,7 @@ public class OrderService {
         redisUtils.cacheOrderDetail(orderId, order);
         
         // 3. 发送Kafka消息异步更新数据库
-        kafkaUtils.sendMessage("OrderCredit", orderId + "," + "seller" + "," + credit);
+        kafkaUtils.send(KafkaTopics.ORDER_CREDIT, new OrderEvents.Credited(orderId, "seller", credit));
     }
     
     // 生成订单ID
@@ -1,5 +1,8 @@
 package com.SE2025BackEnd_16.project.service;
 
+import com.SE2025BackEnd_16.project.RedisUtils.CacheMetrics;
+import com.SE2025BackEnd_16.project.RedisUtils.CacheTagRegistry;
+import com.SE2025BackEnd_16.project.RedisUtils.CacheTtlPolicy;
 import com.SE2025BackEnd_16.project.dto.UserInfoDto;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.redis.core.RedisTemplate;
@@ -13,6 +16,15 @@ public class RedisService {
     @Autowired
     private RedisTemplate<String, Object> redisTemplate;
 
+    @Autowired
+    private CacheTagRegistry cacheTagRegistry;
+
+    @Autowired
+    private CacheTtlPolicy cacheTtlPolicy;
+
+    @Autowired
+    private CacheMetrics cacheMetrics;
+
     // Redis key前缀
     private static final String USER_LOGIN_PREFIX = "user:login:";
     private static final String USER_INFO_PREFIX = "user:info:";
@@ -102,7 +114,9 @@ public class RedisService {
      * @return 值
      */
     public Object get(String key) {
-        return redisTemplate.opsForValue().get(key);
+        Object value = redisTemplate.opsForValue().get(key);
+        cacheMetrics.recordRead(key, value != null);
+        return value;
     }
 
     /**
@@ -124,7 +138,10 @@ public class RedisService {
      */
     public void storeUserInfo(Integer userId, UserInfoDto userInfoDto) {
         String key = USER_INFO_PREFIX + userId;
-        redisTemplate.opsForValue().set(key, userInfoDto, DEFAULT_EXPIRE_TIME, TimeUnit.SECONDS);
+        long ttlSeconds = cacheTtlPolicy.ttlSeconds(key);
+        redisTemplate.opsForValue().set(key, userInfoDto, ttlSeconds, TimeUnit.SECONDS);
+        cacheMetrics.recordWrite(key, -1, ttlSeconds);
+        cacheTagRegistry.register(CacheTagRegistry.userTag(userId), key);
         System.out.println("已存储用户 " + userId + " 的信息到Redis缓存");
     }
     
@@ -138,6 +155,7 @@ public class RedisService {
         String key = USER_INFO_PREFIX + userId;
         Object obj = redisTemplate.opsForValue().get(key);
         UserInfoDto userInfo = obj != null ? (UserInfoDto) obj : null;
+        cacheMetrics.recordRead(key, userInfo != null);
         
         if (userInfo != null) {
             System.out.println("从Redis缓存中获取到用户 " + userId + " 的信息");
@@ -172,7 +190,7 @@ public class RedisService {
             }
             
             // 重新存储到Redis
-            redisTemplate.opsForValue().set(key, cachedUser, DEFAULT_EXPIRE_TIME, TimeUnit.SECONDS);
+            redisTemplate.opsForValue().set(key, cachedUser, cacheTtlPolicy.ttlSeconds(key), TimeUnit.SECONDS);
             System.out.println("已更新用户 " + userId + " 的缓存信息，修改字段: " + cachedUser.getModifiedFields());
         }
     }
@@ -189,7 +207,7 @@ public class RedisService {
         if (cachedUser != null) {
             cachedUser.setAvatarAndMark(avatarUrl);
             // 重新存储到Redis
-            redisTemplate.opsForValue().set(key, cachedUser, DEFAULT_EXPIRE_TIME, TimeUnit.SECONDS);
+            redisTemplate.opsForValue().set(key, cachedUser, cacheTtlPolicy.ttlSeconds(key), TimeUnit.SECONDS);
             System.out.println("已更新用户 " + userId + " 的头像缓存");
         }
     }
@@ -210,17 +228,16 @@ public class RedisService {
      */
     public void refreshUserInfo(Integer userId) {
         String key = USER_INFO_PREFIX + userId;
-        redisTemplate.expire(key, DEFAULT_EXPIRE_TIME, TimeUnit.SECONDS);
+        redisTemplate.expire(key, cacheTtlPolicy.ttlSeconds(key), TimeUnit.SECONDS);
     }
 
     /**
      * 清除所有用户登录缓存（调试用）
      */
     public void clearAllUserCache() {
-        String loginPattern = USER_LOGIN_PREFIX + "*";
-        String infoPattern = USER_INFO_PREFIX + "*";
-        redisTemplate.delete(redisTemplate.keys(loginPattern));
-        redisTemplate.delete(redisTemplate.keys(infoPattern));
+        // 游标SCAN + 批量UNLINK，避免KEYS阻塞Redis
+        cacheTagRegistry.unlinkByPattern(USER_LOGIN_PREFIX + "*");
+        cacheTagRegistry.unlinkByPattern(USER_INFO_PREFIX + "*");
         System.out.println("已清除所有用户缓存（登录信息和用户信息）");
     }
 }
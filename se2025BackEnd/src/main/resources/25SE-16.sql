@@ -20,7 +20,8 @@ CREATE TABLE users_password(
 CREATE TABLE categories (
     category_id INT PRIMARY KEY AUTO_INCREMENT,   -- 分类ID（主键）
     category_name VARCHAR(50) NOT NULL,           -- 分类名称
-    icon VARCHAR(100)                             -- 分类图标URL
+    icon VARCHAR(100),                            -- 分类图标URL
+    view_counts BIGINT DEFAULT 0                  -- 分类总浏览次数（含未登录用户，由浏览量流处理累加）
 );
 CREATE TABLE items (
     item_id INT PRIMARY KEY AUTO_INCREMENT,       -- 物品ID（主键）
@@ -35,6 +36,8 @@ CREATE TABLE items (
     is_available TINYINT(1) DEFAULT 1,            -- 是否可售（1是，0否）
     is_deleted TINYINT(1) DEFAULT 0,              -- 是否已删除（1是，0否）
     update_time DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,  -- 更新时间(包括生成时间）
+    content_version BIGINT DEFAULT 0,             -- 内容（标题/描述/价格/新旧程度/分类/图片）最后一次编辑的版本号
+    availability_version BIGINT DEFAULT 0,        -- 上下架状态最后一次变更的版本号
     FOREIGN KEY (seller_id) REFERENCES users_info(user_id),
     FOREIGN KEY (category_id) REFERENCES categories(category_id)
 );
@@ -86,6 +89,15 @@ CREATE TABLE favorites (
     UNIQUE KEY (user_id, item_id)                 -- 唯一约束：用户不能重复收藏同一物品
 );
 
+CREATE TABLE processed_events (
+    consumer VARCHAR(32) NOT NULL,                -- 消费者（item/order等）
+    event_id CHAR(36) NOT NULL,                   -- Kafka事件ID（UUID）
+    topic VARCHAR(100),                           -- 事件所在topic
+    processed_at DATETIME DEFAULT CURRENT_TIMESTAMP,  -- 处理时间
+    PRIMARY KEY (consumer, event_id),             -- 同一事件对同一消费者只生效一次
+    KEY idx_processed_at (processed_at)           -- 按时间清理过期记录
+);
+
 -- 清理现有数据（按外键依赖顺序删除）
 DELETE FROM favorites;
 DELETE FROM messages;
@@ -95,6 +107,7 @@ DELETE FROM categories;
 DELETE FROM users_password;
 DELETE FROM users_info;
 DELETE FROM user_views_record;
+DELETE FROM processed_events;
 
 -- 重置自增ID
 ALTER TABLE users_info AUTO_INCREMENT = 1;
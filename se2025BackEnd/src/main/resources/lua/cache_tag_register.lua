@@ -0,0 +1,13 @@
+-- 登记缓存key到标签Set，并把标签的过期时间延长到不短于ARGV[1]秒（只延长不缩短）
+-- KEYS[1] 标签Set key
+-- ARGV[1] 标签TTL（秒）
+-- ARGV[2..] 关联的缓存key
+-- 返回登记后标签中的key数量
+for i = 2, #ARGV do
+    redis.call('SADD', KEYS[1], ARGV[i])
+end
+local ttl = tonumber(ARGV[1])
+if redis.call('TTL', KEYS[1]) < ttl then
+    redis.call('EXPIRE', KEYS[1], ttl)
+end
+return redis.call('SCARD', KEYS[1])
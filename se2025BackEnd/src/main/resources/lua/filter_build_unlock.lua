@@ -0,0 +1,7 @@
+-- 释放筛选结果构建锁：只有锁的持有者才能删除，避免锁过期后误删其他请求的锁
+-- KEYS[1] 构建锁key
+-- ARGV[1] 持有者标识
+if redis.call('GET', KEYS[1]) == ARGV[1] then
+    return redis.call('DEL', KEYS[1])
+end
+return 0
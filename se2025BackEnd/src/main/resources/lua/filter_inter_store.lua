@@ -0,0 +1,21 @@
+-- 多个集合按权重求交写入结果ZSet并设置过期时间，存储与过期在同一脚本内完成，不会留下没有TTL的key
+-- KEYS[1] 结果ZSet key
+-- KEYS[2..] 参与求交的ZSet/Set key
+-- ARGV[1] 过期时间（秒）
+-- ARGV[2..] 各集合的权重，与KEYS[2..]一一对应
+-- 返回结果中的成员数量
+local args = {KEYS[1], #KEYS - 1}
+for i = 2, #KEYS do
+    table.insert(args, KEYS[i])
+end
+table.insert(args, 'WEIGHTS')
+for i = 2, #ARGV do
+    table.insert(args, ARGV[i])
+end
+table.insert(args, 'AGGREGATE')
+table.insert(args, 'SUM')
+local stored = redis.call('ZINTERSTORE', unpack(args))
+if stored > 0 then
+    redis.call('EXPIRE', KEYS[1], ARGV[1])
+end
+return stored
@@ -0,0 +1,12 @@
+-- 按分数区间截取ZSet到目标key并设置过期时间，存储与过期在同一脚本内完成，不会留下没有TTL的key
+-- KEYS[1] 源ZSet key
+-- KEYS[2] 目标key
+-- ARGV[1] 最低分数（-inf表示不限）
+-- ARGV[2] 最高分数（+inf表示不限）
+-- ARGV[3] 过期时间（秒）
+-- 返回写入的成员数量
+local stored = redis.call('ZRANGESTORE', KEYS[2], KEYS[1], ARGV[1], ARGV[2], 'BYSCORE')
+if stored > 0 then
+    redis.call('EXPIRE', KEYS[2], ARGV[3])
+end
+return stored
@@ -0,0 +1,20 @@
+-- 商品Hash缓存单字段原子更新（key不存在时不写入，避免生成只有部分字段的残缺Hash）
+-- KEYS[1] 商品Hash key
+-- ARGV[1] 操作类型：HINCRBY / HSET
+-- ARGV[2] 字段名
+-- ARGV[3] 增量或新值
+-- ARGV[4] HINCRBY结果下限（可选）
+if redis.call('EXISTS', KEYS[1]) == 0 then
+    return false
+end
+if ARGV[1] == 'HINCRBY' then
+    local value = redis.call('HINCRBY', KEYS[1], ARGV[2], ARGV[3])
+    local floor = tonumber(ARGV[4])
+    if floor and value < floor then
+        redis.call('HSET', KEYS[1], ARGV[2], floor)
+        value = floor
+    end
+    return value
+end
+redis.call('HSET', KEYS[1], ARGV[2], ARGV[3])
+return 1
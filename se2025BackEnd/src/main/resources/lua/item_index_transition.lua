@@ -0,0 +1,49 @@
+-- 原子应用商品索引变更
+-- KEYS[i] 对应第 i 个操作，ARGV 每三个一组：操作类型, 参数1, 参数2
+--   ZADD key member score / ZREM key member
+--   SADD key member       / SREM key member
+--   SET  key value ttl(秒，<=0表示不过期) / DEL key
+--   HSETALL key json ttl：用JSON对象中的字段整体替换Hash（Hash模式的商品详情）
+--   TAG  key member ttl：登记到缓存标签Set，并把标签过期时间延长到不短于ttl秒（见 CacheTagRegistry）
+for i = 1, #KEYS do
+    local key = KEYS[i]
+    local op = ARGV[i * 3 - 2]
+    local a1 = ARGV[i * 3 - 1]
+    local a2 = ARGV[i * 3]
+    if op == 'ZADD' then
+        redis.call('ZADD', key, a2, a1)
+    elseif op == 'ZREM' then
+        redis.call('ZREM', key, a1)
+    elseif op == 'SADD' then
+        redis.call('SADD', key, a1)
+    elseif op == 'SREM' then
+        redis.call('SREM', key, a1)
+    elseif op == 'SET' then
+        local ttl = tonumber(a2)
+        if ttl and ttl > 0 then
+            redis.call('SET', key, a1, 'EX', ttl)
+        else
+            redis.call('SET', key, a1)
+        end
+    elseif op == 'HSETALL' then
+        redis.call('DEL', key)
+        for field, value in pairs(cjson.decode(a1)) do
+            redis.call('HSET', key, field, tostring(value))
+        end
+        local ttl = tonumber(a2)
+        if ttl and ttl > 0 then
+            redis.call('EXPIRE', key, ttl)
+        end
+    elseif op == 'TAG' then
+        redis.call('SADD', key, a1)
+        local ttl = tonumber(a2)
+        if redis.call('TTL', key) < ttl then
+            redis.call('EXPIRE', key, ttl)
+        end
+    elseif op == 'DEL' then
+        redis.call('DEL', key)
+    else
+        return redis.error_reply('unknown op: ' .. tostring(op))
+    end
+end
+return #KEYS
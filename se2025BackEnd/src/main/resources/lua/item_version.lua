@@ -0,0 +1,10 @@
+-- 生成商品写版本号：同一商品单调递增
+-- key丢失（过期/淘汰）后以Redis服务器时间（毫秒）为下限，新版本仍大于丢失前发出的版本
+-- KEYS[1] 版本号key
+-- ARGV[1] 过期时间（秒）
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+local current = tonumber(redis.call('GET', KEYS[1]) or '0')
+local version = math.max(current + 1, now)
+redis.call('SET', KEYS[1], string.format('%d', version), 'EX', ARGV[1])
+return version
@@ -0,0 +1,88 @@
+package com.SE2025BackEnd_16.project.KafkaUtils;
+
+import com.SE2025BackEnd_16.project.KafkaUtils.event.ItemEvents;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 批量编辑合并：无论到达顺序如何，同一商品都落到版本最新的内容
+ */
+class KafkaItemConsumerMergeTest {
+
+    private static ItemEvents.Updated update(int itemId, Integer oldCategoryId, Integer newCategoryId, String imageUrl,
+                                             String name, String price, long version) {
+        return new ItemEvents.Updated(itemId, oldCategoryId, newCategoryId, imageUrl, name, name + "描述",
+            new BigDecimal(price), "九成新", version);
+    }
+
+    private static Map<Integer, ItemEvents.Updated> mergeBatch(List<ItemEvents.Updated> events) {
+        Map<Integer, ItemEvents.Updated> merged = new LinkedHashMap<>();
+        for (ItemEvents.Updated event : events) {
+            merged.merge(event.itemId(), event, KafkaItemConsumer::mergeUpdates);
+        }
+        return merged;
+    }
+
+    @Test
+    void newerVersionWinsRegardlessOfArrivalOrder() {
+        ItemEvents.Updated v1 = update(1, 2, 3, "a.png", "第一次", "10", 100);
+        ItemEvents.Updated v2 = update(1, 3, 4, null, "第二次", "20", 200);
+        ItemEvents.Updated v3 = update(1, 4, 5, "", "第三次", "30", 300);
+
+        ItemEvents.Updated inOrder = mergeBatch(List.of(v1, v2, v3)).get(1);
+        ItemEvents.Updated reversed = mergeBatch(List.of(v3, v2, v1)).get(1);
+
+        for (ItemEvents.Updated result : List.of(inOrder, reversed)) {
+            assertEquals("第三次", result.itemName());
+            assertEquals(new BigDecimal("30"), result.price());
+            assertEquals(5, result.newCategoryId());
+            assertEquals(300, result.version());
+            // 最新一次没有上传图片，沿用之前上传的
+            assertEquals("a.png", result.imageUrl());
+        }
+        // 原分类取这一批中第一个到达的事件
+        assertEquals(2, inOrder.oldCategoryId());
+        assertEquals(4, reversed.oldCategoryId());
+    }
+
+    @Test
+    void equalVersionsKeepTheLaterEvent() {
+        ItemEvents.Updated first = update(1, 2, 2, "a.png", "先到", "10", 100);
+        ItemEvents.Updated next = update(1, 2, 2, "b.png", "后到", "11", 100);
+
+        ItemEvents.Updated merged = KafkaItemConsumer.mergeUpdates(first, next);
+
+        assertEquals("后到", merged.itemName());
+        assertEquals("b.png", merged.imageUrl());
+    }
+
+    @Test
+    void shuffledBatchReachesLatestStatePerItem() {
+        List<ItemEvents.Updated> events = new ArrayList<>();
+        for (int itemId = 1; itemId <= 5; itemId++) {
+            for (int version = 1; version <= 8; version++) {
+                events.add(update(itemId, 1, 1, "img-" + itemId + "-" + version, "商品" + itemId + "-v" + version,
+                    String.valueOf(version), version));
+            }
+        }
+        Collections.shuffle(events, new Random(42));
+
+        Map<Integer, ItemEvents.Updated> merged = mergeBatch(events);
+
+        assertEquals(5, merged.size());
+        merged.forEach((itemId, event) -> {
+            assertEquals(8, event.version());
+            assertEquals("商品" + itemId + "-v8", event.itemName());
+            assertEquals("img-" + itemId + "-8", event.imageUrl());
+        });
+    }
+}
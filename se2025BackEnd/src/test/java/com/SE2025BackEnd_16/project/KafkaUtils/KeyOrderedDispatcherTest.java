@@ -0,0 +1,108 @@
+package com.SE2025BackEnd_16.project.KafkaUtils;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 按key分lane并行：同一key的记录在同一条lane内按offset顺序处理，不同lane并行
+ */
+class KeyOrderedDispatcherTest {
+
+    private KeyOrderedDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() {
+        dispatcher = new KeyOrderedDispatcher();
+        ReflectionTestUtils.setField(dispatcher, "enabled", true);
+        ReflectionTestUtils.setField(dispatcher, "lanes", 4);
+        dispatcher.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        dispatcher.shutdown();
+    }
+
+    private static List<ConsumerRecord<String, String>> interleaved(int keys, int perKey) {
+        List<ConsumerRecord<String, String>> records = new ArrayList<>();
+        long offset = 0;
+        for (int round = 0; round < perKey; round++) {
+            for (int key = 0; key < keys; key++) {
+                records.add(new ConsumerRecord<>("topic", 0, offset++, "item-" + key, String.valueOf(round)));
+            }
+        }
+        return records;
+    }
+
+    @Test
+    void keepsPerKeyOrderAcrossLanes() {
+        List<ConsumerRecord<String, String>> records = interleaved(16, 20);
+        Map<String, List<Long>> seen = new ConcurrentHashMap<>();
+        Set<String> lanesUsed = ConcurrentHashMap.newKeySet();
+
+        dispatcher.dispatch(records, group -> {
+            lanesUsed.add(Thread.currentThread().getName());
+            for (ConsumerRecord<String, String> record : group) {
+                // 随机耗时，放大不同lane之间的交错
+                if (ThreadLocalRandom.current().nextInt(4) == 0) Thread.yield();
+                seen.computeIfAbsent(record.key(), k -> Collections.synchronizedList(new ArrayList<>())).add(record.offset());
+            }
+        });
+
+        assertEquals(16, seen.size());
+        for (Map.Entry<String, List<Long>> entry : seen.entrySet()) {
+            List<Long> offsets = entry.getValue();
+            assertEquals(20, offsets.size(), entry.getKey());
+            List<Long> sorted = new ArrayList<>(offsets);
+            Collections.sort(sorted);
+            assertEquals(sorted, offsets, "key " + entry.getKey() + " 的记录未按offset顺序处理");
+        }
+        assertTrue(lanesUsed.size() > 1, "记录应分到多条lane并行处理");
+    }
+
+    @Test
+    void sameKeyIsNeverSplitAcrossSubBatches() {
+        List<ConsumerRecord<String, String>> records = interleaved(10, 5);
+        Map<String, Set<Integer>> groupsByKey = new ConcurrentHashMap<>();
+        AtomicInteger groupIndex = new AtomicInteger();
+
+        dispatcher.dispatch(records, group -> {
+            int index = groupIndex.incrementAndGet();
+            for (ConsumerRecord<String, String> record : group) {
+                groupsByKey.computeIfAbsent(record.key(), k -> ConcurrentHashMap.newKeySet()).add(index);
+            }
+        });
+
+        groupsByKey.forEach((key, groups) -> assertEquals(1, groups.size(), "key " + key + " 被分到多个子批次"));
+    }
+
+    @Test
+    void rethrowsLaneFailureAfterAllLanesFinish() {
+        List<ConsumerRecord<String, String>> records = interleaved(8, 3);
+        AtomicInteger handled = new AtomicInteger();
+
+        RuntimeException failure = assertThrows(RuntimeException.class, () -> dispatcher.dispatch(records, group -> {
+            handled.addAndGet(group.size());
+            if (group.stream().anyMatch(record -> record.key().equals("item-0"))) {
+                throw new IllegalStateException("boom");
+            }
+        }));
+
+        assertEquals("boom", failure.getMessage());
+        assertEquals(records.size(), handled.get());
+    }
+}
@@ -0,0 +1,112 @@
+package com.SE2025BackEnd_16.project.KafkaUtils;
+
+import com.SE2025BackEnd_16.project.KafkaUtils.event.KafkaEventCodec;
+import com.SE2025BackEnd_16.project.entity.ProcessedEvent;
+import com.SE2025BackEnd_16.project.repository.ProcessedEventRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 消费端去重：同一批内重复的事件ID只保留第一条，已处理过的事件在后续批次中被过滤
+ * Redis不可用，走数据库 processed_events（用内存集合模拟）
+ */
+class ProcessedEventStoreTest {
+
+    private ProcessedEventStore store;
+    private final Set<String> persisted = new HashSet<>();
+    private long offset;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        StringRedisTemplate redis = mock(StringRedisTemplate.class);
+        when(redis.executePipelined(any(RedisCallback.class))).thenThrow(new IllegalStateException("redis down"));
+
+        ProcessedEventRepository repository = mock(ProcessedEventRepository.class);
+        when(repository.findProcessedIds(eq(ProcessedEventStore.ITEM), anyCollection())).thenAnswer(invocation -> {
+            Collection<String> ids = invocation.getArgument(1);
+            return ids.stream().filter(persisted::contains).toList();
+        });
+        when(repository.saveAll(any())).thenAnswer(invocation -> {
+            Iterable<ProcessedEvent> events = invocation.getArgument(0);
+            events.forEach(event -> persisted.add(event.getEventId()));
+            return events;
+        });
+
+        KafkaEventCodec codec = new KafkaEventCodec();
+        ReflectionTestUtils.setField(codec, "objectMapper", new ObjectMapper());
+
+        store = new ProcessedEventStore();
+        ReflectionTestUtils.setField(store, "stringRedisTemplate", redis);
+        ReflectionTestUtils.setField(store, "processedEventRepository", repository);
+        ReflectionTestUtils.setField(store, "eventCodec", codec);
+        ReflectionTestUtils.setField(store, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(store, "enabled", true);
+        ReflectionTestUtils.setField(store, "redisDays", 2);
+    }
+
+    private ConsumerRecord<String, String> record(String eventId) {
+        String value = "{\"id\":\"" + eventId + "\",\"type\":\"favoriteItem\",\"v\":2,\"data\":{\"itemId\":1}}";
+        return new ConsumerRecord<>("favoriteItem", 0, offset++, "1", value);
+    }
+
+    private ConsumerRecord<String, String> legacyRecord() {
+        return new ConsumerRecord<>("favoriteItem", 0, offset++, "1", "1,2");
+    }
+
+    private static List<Long> offsets(List<ConsumerRecord<String, String>> records) {
+        List<Long> offsets = new ArrayList<>();
+        records.forEach(record -> offsets.add(record.offset()));
+        return offsets;
+    }
+
+    @Test
+    void dropsDuplicateIdsWithinBatchKeepingFirst() {
+        List<ConsumerRecord<String, String>> batch = List.of(record("a"), record("b"), record("a"), record("c"), record("b"));
+
+        List<ConsumerRecord<String, String>> fresh = store.filterNew(ProcessedEventStore.ITEM, batch);
+
+        assertEquals(List.of(0L, 1L, 3L), offsets(fresh));
+    }
+
+    @Test
+    void dropsIdsProcessedInEarlierBatch() {
+        List<ConsumerRecord<String, String>> first = List.of(record("a"), record("b"));
+        store.markProcessed(ProcessedEventStore.ITEM, store.filterNew(ProcessedEventStore.ITEM, first));
+
+        // 重复投递：a、b已处理，c为新事件，同批内c重复
+        List<ConsumerRecord<String, String>> second = List.of(record("b"), record("c"), record("a"), record("c"));
+        List<ConsumerRecord<String, String>> fresh = store.filterNew(ProcessedEventStore.ITEM, second);
+
+        assertEquals(1, fresh.size());
+        assertEquals(3L, fresh.get(0).offset());
+    }
+
+    @Test
+    void legacyMessagesWithoutIdAreAlwaysKept() {
+        List<ConsumerRecord<String, String>> batch = List.of(legacyRecord(), record("a"), legacyRecord(), record("a"));
+
+        List<ConsumerRecord<String, String>> fresh = store.filterNew(ProcessedEventStore.ITEM, batch);
+
+        assertEquals(List.of(0L, 1L, 2L), offsets(fresh));
+    }
+}
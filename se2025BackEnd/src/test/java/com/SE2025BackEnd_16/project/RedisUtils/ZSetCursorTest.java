@@ -0,0 +1,104 @@
+package com.SE2025BackEnd_16.project.RedisUtils;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.ZSetOperations;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 游标分页：同分元素按member排序，翻页既不跳过也不重复
+ */
+class ZSetCursorTest {
+
+    /**
+     * 内存模拟 ZRANGEBYSCORE / ZREVRANGEBYSCORE ... LIMIT offset count（同分按member字典序，倒序整体反转）
+     */
+    private static ZSetCursor.RangeReader reader(Map<String, Double> zset, boolean desc) {
+        Comparator<ZSetOperations.TypedTuple<String>> order = Comparator
+                .comparing((ZSetOperations.TypedTuple<String> t) -> t.getScore())
+                .thenComparing(ZSetOperations.TypedTuple::getValue);
+        List<ZSetOperations.TypedTuple<String>> sorted = zset.entrySet().stream()
+                .map(e -> (ZSetOperations.TypedTuple<String>) new DefaultTypedTuple<>(e.getKey(), e.getValue()))
+                .sorted(desc ? order.reversed() : order)
+                .collect(Collectors.toList());
+        return (bound, offset, count) -> sorted.stream()
+                .filter(t -> desc ? t.getScore() <= bound : t.getScore() >= bound)
+                .skip(offset)
+                .limit(count)
+                .collect(Collectors.toList());
+    }
+
+    private static List<String> readAll(Map<String, Double> zset, int size, boolean desc) {
+        ZSetCursor.RangeReader reader = reader(zset, desc);
+        List<String> all = new ArrayList<>();
+        String cursor = "";
+        do {
+            ZSetCursor.Page<String> page = ZSetCursor.readPage(cursor, size, desc, reader);
+            assertTrue(page.content().size() <= size);
+            all.addAll(page.content());
+            cursor = page.nextCursor();
+        } while (cursor != null);
+        return all;
+    }
+
+    @Test
+    void equalScoresAreOrderedByMemberAcrossPages() {
+        Map<String, Double> zset = Map.of("e", 1.0, "c", 1.0, "a", 1.0, "d", 1.0, "b", 1.0);
+
+        ZSetCursor.RangeReader reader = reader(zset, false);
+        ZSetCursor.Page<String> first = ZSetCursor.readPage("", 2, false, reader);
+        assertEquals(List.of("a", "b"), first.content());
+        ZSetCursor.Page<String> second = ZSetCursor.readPage(first.nextCursor(), 2, false, reader);
+        assertEquals(List.of("c", "d"), second.content());
+        ZSetCursor.Page<String> third = ZSetCursor.readPage(second.nextCursor(), 2, false, reader);
+        assertEquals(List.of("e"), third.content());
+        assertNull(third.nextCursor());
+    }
+
+    @Test
+    void descendingTiesAreReversedByMember() {
+        Map<String, Double> zset = Map.of("a", 2.0, "b", 2.0, "c", 1.0, "d", 2.0, "e", 3.0);
+
+        assertEquals(List.of("e", "d", "b", "a", "c"), readAll(zset, 2, true));
+        assertEquals(List.of("c", "a", "b", "d", "e"), readAll(zset, 2, false));
+    }
+
+    @Test
+    void tieGroupLargerThanOneBatchIsReadCompletely() {
+        Map<String, Double> zset = new HashMap<>();
+        for (int i = 0; i < 150; i++) {
+            zset.put(String.format("m%03d", i), 5.0);
+        }
+
+        List<String> all = readAll(zset, 10, true);
+        assertEquals(150, all.size());
+        assertEquals(150, all.stream().distinct().count());
+        assertEquals("m149", all.get(0));
+        assertEquals("m000", all.get(149));
+    }
+
+    @Test
+    void cursorKeepsExactScore() {
+        ZSetCursor cursor = ZSetCursor.decode(new ZSetCursor(0.1 + 0.2, "42").encode());
+        assertEquals(0.1 + 0.2, cursor.getScore());
+        assertEquals("42", cursor.getMember());
+        assertNull(ZSetCursor.decode(""));
+        assertThrows(IllegalArgumentException.class, () -> ZSetCursor.decode("not-a-cursor"));
+    }
+
+    @Test
+    void sizeOutsideRangeIsRejected() {
+        ZSetCursor.RangeReader reader = reader(Map.of("a", 1.0), false);
+        assertThrows(IllegalArgumentException.class, () -> ZSetCursor.readPage("", 0, false, reader));
+        assertThrows(IllegalArgumentException.class,
+                () -> ZSetCursor.readPage("", ZSetCursor.MAX_PAGE_SIZE + 1, false, reader));
+    }
+}
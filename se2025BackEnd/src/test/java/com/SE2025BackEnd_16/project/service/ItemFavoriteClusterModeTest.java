@@ -0,0 +1,116 @@
+package com.SE2025BackEnd_16.project.service;
+
+import com.SE2025BackEnd_16.project.KafkaUtils.KafkaTopics;
+import com.SE2025BackEnd_16.project.KafkaUtils.KafkaUtils;
+import com.SE2025BackEnd_16.project.KafkaUtils.event.ItemEvents;
+import com.SE2025BackEnd_16.project.RedisUtils.HotKeyDetector;
+import com.SE2025BackEnd_16.project.RedisUtils.NearCache;
+import com.SE2025BackEnd_16.project.RedisUtils.RedisKeySchema;
+import com.SE2025BackEnd_16.project.RedisUtils.RedisUtils;
+import com.SE2025BackEnd_16.project.entity.Favorite;
+import com.SE2025BackEnd_16.project.repository.FavoriteRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.data.redis.connection.RedisClusterConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 集群连接（不支持WATCH/MULTI）下的收藏/取消收藏：完整缓存模式删除详情缓存，
+ * 收藏写库和收藏消息都不受影响
+ */
+class ItemFavoriteClusterModeTest {
+
+    private RedisClusterConnection connection;
+    private FavoriteRepository favoriteRepository;
+    private KafkaUtils kafkaUtils;
+    private ItemServiceImpl itemService;
+
+    @BeforeEach
+    void setUp() {
+        connection = mock(RedisClusterConnection.class);
+        InvalidDataAccessApiUsageException unsupported = new InvalidDataAccessApiUsageException("MULTI is currently not supported in cluster mode");
+        doThrow(unsupported).when(connection).watch(any());
+        doThrow(unsupported).when(connection).multi();
+        when(connection.exec()).thenThrow(unsupported);
+
+        RedisConnectionFactory factory = mock(RedisConnectionFactory.class);
+        when(factory.getConnection()).thenReturn(connection);
+        when(factory.getClusterConnection()).thenReturn(connection);
+
+        StringRedisTemplate stringRedisTemplate = new StringRedisTemplate(factory);
+        RedisTemplate<String, byte[]> bytesRedisTemplate = new RedisTemplate<>();
+        bytesRedisTemplate.setConnectionFactory(factory);
+        bytesRedisTemplate.setKeySerializer(RedisSerializer.string());
+        bytesRedisTemplate.setValueSerializer(RedisSerializer.byteArray());
+        bytesRedisTemplate.afterPropertiesSet();
+
+        RedisUtils redisUtils = new RedisUtils();
+        ReflectionTestUtils.setField(redisUtils, "stringRedisTemplate", stringRedisTemplate);
+        ReflectionTestUtils.setField(redisUtils, "bytesRedisTemplate", bytesRedisTemplate);
+        ReflectionTestUtils.setField(redisUtils, "keySchema", new RedisKeySchema());
+        ReflectionTestUtils.setField(redisUtils, "nearCache", mock(NearCache.class));
+        ReflectionTestUtils.setField(redisUtils, "hotKeyDetector", mock(HotKeyDetector.class));
+        ReflectionTestUtils.setField(redisUtils, "itemHashMode", false);
+
+        favoriteRepository = mock(FavoriteRepository.class);
+        kafkaUtils = mock(KafkaUtils.class);
+        itemService = new ItemServiceImpl();
+        ReflectionTestUtils.setField(itemService, "favoriteRepository", favoriteRepository);
+        ReflectionTestUtils.setField(itemService, "redisUtils", redisUtils);
+        ReflectionTestUtils.setField(itemService, "kafkaUtils", kafkaUtils);
+    }
+
+    private static byte[] detailKey(int itemId) {
+        return new RedisKeySchema().itemDetailKey(itemId).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void favoriteDeletesDetailCacheInsteadOfTransaction() {
+        when(favoriteRepository.existsByUserIdAndItemId(1, 7)).thenReturn(false);
+
+        itemService.addItemFavorite(1, 7);
+
+        verify(favoriteRepository).save(any(Favorite.class));
+        verify(connection).del(eq(detailKey(7)));
+        verify(connection, never()).multi();
+        verify(kafkaUtils).send(eq(KafkaTopics.FAVORITE_ITEM), eq(new ItemEvents.FavoriteChanged(7, 1, 1)));
+    }
+
+    @Test
+    void unfavoriteDeletesDetailCacheInsteadOfTransaction() {
+        when(favoriteRepository.existsByUserIdAndItemId(1, 7)).thenReturn(true);
+
+        itemService.removeItemFavorite(1, 7);
+
+        verify(favoriteRepository).deleteByUserIdAndItemId(1, 7);
+        verify(connection).del(eq(detailKey(7)));
+        verify(connection, never()).multi();
+        verify(kafkaUtils).send(eq(KafkaTopics.UNFAVORITE_ITEM), eq(new ItemEvents.FavoriteChanged(7, 1, -1)));
+    }
+
+    @Test
+    void redisFailureDoesNotFailFavorite() {
+        when(favoriteRepository.existsByUserIdAndItemId(1, 7)).thenReturn(false);
+        when(connection.del(any(byte[][].class))).thenThrow(new InvalidDataAccessApiUsageException("cluster down"));
+
+        itemService.addItemFavorite(1, 7);
+
+        verify(favoriteRepository).save(any(Favorite.class));
+        verify(kafkaUtils).send(eq(KafkaTopics.FAVORITE_ITEM), eq(new ItemEvents.FavoriteChanged(7, 1, 1)));
+    }
+}